@@ -1,6 +1,7 @@
 package com.mysillydreams.gateway.filter;
 
 import com.mysillydreams.gateway.service.JwtService;
+import io.jsonwebtoken.Claims;
 import io.micrometer.tracing.annotation.NewSpan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,16 +47,16 @@ public class AuthenticationFilter implements GatewayFilter {
         String token = authHeader.substring(BEARER_PREFIX.length());
         
         try {
-            // Validate JWT token
-            if (!jwtService.validateToken(token)) {
+            // Validate JWT token once (cached by token digest) and read all user information from the same claims
+            Claims claims = jwtService.parseValidatedClaims(token);
+            if (claims == null) {
                 logger.warn("Invalid JWT token for path: {}", request.getPath());
                 return handleUnauthorized(exchange);
             }
 
-            // Extract user information from token
-            String userId = jwtService.extractUserId(token);
-            String username = jwtService.extractUsername(token);
-            String roles = jwtService.extractRoles(token);
+            String userId = jwtService.extractUserId(claims);
+            String username = jwtService.extractUsername(claims);
+            String roles = jwtService.extractRoles(claims);
 
             // Add user information to request headers for downstream services
             ServerHttpRequest modifiedRequest = request.mutate()
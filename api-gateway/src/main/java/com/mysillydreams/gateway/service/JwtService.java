@@ -1,6 +1,7 @@
 package com.mysillydreams.gateway.service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
@@ -11,8 +12,18 @@ import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.List;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * JWT token validation service for API Gateway
@@ -24,6 +35,18 @@ public class JwtService {
 
     private final SecretKey jwtSecretKey;
     private final SecretKey jwtRefreshSecretKey;
+    // Parsers are immutable and thread-safe once built; building one per call re-derives the key setup every time
+    private final JwtParser jwtParser;
+
+    // Verified claims keyed by SHA-256 digest of the token, so repeat requests skip signature verification.
+    // Entries hold an immutable snapshot; every caller gets its own copy, so no caller can alter another's claims.
+    private final Map<String, CachedClaims> claimsCache = new ConcurrentHashMap<>();
+
+    @Value("${jwt.claims-cache.max-entries:10000}")
+    private int claimsCacheMaxEntries = 10000;
+
+    @Value("${jwt.claims-cache.max-ttl-seconds:300}")
+    private long claimsCacheMaxTtlSeconds = 300;
 
     // Constructor injection for Vault-based secret keys
     public JwtService(
@@ -31,6 +54,7 @@ public class JwtService {
             @Qualifier("jwtRefreshSecretKey") SecretKey jwtRefreshSecretKey) {
         this.jwtSecretKey = jwtSecretKey;
         this.jwtRefreshSecretKey = jwtRefreshSecretKey;
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(jwtSecretKey).build();
         logger.info("JwtService initialized with Vault-based secret keys");
     }
 
@@ -38,110 +62,148 @@ public class JwtService {
     public JwtService(@Value("${jwt.secret:LocalJwtSecretKeyForDevelopmentMinimum256BitsLong123456789!}") String jwtSecret) {
         this.jwtSecretKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
         this.jwtRefreshSecretKey = Keys.hmacShaKeyFor((jwtSecret + "_refresh").getBytes(StandardCharsets.UTF_8));
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(jwtSecretKey).build();
         logger.info("JwtService initialized with fallback configuration");
     }
 
-    private SecretKey getSigningKey() {
-        return jwtSecretKey;
+    private record CachedClaims(Map<String, Object> claims, long expiresAtMillis) {
     }
 
     /**
-     * Validate JWT token
+     * Parse and verify a JWT token once, returning its claims.
+     * Verified claims are cached until the token expires (capped at jwt.claims-cache.max-ttl-seconds),
+     * so a client reusing its token pays for signature verification only once per cache lifetime.
+     *
+     * @return the verified claims, a copy owned by the caller, or {@code null} if the token is invalid or expired
      */
-    public boolean validateToken(String token) {
+    public Claims parseValidatedClaims(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        String key = digest(token);
+        long now = System.currentTimeMillis();
+        CachedClaims cached = claimsCache.get(key);
+        if (cached != null) {
+            if (cached.expiresAtMillis() > now) {
+                return Jwts.claims(cached.claims());
+            }
+            claimsCache.remove(key, cached);
+        }
+
+        Claims claims;
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
+            claims = jwtParser.parseClaimsJws(token).getBody();
         } catch (Exception e) {
             logger.debug("JWT validation failed: {}", e.getMessage());
-            return false;
+            return null;
+        }
+
+        long expiresAt = now + claimsCacheMaxTtlSeconds * 1000;
+        if (claims.getExpiration() != null) {
+            expiresAt = Math.min(expiresAt, claims.getExpiration().getTime());
+        }
+        if (expiresAt > now && claimsCacheMaxEntries > 0) {
+            if (claimsCache.size() >= claimsCacheMaxEntries) {
+                evictClaims(now);
+            }
+            claimsCache.put(key, new CachedClaims(immutableCopy(claims), expiresAt));
         }
+        return claims;
     }
 
     /**
-     * Extract user ID from JWT token
+     * Snapshot of the claims for the cache; collection values (e.g. a roles list) are made unmodifiable too,
+     * since the per-caller copies share them.
      */
-    public String extractUserId(String token) {
-        try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-
-            // Try to get userId from claims, fallback to subject if not present
-            String userId = claims.get("userId", String.class);
-            return userId != null ? userId : claims.getSubject();
-        } catch (Exception e) {
-            logger.debug("Failed to extract user ID from token: {}", e.getMessage());
-            return null;
-        }
+    private static Map<String, Object> immutableCopy(Claims claims) {
+        Map<String, Object> copy = new LinkedHashMap<>(claims.size());
+        claims.forEach((name, value) -> copy.put(name, value instanceof Collection<?> collection
+                ? Collections.unmodifiableList(new ArrayList<>(collection))
+                : value));
+        return Collections.unmodifiableMap(copy);
     }
 
     /**
-     * Extract username from JWT token
+     * Drop expired entries; if the cache is still full, drop an arbitrary tenth of it to stay bounded.
      */
-    public String extractUsername(String token) {
+    private void evictClaims(long now) {
+        claimsCache.values().removeIf(entry -> entry.expiresAtMillis() <= now);
+        int toRemove = claimsCache.size() - claimsCacheMaxEntries + Math.max(1, claimsCacheMaxEntries / 10);
+        Iterator<String> keys = claimsCache.keySet().iterator();
+        while (toRemove-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static String digest(String token) {
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-
-            // Username is typically stored in the subject
-            return claims.getSubject();
-        } catch (Exception e) {
-            logger.debug("Failed to extract username from token: {}", e.getMessage());
-            return null;
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 
     /**
-     * Extract roles from JWT token
+     * Validate JWT token
      */
-    public String extractRoles(String token) {
-        try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-
-            // Roles are typically stored in authorities claim
-            String authorities = claims.get("authorities", String.class);
-            return authorities != null ? authorities : "";
-        } catch (Exception e) {
-            logger.debug("Failed to extract roles from token: {}", e.getMessage());
-            return "";
-        }
+    public boolean validateToken(String token) {
+        return parseValidatedClaims(token) != null;
     }
 
     /**
      * Extract user ID from JWT token
      */
     public String extractUserId(String token) {
-        return extractClaim(token, "userId");
+        Claims claims = parseValidatedClaims(token);
+        return claims != null ? extractUserId(claims) : null;
+    }
+
+    /**
+     * Extract user ID from verified claims, falling back to the subject if no userId claim is present
+     */
+    public String extractUserId(Claims claims) {
+        String userId = claims.get("userId", String.class);
+        return userId != null ? userId : claims.getSubject();
     }
 
     /**
      * Extract username from JWT token
      */
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        Claims claims = parseValidatedClaims(token);
+        return claims != null ? extractUsername(claims) : null;
+    }
+
+    /**
+     * Extract username (the subject) from verified claims
+     */
+    public String extractUsername(Claims claims) {
+        return claims.getSubject();
     }
 
     /**
      * Extract roles from JWT token
      */
     public String extractRoles(String token) {
-        Claims claims = extractAllClaims(token);
-        @SuppressWarnings("unchecked")
-        List<String> roles = (List<String>) claims.get("roles");
-        return roles != null ? String.join(",", roles) : "";
+        Claims claims = parseValidatedClaims(token);
+        return claims != null ? extractRoles(claims) : "";
+    }
+
+    /**
+     * Extract roles from verified claims as a comma-separated string.
+     * auth-service issues them as a comma-joined "roles" string; a list or an "authorities" claim is also accepted.
+     */
+    public String extractRoles(Claims claims) {
+        Object roles = claims.get("roles");
+        if (roles == null) {
+            roles = claims.get("authorities");
+        }
+        if (roles instanceof Collection<?> collection) {
+            return collection.stream().map(String::valueOf).collect(Collectors.joining(","));
+        }
+        return roles != null ? roles.toString() : "";
     }
 
     /**
@@ -178,11 +240,12 @@ public class JwtService {
      * Extract all claims from token
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        Claims claims = parseValidatedClaims(token);
+        if (claims != null) {
+            return claims;
+        }
+        // Not valid: let the parser raise the specific JwtException for the caller
+        return jwtParser.parseClaimsJws(token).getBody();
     }
 
     /**
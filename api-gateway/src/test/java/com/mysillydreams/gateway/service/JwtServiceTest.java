@@ -0,0 +1,116 @@
+package com.mysillydreams.gateway.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTest {
+
+    private static final String SECRET = "TestJwtSecretKeyForUnitTestsMinimum256BitsLong1234567890!";
+    private static final SecretKey KEY = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+
+    private JwtService jwtService;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtService(SECRET);
+    }
+
+    private static String token(String subject, long validForMillis) {
+        return Jwts.builder()
+                .setSubject(subject)
+                .claim("userId", subject + "-id")
+                .claim("roles", List.of("ROLE_USER"))
+                .setExpiration(new Date(System.currentTimeMillis() + validForMillis))
+                .signWith(KEY)
+                .compact();
+    }
+
+    /**
+     * Makes signature verification fail from now on, so only a cache hit can still return claims.
+     */
+    private void breakVerification() {
+        SecretKey otherKey = Keys.hmacShaKeyFor("AnotherSecretKeyThatDoesNotMatchTheTokensSignature1234567!"
+                .getBytes(StandardCharsets.UTF_8));
+        ReflectionTestUtils.setField(jwtService, "jwtParser", Jwts.parserBuilder().setSigningKey(otherKey).build());
+    }
+
+    @Test
+    void parseValidatedClaims_shouldServeRepeatTokenFromCache() {
+        String token = token("alice", 60_000);
+        assertNotNull(jwtService.parseValidatedClaims(token));
+
+        breakVerification();
+
+        Claims cached = jwtService.parseValidatedClaims(token);
+        assertNotNull(cached);
+        assertEquals("alice", cached.getSubject());
+        assertEquals("alice-id", jwtService.extractUserId(cached));
+        assertNull(jwtService.parseValidatedClaims(token("bob", 60_000))); // Not cached, so verified and rejected
+    }
+
+    @Test
+    void parseValidatedClaims_shouldNotLetOneCallerAlterAnothersClaims() {
+        String token = token("alice", 60_000);
+        Claims first = jwtService.parseValidatedClaims(token);
+        first.put("roles", "ROLE_ADMIN");
+        first.setSubject("mallory");
+
+        Claims cached = jwtService.parseValidatedClaims(token);
+        cached.put("userId", "mallory-id");
+        assertThrows(UnsupportedOperationException.class, () -> ((List<Object>) cached.get("roles")).add("ROLE_ADMIN"));
+
+        Claims again = jwtService.parseValidatedClaims(token);
+        assertEquals("alice", again.getSubject());
+        assertEquals("alice-id", jwtService.extractUserId(again));
+        assertEquals("ROLE_USER", jwtService.extractRoles(again));
+    }
+
+    @Test
+    void parseValidatedClaims_shouldNotServeCachedClaimsPastTokenExpiry() throws InterruptedException {
+        String token = token("alice", 1_500);
+        Claims claims = jwtService.parseValidatedClaims(token);
+        assertNotNull(claims);
+
+        Thread.sleep(Math.max(0, claims.getExpiration().getTime() - System.currentTimeMillis()) + 100);
+
+        assertNull(jwtService.parseValidatedClaims(token));
+    }
+
+    @Test
+    void parseValidatedClaims_shouldCapCacheLifetimeAtMaxTtl() throws InterruptedException {
+        ReflectionTestUtils.setField(jwtService, "claimsCacheMaxTtlSeconds", 1L);
+        String token = token("alice", 3_600_000);
+        assertNotNull(jwtService.parseValidatedClaims(token));
+        breakVerification();
+        assertNotNull(jwtService.parseValidatedClaims(token));
+
+        Thread.sleep(1_100);
+
+        // The entry expired long before the token did, so the token is verified again (and now fails)
+        assertNull(jwtService.parseValidatedClaims(token));
+    }
+
+    @Test
+    void parseValidatedClaims_shouldEvictToStayWithinMaxEntries() {
+        ReflectionTestUtils.setField(jwtService, "claimsCacheMaxEntries", 3);
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(jwtService.parseValidatedClaims(token("user" + i, 60_000)));
+        }
+
+        Map<?, ?> claimsCache = (Map<?, ?>) ReflectionTestUtils.getField(jwtService, "claimsCache");
+        assertTrue(claimsCache.size() <= 3, "cache grew to " + claimsCache.size());
+        assertFalse(claimsCache.isEmpty());
+    }
+}
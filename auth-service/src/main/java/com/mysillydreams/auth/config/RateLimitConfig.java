@@ -0,0 +1,47 @@
+package com.mysillydreams.auth.config;
+
+import com.mysillydreams.auth.service.GcraRateLimiter;
+import com.mysillydreams.auth.service.RateLimiter;
+import com.mysillydreams.auth.service.RedisGcraRateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Rate limiter used by {@link RateLimitingFilter} for login attempts.
+ * Per instance by default; with {@code auth.rate-limit.cluster-wide=true} the limit is shared by all instances
+ * through Redis.
+ */
+@Configuration
+public class RateLimitConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitConfig.class);
+
+    @Value("${auth.rate-limit.cluster-wide:false}")
+    private boolean clusterWide;
+
+    @Value("${auth.rate-limit.max-clients:100000}")
+    private int maxClients;
+
+    @Bean
+    public RateLimiter loginRateLimiter(ObjectProvider<RedisConnectionFactory> redisConnectionFactory) {
+        int limit = SecurityConstants.LOGIN_RATE_LIMIT_REQUESTS;
+        Duration window = Duration.ofMinutes(SecurityConstants.LOGIN_RATE_LIMIT_WINDOW_MINUTES);
+        if (clusterWide) {
+            logger.info("Login rate limit: {} attempts per {} per client, shared through Redis", limit, window);
+            return new RedisGcraRateLimiter(new StringRedisTemplate(redisConnectionFactory.getObject()),
+                limit, window, maxClients, Clock.systemUTC());
+        }
+        logger.info("Login rate limit: {} attempts per {} per client, per instance (max {} clients)",
+            limit, window, maxClients);
+        return new GcraRateLimiter(limit, window, maxClients, Clock.systemUTC());
+    }
+}
@@ -4,7 +4,6 @@ import com.mysillydreams.auth.controller.dto.JwtResponse;
 import com.mysillydreams.auth.controller.dto.LoginRequest;
 import com.mysillydreams.auth.controller.dto.TokenRefreshRequest;
 import com.mysillydreams.auth.domain.RefreshToken;
-import com.mysillydreams.auth.repository.RefreshTokenRepository;
 import com.mysillydreams.auth.service.AuthService; // Added
 import com.mysillydreams.auth.service.HybridAuthenticationService;
 import com.mysillydreams.auth.service.PasswordRotationService;
@@ -63,21 +62,18 @@ public class AuthController {
     private final AuthService authService; // Added AuthService
     private final HybridAuthenticationService hybridAuthenticationService; // Added Hybrid Authentication
     private final RefreshTokenService refreshTokenService; // Added RefreshTokenService
-    private final RefreshTokenRepository refreshTokenRepository; // Added RefreshTokenRepository
 
     @Autowired
     public AuthController(AuthService authService, // Injected AuthService
                           JwtTokenProvider jwtTokenProvider,
                           PasswordRotationService passwordRotationService,
                           HybridAuthenticationService hybridAuthenticationService,
-                          RefreshTokenService refreshTokenService,
-                          RefreshTokenRepository refreshTokenRepository) {
+                          RefreshTokenService refreshTokenService) {
         this.authService = authService;
         this.jwtTokenProvider = jwtTokenProvider;
         this.passwordRotationService = passwordRotationService;
         this.hybridAuthenticationService = hybridAuthenticationService;
         this.refreshTokenService = refreshTokenService;
-        this.refreshTokenRepository = refreshTokenRepository;
     }
 
     @Operation(summary = "User Login", description = "Authenticates a user with username and password against Keycloak and returns a service-specific JWT. For admins with MFA enabled, an OTP must also be provided.")
@@ -205,34 +201,26 @@ public class AuthController {
         try {
             logger.info("Token refresh request received");
 
-            // Validate refresh token using the secure token service
-            Optional<RefreshToken> refreshTokenOpt = refreshTokenService.validateRefreshToken(request.refreshToken);
+            // Validate and revoke the refresh token in one step, so it can only be used once
+            Optional<RefreshToken> newRefreshTokenOpt = refreshTokenService.rotateRefreshToken(request.refreshToken, httpRequest);
 
-            if (refreshTokenOpt.isEmpty()) {
+            if (newRefreshTokenOpt.isEmpty()) {
                 logger.warn("Invalid or expired refresh token provided");
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "Invalid or expired refresh token"));
             }
 
-            RefreshToken refreshToken = refreshTokenOpt.get();
+            RefreshToken newRefreshToken = newRefreshTokenOpt.get();
 
             // Generate new access token
             Collection<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER")); // TODO: Get actual roles
-            String newAccessToken = jwtTokenProvider.generateTokenForUser(refreshToken.getUsername(), authorities);
+            String newAccessToken = jwtTokenProvider.generateTokenForUser(newRefreshToken.getUsername(), authorities);
             Long expiresIn = jwtTokenProvider.getExpiryDateFromToken(newAccessToken) - System.currentTimeMillis();
 
-            // Generate new refresh token and revoke the old one
-            refreshTokenService.revokeRefreshToken(request.refreshToken);
-            RefreshToken newRefreshToken = refreshTokenService.generateRefreshToken(
-                refreshToken.getUsername(),
-                refreshToken.getUserId(),
-                httpRequest
-            );
-
             JwtResponse response = new JwtResponse(newAccessToken, expiresIn);
             response.setRefreshToken(newRefreshToken.getToken());
 
-            logger.info("Token refreshed successfully for user: {}", refreshToken.getUsername());
+            logger.info("Token refreshed successfully for user: {}", newRefreshToken.getUsername());
             return ResponseEntity.ok(response);
 
         } catch (Exception e) {
@@ -303,15 +291,12 @@ public class AuthController {
             String token = authHeader.substring(7);
             String username = jwtTokenProvider.getUsernameFromToken(token);
 
-            // Find the session and verify it belongs to the user
-            Optional<RefreshToken> sessionOpt = refreshTokenRepository.findById(UUID.fromString(sessionId));
-            if (sessionOpt.isEmpty() || !sessionOpt.get().getUsername().equals(username)) {
+            // Revoke the session only if it belongs to the user
+            if (!refreshTokenService.revokeSession(username, UUID.fromString(sessionId))) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("error", "Session not found"));
             }
 
-            refreshTokenService.revokeRefreshToken(sessionOpt.get().getToken());
-
             return ResponseEntity.ok(Map.of("message", "Session revoked successfully"));
 
         } catch (Exception e) {
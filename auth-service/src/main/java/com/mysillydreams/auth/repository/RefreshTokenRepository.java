@@ -35,6 +35,19 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID
     @Query("SELECT rt FROM RefreshToken rt WHERE rt.userId = :userId AND rt.revoked = false AND rt.expiresAt > :now")
     List<RefreshToken> findValidTokensByUserId(@Param("userId") UUID userId, @Param("now") LocalDateTime now);
 
+    /**
+     * Revoke a refresh token if it is still valid (atomic check-and-revoke for token rotation)
+     */
+    @Modifying
+    @Query("UPDATE RefreshToken rt SET rt.revoked = true, rt.updatedAt = :now WHERE rt.token = :token AND rt.revoked = false AND rt.expiresAt > :now")
+    int revokeIfValid(@Param("token") String token, @Param("now") LocalDateTime now);
+
+    /**
+     * Find the usernames a user ID has had tokens issued under
+     */
+    @Query("SELECT DISTINCT rt.username FROM RefreshToken rt WHERE rt.userId = :userId")
+    List<String> findUsernamesByUserId(@Param("userId") UUID userId);
+
     /**
      * Revoke all refresh tokens for a user
      */
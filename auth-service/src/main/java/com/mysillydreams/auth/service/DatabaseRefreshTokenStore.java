@@ -0,0 +1,86 @@
+package com.mysillydreams.auth.service;
+
+import com.mysillydreams.auth.domain.RefreshToken;
+import com.mysillydreams.auth.repository.RefreshTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keeps refresh tokens in the {@code refresh_tokens} table. Runs inside the transactions of
+ * {@link RefreshTokenService}.
+ */
+@Component
+@ConditionalOnProperty(name = "jwt.refresh-token-store", havingValue = "database", matchIfMissing = true)
+public class DatabaseRefreshTokenStore implements RefreshTokenStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseRefreshTokenStore.class);
+
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    public DatabaseRefreshTokenStore(RefreshTokenRepository refreshTokenRepository) {
+        this.refreshTokenRepository = refreshTokenRepository;
+    }
+
+    @Override
+    public void store(RefreshToken refreshToken, String token, int maxSessions) {
+        // The row saved by RefreshTokenService is the token itself; only the session limit is left to enforce
+        String username = refreshToken.getUsername();
+        List<RefreshToken> userTokens = refreshTokenRepository.findValidTokensByUsername(username, LocalDateTime.now());
+        long excess = userTokens.size() - maxSessions;
+        if (excess > 0) {
+            // Sort by creation date and revoke oldest tokens
+            userTokens.stream()
+                .filter(existing -> !existing.getId().equals(refreshToken.getId()))
+                .sorted(Comparator.comparing(RefreshToken::getCreatedAt))
+                .limit(excess)
+                .forEach(existing -> {
+                    existing.revoke();
+                    refreshTokenRepository.save(existing);
+                });
+            logger.info("Limited concurrent sessions for user: {} (revoked {} old tokens)", username, excess);
+        }
+    }
+
+    @Override
+    public Optional<RefreshToken> findValid(String token) {
+        return refreshTokenRepository.findByToken(token).filter(RefreshToken::isValid);
+    }
+
+    @Override
+    public Optional<RefreshToken> consume(String token) {
+        // Conditional update: of two concurrent rotations of the same token, only one sees a row updated
+        if (refreshTokenRepository.revokeIfValid(token, LocalDateTime.now()) == 0) {
+            return Optional.empty();
+        }
+        return refreshTokenRepository.findByToken(token);
+    }
+
+    @Override
+    public boolean revokeSession(String username, UUID sessionId) {
+        Optional<RefreshToken> session = refreshTokenRepository.findById(sessionId)
+            .filter(refreshToken -> refreshToken.getUsername().equals(username));
+        session.ifPresent(refreshToken -> {
+            refreshToken.revoke();
+            refreshTokenRepository.save(refreshToken);
+        });
+        return session.isPresent();
+    }
+
+    @Override
+    public int revokeAll(String username) {
+        return refreshTokenRepository.revokeAllTokensByUsername(username, LocalDateTime.now());
+    }
+
+    @Override
+    public List<RefreshToken> findValidByUsername(String username) {
+        return refreshTokenRepository.findValidTokensByUsername(username, LocalDateTime.now());
+    }
+}
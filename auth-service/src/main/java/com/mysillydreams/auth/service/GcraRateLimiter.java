@@ -0,0 +1,101 @@
+package com.mysillydreams.auth.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory rate limiter using the generic cell rate algorithm (GCRA).
+ * Each client is a single {@link AtomicLong}, its theoretical arrival time (TAT), updated by compare-and-set: an
+ * attempt costs O(1) and allocates nothing once the client is known. {@code limit} attempts are allowed at once,
+ * after which one more is allowed every {@code window / limit}.
+ * At most {@code maxClients} clients are tracked. When the table is full, a sweep (at most one per
+ * {@link #SWEEP_INTERVAL}) evicts the clients whose TAT has passed, as they are indistinguishable from new ones;
+ * if none has, it evicts the {@link #EVICTION_FRACTION} of clients whose TAT is earliest, i.e. the ones closest to
+ * being idle. A new client that still does not fit is charged against a single shared overflow bucket with the
+ * same limit, so rotating client keys to fill the table never buys unthrottled attempts; while the table stays
+ * full, untracked clients share that one allowance.
+ */
+public class GcraRateLimiter implements RateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GcraRateLimiter.class);
+
+    static final Duration SWEEP_INTERVAL = Duration.ofSeconds(1);
+    static final double EVICTION_FRACTION = 0.1;
+
+    private final long emissionIntervalMillis;
+    private final long burstToleranceMillis;
+    private final int maxClients;
+    private final Clock clock;
+    private final ConcurrentMap<String, AtomicLong> arrivalTimes = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweepAt = new AtomicLong();
+    private final AtomicLong overflowArrivalTime = new AtomicLong(); // Shared by all clients that do not fit
+
+    public GcraRateLimiter(int limit, Duration window, int maxClients, Clock clock) {
+        if (limit <= 0 || window.isZero() || window.isNegative() || maxClients <= 0) {
+            throw new IllegalArgumentException("Rate limit, window and max clients must be positive");
+        }
+        this.emissionIntervalMillis = Math.max(1, window.toMillis() / limit);
+        this.burstToleranceMillis = emissionIntervalMillis * (limit - 1);
+        this.maxClients = maxClients;
+        this.clock = clock;
+    }
+
+    @Override
+    public Decision tryAcquire(String clientKey) {
+        long now = clock.millis();
+        AtomicLong arrivalTime = arrivalTimeOf(clientKey, now);
+        while (true) {
+            long current = arrivalTime.get();
+            long tat = Math.max(current, now);
+            long allowedAt = tat - burstToleranceMillis;
+            if (allowedAt > now) {
+                return Decision.denied(Duration.ofMillis(allowedAt - now));
+            }
+            if (arrivalTime.compareAndSet(current, tat + emissionIntervalMillis)) {
+                return Decision.ALLOWED;
+            }
+        }
+    }
+
+    int trackedClients() {
+        return arrivalTimes.size();
+    }
+
+    private AtomicLong arrivalTimeOf(String clientKey, long now) {
+        AtomicLong arrivalTime = arrivalTimes.get(clientKey);
+        if (arrivalTime != null) {
+            return arrivalTime;
+        }
+        if (arrivalTimes.size() >= maxClients) {
+            evict(now);
+            if (arrivalTimes.size() >= maxClients) {
+                logger.debug("Rate limiter is full ({} clients), charging new client to the overflow bucket", arrivalTimes.size());
+                return overflowArrivalTime;
+            }
+        }
+        return arrivalTimes.computeIfAbsent(clientKey, k -> new AtomicLong());
+    }
+
+    private void evict(long now) {
+        long sweepAt = nextSweepAt.get();
+        if (now < sweepAt || !nextSweepAt.compareAndSet(sweepAt, now + SWEEP_INTERVAL.toMillis())) {
+            return; // Swept recently, or another thread is sweeping
+        }
+        int before = arrivalTimes.size();
+        arrivalTimes.values().removeIf(arrivalTime -> arrivalTime.get() <= now);
+        if (arrivalTimes.size() >= maxClients) {
+            // Nobody is idle: drop the clients closest to being idle, which loses the least throttling state
+            long[] tats = arrivalTimes.values().stream().mapToLong(AtomicLong::get).sorted().toArray();
+            int toEvict = Math.max(1, (int) (maxClients * EVICTION_FRACTION));
+            long threshold = tats[Math.min(toEvict, tats.length) - 1];
+            arrivalTimes.values().removeIf(arrivalTime -> arrivalTime.get() <= threshold);
+        }
+        logger.debug("Rate limiter evicted {} clients, {} remain", before - arrivalTimes.size(), arrivalTimes.size());
+    }
+}
@@ -0,0 +1,26 @@
+package com.mysillydreams.auth.service;
+
+import java.time.Duration;
+
+/**
+ * Rate limiter for authentication attempts, keyed by client (e.g. IP address).
+ */
+public interface RateLimiter {
+
+    /**
+     * Records an attempt by the client if it is within its limit.
+     *
+     * @param clientKey The client's key.
+     * @return Whether the attempt may proceed and, if not, when the client may try again.
+     */
+    Decision tryAcquire(String clientKey);
+
+    record Decision(boolean allowed, Duration retryAfter) {
+
+        public static final Decision ALLOWED = new Decision(true, Duration.ZERO);
+
+        public static Decision denied(Duration retryAfter) {
+            return new Decision(false, retryAfter);
+        }
+    }
+}
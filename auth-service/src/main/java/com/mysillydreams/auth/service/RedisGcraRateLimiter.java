@@ -0,0 +1,78 @@
+package com.mysillydreams.auth.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * Cluster-wide variant of {@link GcraRateLimiter}: the theoretical arrival time of each client is one Redis key,
+ * checked and advanced by a Lua script in a single round-trip, so all auth-service instances share the limit.
+ * Keys expire as soon as the client is back to a full burst.
+ * While Redis is unreachable, attempts are limited per instance by a local {@link GcraRateLimiter}.
+ */
+public class RedisGcraRateLimiter implements RateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisGcraRateLimiter.class);
+
+    static final String KEY_PREFIX = "auth:ratelimit:";
+    private static final Duration REDIS_RETRY_DELAY = Duration.ofSeconds(5);
+
+    // Returns 0 if allowed, otherwise milliseconds until the next attempt is. The caller passes the time in.
+    private static final RedisScript<Long> GCRA_SCRIPT = new DefaultRedisScript<>(
+        "local now = tonumber(ARGV[1])\n" +
+        "local interval = tonumber(ARGV[2])\n" +
+        "local tolerance = tonumber(ARGV[3])\n" +
+        "local tat = tonumber(redis.call('GET', KEYS[1]))\n" +
+        "if tat == nil or tat < now then\n" +
+        "  tat = now\n" +
+        "end\n" +
+        "if tat - tolerance > now then\n" +
+        "  return tat - tolerance - now\n" +
+        "end\n" +
+        "redis.call('SET', KEYS[1], tat + interval, 'PX', tat + interval - now)\n" +
+        "return 0",
+        Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final GcraRateLimiter fallback;
+    private final long emissionIntervalMillis;
+    private final long burstToleranceMillis;
+    private final Clock clock;
+    private volatile long redisRetryAt;
+
+    public RedisGcraRateLimiter(StringRedisTemplate redisTemplate, int limit, Duration window, int maxClients,
+                                Clock clock) {
+        this.redisTemplate = redisTemplate;
+        this.fallback = new GcraRateLimiter(limit, window, maxClients, clock);
+        this.emissionIntervalMillis = Math.max(1, window.toMillis() / limit);
+        this.burstToleranceMillis = emissionIntervalMillis * (limit - 1);
+        this.clock = clock;
+    }
+
+    @Override
+    public Decision tryAcquire(String clientKey) {
+        long now = clock.millis();
+        if (now >= redisRetryAt) {
+            try {
+                Long retryAfterMillis = redisTemplate.execute(GCRA_SCRIPT,
+                    Collections.singletonList(KEY_PREFIX + clientKey),
+                    Long.toString(now), Long.toString(emissionIntervalMillis), Long.toString(burstToleranceMillis));
+                if (retryAfterMillis == null) {
+                    throw new IllegalStateException("No result from rate limit script");
+                }
+                return retryAfterMillis == 0 ? Decision.ALLOWED : Decision.denied(Duration.ofMillis(retryAfterMillis));
+            } catch (Exception e) {
+                redisRetryAt = now + REDIS_RETRY_DELAY.toMillis();
+                logger.warn("Redis unavailable for rate limiting, limiting per instance for {}: {}",
+                    REDIS_RETRY_DELAY, e.getMessage());
+            }
+        }
+        return fallback.tryAcquire(clientKey);
+    }
+}
@@ -0,0 +1,244 @@
+package com.mysillydreams.auth.service;
+
+import com.mysillydreams.auth.domain.RefreshToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keeps live refresh tokens in Redis, so validating and rotating them does not touch the database.
+ * - {@code auth:refresh:token:<sha256(token)>}: hash with the token's metadata, expiring with the token. Only the
+ *   SHA-256 of the token is stored, never the token itself.
+ * - {@code auth:refresh:user:<username>}: sorted set of the user's token hashes scored by expiry, used to enforce
+ *   the session limit and list sessions without scanning.
+ * Issuing, consuming (rotation) and revoking all run as Lua scripts, each one atomic round-trip. The
+ * {@code refresh_tokens} table is then an audit trail of issued tokens: its {@code token} column holds the hash and
+ * its {@code revoked} flag is not maintained.
+ */
+@Component
+@ConditionalOnProperty(name = "jwt.refresh-token-store", havingValue = "redis")
+public class RedisRefreshTokenStore implements RefreshTokenStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisRefreshTokenStore.class);
+
+    static final String TOKEN_KEY_PREFIX = "auth:refresh:token:";
+    static final String USER_KEY_PREFIX = "auth:refresh:user:";
+
+    // KEYS: token key, user key. ARGV: token hash, now, expiry, max sessions, then the metadata field/value pairs.
+    // Returns the number of older sessions revoked.
+    private static final RedisScript<Long> STORE_SCRIPT = new DefaultRedisScript<>(
+        "local now = tonumber(ARGV[2])\n" +
+        "local expiresAt = tonumber(ARGV[3])\n" +
+        "local maxSessions = tonumber(ARGV[4])\n" +
+        "redis.call('HMSET', KEYS[1], unpack(ARGV, 5))\n" +
+        "redis.call('PEXPIREAT', KEYS[1], expiresAt)\n" +
+        "redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', now)\n" +
+        "redis.call('ZADD', KEYS[2], expiresAt, ARGV[1])\n" +
+        "local excess = redis.call('ZCARD', KEYS[2]) - maxSessions\n" +
+        "if excess > 0 then\n" +
+        "  local oldest = redis.call('ZRANGE', KEYS[2], 0, excess - 1)\n" +
+        "  for _, hash in ipairs(oldest) do\n" +
+        "    redis.call('DEL', '" + TOKEN_KEY_PREFIX + "' .. hash)\n" +
+        "  end\n" +
+        "  redis.call('ZREMRANGEBYRANK', KEYS[2], 0, excess - 1)\n" +
+        "else\n" +
+        "  excess = 0\n" +
+        "end\n" +
+        "if redis.call('PTTL', KEYS[2]) < expiresAt - now then\n" +
+        "  redis.call('PEXPIREAT', KEYS[2], expiresAt)\n" +
+        "end\n" +
+        "return excess",
+        Long.class);
+
+    // KEYS: token key. ARGV: token hash. Returns the token's fields and deletes it, or nothing if it does not exist.
+    private static final RedisScript<List> CONSUME_SCRIPT = new DefaultRedisScript<>(
+        "local fields = redis.call('HGETALL', KEYS[1])\n" +
+        "if #fields == 0 then\n" +
+        "  return fields\n" +
+        "end\n" +
+        "redis.call('DEL', KEYS[1])\n" +
+        "for i = 1, #fields, 2 do\n" +
+        "  if fields[i] == 'username' then\n" +
+        "    redis.call('ZREM', '" + USER_KEY_PREFIX + "' .. fields[i + 1], ARGV[1])\n" +
+        "  end\n" +
+        "end\n" +
+        "return fields",
+        List.class);
+
+    // KEYS: user key. Returns the number of tokens deleted.
+    private static final RedisScript<Long> REVOKE_ALL_SCRIPT = new DefaultRedisScript<>(
+        "local hashes = redis.call('ZRANGE', KEYS[1], 0, -1)\n" +
+        "local deleted = 0\n" +
+        "for _, hash in ipairs(hashes) do\n" +
+        "  deleted = deleted + redis.call('DEL', '" + TOKEN_KEY_PREFIX + "' .. hash)\n" +
+        "end\n" +
+        "redis.call('DEL', KEYS[1])\n" +
+        "return deleted",
+        Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final HashOperations<String, String, String> hashOps;
+    private final Clock clock;
+
+    @Autowired
+    public RedisRefreshTokenStore(RedisConnectionFactory connectionFactory) {
+        this(new StringRedisTemplate(connectionFactory), Clock.systemDefaultZone());
+    }
+
+    RedisRefreshTokenStore(StringRedisTemplate redisTemplate, Clock clock) {
+        this.redisTemplate = redisTemplate;
+        this.hashOps = redisTemplate.opsForHash();
+        this.clock = clock;
+    }
+
+    @Override
+    public void store(RefreshToken refreshToken, String token, int maxSessions) {
+        String hash = hash(token);
+        List<String> args = new ArrayList<>();
+        args.add(hash);
+        args.add(Long.toString(clock.millis()));
+        args.add(Long.toString(toEpochMillis(refreshToken.getExpiresAt())));
+        args.add(Integer.toString(maxSessions));
+        toFields(refreshToken).forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        Long revoked = redisTemplate.execute(STORE_SCRIPT,
+            List.of(TOKEN_KEY_PREFIX + hash, USER_KEY_PREFIX + refreshToken.getUsername()), args.toArray());
+        if (revoked != null && revoked > 0) {
+            logger.info("Limited concurrent sessions for user: {} (revoked {} old tokens)", refreshToken.getUsername(), revoked);
+        }
+    }
+
+    @Override
+    public Optional<RefreshToken> findValid(String token) {
+        Map<String, String> fields = hashOps.entries(TOKEN_KEY_PREFIX + hash(token));
+        return fields.isEmpty() ? Optional.empty() : Optional.of(fromFields(fields));
+    }
+
+    @Override
+    public Optional<RefreshToken> consume(String token) {
+        String hash = hash(token);
+        List<?> result = redisTemplate.execute(CONSUME_SCRIPT, Collections.singletonList(TOKEN_KEY_PREFIX + hash), hash);
+        if (result == null || result.isEmpty()) {
+            return Optional.empty();
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i + 1 < result.size(); i += 2) {
+            fields.put(String.valueOf(result.get(i)), String.valueOf(result.get(i + 1)));
+        }
+        RefreshToken refreshToken = fromFields(fields);
+        refreshToken.revoke();
+        return Optional.of(refreshToken);
+    }
+
+    @Override
+    public boolean revokeSession(String username, UUID sessionId) {
+        String id = sessionId.toString();
+        for (String hash : liveHashes(username)) {
+            if (id.equals(hashOps.get(TOKEN_KEY_PREFIX + hash, "id"))) {
+                redisTemplate.execute(CONSUME_SCRIPT, Collections.singletonList(TOKEN_KEY_PREFIX + hash), hash);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int revokeAll(String username) {
+        Long deleted = redisTemplate.execute(REVOKE_ALL_SCRIPT, Collections.singletonList(USER_KEY_PREFIX + username));
+        return deleted != null ? deleted.intValue() : 0;
+    }
+
+    @Override
+    public List<RefreshToken> findValidByUsername(String username) {
+        List<RefreshToken> tokens = new ArrayList<>();
+        for (String hash : liveHashes(username)) {
+            Map<String, String> fields = hashOps.entries(TOKEN_KEY_PREFIX + hash);
+            if (!fields.isEmpty()) { // Revoked or expired since the set was read
+                tokens.add(fromFields(fields));
+            }
+        }
+        return tokens;
+    }
+
+    @Override
+    public String persistedToken(String token) {
+        return hash(token);
+    }
+
+    private Set<String> liveHashes(String username) {
+        Set<String> hashes = redisTemplate.opsForZSet()
+            .rangeByScore(USER_KEY_PREFIX + username, clock.millis(), Double.POSITIVE_INFINITY);
+        return hashes != null ? hashes : Collections.emptySet();
+    }
+
+    static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static Map<String, String> toFields(RefreshToken refreshToken) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("id", refreshToken.getId().toString());
+        fields.put("username", refreshToken.getUsername());
+        fields.put("userId", refreshToken.getUserId().toString());
+        fields.put("issuedAt", refreshToken.getIssuedAt().toString());
+        fields.put("expiresAt", refreshToken.getExpiresAt().toString());
+        if (refreshToken.getIpAddress() != null) {
+            fields.put("ipAddress", refreshToken.getIpAddress());
+        }
+        if (refreshToken.getUserAgent() != null) {
+            fields.put("userAgent", refreshToken.getUserAgent());
+        }
+        return fields;
+    }
+
+    /**
+     * Rebuilds the metadata as a detached entity. Its {@code token} is left empty: the token itself is not stored.
+     */
+    private static RefreshToken fromFields(Map<String, String> fields) {
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setId(UUID.fromString(fields.get("id")));
+        refreshToken.setUsername(fields.get("username"));
+        refreshToken.setUserId(UUID.fromString(fields.get("userId")));
+        refreshToken.setIssuedAt(LocalDateTime.parse(fields.get("issuedAt")));
+        refreshToken.setCreatedAt(refreshToken.getIssuedAt());
+        refreshToken.setUpdatedAt(refreshToken.getIssuedAt());
+        refreshToken.setExpiresAt(LocalDateTime.parse(fields.get("expiresAt")));
+        refreshToken.setIpAddress(fields.get("ipAddress"));
+        refreshToken.setUserAgent(fields.get("userAgent"));
+        return refreshToken;
+    }
+
+    private long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -20,7 +20,9 @@ import java.util.UUID;
 
 /**
  * Service for managing refresh tokens securely.
- * Provides token generation, validation, and cleanup.
+ * Provides token generation, validation, rotation and cleanup. Every issued token is saved to the
+ * {@code refresh_tokens} table; validation, rotation and revocation go through the configured
+ * {@link RefreshTokenStore}.
  */
 @Service
 @Transactional
@@ -29,6 +31,7 @@ public class RefreshTokenService {
     private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
 
     private final RefreshTokenRepository refreshTokenRepository;
+    private final RefreshTokenStore refreshTokenStore;
     private final SecureRandom secureRandom;
 
     @Value("${jwt.refresh-expiration-hours:168}") // 7 days default
@@ -38,8 +41,9 @@ public class RefreshTokenService {
     private int maxConcurrentSessions;
 
     @Autowired
-    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository) {
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, RefreshTokenStore refreshTokenStore) {
         this.refreshTokenRepository = refreshTokenRepository;
+        this.refreshTokenStore = refreshTokenStore;
         this.secureRandom = new SecureRandom();
     }
 
@@ -54,7 +58,7 @@ public class RefreshTokenService {
 
         LocalDateTime expiresAt = LocalDateTime.now().plusHours(refreshTokenExpirationHours);
         
-        RefreshToken refreshToken = new RefreshToken(token, username, userId, expiresAt);
+        RefreshToken refreshToken = new RefreshToken(refreshTokenStore.persistedToken(token), username, userId, expiresAt);
         
         // Add request metadata for security tracking
         if (request != null) {
@@ -62,13 +66,24 @@ public class RefreshTokenService {
             refreshToken.setUserAgent(request.getHeader("User-Agent"));
         }
 
-        // Limit concurrent sessions
-        limitConcurrentSessions(username);
-
         RefreshToken savedToken = refreshTokenRepository.save(refreshToken);
+
+        // Limit concurrent sessions
+        refreshTokenStore.store(savedToken, token, maxConcurrentSessions);
         logger.info("Generated refresh token for user: {} (expires: {})", username, expiresAt);
         
-        return savedToken;
+        if (savedToken.getToken().equals(token)) {
+            return savedToken;
+        }
+        // Only a hash was persisted: return a detached copy carrying the token itself, for the client
+        RefreshToken issuedToken = new RefreshToken(token, username, userId, expiresAt);
+        issuedToken.setId(savedToken.getId());
+        issuedToken.setIssuedAt(savedToken.getIssuedAt());
+        issuedToken.setCreatedAt(savedToken.getCreatedAt());
+        issuedToken.setUpdatedAt(savedToken.getUpdatedAt());
+        issuedToken.setIpAddress(savedToken.getIpAddress());
+        issuedToken.setUserAgent(savedToken.getUserAgent());
+        return issuedToken;
     }
 
     /**
@@ -76,44 +91,59 @@ public class RefreshTokenService {
      */
     @Transactional(readOnly = true)
     public Optional<RefreshToken> validateRefreshToken(String token) {
-        Optional<RefreshToken> refreshTokenOpt = refreshTokenRepository.findByToken(token);
+        Optional<RefreshToken> refreshTokenOpt = refreshTokenStore.findValid(token);
         
         if (refreshTokenOpt.isEmpty()) {
-            logger.warn("Refresh token not found: {}", token.substring(0, Math.min(token.length(), 10)) + "...");
+            logger.warn("Refresh token not found, expired or revoked: {}", token.substring(0, Math.min(token.length(), 10)) + "...");
             return Optional.empty();
         }
 
-        RefreshToken refreshToken = refreshTokenOpt.get();
-        
-        if (!refreshToken.isValid()) {
-            logger.warn("Invalid refresh token for user: {} (expired: {}, revoked: {})", 
-                refreshToken.getUsername(), refreshToken.isExpired(), refreshToken.isRevoked());
+        logger.debug("Refresh token validated for user: {}", refreshTokenOpt.get().getUsername());
+        return refreshTokenOpt;
+    }
+
+    /**
+     * Exchange a refresh token for a new one. The old token is validated and revoked atomically, so of two concurrent
+     * requests with the same token only one succeeds.
+     *
+     * @return The new refresh token, or empty if the old one was not valid.
+     */
+    public Optional<RefreshToken> rotateRefreshToken(String token, HttpServletRequest request) {
+        Optional<RefreshToken> consumed = refreshTokenStore.consume(token);
+        if (consumed.isEmpty()) {
+            logger.warn("Refresh token not found, expired or already used: {}", token.substring(0, Math.min(token.length(), 10)) + "...");
             return Optional.empty();
         }
-
-        logger.debug("Refresh token validated for user: {}", refreshToken.getUsername());
-        return refreshTokenOpt;
+        RefreshToken oldToken = consumed.get();
+        return Optional.of(generateRefreshToken(oldToken.getUsername(), oldToken.getUserId(), request));
     }
 
     /**
      * Revoke a specific refresh token
      */
     public void revokeRefreshToken(String token) {
-        Optional<RefreshToken> refreshTokenOpt = refreshTokenRepository.findByToken(token);
-        
-        if (refreshTokenOpt.isPresent()) {
-            RefreshToken refreshToken = refreshTokenOpt.get();
-            refreshToken.revoke();
-            refreshTokenRepository.save(refreshToken);
-            logger.info("Revoked refresh token for user: {}", refreshToken.getUsername());
+        refreshTokenStore.consume(token)
+            .ifPresent(refreshToken -> logger.info("Revoked refresh token for user: {}", refreshToken.getUsername()));
+    }
+
+    /**
+     * Revoke one of a user's sessions by its ID
+     *
+     * @return true if the session belonged to the user and was revoked
+     */
+    public boolean revokeSession(String username, UUID sessionId) {
+        boolean revoked = refreshTokenStore.revokeSession(username, sessionId);
+        if (revoked) {
+            logger.info("Revoked session {} for user: {}", sessionId, username);
         }
+        return revoked;
     }
 
     /**
      * Revoke all refresh tokens for a user (logout from all devices)
      */
     public void revokeAllUserTokens(String username) {
-        int revokedCount = refreshTokenRepository.revokeAllTokensByUsername(username, LocalDateTime.now());
+        int revokedCount = refreshTokenStore.revokeAll(username);
         logger.info("Revoked {} refresh tokens for user: {}", revokedCount, username);
     }
 
@@ -121,7 +151,10 @@ public class RefreshTokenService {
      * Revoke all refresh tokens for a user ID
      */
     public void revokeAllUserTokens(UUID userId) {
-        int revokedCount = refreshTokenRepository.revokeAllTokensByUserId(userId, LocalDateTime.now());
+        int revokedCount = 0;
+        for (String username : refreshTokenRepository.findUsernamesByUserId(userId)) {
+            revokedCount += refreshTokenStore.revokeAll(username);
+        }
         logger.info("Revoked {} refresh tokens for user ID: {}", revokedCount, userId);
     }
 
@@ -130,30 +163,7 @@ public class RefreshTokenService {
      */
     @Transactional(readOnly = true)
     public List<RefreshToken> getUserValidTokens(String username) {
-        return refreshTokenRepository.findValidTokensByUsername(username, LocalDateTime.now());
-    }
-
-    /**
-     * Limit concurrent sessions by revoking oldest tokens
-     */
-    private void limitConcurrentSessions(String username) {
-        long currentTokenCount = refreshTokenRepository.countValidTokensByUsername(username, LocalDateTime.now());
-        
-        if (currentTokenCount >= maxConcurrentSessions) {
-            List<RefreshToken> userTokens = refreshTokenRepository.findValidTokensByUsername(username, LocalDateTime.now());
-            
-            // Sort by creation date and revoke oldest tokens
-            userTokens.stream()
-                .sorted((t1, t2) -> t1.getCreatedAt().compareTo(t2.getCreatedAt()))
-                .limit(currentTokenCount - maxConcurrentSessions + 1)
-                .forEach(token -> {
-                    token.revoke();
-                    refreshTokenRepository.save(token);
-                });
-            
-            logger.info("Limited concurrent sessions for user: {} (revoked {} old tokens)", 
-                username, Math.max(0, currentTokenCount - maxConcurrentSessions + 1));
-        }
+        return refreshTokenStore.findValidByUsername(username);
     }
 
     /**
@@ -174,7 +184,8 @@ public class RefreshTokenService {
     }
 
     /**
-     * Cleanup expired tokens (scheduled task)
+     * Cleanup expired tokens (scheduled task). With the Redis store, tokens expire there on their own and this only
+     * prunes the audit rows.
      */
     @Scheduled(fixedRate = 3600000) // Run every hour
     public void cleanupExpiredTokens() {
@@ -0,0 +1,55 @@
+package com.mysillydreams.auth.service;
+
+import com.mysillydreams.auth.domain.RefreshToken;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Where {@link RefreshTokenService} keeps live refresh tokens, selected by {@code jwt.refresh-token-store}:
+ * {@code database} (default, {@link DatabaseRefreshTokenStore}) or {@code redis} ({@link RedisRefreshTokenStore}).
+ */
+public interface RefreshTokenStore {
+
+    /**
+     * Stores a newly issued token, revoking the user's oldest sessions beyond {@code maxSessions}.
+     *
+     * @param refreshToken The token's metadata, already saved to the database.
+     * @param token        The token string handed to the client.
+     */
+    void store(RefreshToken refreshToken, String token, int maxSessions);
+
+    /**
+     * @return The token's metadata if it exists, is not expired and is not revoked.
+     */
+    Optional<RefreshToken> findValid(String token);
+
+    /**
+     * Atomically validates and revokes a token, so that it can be rotated only once.
+     *
+     * @return The token's metadata if this call revoked it.
+     */
+    Optional<RefreshToken> consume(String token);
+
+    /**
+     * Revokes one of the user's sessions by ID.
+     *
+     * @return true if the session was found and revoked.
+     */
+    boolean revokeSession(String username, UUID sessionId);
+
+    /**
+     * @return The number of sessions revoked.
+     */
+    int revokeAll(String username);
+
+    List<RefreshToken> findValidByUsername(String username);
+
+    /**
+     * @return The value saved in the {@code token} column of {@code refresh_tokens} for a newly issued token.
+     */
+    default String persistedToken(String token) {
+        return token;
+    }
+}
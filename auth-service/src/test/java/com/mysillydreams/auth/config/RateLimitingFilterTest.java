@@ -0,0 +1,58 @@
+package com.mysillydreams.auth.config;
+
+import com.mysillydreams.auth.service.RateLimiter;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitingFilterTest {
+
+    private final List<String> clientKeys = new ArrayList<>();
+    private final RateLimiter recordingLimiter = clientKey -> {
+        clientKeys.add(clientKey);
+        return RateLimiter.Decision.ALLOWED;
+    };
+
+    @Test
+    void doFilter_byDefault_shouldIgnoreForwardingHeaders() throws Exception {
+        RateLimitingFilter filter = new RateLimitingFilter(recordingLimiter, false);
+
+        filter.doFilter(loginRequest(), new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals(List.of("192.0.2.10"), clientKeys);
+    }
+
+    @Test
+    void doFilter_behindTrustedProxy_shouldKeyByForwardedFor() throws Exception {
+        RateLimitingFilter filter = new RateLimitingFilter(recordingLimiter, true);
+
+        filter.doFilter(loginRequest(), new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals(List.of("203.0.113.7"), clientKeys);
+    }
+
+    @Test
+    void doFilter_whenDenied_shouldReturn429WithRetryAfter() throws Exception {
+        RateLimitingFilter filter = new RateLimitingFilter(clientKey -> RateLimiter.Decision.denied(Duration.ofMillis(1500)), false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(loginRequest(), response, new MockFilterChain());
+
+        assertEquals(429, response.getStatus());
+        assertEquals("2", response.getHeader("Retry-After"));
+    }
+
+    private MockHttpServletRequest loginRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/login");
+        request.setRemoteAddr("192.0.2.10");
+        request.addHeader("X-Forwarded-For", "203.0.113.7, 192.0.2.10");
+        return request;
+    }
+}
@@ -0,0 +1,153 @@
+package com.mysillydreams.auth.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GcraRateLimiterTest {
+
+    private final MutableClock clock = new MutableClock();
+
+    // 5 attempts per 15 minutes: a burst of 5, then one more every 3 minutes
+    private final GcraRateLimiter rateLimiter = new GcraRateLimiter(5, Duration.ofMinutes(15), 100, clock);
+
+    @Test
+    void tryAcquire_shouldAllowBurstThenDenyWithRetryAfter() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(rateLimiter.tryAcquire("10.0.0.1").allowed());
+        }
+
+        RateLimiter.Decision denied = rateLimiter.tryAcquire("10.0.0.1");
+        assertFalse(denied.allowed());
+        assertEquals(Duration.ofMinutes(3), denied.retryAfter());
+        assertTrue(rateLimiter.tryAcquire("10.0.0.2").allowed());
+
+        clock.advance(Duration.ofMinutes(3));
+        assertTrue(rateLimiter.tryAcquire("10.0.0.1").allowed());
+        assertFalse(rateLimiter.tryAcquire("10.0.0.1").allowed());
+    }
+
+    @Test
+    void tryAcquire_deniedAttempts_shouldNotExtendTheWait() {
+        for (int i = 0; i < 20; i++) {
+            rateLimiter.tryAcquire("10.0.0.1");
+        }
+
+        clock.advance(Duration.ofMinutes(3));
+        assertTrue(rateLimiter.tryAcquire("10.0.0.1").allowed());
+    }
+
+    @Test
+    void tryAcquire_whenFull_shouldEvictIdleClients() {
+        GcraRateLimiter small = new GcraRateLimiter(2, Duration.ofMinutes(1), 2, clock);
+        assertTrue(small.tryAcquire("a").allowed());
+        assertTrue(small.tryAcquire("b").allowed());
+
+        clock.advance(Duration.ofMinutes(2)); // Everyone idle again
+        assertTrue(small.tryAcquire("c").allowed());
+        assertEquals(1, small.trackedClients());
+    }
+
+    @Test
+    void tryAcquire_whenFullOfActiveClients_shouldEvictClosestToIdleAndChargeOverflowToSharedBucket() {
+        GcraRateLimiter small = new GcraRateLimiter(2, Duration.ofMinutes(1), 2, clock);
+        assertTrue(small.tryAcquire("a").allowed());
+        clock.advance(Duration.ofSeconds(10));
+        assertTrue(small.tryAcquire("b").allowed());
+        assertTrue(small.tryAcquire("b").allowed());
+
+        // Nobody is idle: "a" is closest to it and makes room for "c"
+        assertTrue(small.tryAcquire("c").allowed());
+        assertEquals(2, small.trackedClients());
+
+        // Table full again and the sweep already ran this second: new clients share one overflow bucket
+        assertTrue(small.tryAcquire("d").allowed());
+        assertTrue(small.tryAcquire("e").allowed());
+        assertFalse(small.tryAcquire("f").allowed());
+        assertEquals(2, small.trackedClients());
+        // Tracked clients stay throttled
+        assertFalse(small.tryAcquire("b").allowed());
+    }
+
+    @Test
+    void tryAcquire_whenTableFilledByRotatingKeys_shouldNotLetUntrackedAttemptsThrough() {
+        GcraRateLimiter small = new GcraRateLimiter(5, Duration.ofMinutes(15), 10, clock);
+        int allowed = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (small.tryAcquire("attacker-" + i).allowed()) {
+                allowed++;
+            }
+        }
+
+        // The table fills, the one sweep this second evicts it (all TATs are equal) and it fills again;
+        // every other key shares the overflow bucket's burst of 5
+        assertEquals(2 * 10 + 5, allowed);
+        assertEquals(10, small.trackedClients());
+        assertFalse(small.tryAcquire("victim-guess").allowed());
+    }
+
+    @Test
+    void tryAcquire_concurrently_shouldNeverAllowMoreThanBurst() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger allowed = new AtomicInteger();
+        try {
+            for (int t = 0; t < threads; t++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 100; i++) {
+                        if (rateLimiter.tryAcquire("10.0.0.1").allowed()) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        assertEquals(5, allowed.get());
+    }
+
+    @Test
+    void constructor_withNonPositiveLimit_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new GcraRateLimiter(0, Duration.ofMinutes(1), 10, clock));
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
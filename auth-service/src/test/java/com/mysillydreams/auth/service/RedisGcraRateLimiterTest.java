@@ -0,0 +1,118 @@
+package com.mysillydreams.auth.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class RedisGcraRateLimiterTest {
+
+    @Container
+    private static final GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private final MutableClock clock = new MutableClock();
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private RedisGcraRateLimiter rateLimiter;
+    private String client;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(
+            new RedisStandaloneConfiguration(redis.getHost(), redis.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        // 5 attempts per 15 minutes: a burst of 5, then one more every 3 minutes
+        rateLimiter = new RedisGcraRateLimiter(redisTemplate, 5, Duration.ofMinutes(15), 100, clock);
+        client = "10.0.0." + UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void tryAcquire_shouldAllowBurstThenDenyWithRetryAfter() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(rateLimiter.tryAcquire(client).allowed()).isTrue();
+        }
+
+        RateLimiter.Decision denied = rateLimiter.tryAcquire(client);
+        assertThat(denied.allowed()).isFalse();
+        assertThat(denied.retryAfter()).isEqualTo(Duration.ofMinutes(3));
+
+        clock.advance(Duration.ofMinutes(3));
+        assertThat(rateLimiter.tryAcquire(client).allowed()).isTrue();
+        assertThat(rateLimiter.tryAcquire(client).allowed()).isFalse();
+    }
+
+    @Test
+    void tryAcquire_shouldShareLimitAcrossInstances() {
+        RedisGcraRateLimiter otherInstance = new RedisGcraRateLimiter(redisTemplate, 5, Duration.ofMinutes(15), 100, clock);
+        for (int i = 0; i < 5; i++) {
+            RedisGcraRateLimiter instance = i % 2 == 0 ? rateLimiter : otherInstance;
+            assertThat(instance.tryAcquire(client).allowed()).isTrue();
+        }
+
+        assertThat(rateLimiter.tryAcquire(client).allowed()).isFalse();
+        assertThat(otherInstance.tryAcquire(client).allowed()).isFalse();
+    }
+
+    @Test
+    void tryAcquire_shouldExpireKeyOnceClientIsBackToFullBurst() {
+        rateLimiter.tryAcquire(client);
+
+        String key = RedisGcraRateLimiter.KEY_PREFIX + client;
+        assertThat(redisTemplate.getExpire(key)).isBetween(1L, Duration.ofMinutes(3).toSeconds());
+    }
+
+    @Test
+    void tryAcquire_deniedAttempts_shouldNotExtendTheWait() {
+        for (int i = 0; i < 20; i++) {
+            rateLimiter.tryAcquire(client);
+        }
+
+        clock.advance(Duration.ofMinutes(3));
+        assertThat(rateLimiter.tryAcquire(client).allowed()).isTrue();
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant now = Instant.now();
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.mysillydreams.auth.service;
+
+import com.mysillydreams.auth.domain.RefreshToken;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class RedisRefreshTokenStoreTest {
+
+    @Container
+    private static final GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private RedisRefreshTokenStore store;
+    private String username;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(
+            new RedisStandaloneConfiguration(redis.getHost(), redis.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        store = new RedisRefreshTokenStore(redisTemplate, Clock.systemDefaultZone());
+        username = "user-" + UUID.randomUUID() + "@example.com";
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void store_shouldKeepOnlyHashOfTokenWithTtl() {
+        RefreshToken refreshToken = issue("token-1", 5);
+
+        String key = RedisRefreshTokenStore.TOKEN_KEY_PREFIX + RedisRefreshTokenStore.hash("token-1");
+        assertThat(redisTemplate.hasKey(key)).isTrue();
+        assertThat(redisTemplate.getExpire(key)).isPositive();
+        assertThat(redisTemplate.keys("*token-1*")).isEmpty();
+
+        Optional<RefreshToken> found = store.findValid("token-1");
+        assertThat(found).isPresent();
+        assertThat(found.get().getId()).isEqualTo(refreshToken.getId());
+        assertThat(found.get().getUsername()).isEqualTo(username);
+        assertThat(found.get().getToken()).isNull();
+    }
+
+    @Test
+    void consume_shouldSucceedOnlyOnce() {
+        issue("token-1", 5);
+
+        assertThat(store.consume("token-1")).isPresent();
+        assertThat(store.consume("token-1")).isEmpty();
+        assertThat(store.findValid("token-1")).isEmpty();
+        assertThat(store.findValidByUsername(username)).isEmpty();
+    }
+
+    @Test
+    void store_beyondMaxSessions_shouldRevokeOldestSessions() {
+        for (int i = 0; i < 4; i++) {
+            issue("token-" + i, 3, LocalDateTime.now().plusHours(1).plusMinutes(i));
+        }
+
+        List<RefreshToken> sessions = store.findValidByUsername(username);
+        assertThat(sessions).hasSize(3);
+        assertThat(store.findValid("token-0")).isEmpty();
+        assertThat(store.findValid("token-3")).isPresent();
+    }
+
+    @Test
+    void revokeSession_shouldOnlyRevokeOwnSession() {
+        RefreshToken refreshToken = issue("token-1", 5);
+
+        assertThat(store.revokeSession("someone-else", refreshToken.getId())).isFalse();
+        assertThat(store.revokeSession(username, refreshToken.getId())).isTrue();
+        assertThat(store.findValid("token-1")).isEmpty();
+    }
+
+    @Test
+    void revokeAll_shouldRevokeEverySession() {
+        issue("token-1", 5);
+        issue("token-2", 5);
+
+        assertThat(store.revokeAll(username)).isEqualTo(2);
+        assertThat(store.findValid("token-1")).isEmpty();
+        assertThat(store.findValid("token-2")).isEmpty();
+        assertThat(redisTemplate.hasKey(RedisRefreshTokenStore.USER_KEY_PREFIX + username)).isFalse();
+    }
+
+    private RefreshToken issue(String token, int maxSessions) {
+        return issue(token, maxSessions, LocalDateTime.now().plusHours(1));
+    }
+
+    private RefreshToken issue(String token, int maxSessions, LocalDateTime expiresAt) {
+        RefreshToken refreshToken = new RefreshToken(store.persistedToken(token), username, UUID.randomUUID(), expiresAt);
+        refreshToken.setId(UUID.randomUUID()); // Assigned by the database in the service
+        store.store(refreshToken, token, maxSessions);
+        return refreshToken;
+    }
+}
@@ -0,0 +1,81 @@
+package com.mysillydreams.benchmarks.gateway;
+
+import com.mysillydreams.gateway.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gateway JWT handling as done by AuthenticationFilter on every proxied request:
+ * verify the HS512 token, then read user id, username and roles.
+ * {@code claimsCache=false} measures raw parsing and signature verification on every call;
+ * {@code claimsCache=true} measures the steady state for a client reusing its access token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JwtServiceBenchmark {
+
+    private static final String SECRET = "BenchmarkJwtSecretKeyMinimum512BitsLongForHs512Signing0123456789abcdefghijklmnop";
+
+    @Param({"false", "true"})
+    public boolean claimsCache;
+
+    private JwtService jwtService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(SECRET);
+        // @Value field, normally injected by Spring; 0 disables the cache
+        Field maxEntries = ReflectionUtils.findField(JwtService.class, "claimsCacheMaxEntries");
+        ReflectionUtils.makeAccessible(maxEntries);
+        ReflectionUtils.setField(maxEntries, jwtService, claimsCache ? 10_000 : 0);
+
+        // Same shape as the access tokens issued by auth-service's JwtTokenProvider
+        Date now = new Date();
+        token = Jwts.builder()
+                .setSubject("benchmark.user@mysillydreams.com")
+                .claim("roles", "ROLE_CUSTOMER,ROLE_USER")
+                .claim("userId", "5f0b6a8e-1c7d-4a43-9d55-2a6f9c3b7e10")
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS512)
+                .compact();
+    }
+
+    @Benchmark
+    public Claims parseValidatedClaims() {
+        return jwtService.parseValidatedClaims(token);
+    }
+
+    @Benchmark
+    public void authenticateRequest(Blackhole blackhole) {
+        Claims claims = jwtService.parseValidatedClaims(token);
+        blackhole.consume(jwtService.extractUserId(claims));
+        blackhole.consume(jwtService.extractUsername(claims));
+        blackhole.consume(jwtService.extractRoles(claims));
+    }
+}
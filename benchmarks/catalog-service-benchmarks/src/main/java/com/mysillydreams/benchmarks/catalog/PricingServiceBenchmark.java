@@ -0,0 +1,147 @@
+package com.mysillydreams.benchmarks.catalog;
+
+import com.mysillydreams.catalogservice.domain.model.BulkPricingRuleEntity;
+import com.mysillydreams.catalogservice.domain.model.CatalogItemEntity;
+import com.mysillydreams.catalogservice.domain.repository.BulkPricingRuleRepository;
+import com.mysillydreams.catalogservice.domain.repository.CatalogItemRepository;
+import com.mysillydreams.catalogservice.domain.repository.PriceOverrideRepository;
+import com.mysillydreams.catalogservice.dto.PriceDetailDto;
+import com.mysillydreams.catalogservice.dto.PriceLineRequest;
+import com.mysillydreams.catalogservice.service.PricingService;
+import com.mysillydreams.catalogservice.service.pricing.DynamicPricingEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.support.NoOpCacheManager;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Catalog {@link PricingService} rule application: base/override/dynamic price selection, best bulk rule
+ * and dynamic adjustments. Repositories are in-memory stubs, so only the pricing logic itself is measured,
+ * both for a single line and for a cart-sized batch priced through {@code getPriceDetails}, which returns one
+ * detail per cart line. The cache manager is a no-op, so every batch line is a cache miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PricingServiceBenchmark {
+
+    @Param({"0", "3", "10"})
+    public int bulkRulesPerItem;
+
+    @Param({"20"})
+    public int cartLines;
+
+    private PricingService pricingService;
+    private UUID singleItemId;
+    private List<PriceLineRequest> cart;
+
+    @Setup
+    public void setUp() {
+        Map<UUID, CatalogItemEntity> items = new HashMap<>();
+        Map<UUID, List<BulkPricingRuleEntity>> rules = new HashMap<>();
+        cart = new ArrayList<>(cartLines);
+        for (int i = 0; i < cartLines; i++) {
+            CatalogItemEntity item = CatalogItemEntity.builder()
+                    .id(UUID.randomUUID())
+                    .sku("SKU-" + i)
+                    .name("Item " + i)
+                    .basePrice(new BigDecimal("49.99").add(BigDecimal.valueOf(i)))
+                    .active(true)
+                    .build();
+            items.put(item.getId(), item);
+            List<BulkPricingRuleEntity> itemRules = new ArrayList<>();
+            for (int r = 0; r < bulkRulesPerItem; r++) {
+                itemRules.add(BulkPricingRuleEntity.builder()
+                        .id(UUID.randomUUID())
+                        .catalogItem(item)
+                        .minQuantity(r + 1)
+                        .discountPercentage(BigDecimal.valueOf(2L * (r + 1)))
+                        .validFrom(Instant.now().minusSeconds(3600))
+                        .active(true)
+                        .build());
+            }
+            rules.put(item.getId(), itemRules);
+            cart.add(PriceLineRequest.builder().itemId(item.getId()).quantity(1 + i % 5).build());
+        }
+        singleItemId = cart.get(0).getItemId();
+
+        CatalogItemRepository catalogItemRepository = stub(CatalogItemRepository.class, Map.of(
+                "findById", args -> Optional.ofNullable(items.get((UUID) args[0])),
+                "findAllById", args -> ids((Iterable<?>) args[0]).stream().map(items::get).collect(Collectors.toList())));
+        PriceOverrideRepository priceOverrideRepository = stub(PriceOverrideRepository.class, Map.of(
+                "findCurrentActiveOverrideForItem", args -> Optional.empty(),
+                "findActiveOverridesForItemsAtTime", args -> Collections.emptyList()));
+        BulkPricingRuleRepository bulkPricingRuleRepository = stub(BulkPricingRuleRepository.class, Map.of(
+                "findActiveApplicableRules", args -> rules.get((UUID) args[0]).stream()
+                        .filter(rule -> rule.getMinQuantity() <= (int) args[1])
+                        .collect(Collectors.toList()),
+                "findActiveRulesForItems", args -> ids((Iterable<?>) args[0]).stream()
+                        .flatMap(id -> rules.get(id).stream())
+                        .collect(Collectors.toList())));
+        DynamicPricingEngine noDynamicAdjustments = (itemId, quantity, currentPrice) -> Collections.emptyList();
+
+        pricingService = new PricingService(bulkPricingRuleRepository, catalogItemRepository, priceOverrideRepository,
+                noDynamicAdjustments, null, new NoOpCacheManager());
+    }
+
+    @Benchmark
+    public PriceDetailDto priceSingleLine() {
+        return pricingService.getPriceDetail(singleItemId, 3);
+    }
+
+    @Benchmark
+    public List<PriceDetailDto> priceCart() {
+        return pricingService.getPriceDetails(cart);
+    }
+
+    private static List<UUID> ids(Iterable<?> values) {
+        List<UUID> ids = new ArrayList<>();
+        for (Object value : values) {
+            ids.add((UUID) value);
+        }
+        return ids;
+    }
+
+    /**
+     * Minimal in-memory repository: answers the named query methods, fails loudly on anything else
+     * so a change in which repository methods PricingService calls is noticed rather than measured.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer != null) {
+                return answer.apply(args);
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(answers, args);
+            }
+            throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName() + " is not stubbed");
+        });
+    }
+}
@@ -0,0 +1,66 @@
+#!/bin/bash
+
+# JMH Result Comparison
+# Diffs two directories of JMH JSON results (as written by run-benchmarks.sh) benchmark by benchmark.
+# A benchmark is flagged as a regression when it got slower by more than THRESHOLD_PCT percent
+# and the difference is larger than the two runs' combined error margins.
+#
+# Usage: ./compare-results.sh <baseline-dir> <current-dir>
+# Exit code 1 if any regression was found.
+
+set -e
+export LC_ALL=C
+
+if [ $# -ne 2 ]; then
+    echo "Usage: $0 <baseline-dir> <current-dir>"
+    exit 2
+fi
+
+BASELINE_DIR=$1
+CURRENT_DIR=$2
+THRESHOLD_PCT=${THRESHOLD_PCT:-10}
+
+# One line per benchmark: "<benchmark>[params]<TAB><score><TAB><error><TAB><unit>"
+flatten() {
+    jq -r '.[] | [
+            .benchmark + (if .params then "[" + (.params | to_entries | map(.key + "=" + .value) | join(",")) + "]" else "" end),
+            .primaryMetric.score,
+            (if (.primaryMetric.scoreError | type) == "number" then .primaryMetric.scoreError else 0 end),
+            .primaryMetric.scoreUnit
+        ] | @tsv' "$@"
+}
+
+baseline=$(mktemp)
+current=$(mktemp)
+trap 'rm -f "$baseline" "$current"' EXIT
+flatten "$BASELINE_DIR"/*.json | sort > "$baseline"
+flatten "$CURRENT_DIR"/*.json | sort > "$current"
+
+printf "%-90s %14s %14s %9s  %s\n" "BENCHMARK" "BASELINE" "CURRENT" "DELTA" "UNIT"
+regressions=$(join -t $'\t' "$baseline" "$current" | awk -F'\t' -v threshold="$THRESHOLD_PCT" '
+    {
+        name = $1; base = $2; baseErr = $3; unit = $4; cur = $5; curErr = $6
+        delta = base == 0 ? 0 : (cur - base) / base * 100
+        # Throughput units (ops/time) improve upwards, time units (time/op) improve downwards
+        slower = (unit ~ /^ops\//) ? (base - cur) : (cur - base)
+        flag = ""
+        if (slower > baseErr + curErr && (delta > threshold || -delta > threshold)) {
+            flag = (unit ~ /^ops\//) ? (delta < 0 ? "REGRESSION" : "") : (delta > 0 ? "REGRESSION" : "")
+        }
+        if (flag != "") { count++ }
+        printf "%-90s %14.3f %14.3f %+8.1f%%  %s %s\n", name, base, cur, delta, unit, flag > "/dev/stderr"
+    }
+    END { print count + 0 }')
+
+for missing in $(join -t $'\t' -v 1 "$baseline" "$current" | cut -f1); do
+    echo "Only in baseline: $missing"
+done
+for added in $(join -t $'\t' -v 2 "$baseline" "$current" | cut -f1); do
+    echo "New benchmark: $added"
+done
+
+if [ "$regressions" -gt 0 ]; then
+    echo "$regressions regression(s) above ${THRESHOLD_PCT}%"
+    exit 1
+fi
+echo "No regressions above ${THRESHOLD_PCT}%"
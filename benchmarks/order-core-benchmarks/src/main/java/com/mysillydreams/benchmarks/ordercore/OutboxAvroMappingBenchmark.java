@@ -0,0 +1,75 @@
+package com.mysillydreams.benchmarks.ordercore;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mysillydreams.ordercore.service.OutboxEventRegistry;
+import com.mysillydreams.ordercore.util.JsonAvroBinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * order-core OutboxPoller payload conversion: resolve the route for the outbox event type in
+ * {@link OutboxEventRegistry}, then bind the stored JSONB payload to Avro with the route's precompiled
+ * {@link JsonAvroBinder}, exactly as done for every relayed event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class OutboxAvroMappingBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int lineItems;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private OutboxEventRegistry registry;
+    private JsonNode orderCreatedPayload;
+    private JsonNode statusUpdatedPayload;
+
+    @Setup
+    public void setUp() throws IOException {
+        registry = new OutboxEventRegistry("order.core.created", "order.core.cancelled");
+        StringBuilder items = new StringBuilder();
+        for (int i = 0; i < lineItems; i++) {
+            if (i > 0) {
+                items.append(',');
+            }
+            items.append("{\"productId\":\"").append(UUID.randomUUID())
+                    .append("\",\"productSku\":\"SKU-").append(i)
+                    .append("\",\"quantity\":2,\"unitPrice\":19.99,\"discount\":0.0,\"totalPrice\":39.98}");
+        }
+        orderCreatedPayload = objectMapper.readTree("{\"orderId\":\"" + UUID.randomUUID()
+                + "\",\"customerId\":\"" + UUID.randomUUID()
+                + "\",\"orderType\":\"CUSTOMER\",\"items\":[" + items
+                + "],\"totalAmount\":" + (39.98 * lineItems)
+                + ",\"currency\":\"INR\",\"createdAt\":1718000000000}");
+        statusUpdatedPayload = objectMapper.readTree("{\"orderId\":\"" + UUID.randomUUID()
+                + "\",\"oldStatus\":\"PAYMENT_PENDING\",\"newStatus\":\"PAID\",\"changedBy\":\"payment-service\""
+                + ",\"timestamp\":1718000000000,\"metadata\":{\"paymentId\":\"pay_123\"}}");
+    }
+
+    @Benchmark
+    public Object mapOrderCreated() {
+        return registry.route(OutboxEventRegistry.ORDER_CREATED).toAvro(orderCreatedPayload);
+    }
+
+    @Benchmark
+    public Object mapOrderStatusUpdated() {
+        return registry.route("order.status.paid").toAvro(statusUpdatedPayload);
+    }
+}
@@ -0,0 +1,76 @@
+package com.mysillydreams.benchmarks.payment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mysillydreams.payment.service.RazorpayWebhookProcessor;
+import com.mysillydreams.payment.service.WebhookSignatureVerifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Razorpay webhook handling: the HMAC-SHA256 check done on the request thread by {@link WebhookSignatureVerifier},
+ * and the asynchronous processing by {@link RazorpayWebhookProcessor} for an event category that needs no
+ * downstream service (parse, route), for typical and large payloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RazorpayWebhookBenchmark {
+
+    private static final String SECRET = "benchmark_webhook_secret";
+
+    @Param({"1024", "16384"})
+    public int payloadBytes;
+
+    private WebhookSignatureVerifier signatureVerifier;
+    private RazorpayWebhookProcessor processor;
+    private String payload;
+    private String signature;
+
+    @Setup
+    public void setUp() throws Exception {
+        signatureVerifier = new WebhookSignatureVerifier(SECRET);
+        // Services are not reached for "order.*" events, which are only acknowledged
+        processor = new RazorpayWebhookProcessor(null, null, new ObjectMapper());
+
+        StringBuilder notes = new StringBuilder();
+        while (notes.length() < payloadBytes) {
+            notes.append("lorem ipsum dolor sit amet ");
+        }
+        payload = "{\"entity\":\"event\",\"account_id\":\"acc_BFQ7uQEaa7j2z7\",\"event\":\"order.paid\","
+                + "\"payload\":{\"order\":{\"entity\":{\"id\":\"order_DBJOWzybf0sJbb\",\"amount\":50000,"
+                + "\"currency\":\"INR\",\"status\":\"paid\",\"notes\":{\"text\":\"" + notes + "\"}}}},"
+                + "\"created_at\":1567674606}";
+
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        signature = HexFormat.of().formatHex(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public boolean verifySignature() {
+        return signatureVerifier.verify(payload, signature);
+    }
+
+    @Benchmark
+    public void processWebhook() throws Exception {
+        processor.process(payload);
+    }
+}
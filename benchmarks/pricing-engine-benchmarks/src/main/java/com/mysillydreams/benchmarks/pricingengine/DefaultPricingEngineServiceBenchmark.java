@@ -0,0 +1,109 @@
+package com.mysillydreams.benchmarks.pricingengine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mysillydreams.pricingengine.dto.AggregatedMetric;
+import com.mysillydreams.pricingengine.dto.DynamicPricingRuleDto;
+import com.mysillydreams.pricingengine.dto.EnrichedAggregatedMetric;
+import com.mysillydreams.pricingengine.dto.ItemBasePriceEvent;
+import com.mysillydreams.pricingengine.dto.PriceOverrideDto;
+import com.mysillydreams.pricingengine.dto.PriceUpdatedEvent;
+import com.mysillydreams.pricingengine.rules.PricingRuleCompiler;
+import com.mysillydreams.pricingengine.service.DefaultPricingEngineService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DefaultPricingEngineService#calculatePrice} as called by the Kafka Streams topology,
+ * for an item with N enabled dynamic rules (alternating VIEW_COUNT_THRESHOLD / FLAT_AMOUNT_OFF)
+ * and for an item with an active manual override, which short-circuits rule evaluation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DefaultPricingEngineServiceBenchmark {
+
+    @Param({"1", "5", "20"})
+    public int ruleCount;
+
+    private DefaultPricingEngineService service;
+    private EnrichedAggregatedMetric withRules;
+    private EnrichedAggregatedMetric withOverride;
+    private final Optional<BigDecimal> lastPublishedPrice = Optional.of(new BigDecimal("80.00"));
+
+    @Setup
+    public void setUp() {
+        service = new DefaultPricingEngineService(new PricingRuleCompiler(new ObjectMapper()));
+        // @Value field, normally injected by Spring
+        Field threshold = ReflectionUtils.findField(DefaultPricingEngineService.class, "priceUpdateThresholdPercentage");
+        ReflectionUtils.makeAccessible(threshold);
+        ReflectionUtils.setField(threshold, service, 0.01);
+
+        UUID itemId = UUID.randomUUID();
+        AggregatedMetric metric = new AggregatedMetric(itemId, 1_500L, 0L, 60_000L);
+        ItemBasePriceEvent basePrice = new ItemBasePriceEvent(itemId, new BigDecimal("100.00"), Instant.now());
+
+        List<DynamicPricingRuleDto> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            boolean viewRule = i % 2 == 0;
+            rules.add(DynamicPricingRuleDto.builder()
+                    .id(UUID.randomUUID())
+                    .itemId(itemId)
+                    .ruleType(viewRule ? "VIEW_COUNT_THRESHOLD" : "FLAT_AMOUNT_OFF")
+                    .parameters(viewRule
+                            ? Map.of("threshold", 1_000L, "adjustmentPercentage", 0.02)
+                            : Map.of("amountOff", new BigDecimal("1.50")))
+                    .enabled(true)
+                    .build());
+        }
+        withRules = EnrichedAggregatedMetric.builder()
+                .aggregatedMetric(metric)
+                .ruleDtos(rules)
+                .basePriceEvent(basePrice)
+                .build();
+
+        PriceOverrideDto override = new PriceOverrideDto();
+        override.setId(UUID.randomUUID());
+        override.setItemId(itemId);
+        override.setOverridePrice(new BigDecimal("75.00"));
+        override.setEnabled(true);
+        withOverride = EnrichedAggregatedMetric.builder()
+                .aggregatedMetric(metric)
+                .ruleDtos(rules)
+                .overrideDto(override)
+                .basePriceEvent(basePrice)
+                .build();
+    }
+
+    @Benchmark
+    public Optional<PriceUpdatedEvent> calculatePriceWithRules() {
+        return service.calculatePrice(withRules, lastPublishedPrice);
+    }
+
+    @Benchmark
+    public Optional<PriceUpdatedEvent> calculatePriceWithOverride() {
+        return service.calculatePrice(withOverride, lastPublishedPrice);
+    }
+}
@@ -0,0 +1,38 @@
+#!/bin/bash
+
+# JMH Benchmark Runner
+# Installs the benchmarked services as plain (non-repackaged) jars, builds every suite
+# and writes one JMH JSON result file per suite into results/<label>/.
+#
+# Usage: ./run-benchmarks.sh [label] [extra JMH args...]
+#   label defaults to the current git short SHA; e.g. ./run-benchmarks.sh 1.4.0 -f 1 -wi 3 -i 3
+
+set -e
+
+BENCH_DIR="$(cd "$(dirname "$0")" && pwd)"
+ROOT_DIR="$(dirname "$BENCH_DIR")"
+LABEL=${1:-$(git -C "$ROOT_DIR" rev-parse --short HEAD)}
+shift || true
+
+SERVICES="pricing-engine catalog-service api-gateway order-core payment-service"
+RESULTS_DIR="$BENCH_DIR/results/$LABEL"
+
+echo "Installing services as plain jars..."
+for service in $SERVICES; do
+    echo "  $service"
+    # Spring Boot's repackaged jar nests classes under BOOT-INF/ and cannot be used as a dependency
+    mvn -B -q -f "$ROOT_DIR/$service/pom.xml" install -DskipTests -Dspring-boot.repackage.skip=true
+done
+
+echo "Building benchmark suites..."
+mvn -B -q -f "$BENCH_DIR/pom.xml" package
+
+mkdir -p "$RESULTS_DIR"
+for service in $SERVICES; do
+    suite="$service-benchmarks"
+    echo "Running $suite..."
+    java -jar "$BENCH_DIR/$suite/target/$suite.jar" -rf json -rff "$RESULTS_DIR/$suite.json" "$@"
+done
+
+echo "Results written to $RESULTS_DIR"
+echo "Compare with a baseline: ./compare-results.sh baselines/<release> results/$LABEL"
@@ -1,5 +1,7 @@
 package com.mysillydreams.catalogservice.config;
 
+import java.util.UUID;
+
 public class CacheKeyConstants {
 
     // Cache Names (used by Spring @Cacheable)
@@ -15,6 +17,9 @@ public class CacheKeyConstants {
     // For @Cacheable("activeCarts", key="#userId"), Spring generates "activeCarts::userIdValue"
     public static final String ACTIVE_CART_KEY_PREFIX_MANUAL = "cartDto:active:user::";
 
+    // Per-item set of priceDetail cache keys, maintained by ItemKeyIndexingCache on every cache write
+    public static final String PRICE_DETAIL_KEY_INDEX_PREFIX = "priceDetailKeys::";
+
 
     // For CacheInvalidationService or direct Redis ops for priceDetail, if needed.
     // Note: Spring Cache keys for priceDetail would be like "priceDetail::itemId_qty_value"
@@ -28,16 +33,20 @@ public class CacheKeyConstants {
     // Key for @Cacheable(cacheNames = PRICE_DETAIL_CACHE_NAME, keyGenerator = "priceDetailKeyGenerator")
     // or key = "#itemId.toString() + '::qty:' + #quantity"
     // The generated key by Spring would be like: "priceDetail::uuid_as_string::qty:5"
-    // So the pattern for invalidation should be "priceDetail::uuid_as_string::qty:*"
+    // Invalidation reads the item's key set (getPriceDetailKeyIndexKey) instead of matching "priceDetail::uuid::qty:*"
 
     public static String getPriceDetailCacheKey(UUID itemId, int quantity) {
         // This helper generates the part *after* the cache name prefix.
         return itemId.toString() + "::qty:" + quantity;
     }
 
-    public static String getPriceDetailCachePatternByItem(UUID itemId) {
-        // This pattern assumes Spring's default key generation using '::' after cache name.
-        return PRICE_DETAIL_CACHE_NAME + "::" + itemId.toString() + "::qty:*";
+    public static String getPriceDetailFullKey(String cacheKey) {
+        // Spring's default key prefix: cache name followed by '::'
+        return PRICE_DETAIL_CACHE_NAME + "::" + cacheKey;
+    }
+
+    public static String getPriceDetailKeyIndexKey(UUID itemId) {
+        return PRICE_DETAIL_KEY_INDEX_PREFIX + itemId.toString();
     }
 
     // Key for @Cacheable(cacheNames = CATALOG_ITEM_CACHE_NAME, key = "#itemId.toString()")
@@ -0,0 +1,41 @@
+package com.mysillydreams.catalogservice.config;
+
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * RedisCacheManager that wraps the given per-item caches in {@link ItemKeyIndexingCache},
+ * so their entries can be evicted per item without a KEYS/SCAN over the keyspace.
+ */
+public class ItemIndexedRedisCacheManager extends RedisCacheManager {
+
+    private final Set<String> itemIndexedCacheNames;
+    private final StringRedisTemplate indexRedisTemplate;
+
+    public ItemIndexedRedisCacheManager(RedisCacheWriter cacheWriter,
+                                        RedisCacheConfiguration defaultCacheConfiguration,
+                                        Map<String, RedisCacheConfiguration> initialCacheConfigurations,
+                                        Set<String> itemIndexedCacheNames,
+                                        StringRedisTemplate indexRedisTemplate) {
+        super(cacheWriter, defaultCacheConfiguration, initialCacheConfigurations);
+        this.itemIndexedCacheNames = itemIndexedCacheNames;
+        this.indexRedisTemplate = indexRedisTemplate;
+    }
+
+    @Override
+    protected Cache decorateCache(Cache cache) {
+        Cache decorated = super.decorateCache(cache);
+        if (!itemIndexedCacheNames.contains(cache.getName())) {
+            return decorated;
+        }
+        RedisCacheConfiguration configuration = cache instanceof RedisCache redisCache ? redisCache.getCacheConfiguration() : null;
+        return new ItemKeyIndexingCache(decorated, indexRedisTemplate, configuration != null ? configuration.getTtl() : null);
+    }
+}
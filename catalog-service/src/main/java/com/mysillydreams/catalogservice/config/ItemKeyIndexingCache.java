@@ -0,0 +1,139 @@
+package com.mysillydreams.catalogservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * Cache decorator for per-item caches whose keys start with the item ID (e.g. {@code <itemId>::qty:5}).
+ * Every write also records the key in the item's key set ({@link CacheKeyConstants#getPriceDetailKeyIndexKey}),
+ * so all entries of one item can be evicted by reading that set instead of pattern-matching the keyspace.
+ * The key set expires with the entries it indexes.
+ */
+@Slf4j
+public class ItemKeyIndexingCache implements Cache {
+
+    private final Cache delegate;
+    private final StringRedisTemplate redisTemplate;
+    private final long indexTtlSeconds;
+
+    public ItemKeyIndexingCache(Cache delegate, StringRedisTemplate redisTemplate, Duration entryTtl) {
+        this.delegate = delegate;
+        this.redisTemplate = redisTemplate;
+        this.indexTtlSeconds = entryTtl == null || entryTtl.isZero() || entryTtl.isNegative() ? -1 : entryTtl.getSeconds();
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        // Only index when the loader actually ran and wrote a value
+        boolean[] loaded = new boolean[1];
+        T value = delegate.get(key, () -> {
+            loaded[0] = true;
+            return valueLoader.call();
+        });
+        if (loaded[0] && value != null) {
+            index(key);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, value);
+        if (value != null) {
+            index(key);
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = delegate.putIfAbsent(key, value);
+        if (existing == null && value != null) {
+            index(key);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        return delegate.invalidate();
+    }
+
+    private void index(Object key) {
+        UUID itemId = itemIdOf(key);
+        if (itemId == null) {
+            log.debug("Cache {}: key {} does not start with an item ID, not indexed", getName(), key);
+            return;
+        }
+        String indexKey = CacheKeyConstants.getPriceDetailKeyIndexKey(itemId);
+        String member = key.toString();
+        try {
+            // SADD + EXPIRE in one round trip
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                stringConnection.sAdd(indexKey, member);
+                if (indexTtlSeconds > 0) {
+                    stringConnection.expire(indexKey, indexTtlSeconds);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // The entry still expires by TTL; a failed index write only delays its eviction
+            log.warn("Cache {}: failed to index key {} for item {}: {}", getName(), member, itemId, e.getMessage());
+        }
+    }
+
+    private static UUID itemIdOf(Object key) {
+        if (key == null) {
+            return null;
+        }
+        String value = key.toString();
+        int separator = value.indexOf("::");
+        try {
+            return UUID.fromString(separator >= 0 ? value.substring(0, separator) : value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
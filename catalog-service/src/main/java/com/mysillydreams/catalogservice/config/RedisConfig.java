@@ -7,13 +7,17 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
 
 @Configuration
 public class RedisConfig {
@@ -45,7 +49,7 @@ public class RedisConfig {
     // This example will use RedisTemplate directly in CartService for more control.
     // If using @Cacheable annotations:
     @Bean
-    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory, StringRedisTemplate stringRedisTemplate) {
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
         // objectMapper.activateDefaultTyping(BasicPolymorphicTypeValidator.builder().allowIfBaseType(Object.class).build(), ObjectMapper.DefaultTyping.NON_FINAL);
@@ -59,9 +63,11 @@ public class RedisConfig {
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jsonRedisSerializer))
                 .disableCachingNullValues(); // Important if methods can return null and you don't want to cache that
 
-        return RedisCacheManager.builder(connectionFactory)
-                .cacheDefaults(cacheConfiguration) // Default TTL is 30 mins
-                .withInitialCacheConfigurations(Map.of(
+        // priceDetail entries are indexed per item so CacheInvalidationService can evict them without KEYS/SCAN
+        return new ItemIndexedRedisCacheManager(
+                RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory),
+                cacheConfiguration, // Default TTL is 30 mins
+                Map.of(
                     CacheKeyConstants.ACTIVE_CART_CACHE_NAME, // Use constant
                     RedisCacheConfiguration.defaultCacheConfig()
                         .entryTtl(Duration.ofHours(1)) // Specific TTL for cart cache
@@ -77,8 +83,9 @@ public class RedisConfig {
                         .entryTtl(Duration.ofMinutes(5))  // TTL for priceDetail
                         .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jsonRedisSerializer))
                         .disableCachingNullValues()
-                ))
-                .build();
+                ),
+                Set.of(CacheKeyConstants.PRICE_DETAIL_CACHE_NAME),
+                stringRedisTemplate);
     }
 
     @Bean("genericRedisTemplate") // Name it to be specific if other Object-valued templates exist
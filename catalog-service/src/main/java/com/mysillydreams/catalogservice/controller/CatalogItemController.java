@@ -2,6 +2,7 @@ package com.mysillydreams.catalogservice.controller;
 
 import com.mysillydreams.catalogservice.domain.model.ItemType;
 import com.mysillydreams.catalogservice.dto.CatalogItemDto;
+import com.mysillydreams.catalogservice.dto.CatalogSearchPageDto;
 import com.mysillydreams.catalogservice.dto.CreateCatalogItemRequest;
 import com.mysillydreams.catalogservice.service.ItemService;
 import com.mysillydreams.catalogservice.service.search.CatalogItemSearchDocument;
@@ -13,7 +14,9 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.SortDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -134,4 +137,29 @@ public class CatalogItemController {
         );
         return ResponseEntity.ok(results);
     }
+
+    @GetMapping("/search/cursor")
+    @Operation(summary = "Walk catalog search results with a cursor",
+               description = "Same search as /search, paged by continuation token instead of page number, so deep pages stay cheap. "
+                       + "Pass nextCursor back as cursor, with the same query, filters and sort, until it is null. "
+                       + "With pointInTime=true the walk sees the index as it was on its first page.")
+    @ApiResponse(responseCode = "200", description = "Search results retrieved successfully")
+    @ApiResponse(responseCode = "400", description = "Cursor is malformed, expired or belongs to another search")
+    public ResponseEntity<CatalogSearchPageDto> searchItemsWithCursor(
+            @Parameter(description = "Keyword to search in name, description, SKU, category name") @RequestParam(required = false) String query,
+            @Parameter(description = "Filter by specific Category ID") @RequestParam(required = false) UUID categoryId,
+            @Parameter(description = "Filter by category path (e.g., /electronics/laptops/) to search in a category and its descendants") @RequestParam(required = false) String categoryPath,
+            @Parameter(description = "Filter by item type (PRODUCT or SERVICE)") @RequestParam(required = false) ItemType itemType,
+            @Parameter(description = "Minimum price filter") @RequestParam(required = false) BigDecimal minPrice,
+            @Parameter(description = "Maximum price filter") @RequestParam(required = false) BigDecimal maxPrice,
+            @Parameter(description = "nextCursor of the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, at most " + SearchService.MAX_CURSOR_PAGE_SIZE) @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Read the whole walk from a point-in-time snapshot of the index") @RequestParam(defaultValue = "false") boolean pointInTime,
+            @SortDefault(sort = "_score", direction = Sort.Direction.DESC) Sort sort) {
+
+        CatalogSearchPageDto results = searchService.searchItemsAfter(
+                query, categoryId, categoryPath, itemType, minPrice, maxPrice, sort, cursor, size, pointInTime
+        );
+        return ResponseEntity.ok(results);
+    }
 }
@@ -4,6 +4,7 @@ import com.mysillydreams.catalogservice.domain.model.PriceHistoryEntity; // For
 import com.mysillydreams.catalogservice.dto.BulkPricingRuleDto;
 import com.mysillydreams.catalogservice.dto.CreateBulkPricingRuleRequest;
 import com.mysillydreams.catalogservice.dto.PriceDetailDto; // For getting calculated price
+import com.mysillydreams.catalogservice.dto.PriceLineRequest;
 import com.mysillydreams.catalogservice.service.ItemService; // For price history (if managed there)
 import com.mysillydreams.catalogservice.service.PricingService;
 import com.mysillydreams.catalogservice.domain.repository.PriceHistoryRepository; // Temp direct use
@@ -20,6 +21,7 @@ import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
@@ -30,6 +32,7 @@ import java.util.stream.Collectors;
 @RestController
 @RequestMapping("/api/v1/pricing")
 @RequiredArgsConstructor
+@Validated // Validates the elements of List request bodies, e.g. List<@Valid PriceLineRequest>
 @Tag(name = "Pricing Management", description = "APIs for managing item prices, price history, and bulk pricing rules")
 public class PricingController {
 
@@ -116,6 +119,17 @@ public class PricingController {
         return ResponseEntity.ok(priceDetail);
     }
 
+    @PostMapping("/price-details")
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "Get detailed prices for several items in one call",
+               description = "Batch variant of price-detail for carts and checkout. Returns one entry per requested (itemId, quantity) pair, in request order.")
+    @ApiResponse(responseCode = "200", description = "Price details calculated")
+    @ApiResponse(responseCode = "404", description = "An item was not found")
+    public ResponseEntity<List<PriceDetailDto>> getPriceDetailsForItems(
+            @Valid @RequestBody List<@Valid PriceLineRequest> lines) {
+        return ResponseEntity.ok(pricingService.getPriceDetails(lines));
+    }
+
     @GetMapping("/items/{itemId}/price-history")
     @PreAuthorize("isAuthenticated()") // Or more restrictive if history is sensitive
     @Operation(summary = "Get price history for an item")
@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -31,6 +32,19 @@ public interface BulkPricingRuleRepository extends JpaRepository<BulkPricingRule
             @Param("now") Instant now
     );
 
+    // Set-based variant for batch pricing: all rules active at the given time for the given items,
+    // regardless of quantity (each line's quantity is matched against minQuantity in the service)
+    @Query("SELECT bpr FROM BulkPricingRuleEntity bpr " +
+           "WHERE bpr.catalogItem.id IN :itemIds " +
+           "AND bpr.active = true " +
+           "AND (bpr.validFrom IS NULL OR bpr.validFrom <= :now) " +
+           "AND (bpr.validTo IS NULL OR bpr.validTo >= :now) " +
+           "ORDER BY bpr.minQuantity DESC")
+    List<BulkPricingRuleEntity> findActiveRulesForItems(
+            @Param("itemIds") Collection<UUID> itemIds,
+            @Param("now") Instant now
+    );
+
     List<BulkPricingRuleEntity> findByCatalogItemIdAndActiveTrueAndValidFromBeforeAndValidToAfter(
         UUID catalogItemId, Instant validFrom, Instant validTo);
 
@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -35,6 +36,21 @@ public interface PriceOverrideRepository extends JpaRepository<PriceOverrideEnti
             @Param("currentTime") Instant currentTime
     );
 
+    /**
+     * Set-based variant of {@link #findActiveOverridesForItemAtTime} for batch pricing:
+     * all active overrides for the given items in one query, most recent first.
+     */
+    @Query("SELECT po FROM PriceOverrideEntity po " +
+           "WHERE po.catalogItem.id IN :itemIds " +
+           "AND po.enabled = true " +
+           "AND (po.startTime IS NULL OR po.startTime <= :currentTime) " +
+           "AND (po.endTime IS NULL OR po.endTime >= :currentTime) " +
+           "ORDER BY po.createdAt DESC")
+    List<PriceOverrideEntity> findActiveOverridesForItemsAtTime(
+            @Param("itemIds") Collection<UUID> itemIds,
+            @Param("currentTime") Instant currentTime
+    );
+
     // Default method to get the single "best" active override (e.g. most recent)
     default Optional<PriceOverrideEntity> findCurrentActiveOverrideForItem(UUID itemId) {
         List<PriceOverrideEntity> activeOverrides = findActiveOverridesForItemAtTime(itemId, Instant.now());
@@ -0,0 +1,21 @@
+package com.mysillydreams.catalogservice.dto;
+
+import com.mysillydreams.catalogservice.service.search.CatalogItemSearchDocument;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CatalogSearchPageDto {
+    private List<CatalogItemSearchDocument> items;
+    // Pass back as 'cursor' to get the next page; null on the last page
+    private String nextCursor;
+    // Only counted on the first page of a walk; null afterwards, as counting every deep page is what we avoid
+    private Long totalHits;
+}
@@ -0,0 +1,27 @@
+package com.mysillydreams.catalogservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import java.util.UUID;
+
+/**
+ * One (item, quantity) pair of a batch price evaluation, e.g. a cart line.
+ * PricingService#getPriceDetails returns one price detail per line, in the same order.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PriceLineRequest {
+
+    @NotNull(message = "Item ID cannot be null")
+    private UUID itemId;
+
+    @Min(value = 1, message = "Quantity must be at least 1")
+    private int quantity;
+}
@@ -28,6 +28,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -357,9 +358,16 @@ public class CartService {
     private CartDto convertToCartDto(CartEntity cart) {
         if (cart == null) return null;
 
-        List<CartItemDetailDto> itemDetailDtos = cart.getItems().stream()
-                .map(this::convertCartItemToDetailDto) // This calls pricingService.getPriceDetail for each item
-                .collect(Collectors.toList());
+        // Price every line in one batch call (one query per pricing table on a cache miss)
+        List<CartItemEntity> cartItems = cart.getItems();
+        List<PriceDetailDto> priceDetails = pricingService.getPriceDetails(cartItems.stream()
+                .map(ci -> new PriceLineRequest(ci.getCatalogItem().getId(), ci.getQuantity()))
+                .collect(Collectors.toList()));
+
+        List<CartItemDetailDto> itemDetailDtos = new ArrayList<>(cartItems.size());
+        for (int i = 0; i < cartItems.size(); i++) {
+            itemDetailDtos.add(convertCartItemToDetailDto(cartItems.get(i), priceDetails.get(i)));
+        }
 
         BigDecimal subtotal = itemDetailDtos.stream()
                 .map(CartItemDetailDto::getLineItemTotal)
@@ -385,12 +393,9 @@ public class CartService {
                 .build();
     }
 
-    private CartItemDetailDto convertCartItemToDetailDto(CartItemEntity cartItem) {
+    private CartItemDetailDto convertCartItemToDetailDto(CartItemEntity cartItem, PriceDetailDto priceDetail) {
         CatalogItemEntity catalogItem = cartItem.getCatalogItem();
 
-        // Get the comprehensive price detail using the new PricingService method
-        PriceDetailDto priceDetail = pricingService.getPriceDetail(catalogItem.getId(), cartItem.getQuantity());
-
         // The cartItem.getUnitPrice() stores the finalUnitPrice at the time of adding/updating.
         // For display in CartItemDetailDto, we use values from the freshly calculated PriceDetailDto.
         // This ensures the display is always based on the latest pricing logic.
@@ -1,5 +1,6 @@
 package com.mysillydreams.catalogservice.service;
 
+import com.mysillydreams.catalogservice.config.CacheKeyConstants;
 import com.mysillydreams.catalogservice.domain.model.BulkPricingRuleEntity;
 import com.mysillydreams.catalogservice.domain.model.CatalogItemEntity;
 import com.mysillydreams.catalogservice.domain.repository.BulkPricingRuleRepository;
@@ -8,6 +9,7 @@ import com.mysillydreams.catalogservice.domain.repository.CatalogItemRepository;
 import com.mysillydreams.catalogservice.dto.BulkPricingRuleDto;
 import com.mysillydreams.catalogservice.dto.CreateBulkPricingRuleRequest;
 import com.mysillydreams.catalogservice.dto.PriceDetailDto;
+import com.mysillydreams.catalogservice.dto.PriceLineRequest;
 import com.mysillydreams.catalogservice.dto.PricingComponent;
 import com.mysillydreams.catalogservice.exception.InvalidRequestException;
 import com.mysillydreams.catalogservice.exception.ResourceNotFoundException;
@@ -18,6 +20,8 @@ import jakarta.persistence.OptimisticLockException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.dao.CannotAcquireLockException; // Import for Retryable
 import org.springframework.retry.annotation.Backoff; // Import for Retryable
 import org.springframework.retry.annotation.Retryable; // Import for Retryable
@@ -27,9 +31,17 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -42,6 +54,7 @@ public class PricingService {
     private final com.mysillydreams.catalogservice.domain.repository.PriceOverrideRepository priceOverrideRepository; // Injected
     private final DynamicPricingEngine dynamicPricingEngine;
     private final OutboxEventService outboxEventService;
+    private final CacheManager cacheManager; // For batch reads/writes of the priceDetail cache
 
 
     @Value("${app.kafka.topic.bulk-rule-added}") // This might need to be a more generic topic if eventType field is used, or keep specific.
@@ -151,6 +164,95 @@ public class PricingService {
         CatalogItemEntity item = catalogItemRepository.findById(itemId)
                 .orElseThrow(() -> new ResourceNotFoundException("CatalogItem", "id", itemId));
 
+        return calculatePriceDetail(item, quantity,
+                priceOverrideRepository.findCurrentActiveOverrideForItem(itemId),
+                bulkPricingRuleRepository.findActiveApplicableRules(itemId, quantity, Instant.now()));
+    }
+
+    /**
+     * Batch variant of {@link #getPriceDetail(UUID, int)} for cart rendering and checkout.
+     * Entries already in the {@code priceDetail} cache are served from it; for the rest, items,
+     * active overrides and active bulk rules are each loaded with a single set-based query,
+     * and every computed entry is written back to the cache under the same key getPriceDetail uses.
+     * Identical lines are priced once but each gets its own entry in the result.
+     *
+     * @param lines The (itemId, quantity) pairs to price.
+     * @return One price detail per requested line, at the same position as the line.
+     */
+    @Transactional(readOnly = true)
+    public List<PriceDetailDto> getPriceDetails(List<PriceLineRequest> lines) {
+        if (lines == null || lines.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // Distinct lines, priced once each
+        Map<PriceLineRequest, PriceDetailDto> result = new LinkedHashMap<>();
+        for (PriceLineRequest line : lines) {
+            if (line.getQuantity() <= 0) {
+                throw new InvalidRequestException("Quantity must be positive.");
+            }
+            result.put(line, null);
+        }
+
+        Cache priceDetailCache = cacheManager.getCache(CacheKeyConstants.PRICE_DETAIL_CACHE_NAME);
+        List<PriceLineRequest> misses = new ArrayList<>();
+        for (PriceLineRequest line : result.keySet()) {
+            PriceDetailDto cached = priceDetailCache != null
+                    ? priceDetailCache.get(CacheKeyConstants.getPriceDetailCacheKey(line.getItemId(), line.getQuantity()), PriceDetailDto.class)
+                    : null;
+            if (cached != null) {
+                result.put(line, cached);
+            } else {
+                misses.add(line);
+            }
+        }
+        if (misses.isEmpty()) {
+            return alignWith(lines, result);
+        }
+        log.info("Calculating price details from DB/rules for {} of {} lines", misses.size(), result.size());
+
+        Set<UUID> itemIds = misses.stream().map(PriceLineRequest::getItemId).collect(Collectors.toSet());
+        Instant now = Instant.now();
+
+        Map<UUID, CatalogItemEntity> itemsById = catalogItemRepository.findAllById(itemIds).stream()
+                .collect(Collectors.toMap(CatalogItemEntity::getId, Function.identity()));
+
+        // Ordered by createdAt DESC, so the first override seen per item is the current one
+        Map<UUID, com.mysillydreams.catalogservice.domain.model.PriceOverrideEntity> overridesByItem = new HashMap<>();
+        for (com.mysillydreams.catalogservice.domain.model.PriceOverrideEntity override
+                : priceOverrideRepository.findActiveOverridesForItemsAtTime(itemIds, now)) {
+            overridesByItem.putIfAbsent(override.getCatalogItem().getId(), override);
+        }
+
+        Map<UUID, List<BulkPricingRuleEntity>> rulesByItem = bulkPricingRuleRepository.findActiveRulesForItems(itemIds, now).stream()
+                .collect(Collectors.groupingBy(rule -> rule.getCatalogItem().getId()));
+
+        for (PriceLineRequest line : misses) {
+            CatalogItemEntity item = itemsById.get(line.getItemId());
+            if (item == null) {
+                throw new ResourceNotFoundException("CatalogItem", "id", line.getItemId());
+            }
+            List<BulkPricingRuleEntity> applicableRules = rulesByItem.getOrDefault(line.getItemId(), Collections.emptyList()).stream()
+                    .filter(rule -> rule.getMinQuantity() <= line.getQuantity())
+                    .collect(Collectors.toList());
+
+            PriceDetailDto priceDetail = calculatePriceDetail(item, line.getQuantity(),
+                    Optional.ofNullable(overridesByItem.get(line.getItemId())), applicableRules);
+            result.put(line, priceDetail);
+            if (priceDetailCache != null) {
+                priceDetailCache.put(CacheKeyConstants.getPriceDetailCacheKey(line.getItemId(), line.getQuantity()), priceDetail);
+            }
+        }
+        return alignWith(lines, result);
+    }
+
+    private static List<PriceDetailDto> alignWith(List<PriceLineRequest> lines, Map<PriceLineRequest, PriceDetailDto> pricedLines) {
+        return lines.stream().map(pricedLines::get).collect(Collectors.toList());
+    }
+
+    private PriceDetailDto calculatePriceDetail(CatalogItemEntity item, int quantity,
+                                                Optional<com.mysillydreams.catalogservice.domain.model.PriceOverrideEntity> activeManualOverrideOpt,
+                                                List<BulkPricingRuleEntity> applicableRules) {
+        UUID itemId = item.getId();
         if (!item.isActive()) {
             // Or return a specific PriceDetailDto indicating unavailability
             throw new InvalidRequestException("Item " + itemId + " is not active and cannot be priced.");
@@ -162,9 +264,6 @@ public class PricingService {
         BigDecimal actualOverridePrice = null; // To store the override price if used
 
         // 1. Check for active manual overrides (highest precedence)
-        Optional<com.mysillydreams.catalogservice.domain.model.PriceOverrideEntity> activeManualOverrideOpt =
-                priceOverrideRepository.findCurrentActiveOverrideForItem(itemId);
-
         if (activeManualOverrideOpt.isPresent()) {
             com.mysillydreams.catalogservice.domain.model.PriceOverrideEntity activeManualOverride = activeManualOverrideOpt.get();
             effectiveBasePrice = activeManualOverride.getOverridePrice();
@@ -201,7 +300,6 @@ public class PricingService {
         BigDecimal currentCalculatedPrice = effectiveBasePrice; // This is the price before further adjustments like bulk.
 
         // Apply Bulk Pricing Rules (calculated based on the effectiveBasePrice determined above)
-        List<BulkPricingRuleEntity> applicableRules = bulkPricingRuleRepository.findActiveApplicableRules(itemId, quantity, Instant.now());
         Optional<BulkPricingRuleEntity> bestBulkRule = applicableRules.stream()
                 .max(Comparator.comparing(BulkPricingRuleEntity::getDiscountPercentage));
 
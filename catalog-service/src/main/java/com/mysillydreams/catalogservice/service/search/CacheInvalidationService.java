@@ -6,11 +6,15 @@ import com.mysillydreams.catalogservice.kafka.event.*; // Import all event types
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -22,6 +26,8 @@ public class CacheInvalidationService {
     // For CartDto, we have cartDtoRedisTemplate. For others, a generic one.
     // Assuming genericRedisTemplate is configured with StringRedisSerializer for keys, like RedisCacheManager.
     private final RedisTemplate<String, Object> genericRedisTemplate;
+    // priceDetail key sets hold plain strings, written by ItemKeyIndexingCache
+    private final StringRedisTemplate stringRedisTemplate;
     // private final RedisTemplate<String, CartDto> cartDtoRedisTemplate; // Keep if used elsewhere for specific CartDto ops
 
     // --- Methods called by DynamicPriceUpdateListener ---
@@ -35,16 +41,21 @@ public class CacheInvalidationService {
 
     public void evictPriceDetailCache(UUID itemId) {
         if (itemId == null) return;
-        // Uses the pattern defined in CacheKeyConstants that matches Spring's default key generation.
-        String pricePattern = CacheKeyConstants.getPriceDetailCachePatternByItem(itemId);
-        log.info("CacheInvalidator: Evicting priceDetail caches with pattern: {}", pricePattern);
-        Set<String> keys = genericRedisTemplate.keys(pricePattern);
-        if (keys != null && !keys.isEmpty()) {
-            log.info("CacheInvalidator: Found {} priceDetail keys to evict for pattern {}", keys.size(), pricePattern);
-            genericRedisTemplate.delete(keys);
+        // The item's priceDetail keys are tracked in a set by ItemKeyIndexingCache, so no keyspace scan is needed.
+        String indexKey = CacheKeyConstants.getPriceDetailKeyIndexKey(itemId);
+        Set<String> cacheKeys = stringRedisTemplate.opsForSet().members(indexKey);
+        List<String> keys = new ArrayList<>();
+        if (cacheKeys != null) {
+            cacheKeys.forEach(cacheKey -> keys.add(CacheKeyConstants.getPriceDetailFullKey(cacheKey)));
+        }
+        if (!keys.isEmpty()) {
+            log.info("CacheInvalidator: Evicting {} priceDetail keys for item {}", keys.size(), itemId);
         } else {
-            log.info("CacheInvalidator: No priceDetail keys found for pattern: {}", pricePattern);
+            log.info("CacheInvalidator: No priceDetail keys indexed for item {}", itemId);
         }
+        keys.add(indexKey);
+        // UNLINK reclaims memory off the Redis main thread
+        stringRedisTemplate.unlink(keys);
     }
 
 
@@ -0,0 +1,71 @@
+package com.mysillydreams.catalogservice.service.search;
+
+import com.mysillydreams.catalogservice.exception.InvalidRequestException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Continuation token of a search_after walk: the sort values of the last hit returned (null where the hit has no
+ * value for a sort field), the point-in-time the walk reads from (if any), and a fingerprint of the query and sort
+ * it was issued for.
+ * Clients get it base64url-encoded and pass it back unchanged; its layout is not part of the API.
+ */
+record SearchCursor(String queryFingerprint, String pitId, List<String> sortValues) {
+
+    private static final byte FORMAT_VERSION = 2; // 2: sort values carry a presence flag, as a hit may sort on a missing field
+
+    String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeUTF(queryFingerprint);
+            out.writeBoolean(pitId != null);
+            if (pitId != null) {
+                out.writeUTF(pitId);
+            }
+            out.writeShort(sortValues.size());
+            for (String value : sortValues) {
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    out.writeUTF(value);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown by in-memory streams
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * @throws InvalidRequestException if the token was not produced by {@link #encode()}.
+     */
+    static SearchCursor decode(String token) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != FORMAT_VERSION) {
+                throw new InvalidRequestException("Unsupported search cursor");
+            }
+            String queryFingerprint = in.readUTF();
+            String pitId = in.readBoolean() ? in.readUTF() : null;
+            int count = in.readUnsignedShort();
+            List<String> sortValues = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                sortValues.add(in.readBoolean() ? in.readUTF() : null);
+            }
+            if (in.available() > 0) {
+                throw new InvalidRequestException("Invalid search cursor");
+            }
+            return new SearchCursor(queryFingerprint, pitId, Collections.unmodifiableList(sortValues)); // May hold nulls
+        } catch (IOException | IllegalArgumentException e) {
+            throw new InvalidRequestException("Invalid search cursor", e);
+        }
+    }
+}
@@ -2,23 +2,37 @@ package com.mysillydreams.catalogservice.service.search;
 
 import com.mysillydreams.catalogservice.config.OpenSearchConfig;
 import com.mysillydreams.catalogservice.domain.model.ItemType;
+import com.mysillydreams.catalogservice.dto.CatalogSearchPageDto;
+import com.mysillydreams.catalogservice.exception.InvalidRequestException;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.opensearch.client.java.OpenSearchClient;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch._types.SortOptions;
+import org.opensearch.client.opensearch._types.SortOrder;
+import org.opensearch.client.opensearch._types.Time;
 import org.opensearch.client.opensearch._types.query_dsl.*;
+import org.opensearch.client.opensearch.core.CreatePitRequest;
+import org.opensearch.client.opensearch.core.CreatePitResponse;
+import org.opensearch.client.opensearch.core.DeletePitRequest;
 import org.opensearch.client.opensearch.core.SearchRequest;
 import org.opensearch.client.opensearch.core.SearchResponse;
 import org.opensearch.client.opensearch.core.search.Hit;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -37,6 +51,13 @@ public class SearchService {
     private static final String SEARCH_LATENCY_METRIC_NAME = "catalog.search.latency";
     private static final String TAG_SEARCH_TYPE = "search_type";
 
+    public static final int MAX_CURSOR_PAGE_SIZE = 100;
+    // Keyword field unique per document; ends every cursor sort so that equal sort values still have an order
+    private static final String TIEBREAKER_FIELD = "id";
+
+    @Value("${app.search.point-in-time-keep-alive:1m}") // How long a point-in-time survives between two pages
+    private String pointInTimeKeepAlive;
+
 
     public Page<CatalogItemSearchDocument> searchItems(
             String keywordQuery,
@@ -50,6 +71,150 @@ public class SearchService {
         log.debug("Searching items with keyword: '{}', categoryId: {}, categoryPath: {}, itemType: {}, minPrice: {}, maxPrice: {}, pageable: {}",
                 keywordQuery, categoryId, categoryPath, itemType, minPrice, maxPrice, pageable);
 
+        SearchRequest.Builder searchRequestBuilder = new SearchRequest.Builder()
+                .index(OpenSearchConfig.CATALOG_ITEMS_INDEX_NAME)
+                .query(buildItemQuery(keywordQuery, categoryId, categoryPath, itemType, minPrice, maxPrice))
+                .from((int) pageable.getOffset())
+                .size(pageable.getPageSize())
+                .sort(toSortOptions(pageable.getSort()));
+
+
+        Timer.Sample DUMMY = Timer.start(meterRegistry); // Start timer before the operation
+        try {
+            SearchResponse<CatalogItemSearchDocument> response = openSearchClient.search(searchRequestBuilder.build(), CatalogItemSearchDocument.class);
+
+            List<CatalogItemSearchDocument> documents = response.hits().hits().stream()
+                    .map(Hit::source)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+
+            long totalHits = response.hits().total() != null ? response.hits().total().value() : 0;
+
+            DUMMY.stop(meterRegistry.timer(SEARCH_LATENCY_METRIC_NAME, TAG_SEARCH_TYPE, "item_search")); // Stop timer and record
+
+            return new PageImpl<>(documents, pageable, totalHits);
+
+        } catch (IOException e) {
+            log.error("Error searching OpenSearch for query '{}': {}", keywordQuery, e.getMessage(), e);
+            // Record error metric if desired
+            meterRegistry.counter("catalog.search.errors", TAG_SEARCH_TYPE, "item_search").increment();
+            DUMMY.stop(meterRegistry.timer(SEARCH_LATENCY_METRIC_NAME, TAG_SEARCH_TYPE, "item_search_error")); // Stop timer with error tag
+            return Page.empty(pageable);
+        }
+    }
+
+    /**
+     * Pages through the same results as {@link #searchItems} by keyset instead of offset: each page continues after
+     * the sort values of the previous page's last hit ({@code search_after}), so deep pages cost as much as the
+     * first one. The sort always ends with the item ID, which makes the order total and the continuation exact.
+     * <p>
+     * With {@code pointInTime}, the first page opens a point-in-time on the index and the whole walk reads from it,
+     * so items (re)indexed by {@link CatalogItemIndexerService} meanwhile neither shift nor repeat results. The
+     * point-in-time is kept alive by each page and closed after the last one; an abandoned walk lets it expire.
+     *
+     * @param sort    Sort of the walk; unsorted means by relevance.
+     * @param cursor  {@code nextCursor} of the previous page, or {@code null} to start a walk. Must be used with
+     *                the same query, filters and sort it was returned for.
+     * @param size    Page size, capped at {@link #MAX_CURSOR_PAGE_SIZE}.
+     * @param pointInTime Whether a new walk reads from a point-in-time; ignored when continuing a walk.
+     * @throws InvalidRequestException if the cursor is malformed, belongs to another search or has expired.
+     */
+    public CatalogSearchPageDto searchItemsAfter(
+            String keywordQuery,
+            UUID categoryId,
+            String categoryPath,
+            ItemType itemType,
+            BigDecimal minPrice,
+            BigDecimal maxPrice,
+            Sort sort,
+            String cursor,
+            int size,
+            boolean pointInTime) {
+
+        int pageSize = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+        List<SortOptions> sortOptions = new ArrayList<>(toSortOptions(sort));
+        if (sort.getOrderFor(TIEBREAKER_FIELD) == null) {
+            sortOptions.add(SortOptions.of(s -> s.field(f -> f.field(TIEBREAKER_FIELD).order(SortOrder.Asc))));
+        }
+        String fingerprint = fingerprint(keywordQuery, categoryId, categoryPath, itemType, minPrice, maxPrice, sort);
+
+        SearchCursor after = StringUtils.hasText(cursor) ? SearchCursor.decode(cursor) : null;
+        if (after != null && !after.queryFingerprint().equals(fingerprint)) {
+            throw new InvalidRequestException("Search cursor was issued for a different query, filters or sort");
+        }
+
+        log.debug("Searching items after cursor: {}, keyword: '{}', categoryId: {}, categoryPath: {}, itemType: {}, minPrice: {}, maxPrice: {}, sort: {}, size: {}",
+                after != null, keywordQuery, categoryId, categoryPath, itemType, minPrice, maxPrice, sort, pageSize);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String pitId = null;
+        try {
+            pitId = after != null ? after.pitId() : (pointInTime ? openPointInTime() : null);
+
+            SearchRequest.Builder searchRequestBuilder = new SearchRequest.Builder()
+                    .query(buildItemQuery(keywordQuery, categoryId, categoryPath, itemType, minPrice, maxPrice))
+                    .sort(sortOptions)
+                    .size(pageSize + 1) // One extra hit tells whether there is a next page
+                    .trackTotalHits(t -> t.enabled(after == null)); // Count once per walk, not on every deep page
+            if (pitId != null) {
+                String searchPitId = pitId; // A search on a point-in-time must not name the index
+                searchRequestBuilder.pit(p -> p.id(searchPitId).keepAlive(pointInTimeKeepAlive));
+            } else {
+                searchRequestBuilder.index(OpenSearchConfig.CATALOG_ITEMS_INDEX_NAME);
+            }
+            if (after != null) {
+                searchRequestBuilder.searchAfter(after.sortValues());
+            }
+
+            SearchResponse<CatalogItemSearchDocument> response = openSearchClient.search(searchRequestBuilder.build(), CatalogItemSearchDocument.class);
+            if (response.pitId() != null) {
+                pitId = response.pitId(); // The ID may change between pages
+            }
+
+            List<Hit<CatalogItemSearchDocument>> hits = response.hits().hits();
+            boolean hasMore = hits.size() > pageSize;
+            List<Hit<CatalogItemSearchDocument>> page = hasMore ? hits.subList(0, pageSize) : hits;
+
+            String nextCursor = null;
+            if (hasMore) {
+                nextCursor = new SearchCursor(fingerprint, pitId, page.get(page.size() - 1).sort()).encode();
+            } else if (pitId != null) {
+                closePointInTime(pitId);
+            }
+
+            List<CatalogItemSearchDocument> documents = page.stream()
+                    .map(Hit::source)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            Long totalHits = after == null && response.hits().total() != null ? response.hits().total().value() : null;
+
+            sample.stop(meterRegistry.timer(SEARCH_LATENCY_METRIC_NAME, TAG_SEARCH_TYPE, "item_search_after"));
+            return new CatalogSearchPageDto(documents, nextCursor, totalHits);
+
+        } catch (OpenSearchException e) {
+            sample.stop(meterRegistry.timer(SEARCH_LATENCY_METRIC_NAME, TAG_SEARCH_TYPE, "item_search_after_error"));
+            if (pitId != null && e.status() == 404) {
+                throw new InvalidRequestException("Search cursor has expired; start the search again without a cursor", e);
+            }
+            meterRegistry.counter("catalog.search.errors", TAG_SEARCH_TYPE, "item_search_after").increment();
+            throw e;
+        } catch (IOException e) {
+            log.error("Error searching OpenSearch after cursor for query '{}': {}", keywordQuery, e.getMessage(), e);
+            meterRegistry.counter("catalog.search.errors", TAG_SEARCH_TYPE, "item_search_after").increment();
+            sample.stop(meterRegistry.timer(SEARCH_LATENCY_METRIC_NAME, TAG_SEARCH_TYPE, "item_search_after_error"));
+            // Unlike searchItems, an empty page would tell a crawler its walk is complete; fail so it retries the cursor
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Query buildItemQuery(
+            String keywordQuery,
+            UUID categoryId,
+            String categoryPath,
+            ItemType itemType,
+            BigDecimal minPrice,
+            BigDecimal maxPrice) {
+
         BoolQuery.Builder boolQueryBuilder = QueryBuilders.bool();
 
         // Keyword search (name, description, SKU)
@@ -95,54 +260,60 @@ public class SearchService {
         }
 
         boolQueryBuilder.filter(filters);
+        return Query.of(q -> q.bool(boolQueryBuilder.build()));
+    }
 
-        SearchRequest.Builder searchRequestBuilder = new SearchRequest.Builder()
-                .index(OpenSearchConfig.CATALOG_ITEMS_INDEX_NAME)
-                .query(q -> q.bool(boolQueryBuilder.build()))
-                .from((int) pageable.getOffset())
-                .size(pageable.getPageSize());
-
-
-        if (pageable.getSort().isSorted()) {
-            pageable.getSort().forEach(order -> {
+    private List<SortOptions> toSortOptions(Sort sort) {
+        List<SortOptions> sortOptions = new ArrayList<>();
+        if (sort.isSorted()) {
+            sort.forEach(order -> {
                 String property = order.getProperty();
                 // Ensure .keyword is appended for text fields intended for sorting/faceting if mapping requires it
                 if ("name".equals(property) || "categoryName".equals(property) || "sku".equals(property)) {
                     property += ".keyword";
                 }
                 final String finalProperty = property; // Effectively final for lambda
-                searchRequestBuilder.sort(s -> s.field(f -> f
+                sortOptions.add(SortOptions.of(s -> s.field(f -> f
                         .field(finalProperty)
-                        .order(order.isAscending() ? org.opensearch.client.opensearch._types.SortOrder.Asc : org.opensearch.client.opensearch._types.SortOrder.Desc)
-                ));
+                        .order(order.isAscending() ? SortOrder.Asc : SortOrder.Desc)
+                )));
             });
         } else {
              // Default sort by relevance if no sort specified in pageable
-            searchRequestBuilder.sort(s -> s.field(f -> f.field("_score").order(org.opensearch.client.opensearch._types.SortOrder.Desc)));
+            sortOptions.add(SortOptions.of(s -> s.field(f -> f.field("_score").order(SortOrder.Desc))));
         }
+        return sortOptions;
+    }
 
+    private String openPointInTime() throws IOException {
+        CreatePitResponse response = openSearchClient.createPit(new CreatePitRequest.Builder()
+                .targetIndexes(OpenSearchConfig.CATALOG_ITEMS_INDEX_NAME)
+                .keepAlive(Time.of(t -> t.time(pointInTimeKeepAlive)))
+                .build());
+        return response.pitId();
+    }
 
-        Timer.Sample DUMMY = Timer.start(meterRegistry); // Start timer before the operation
+    private void closePointInTime(String pitId) {
         try {
-            SearchResponse<CatalogItemSearchDocument> response = openSearchClient.search(searchRequestBuilder.build(), CatalogItemSearchDocument.class);
-
-            List<CatalogItemSearchDocument> documents = response.hits().hits().stream()
-                    .map(Hit::source)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-
-            long totalHits = response.hits().total() != null ? response.hits().total().value() : 0;
-
-            DUMMY.stop(meterRegistry.timer(SEARCH_LATENCY_METRIC_NAME, TAG_SEARCH_TYPE, "item_search")); // Stop timer and record
-
-            return new PageImpl<>(documents, pageable, totalHits);
-
-        } catch (IOException e) {
-            log.error("Error searching OpenSearch for query '{}': {}", keywordQuery, e.getMessage(), e);
-            // Record error metric if desired
-            meterRegistry.counter("catalog.search.errors", TAG_SEARCH_TYPE, "item_search").increment();
-            DUMMY.stop(meterRegistry.timer(SEARCH_LATENCY_METRIC_NAME, TAG_SEARCH_TYPE, "item_search_error")); // Stop timer with error tag
-            return Page.empty(pageable);
+            openSearchClient.deletePit(new DeletePitRequest.Builder().pitId(pitId).build());
+        } catch (IOException | OpenSearchException e) {
+            // It expires after its keep-alive anyway
+            log.warn("Could not close point-in-time after the last page: {}", e.getMessage());
         }
     }
+
+    /**
+     * Identifies the search a cursor belongs to, so a cursor replayed with other parameters is rejected instead of
+     * silently skipping or repeating results.
+     */
+    static String fingerprint(String keywordQuery, UUID categoryId, String categoryPath, ItemType itemType,
+                              BigDecimal minPrice, BigDecimal maxPrice, Sort sort) {
+        String search = String.join("\u0000",
+                String.valueOf(keywordQuery), String.valueOf(categoryId), String.valueOf(categoryPath),
+                String.valueOf(itemType),
+                minPrice != null ? minPrice.stripTrailingZeros().toPlainString() : "null",
+                maxPrice != null ? maxPrice.stripTrailingZeros().toPlainString() : "null",
+                sort.toString());
+        return DigestUtils.md5DigestAsHex(search.getBytes(StandardCharsets.UTF_8));
+    }
 }
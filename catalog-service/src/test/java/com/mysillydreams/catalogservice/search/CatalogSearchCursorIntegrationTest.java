@@ -0,0 +1,135 @@
+package com.mysillydreams.catalogservice.search;
+
+import com.mysillydreams.catalogservice.config.OpenSearchConfig;
+import com.mysillydreams.catalogservice.domain.model.ItemType;
+import com.mysillydreams.catalogservice.dto.CatalogSearchPageDto;
+import com.mysillydreams.catalogservice.exception.InvalidRequestException;
+import com.mysillydreams.catalogservice.service.search.CatalogItemSearchDocument;
+import com.mysillydreams.catalogservice.service.search.OpenSearchIndexInitializer;
+import com.mysillydreams.catalogservice.service.search.SearchService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.java.OpenSearchClient;
+import org.opensearch.client.opensearch._types.Refresh;
+import org.opensearch.client.opensearch.core.bulk.BulkOperation;
+import org.opensearch.client.opensearch.indices.DeleteIndexRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Walks search results with search_after cursors against a real OpenSearch node, indexing documents directly
+ * rather than through Kafka so that concurrent reindexing can be placed exactly between two pages.
+ */
+@EmbeddedKafka(partitions = 1)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class CatalogSearchCursorIntegrationTest extends AbstractOpenSearchIntegrationTest {
+
+    private static final int ITEM_COUNT = 25;
+    private static final int PAGE_SIZE = 7;
+    // Every item has the same price, so only the tiebreaker orders them
+    private static final Sort BY_PRICE = Sort.by(Sort.Direction.ASC, "basePrice");
+
+    @Autowired private OpenSearchClient openSearchClient;
+    @Autowired private SearchService searchService;
+    @Autowired private OpenSearchIndexInitializer indexInitializer;
+
+    private List<String> indexedIds;
+
+    @BeforeEach
+    void setUpIndex() throws IOException {
+        try {
+            if (openSearchClient.indices().exists(e -> e.index(OpenSearchConfig.CATALOG_ITEMS_INDEX_NAME)).value()) {
+                openSearchClient.indices().delete(new DeleteIndexRequest.Builder().index(OpenSearchConfig.CATALOG_ITEMS_INDEX_NAME).build());
+            }
+        } catch (Exception e) { /* ignore if index doesn't exist */ }
+        indexInitializer.initializeIndex();
+
+        indexedIds = index(IntStream.range(0, ITEM_COUNT).mapToObj(i -> document(UUID.randomUUID().toString())).collect(Collectors.toList()));
+    }
+
+    @Test
+    void searchItemsAfter_walksEveryItemOnce_andCountsOnlyOnFirstPage() {
+        CatalogSearchPageDto first = search(null, false);
+        assertThat(first.getTotalHits()).isEqualTo(ITEM_COUNT);
+        assertThat(first.getItems()).hasSize(PAGE_SIZE);
+
+        List<String> walked = walk(first, page -> assertThat(page.getTotalHits()).isNull());
+
+        assertThat(walked).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(indexedIds);
+        assertThat(walked).isSorted(); // Ties on price fall back to the item ID
+    }
+
+    @Test
+    void searchItemsAfter_withPointInTime_ignoresItemsIndexedDuringTheWalk() throws IOException {
+        CatalogSearchPageDto first = search(null, true);
+
+        // Reindexing between two pages: new items sorting before and after the cursor, and one item removed
+        index(List.of(document("00000000-0000-0000-0000-000000000000"), document("ffffffff-ffff-ffff-ffff-ffffffffffff")));
+        String removed = indexedIds.stream().sorted().reduce((a, b) -> b).orElseThrow();
+        openSearchClient.delete(d -> d.index(OpenSearchConfig.CATALOG_ITEMS_INDEX_NAME).id(removed).refresh(Refresh.True));
+
+        List<String> walked = walk(first, page -> { });
+
+        assertThat(walked).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(indexedIds);
+    }
+
+    @Test
+    void searchItemsAfter_rejectsCursorOfAnotherSearch() {
+        CatalogSearchPageDto first = search(null, false);
+
+        assertThatThrownBy(() -> searchService.searchItemsAfter(
+                null, null, null, ItemType.SERVICE, null, null, BY_PRICE, first.getNextCursor(), PAGE_SIZE, false))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> search("garbage", false)).isInstanceOf(InvalidRequestException.class);
+    }
+
+    private List<String> walk(CatalogSearchPageDto first, Consumer<CatalogSearchPageDto> laterPageCheck) {
+        List<String> ids = new ArrayList<>(ids(first));
+        CatalogSearchPageDto page = first;
+        while (page.getNextCursor() != null) {
+            page = search(page.getNextCursor(), false);
+            laterPageCheck.accept(page);
+            ids.addAll(ids(page));
+        }
+        return ids;
+    }
+
+    private CatalogSearchPageDto search(String cursor, boolean pointInTime) {
+        return searchService.searchItemsAfter(null, null, null, ItemType.PRODUCT, null, null, BY_PRICE, cursor, PAGE_SIZE, pointInTime);
+    }
+
+    private static List<String> ids(CatalogSearchPageDto page) {
+        return page.getItems().stream().map(CatalogItemSearchDocument::getId).collect(Collectors.toList());
+    }
+
+    private List<String> index(List<CatalogItemSearchDocument> documents) throws IOException {
+        List<BulkOperation> operations = documents.stream()
+                .map(doc -> new BulkOperation.Builder().index(idx -> idx.index(OpenSearchConfig.CATALOG_ITEMS_INDEX_NAME).id(doc.getId()).document(doc)).build())
+                .collect(Collectors.toList());
+        openSearchClient.bulk(b -> b.operations(operations).refresh(Refresh.True));
+        return documents.stream().map(CatalogItemSearchDocument::getId).collect(Collectors.toList());
+    }
+
+    private static CatalogItemSearchDocument document(String id) {
+        return CatalogItemSearchDocument.builder()
+                .id(id).sku("SKU-" + id).name("Item " + id)
+                .itemType(ItemType.PRODUCT).basePrice(10.0).active(true)
+                .createdAt(Instant.now()).updatedAt(Instant.now())
+                .build();
+    }
+}
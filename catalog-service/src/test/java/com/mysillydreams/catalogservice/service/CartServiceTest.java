@@ -26,11 +26,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -66,29 +68,37 @@ public class CartServiceTest {
         activeCart = CartEntity.builder().id(cartId).userId(userId).status(CartStatus.ACTIVE).items(new ArrayList<>()).version(0L).createdAt(Instant.now()).updatedAt(Instant.now()).build();
 
         // Default PriceDetailDto mock - now returns the new structure
-        when(pricingService.getPriceDetail(any(UUID.class), anyInt())).thenAnswer(invocation -> {
-            UUID iId = invocation.getArgument(0);
-            int qty = invocation.getArgument(1);
-            CatalogItemEntity currentItem = iId.equals(itemId1) ? productItem1 : serviceItem2;
-            BigDecimal basePrice = currentItem.getBasePrice();
-
-            // Simulate a simple PriceDetailDto with no complex components for default mock
-            List<PricingComponent> components = List.of(
-                PricingComponent.builder().code("CATALOG_BASE_PRICE").description("Base Price").amount(basePrice).build()
-            );
-
-            return PriceDetailDto.builder()
-                    .itemId(iId)
-                    .quantity(qty)
-                    .basePrice(basePrice)
-                    .overridePrice(null) // No override by default
-                    .components(components)
-                    .finalUnitPrice(basePrice) // No discount by default
-                    .totalPrice(basePrice.multiply(BigDecimal.valueOf(qty)))
-                    .build();
+        when(pricingService.getPriceDetail(any(UUID.class), anyInt())).thenAnswer(invocation ->
+                defaultPriceDetail(invocation.getArgument(0), invocation.getArgument(1)));
+        // Cart conversion prices all lines through the batch API
+        when(pricingService.getPriceDetails(anyList())).thenAnswer(invocation -> {
+            List<PriceLineRequest> lines = invocation.getArgument(0);
+            return lines.stream()
+                    .map(line -> defaultPriceDetail(line.getItemId(), line.getQuantity()))
+                    .collect(Collectors.toList());
         });
     }
 
+    private PriceDetailDto defaultPriceDetail(UUID iId, int qty) {
+        CatalogItemEntity currentItem = iId.equals(itemId1) ? productItem1 : serviceItem2;
+        BigDecimal basePrice = currentItem.getBasePrice();
+
+        // Simulate a simple PriceDetailDto with no complex components for default mock
+        List<PricingComponent> components = List.of(
+            PricingComponent.builder().code("CATALOG_BASE_PRICE").description("Base Price").amount(basePrice).build()
+        );
+
+        return PriceDetailDto.builder()
+                .itemId(iId)
+                .quantity(qty)
+                .basePrice(basePrice)
+                .overridePrice(null) // No override by default
+                .components(components)
+                .finalUnitPrice(basePrice) // No discount by default
+                .totalPrice(basePrice.multiply(BigDecimal.valueOf(qty)))
+                .build();
+    }
+
     @Test
     void getOrCreateCart_existingActiveCart_returnsIt() {
         when(cartRepository.findByUserIdAndStatus(userId, CartStatus.ACTIVE)).thenReturn(Optional.of(activeCart));
@@ -286,7 +296,6 @@ public class CartServiceTest {
             .finalUnitPrice(new BigDecimal("900.00"))
             .totalPrice(new BigDecimal("900.00"))
             .build();
-        when(pricingService.getPriceDetail(itemId1, 1)).thenReturn(priceDetailItem1);
 
         // For serviceItem2 (qty 2) - no discount
          List<PricingComponent> componentsItem2 = List.of(
@@ -298,7 +307,7 @@ public class CartServiceTest {
             .finalUnitPrice(new BigDecimal("50.00"))
             .totalPrice(new BigDecimal("100.00")) // 50 * 2
             .build();
-        when(pricingService.getPriceDetail(itemId2, 2)).thenReturn(priceDetailItem2);
+        when(pricingService.getPriceDetails(anyList())).thenReturn(List.of(priceDetailItem1, priceDetailItem2));
 
         // When CartService tries to get the cart (e.g. for getCartTotals)
         when(cartRepository.findByUserIdAndStatus(userId, CartStatus.ACTIVE)).thenReturn(Optional.of(activeCart));
@@ -331,4 +340,18 @@ public class CartServiceTest {
         assertThat(detail2.getDiscountAppliedPerUnit()).isEqualByComparingTo("0.00");
         assertThat(detail2.getLineItemTotal()).isEqualByComparingTo("100.00");
     }
+
+    @Test
+    void getCartTotals_pricesAllLinesWithSingleBatchCall() {
+        activeCart.getItems().addAll(List.of(
+            CartItemEntity.builder().id(UUID.randomUUID()).cart(activeCart).catalogItem(productItem1).quantity(3).build(),
+            CartItemEntity.builder().id(UUID.randomUUID()).cart(activeCart).catalogItem(serviceItem2).quantity(1).build()));
+        when(cartRepository.findByUserIdAndStatus(userId, CartStatus.ACTIVE)).thenReturn(Optional.of(activeCart));
+
+        CartDto resultDto = cartService.getCartTotals(userId);
+
+        assertThat(resultDto.getSubtotal()).isEqualByComparingTo("3050.00"); // 3 * 1000.00 + 1 * 50.00
+        verify(pricingService, times(1)).getPriceDetails(anyList());
+        verify(pricingService, never()).getPriceDetail(any(UUID.class), anyInt());
+    }
 }
@@ -20,6 +20,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
@@ -32,6 +34,7 @@ import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -44,6 +47,8 @@ public class PricingServiceTest {
     @Mock private OutboxEventService outboxEventService;
     @Mock private DynamicPricingEngine dynamicPricingEngine;
     @Mock private com.mysillydreams.catalogservice.domain.repository.PriceOverrideRepository priceOverrideRepository; // Added mock
+    @Mock private CacheManager cacheManager;
+    @Mock private Cache priceDetailCache;
 
     @InjectMocks private PricingService pricingService;
 
@@ -440,4 +445,89 @@ public class PricingServiceTest {
         assertThat(result.getFinalUnitPrice()).isEqualByComparingTo("100.00");
         assertThat(result.getPriceSource()).isEqualTo("BASE");
     }
+
+    @Test
+    void getPriceDetails_cacheMiss_loadsEachTableOnceAndFillsCache() {
+        UUID otherItemId = UUID.randomUUID();
+        CatalogItemEntity otherItem = CatalogItemEntity.builder()
+                .id(otherItemId).sku("ITEM02").name("Other Item")
+                .itemType(ItemType.PRODUCT).basePrice(new BigDecimal("50.00"))
+                .active(true)
+                .build();
+        BulkPricingRuleEntity rule = BulkPricingRuleEntity.builder()
+                .catalogItem(item).minQuantity(5).discountPercentage(new BigDecimal("10.00"))
+                .build();
+        com.mysillydreams.catalogservice.domain.model.PriceOverrideEntity override =
+                com.mysillydreams.catalogservice.domain.model.PriceOverrideEntity.builder()
+                        .catalogItem(otherItem).overridePrice(new BigDecimal("40.00")).enabled(true)
+                        .build();
+
+        when(cacheManager.getCache("priceDetail")).thenReturn(priceDetailCache);
+        when(catalogItemRepository.findAllById(anyCollection())).thenReturn(List.of(item, otherItem));
+        when(priceOverrideRepository.findActiveOverridesForItemsAtTime(anyCollection(), any(Instant.class)))
+                .thenReturn(List.of(override));
+        when(bulkPricingRuleRepository.findActiveRulesForItems(anyCollection(), any(Instant.class)))
+                .thenReturn(List.of(rule));
+
+        PriceLineRequest bulkLine = new PriceLineRequest(itemId, 5);
+        PriceLineRequest smallLine = new PriceLineRequest(itemId, 1);
+        PriceLineRequest overrideLine = new PriceLineRequest(otherItemId, 2);
+        List<PriceDetailDto> result = pricingService.getPriceDetails(List.of(bulkLine, smallLine, overrideLine));
+
+        assertThat(result).hasSize(3);
+        assertThat(result.get(0).getFinalUnitPrice()).isEqualByComparingTo("90.00"); // 10% bulk discount
+        assertThat(result.get(1).getFinalUnitPrice()).isEqualByComparingTo("100.00"); // Below minQuantity
+        assertThat(result.get(2).getPriceSource()).isEqualTo("OVERRIDE");
+        assertThat(result.get(2).getTotalPrice()).isEqualByComparingTo("80.00");
+
+        verify(catalogItemRepository, times(1)).findAllById(anyCollection());
+        verify(priceOverrideRepository, times(1)).findActiveOverridesForItemsAtTime(anyCollection(), any(Instant.class));
+        verify(bulkPricingRuleRepository, times(1)).findActiveRulesForItems(anyCollection(), any(Instant.class));
+        verify(catalogItemRepository, never()).findById(any());
+        verify(priceDetailCache).put(eq(itemId + "::qty:5"), eq(result.get(0)));
+        verify(priceDetailCache).put(eq(itemId + "::qty:1"), eq(result.get(1)));
+        verify(priceDetailCache).put(eq(otherItemId + "::qty:2"), eq(result.get(2)));
+    }
+
+    @Test
+    void getPriceDetails_identicalLines_returnsOneEntryPerLine() {
+        when(cacheManager.getCache("priceDetail")).thenReturn(priceDetailCache);
+        when(catalogItemRepository.findAllById(anyCollection())).thenReturn(List.of(item));
+        when(priceOverrideRepository.findActiveOverridesForItemsAtTime(anyCollection(), any(Instant.class)))
+                .thenReturn(Collections.emptyList());
+        when(bulkPricingRuleRepository.findActiveRulesForItems(anyCollection(), any(Instant.class)))
+                .thenReturn(Collections.emptyList());
+
+        PriceLineRequest line = new PriceLineRequest(itemId, 2);
+        PriceLineRequest otherQuantity = new PriceLineRequest(itemId, 1);
+        List<PriceDetailDto> result = pricingService.getPriceDetails(List.of(line, otherQuantity, new PriceLineRequest(itemId, 2)));
+
+        assertThat(result).hasSize(3);
+        assertThat(result.get(0).getTotalPrice()).isEqualByComparingTo("200.00");
+        assertThat(result.get(1).getTotalPrice()).isEqualByComparingTo("100.00");
+        assertThat(result.get(2)).isSameAs(result.get(0)); // Priced once
+        verify(priceDetailCache, times(1)).put(eq(itemId + "::qty:2"), any());
+    }
+
+    @Test
+    void getPriceDetails_allCached_skipsDatabase() {
+        PriceDetailDto cached = PriceDetailDto.builder().itemId(itemId).quantity(3).finalUnitPrice(new BigDecimal("100.00")).build();
+        when(cacheManager.getCache("priceDetail")).thenReturn(priceDetailCache);
+        when(priceDetailCache.get(itemId + "::qty:3", PriceDetailDto.class)).thenReturn(cached);
+
+        PriceLineRequest line = new PriceLineRequest(itemId, 3);
+        List<PriceDetailDto> result = pricingService.getPriceDetails(List.of(line));
+
+        assertThat(result).containsExactly(cached);
+        verifyNoInteractions(catalogItemRepository, priceOverrideRepository, bulkPricingRuleRepository);
+    }
+
+    @Test
+    void getPriceDetails_unknownItem_throwsException() {
+        when(cacheManager.getCache("priceDetail")).thenReturn(priceDetailCache);
+        when(catalogItemRepository.findAllById(anyCollection())).thenReturn(Collections.emptyList());
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> pricingService.getPriceDetails(List.of(new PriceLineRequest(itemId, 1))));
+    }
 }
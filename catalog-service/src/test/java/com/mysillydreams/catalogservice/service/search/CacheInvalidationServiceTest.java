@@ -0,0 +1,80 @@
+package com.mysillydreams.catalogservice.service.search;
+
+import com.mysillydreams.catalogservice.config.CacheKeyConstants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CacheInvalidationServiceTest {
+
+    @Mock private RedisTemplate<String, Object> genericRedisTemplate;
+    @Mock private StringRedisTemplate stringRedisTemplate;
+    @Mock private SetOperations<String, String> setOperations;
+
+    private CacheInvalidationService cacheInvalidationService;
+    private UUID itemId;
+
+    @BeforeEach
+    void setUp() {
+        cacheInvalidationService = new CacheInvalidationService(genericRedisTemplate, stringRedisTemplate);
+        itemId = UUID.randomUUID();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void evictPriceDetailCache_unlinksIndexedKeysAndIndex_withoutKeyspaceScan() {
+        String indexKey = CacheKeyConstants.getPriceDetailKeyIndexKey(itemId);
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members(indexKey)).thenReturn(Set.of(
+                CacheKeyConstants.getPriceDetailCacheKey(itemId, 1),
+                CacheKeyConstants.getPriceDetailCacheKey(itemId, 5)));
+
+        cacheInvalidationService.evictPriceDetailCache(itemId);
+
+        ArgumentCaptor<Collection<String>> keysCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(stringRedisTemplate).unlink(keysCaptor.capture());
+        assertThat(keysCaptor.getValue()).containsExactlyInAnyOrder(
+                "priceDetail::" + itemId + "::qty:1",
+                "priceDetail::" + itemId + "::qty:5",
+                indexKey);
+        verify(stringRedisTemplate, never()).keys(anyString());
+        verify(genericRedisTemplate, never()).keys(anyString());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void evictPriceDetailCache_noIndexedKeys_unlinksOnlyIndex() {
+        String indexKey = CacheKeyConstants.getPriceDetailKeyIndexKey(itemId);
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members(indexKey)).thenReturn(Collections.emptySet());
+
+        cacheInvalidationService.evictPriceDetailCache(itemId);
+
+        ArgumentCaptor<Collection<String>> keysCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(stringRedisTemplate).unlink(keysCaptor.capture());
+        assertThat(keysCaptor.getValue()).containsExactly(indexKey);
+    }
+
+    @Test
+    void evictPriceDetailCache_nullItemId_doesNothing() {
+        cacheInvalidationService.evictPriceDetailCache(null);
+
+        verifyNoInteractions(stringRedisTemplate, genericRedisTemplate);
+    }
+}
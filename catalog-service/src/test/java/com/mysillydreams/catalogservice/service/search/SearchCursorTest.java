@@ -0,0 +1,67 @@
+package com.mysillydreams.catalogservice.service.search;
+
+import com.mysillydreams.catalogservice.domain.model.ItemType;
+import com.mysillydreams.catalogservice.exception.InvalidRequestException;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SearchCursorTest {
+
+    @Test
+    void encode_decode_roundTripsSortValuesAndPointInTime() {
+        SearchCursor cursor = new SearchCursor("fp", "pit-id==", List.of("12.5", "Laptop / 15\"", UUID.randomUUID().toString()));
+
+        String token = cursor.encode();
+
+        assertThat(token).matches("[A-Za-z0-9_-]+"); // Safe in a query string without escaping
+        assertThat(SearchCursor.decode(token)).isEqualTo(cursor);
+    }
+
+    @Test
+    void encode_decode_roundTripsWithoutPointInTime() {
+        SearchCursor cursor = new SearchCursor("fp", null, List.of("1.0", "id-1"));
+
+        assertThat(SearchCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void encode_decode_roundTripsNullSortValues() {
+        SearchCursor cursor = new SearchCursor("fp", "pit-id", Arrays.asList(null, "id-1", null));
+
+        SearchCursor decoded = SearchCursor.decode(cursor.encode());
+
+        assertThat(decoded).isEqualTo(cursor);
+        assertThat(decoded.sortValues()).containsExactly(null, "id-1", null);
+    }
+
+    @Test
+    void decode_rejectsMalformedTokens() {
+        String valid = new SearchCursor("fp", null, List.of("1.0")).encode();
+
+        assertThatThrownBy(() -> SearchCursor.decode("not a cursor")).isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> SearchCursor.decode(valid.substring(0, valid.length() - 2))).isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> SearchCursor.decode(valid + "AA")).isInstanceOf(InvalidRequestException.class);
+    }
+
+    @Test
+    void fingerprint_differsWhenFiltersOrSortChange_butNotForEqualPrices() {
+        UUID categoryId = UUID.randomUUID();
+        Sort byPrice = Sort.by(Sort.Direction.ASC, "basePrice");
+        String fingerprint = SearchService.fingerprint("laptop", categoryId, null, ItemType.PRODUCT, new BigDecimal("10"), null, byPrice);
+
+        assertThat(SearchService.fingerprint("laptop", categoryId, null, ItemType.PRODUCT, new BigDecimal("10.00"), null, byPrice))
+                .isEqualTo(fingerprint);
+        assertThat(SearchService.fingerprint("laptops", categoryId, null, ItemType.PRODUCT, new BigDecimal("10"), null, byPrice))
+                .isNotEqualTo(fingerprint);
+        assertThat(SearchService.fingerprint("laptop", categoryId, null, ItemType.PRODUCT, new BigDecimal("10"), null, byPrice.descending()))
+                .isNotEqualTo(fingerprint);
+    }
+}
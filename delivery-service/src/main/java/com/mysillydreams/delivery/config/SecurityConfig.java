@@ -51,6 +51,8 @@ public class SecurityConfig extends KeycloakWebSecurityConfigurerAdapter {
                 .antMatchers(HttpMethod.POST, "/delivery/assignments/*/gps").hasRole("DELIVERY") // GPS updates from courier app
                 .antMatchers(HttpMethod.POST, "/delivery/assignments/*/arrive-dropoff").hasRole("DELIVERY")
                 .antMatchers(HttpMethod.POST, "/delivery/assignments/*/deliver").hasRole("DELIVERY")
+                .antMatchers(HttpMethod.POST, "/delivery/couriers/*/location").hasRole("DELIVERY") // Presence heartbeat from courier app
+                .antMatchers(HttpMethod.POST, "/delivery/couriers/*/offline").hasRole("DELIVERY")
                 // Add other assignment related endpoints if any (e.g., GET for courier to see their assignments)
                 // .antMatchers(HttpMethod.GET, "/delivery/assignments/my").hasRole("DELIVERY")
 
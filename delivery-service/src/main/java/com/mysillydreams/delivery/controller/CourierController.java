@@ -0,0 +1,46 @@
+package com.mysillydreams.delivery.controller;
+
+import com.mysillydreams.delivery.dto.GpsUpdateDto;
+import com.mysillydreams.delivery.service.CourierPresenceService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import jakarta.validation.Valid;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/delivery/couriers")
+@RequiredArgsConstructor
+public class CourierController {
+
+    private static final Logger log = LoggerFactory.getLogger(CourierController.class);
+    private final CourierPresenceService courierPresenceService;
+
+    // Couriers may only report for themselves: the courier ID is the Keycloak subject (authentication.name),
+    // so a mismatched path ID is rejected with 403 before the presence index is touched.
+    private static final String SELF_COURIER =
+            "(hasRole('ROLE_DELIVERY') or hasAuthority('ROLE_DELIVERY')) and authentication.name == #courierId.toString()";
+
+    // Presence heartbeat from the courier app, sent while the courier is online with or without an assignment
+    @PostMapping("/{courierId}/location")
+    @PreAuthorize(SELF_COURIER)
+    public ResponseEntity<Void> postLocation(
+            @PathVariable UUID courierId,
+            @Valid @RequestBody GpsUpdateDto dto) {
+        log.debug("Received location for courier {}", courierId); // Debug level for high frequency
+        courierPresenceService.recordLocation(courierId, dto.getLatitude(), dto.getLongitude(), dto.getTimestamp());
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/{courierId}/offline")
+    @PreAuthorize(SELF_COURIER)
+    public ResponseEntity<Void> goOffline(@PathVariable UUID courierId) {
+        log.info("Received request: Courier {} going offline", courierId);
+        courierPresenceService.markOffline(courierId);
+        return ResponseEntity.ok().build();
+    }
+}
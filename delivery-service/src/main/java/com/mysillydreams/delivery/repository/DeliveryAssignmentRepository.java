@@ -3,8 +3,11 @@ package com.mysillydreams.delivery.repository;
 import com.mysillydreams.delivery.domain.DeliveryAssignment;
 import com.mysillydreams.delivery.domain.enums.DeliveryAssignmentStatus; // Corrected import if enum is used
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -14,4 +17,9 @@ public interface DeliveryAssignmentRepository extends JpaRepository<DeliveryAssi
     Optional<DeliveryAssignment> findByOrderId(UUID orderId);
     List<DeliveryAssignment> findByCourierIdAndStatus(UUID courierId, DeliveryAssignmentStatus status);
     List<DeliveryAssignment> findByStatus(DeliveryAssignmentStatus status);
+
+    // Which of the given couriers currently carry an assignment in one of the given statuses
+    @Query("SELECT DISTINCT a.courier.id FROM DeliveryAssignment a WHERE a.courier.id IN :courierIds AND a.status IN :statuses")
+    List<UUID> findCourierIdsWithAssignmentStatusIn(@Param("courierIds") Collection<UUID> courierIds,
+                                                    @Param("statuses") Collection<DeliveryAssignmentStatus> statuses);
 }
@@ -2,15 +2,39 @@ package com.mysillydreams.delivery.repository;
 
 import com.mysillydreams.delivery.domain.DeliveryProfile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface DeliveryProfileRepository extends JpaRepository<DeliveryProfile, UUID> {
+    List<DeliveryProfile> findByStatus(String status);
+
+    // Fallback for assignment when no courier has a fresh position in CourierLocationIndex; returns the most
+    // recently seen courier that carries no assignment in one of the given statuses
+    @Query(value = "SELECT * FROM delivery_profiles p WHERE p.status = :status " +
+            "AND NOT EXISTS (SELECT 1 FROM delivery_assignments a WHERE a.courier_id = p.id AND a.status IN (:busyStatuses)) " +
+            "ORDER BY p.last_seen_at DESC NULLS LAST LIMIT 1", nativeQuery = true)
+    Optional<DeliveryProfile> findMostRecentlySeenAvailableByStatus(@Param("status") String status,
+                                                                    @Param("busyStatuses") Collection<String> busyStatuses);
+
+    // Written by CourierPresenceService; ignores reports older than the stored one
+    @Modifying
+    @Transactional
+    @Query("UPDATE DeliveryProfile p SET p.currentLatitude = :latitude, p.currentLongitude = :longitude, p.lastSeenAt = :seenAt " +
+            "WHERE p.id = :id AND (p.lastSeenAt IS NULL OR p.lastSeenAt < :seenAt)")
+    int updateLastSeen(@Param("id") UUID id, @Param("latitude") double latitude,
+                       @Param("longitude") double longitude, @Param("seenAt") Instant seenAt);
+
     // Example custom queries:
-    // List<DeliveryProfile> findByStatus(String status);
     // List<DeliveryProfile> findByCurrentLatitudeBetweenAndCurrentLongitudeBetween(
     //    Double minLat, Double maxLat, Double minLon, Double maxLon);
 }
@@ -14,6 +14,7 @@ import com.mysillydreams.delivery.dto.avro.DeliveryPickedUpEvent;
 // GpsUpdateEvent is already imported
 // Import Avro ShipmentRequestedEvent for createAssignment method input
 import com.mysillydreams.delivery.dto.avro.ShipmentRequestedEvent;
+import com.mysillydreams.delivery.dto.avro.AddressAvro;
 
 
 import com.mysillydreams.delivery.repository.DeliveryAssignmentRepository;
@@ -30,20 +31,34 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import jakarta.persistence.EntityNotFoundException;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class AssignmentServiceImpl implements AssignmentService {
 
     private static final Logger log = LoggerFactory.getLogger(AssignmentServiceImpl.class);
+    // A courier with an assignment in one of these statuses is not offered new work
+    private static final Set<DeliveryAssignmentStatus> BUSY_STATUSES = EnumSet.of(
+            DeliveryAssignmentStatus.ASSIGNED, DeliveryAssignmentStatus.ARRIVED_AT_PICKUP, DeliveryAssignmentStatus.PICKED_UP,
+            DeliveryAssignmentStatus.IN_TRANSIT, DeliveryAssignmentStatus.ARRIVED_AT_DROPOFF);
+    private static final List<String> BUSY_STATUS_NAMES = BUSY_STATUSES.stream().map(Enum::name).toList();
+    // Batches of nearest candidates checked before falling back
+    private static final int MAX_CANDIDATE_ROUNDS = 3;
 
     private final DeliveryAssignmentRepository assignmentRepository;
     private final DeliveryEventRepository eventRepository;
     private final DeliveryProfileRepository profileRepository; // For courier selection
+    private final CourierLocationIndex courierLocationIndex; // Nearest-courier lookup from live GPS positions
     private final ObjectMapper objectMapper; // Added back for AddressDto conversion
 
     private final OutboxEventService outboxEventService; // Use the real OutboxEventService
@@ -63,19 +78,21 @@ public class AssignmentServiceImpl implements AssignmentService {
     @Value("${kafka.topics.deliveryDelivered:delivery.delivered}")
     private String deliveredTopic; // Not used if outbox eventType is topic
 
+    // Courier selection: how many nearest couriers to consider, and how old a GPS position may be
+    @Value("${delivery.assignment.nearest-candidates:5}")
+    private int nearestCandidates;
+
+    @Value("${delivery.assignment.max-location-age-seconds:120}")
+    private long maxLocationAgeSeconds;
+
 
     @Override
     @Transactional
     public UUID createAssignment(ShipmentRequestedEvent event) { // Changed to Avro type
         log.info("Creating assignment for orderId: {}", event.getOrderId());
 
-        // 1. Select a courier (simplified: find first available active courier)
-        List<DeliveryProfile> availableCouriers = profileRepository.findByStatus("ACTIVE");
-        if (availableCouriers.isEmpty()) {
-            log.warn("No available couriers to create assignment for orderId: {}", event.getOrderId());
-            throw new IllegalStateException("No available couriers found.");
-        }
-        DeliveryProfile assignedCourier = availableCouriers.get(0);
+        // 1. Select the closest ACTIVE courier to the pickup address
+        DeliveryProfile assignedCourier = selectCourier(event);
         log.info("Assigned courier {} to orderId {}", assignedCourier.getId(), event.getOrderId());
 
         DeliveryAssignment assignment = new DeliveryAssignment();
@@ -95,6 +112,7 @@ public class AssignmentServiceImpl implements AssignmentService {
         assignment.setEstimatedDeliveryTime(Instant.now().plusSeconds(3600 * 2)); // e.g., 2 hours from now
 
         DeliveryAssignment savedAssignment = assignmentRepository.save(assignment);
+        courierLocationIndex.trackAssignment(savedAssignment.getId(), assignedCourier.getId());
         recordEvent(savedAssignment, DeliveryEventType.ASSIGNMENT_CREATED,
                     Map.of("courierId", assignedCourier.getId().toString()), assignedCourier.getId(), "SYSTEM");
 
@@ -112,10 +130,52 @@ public class AssignmentServiceImpl implements AssignmentService {
         outboxEventService.createAndSaveOutboxEvent("DeliveryAssignment", savedAssignment.getId().toString(),
                                    "delivery.assignment.created", avroEvent); // Topic name as eventType
 
-        log.info("Delivery assignment {} created for orderId {}", savedAssignment.getId(), dto.getOrderId());
+        log.info("Delivery assignment {} created for orderId {}", savedAssignment.getId(), event.getOrderId());
         return savedAssignment.getId();
     }
 
+    /**
+     * Picks the closest ACTIVE courier to the pickup address that has a recent position and is not carrying
+     * another assignment. Candidates come from the index a few at a time; profile status and open assignments
+     * are confirmed in the database for each batch. Falls back to the most recently seen available ACTIVE courier
+     * when the pickup has no coordinates or no such courier has reported a fresh position nearby.
+     */
+    private DeliveryProfile selectCourier(ShipmentRequestedEvent event) {
+        AddressAvro pickup = event.getPickupAddress();
+        if (pickup != null && pickup.getLatitude() != null && pickup.getLongitude() != null) {
+            Set<UUID> rejected = new HashSet<>();
+            for (int round = 0; round < MAX_CANDIDATE_ROUNDS; round++) {
+                List<CourierLocationIndex.CourierPosition> nearest = courierLocationIndex.findNearest(
+                        pickup.getLatitude(), pickup.getLongitude(), nearestCandidates,
+                        Duration.ofSeconds(maxLocationAgeSeconds), rejected);
+                if (nearest.isEmpty()) {
+                    break;
+                }
+                List<UUID> candidateIds = nearest.stream().map(CourierLocationIndex.CourierPosition::courierId).toList();
+                Map<UUID, DeliveryProfile> profiles = profileRepository.findAllById(candidateIds).stream()
+                        .collect(Collectors.toMap(DeliveryProfile::getId, Function.identity()));
+                Set<UUID> busy = new HashSet<>(
+                        assignmentRepository.findCourierIdsWithAssignmentStatusIn(candidateIds, BUSY_STATUSES));
+                for (CourierLocationIndex.CourierPosition position : nearest) {
+                    DeliveryProfile profile = profiles.get(position.courierId());
+                    if (profile == null || !"ACTIVE".equals(profile.getStatus())) {
+                        // Deleted or no longer ACTIVE; stop offering it until it reports a position again
+                        courierLocationIndex.remove(position.courierId());
+                    } else if (!busy.contains(position.courierId())) {
+                        return profile;
+                    }
+                    rejected.add(position.courierId());
+                }
+            }
+            log.debug("No fresh available courier near pickup for orderId {}, falling back.", event.getOrderId());
+        }
+        return profileRepository.findMostRecentlySeenAvailableByStatus("ACTIVE", BUSY_STATUS_NAMES)
+                .orElseThrow(() -> {
+                    log.warn("No available couriers to create assignment for orderId: {}", event.getOrderId());
+                    return new IllegalStateException("No available couriers found.");
+                });
+    }
+
     @Override
     @Transactional
     public void markArrivedAtPickup(UUID assignmentId) {
@@ -193,6 +253,7 @@ public class AssignmentServiceImpl implements AssignmentService {
         assignment.setStatus(DeliveryAssignmentStatus.DELIVERED);
         assignment.setActualDeliveryTime(Instant.now());
         assignmentRepository.save(assignment);
+        courierLocationIndex.untrackAssignment(assignmentId);
 
         Map<String, Object> eventPayload = Map.of(
             "photoUrl", dto.getPhotoUrl(),
@@ -222,6 +283,7 @@ public class AssignmentServiceImpl implements AssignmentService {
         assignment.setStatus(DeliveryAssignmentStatus.FAILED_DELIVERY);
         assignment.setNotes(appendNote(assignment.getNotes(), "Failure: " + reason + ". Details: " + notes));
         assignmentRepository.save(assignment);
+        courierLocationIndex.untrackAssignment(assignmentId);
         recordEvent(assignment, DeliveryEventType.DELIVERY_FAILED,
                     Map.of("reason", reason, "notes", notes),
                     assignment.getCourier() != null ? assignment.getCourier().getId() : null,
@@ -238,6 +300,7 @@ public class AssignmentServiceImpl implements AssignmentService {
         assignment.setStatus(DeliveryAssignmentStatus.CANCELLED);
         assignment.setNotes(appendNote(assignment.getNotes(), "Cancelled: " + reason));
         assignmentRepository.save(assignment);
+        courierLocationIndex.untrackAssignment(assignmentId);
         recordEvent(assignment, DeliveryEventType.ASSIGNMENT_CANCELLED,
                     Map.of("reason", reason),
                     null, // Actor ID might be system or an admin user ID
@@ -0,0 +1,286 @@
+package com.mysillydreams.delivery.service;
+
+import com.mysillydreams.delivery.domain.DeliveryProfile;
+import com.mysillydreams.delivery.repository.DeliveryProfileRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory grid index of courier positions, fed by the GPS update stream.
+ * <p>
+ * The map is split into square cells of {@code delivery.courier-index.cell-size-degrees}. A nearest-courier
+ * query scans rings of cells outwards from the pickup cell and stops as soon as no unscanned cell can hold
+ * a closer courier, so its cost depends on local courier density rather than on the size of the roster.
+ * Positions older than the requested max age are ignored, so couriers that went offline without changing
+ * their profile status are never picked.
+ * <p>
+ * Positions come from courier presence reports and from GPS updates of assignments (see {@link CourierPresenceService}).
+ * GPS updates are keyed by assignment, so the index also caches which courier carries an assignment, and remembers
+ * for a while the assignments it could not resolve so that a stream of updates for them does not hit the database.
+ */
+@Component
+public class CourierLocationIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CourierLocationIndex.class);
+    private static final double EARTH_RADIUS_METERS = 6_371_000d;
+    private static final double METERS_PER_DEGREE_LAT = Math.PI * EARTH_RADIUS_METERS / 180d;
+    private static final int MAX_RINGS = 1000;
+
+    private final DeliveryProfileRepository profileRepository;
+
+    private final Map<UUID, CourierPosition> positions = new ConcurrentHashMap<>();
+    private final Map<Long, Set<UUID>> cells = new ConcurrentHashMap<>();
+    // GPS updates are keyed by assignment; this resolves them to the courier carrying the assignment
+    private final Map<UUID, UUID> courierByAssignment = new ConcurrentHashMap<>();
+    // Assignments that are unknown, unassigned or finished, with the time until which lookups are skipped
+    private final Map<UUID, Instant> unresolvedAssignments = new ConcurrentHashMap<>();
+
+    private final double cellSizeDegrees;
+    private final double maxSearchRadiusMeters;
+    private final Duration unresolvedAssignmentTtl;
+    private final int maxUnresolvedAssignments;
+
+    public CourierLocationIndex(DeliveryProfileRepository profileRepository,
+                                @Value("${delivery.courier-index.cell-size-degrees:0.01}") double cellSizeDegrees,
+                                @Value("${delivery.courier-index.max-search-radius-km:25}") double maxSearchRadiusKm,
+                                @Value("${delivery.courier-index.unresolved-assignment-ttl-seconds:300}") long unresolvedAssignmentTtlSeconds,
+                                @Value("${delivery.courier-index.max-unresolved-assignments:10000}") int maxUnresolvedAssignments) {
+        this.profileRepository = profileRepository;
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.maxSearchRadiusMeters = maxSearchRadiusKm * 1000d;
+        this.unresolvedAssignmentTtl = Duration.ofSeconds(unresolvedAssignmentTtlSeconds);
+        this.maxUnresolvedAssignments = maxUnresolvedAssignments;
+    }
+
+    public record CourierPosition(UUID courierId, double latitude, double longitude, Instant seenAt) {
+    }
+
+    /**
+     * Seeds the index with the last known position of every ACTIVE courier, so assignments made right
+     * after a restart do not have to wait for fresh GPS updates. Stale entries are filtered at query time.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadActiveCouriers() {
+        int loaded = 0;
+        for (DeliveryProfile profile : profileRepository.findByStatus("ACTIVE")) {
+            if (profile.getCurrentLatitude() != null && profile.getCurrentLongitude() != null && profile.getLastSeenAt() != null) {
+                updateLocation(profile.getId(), profile.getCurrentLatitude(), profile.getCurrentLongitude(), profile.getLastSeenAt());
+                loaded++;
+            }
+        }
+        log.info("Courier location index seeded with {} ACTIVE couriers.", loaded);
+    }
+
+    /**
+     * Records a courier position. Updates older than the position already held are ignored,
+     * since GPS events for one courier may arrive out of order across assignments.
+     */
+    public void updateLocation(UUID courierId, double latitude, double longitude, Instant seenAt) {
+        CourierPosition next = new CourierPosition(courierId, latitude, longitude, seenAt);
+        CourierPosition[] replaced = new CourierPosition[1];
+        CourierPosition stored = positions.compute(courierId, (id, current) -> {
+            if (current != null && current.seenAt().isAfter(seenAt)) {
+                return current;
+            }
+            replaced[0] = current;
+            return next;
+        });
+        if (stored != next) {
+            return;
+        }
+        long cell = cellKey(cellX(longitude), cellY(latitude));
+        cells.compute(cell, (key, members) -> {
+            Set<UUID> updated = members != null ? members : ConcurrentHashMap.newKeySet();
+            updated.add(courierId);
+            return updated;
+        });
+        if (replaced[0] != null) {
+            long previousCell = cellKey(cellX(replaced[0].longitude()), cellY(replaced[0].latitude()));
+            if (previousCell != cell) {
+                removeFromCell(previousCell, courierId);
+            }
+        }
+    }
+
+    /**
+     * Resolves the courier carrying an assignment, if the assignment is tracked by this instance.
+     */
+    public Optional<UUID> courierForAssignment(UUID assignmentId) {
+        return Optional.ofNullable(courierByAssignment.get(assignmentId));
+    }
+
+    public void trackAssignment(UUID assignmentId, UUID courierId) {
+        unresolvedAssignments.remove(assignmentId);
+        courierByAssignment.put(assignmentId, courierId);
+    }
+
+    public void untrackAssignment(UUID assignmentId) {
+        courierByAssignment.remove(assignmentId);
+        // The assignment is finished; GPS updates still in flight for it need no lookup
+        markUnresolved(assignmentId);
+    }
+
+    /**
+     * Remembers that an assignment could not be resolved to a courier it is still carrying, so further GPS updates
+     * for it skip the database lookup until {@code delivery.courier-index.unresolved-assignment-ttl-seconds} elapse.
+     * At most {@code delivery.courier-index.max-unresolved-assignments} entries are kept.
+     */
+    public void markUnresolved(UUID assignmentId) {
+        Instant now = Instant.now();
+        if (unresolvedAssignments.size() >= maxUnresolvedAssignments) {
+            unresolvedAssignments.values().removeIf(expiresAt -> !expiresAt.isAfter(now));
+            Iterator<UUID> eldest = unresolvedAssignments.keySet().iterator();
+            while (unresolvedAssignments.size() >= maxUnresolvedAssignments && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        unresolvedAssignments.put(assignmentId, now.plus(unresolvedAssignmentTtl));
+    }
+
+    public boolean isUnresolved(UUID assignmentId) {
+        Instant expiresAt = unresolvedAssignments.get(assignmentId);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt.isAfter(Instant.now())) {
+            return true;
+        }
+        unresolvedAssignments.remove(assignmentId, expiresAt);
+        return false;
+    }
+
+    public void remove(UUID courierId) {
+        CourierPosition removed = positions.remove(courierId);
+        if (removed != null) {
+            removeFromCell(cellKey(cellX(removed.longitude()), cellY(removed.latitude())), courierId);
+        }
+    }
+
+    private void removeFromCell(long cell, UUID courierId) {
+        cells.computeIfPresent(cell, (key, members) -> {
+            members.remove(courierId);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    public Optional<CourierPosition> getPosition(UUID courierId) {
+        return Optional.ofNullable(positions.get(courierId));
+    }
+
+    /**
+     * Finds up to {@code k} couriers closest to the given point whose position is at most {@code maxAge} old,
+     * within {@code delivery.courier-index.max-search-radius-km}.
+     *
+     * @return Courier positions ordered by increasing distance.
+     */
+    public List<CourierPosition> findNearest(double latitude, double longitude, int k, Duration maxAge) {
+        return findNearest(latitude, longitude, k, maxAge, Set.of());
+    }
+
+    /**
+     * Same as {@link #findNearest(double, double, int, Duration)}, skipping the given couriers, so callers can ask
+     * for the next candidates after rejecting busy or unavailable ones.
+     */
+    public List<CourierPosition> findNearest(double latitude, double longitude, int k, Duration maxAge, Set<UUID> excluded) {
+        if (k <= 0 || positions.isEmpty()) {
+            return List.of();
+        }
+        Instant freshAfter = Instant.now().minus(maxAge);
+        int centerX = cellX(longitude);
+        int centerY = cellY(latitude);
+        // Smallest extent of a cell in metres around this latitude (longitude degrees shrink towards the poles)
+        double cellExtentMeters = cellSizeDegrees * METERS_PER_DEGREE_LAT
+                * Math.max(Math.cos(Math.toRadians(Math.min(Math.abs(latitude) + cellSizeDegrees, 90d))), 1e-6);
+        int maxRing = (int) Math.min(Math.ceil(maxSearchRadiusMeters / cellExtentMeters), MAX_RINGS);
+
+        List<Candidate> found = new ArrayList<>();
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (ring == 0) {
+                collect(cellKey(centerX, centerY), latitude, longitude, freshAfter, excluded, found);
+            } else {
+                // Only the perimeter of the ring; interior cells were scanned in earlier rings
+                for (int d = -ring; d <= ring; d++) {
+                    collect(cellKey(centerX + d, centerY - ring), latitude, longitude, freshAfter, excluded, found);
+                    collect(cellKey(centerX + d, centerY + ring), latitude, longitude, freshAfter, excluded, found);
+                }
+                for (int d = -ring + 1; d < ring; d++) {
+                    collect(cellKey(centerX - ring, centerY + d), latitude, longitude, freshAfter, excluded, found);
+                    collect(cellKey(centerX + ring, centerY + d), latitude, longitude, freshAfter, excluded, found);
+                }
+            }
+            // Anything not yet scanned is at least `ring` whole cells away from the query point
+            if (found.size() >= k) {
+                found.sort(Comparator.comparingDouble(Candidate::distanceMeters));
+                if (found.get(k - 1).distanceMeters() <= ring * cellExtentMeters) {
+                    break;
+                }
+            }
+        }
+        found.sort(Comparator.comparingDouble(Candidate::distanceMeters));
+        return found.stream()
+                .filter(c -> c.distanceMeters() <= maxSearchRadiusMeters)
+                .limit(k)
+                .map(Candidate::position)
+                .toList();
+    }
+
+    private void collect(long cell, double latitude, double longitude, Instant freshAfter, Set<UUID> excluded,
+                         List<Candidate> found) {
+        Set<UUID> members = cells.get(cell);
+        if (members == null) {
+            return;
+        }
+        for (UUID courierId : members) {
+            if (excluded.contains(courierId)) {
+                continue;
+            }
+            CourierPosition position = positions.get(courierId);
+            // The position may have moved to another cell since the membership was read; it is counted there instead
+            if (position == null || position.seenAt().isBefore(freshAfter)
+                    || cellKey(cellX(position.longitude()), cellY(position.latitude())) != cell) {
+                continue;
+            }
+            found.add(new Candidate(position, distanceMeters(latitude, longitude, position.latitude(), position.longitude())));
+        }
+    }
+
+    private int cellX(double longitude) {
+        return (int) Math.floor(longitude / cellSizeDegrees);
+    }
+
+    private int cellY(double latitude) {
+        return (int) Math.floor(latitude / cellSizeDegrees);
+    }
+
+    private static long cellKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(a));
+    }
+
+    private record Candidate(CourierPosition position, double distanceMeters) {
+    }
+}
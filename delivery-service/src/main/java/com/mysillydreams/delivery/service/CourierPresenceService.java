@@ -0,0 +1,86 @@
+package com.mysillydreams.delivery.service;
+
+import com.mysillydreams.delivery.repository.DeliveryProfileRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records where couriers are and when they were last seen.
+ * <p>
+ * Every report updates {@link CourierLocationIndex} immediately. The courier profile's position and
+ * {@code last_seen_at} are written at most once per {@code delivery.courier-presence.persist-interval-seconds}
+ * per courier, which keeps the index seed and the assignment fallback query current without a database write
+ * for every GPS fix.
+ * <p>
+ * Report times come from the courier's device, so they are capped at server time plus
+ * {@code delivery.courier-presence.max-clock-skew-seconds}: a far-future time would otherwise pin the position
+ * and make every later, genuine report look stale.
+ */
+@Service
+public class CourierPresenceService {
+
+    private static final Logger log = LoggerFactory.getLogger(CourierPresenceService.class);
+
+    private final CourierLocationIndex courierLocationIndex;
+    private final DeliveryProfileRepository profileRepository;
+    private final Duration persistInterval;
+    private final Duration maxClockSkew;
+
+    // Report time of the last position written to delivery_profiles, per courier
+    private final Map<UUID, Instant> lastPersistedAt = new ConcurrentHashMap<>();
+
+    public CourierPresenceService(CourierLocationIndex courierLocationIndex,
+                                  DeliveryProfileRepository profileRepository,
+                                  @Value("${delivery.courier-presence.persist-interval-seconds:30}") long persistIntervalSeconds,
+                                  @Value("${delivery.courier-presence.max-clock-skew-seconds:5}") long maxClockSkewSeconds) {
+        this.courierLocationIndex = courierLocationIndex;
+        this.profileRepository = profileRepository;
+        this.persistInterval = Duration.ofSeconds(persistIntervalSeconds);
+        this.maxClockSkew = Duration.ofSeconds(maxClockSkewSeconds);
+    }
+
+    public void recordLocation(UUID courierId, double latitude, double longitude, Instant reportedAt) {
+        Instant seenAt = capAtServerTime(courierId, reportedAt);
+        courierLocationIndex.updateLocation(courierId, latitude, longitude, seenAt);
+
+        boolean[] due = new boolean[1];
+        lastPersistedAt.compute(courierId, (id, previous) -> {
+            if (previous != null && seenAt.isBefore(previous.plus(persistInterval))) {
+                return previous;
+            }
+            due[0] = true;
+            return seenAt;
+        });
+        if (due[0]) {
+            // Conditional on last_seen_at, so a late report never overwrites a newer position from another instance
+            int updated = profileRepository.updateLastSeen(courierId, latitude, longitude, seenAt);
+            log.debug("Persisted last seen position for courier {} (rows updated: {}).", courierId, updated);
+        }
+    }
+
+    private Instant capAtServerTime(UUID courierId, Instant reportedAt) {
+        Instant latestAllowed = Instant.now().plus(maxClockSkew);
+        if (reportedAt.isAfter(latestAllowed)) {
+            log.debug("Report time {} of courier {} is in the future; using {}.", reportedAt, courierId, latestAllowed);
+            return latestAllowed;
+        }
+        return reportedAt;
+    }
+
+    /**
+     * Stops offering the courier for new assignments until it reports a position again.
+     */
+    public void markOffline(UUID courierId) {
+        courierLocationIndex.remove(courierId);
+        lastPersistedAt.remove(courierId);
+        log.info("Courier {} went offline.", courierId);
+    }
+}
@@ -1,6 +1,9 @@
 package com.mysillydreams.delivery.service;
 
+import com.mysillydreams.delivery.domain.DeliveryAssignment;
+import com.mysillydreams.delivery.domain.enums.DeliveryAssignmentStatus;
 import com.mysillydreams.delivery.dto.avro.GpsUpdateEvent;
+import com.mysillydreams.delivery.repository.DeliveryAssignmentRepository;
 import com.mysillydreams.delivery.websocket.GpsWebSocketHandler;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -9,12 +12,24 @@ import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
 @Service
 @RequiredArgsConstructor
 public class GpsKafkaConsumerService {
 
     private static final Logger log = LoggerFactory.getLogger(GpsKafkaConsumerService.class);
+    private static final Set<DeliveryAssignmentStatus> TERMINAL_STATUSES = EnumSet.of(
+            DeliveryAssignmentStatus.DELIVERED, DeliveryAssignmentStatus.FAILED_DELIVERY, DeliveryAssignmentStatus.CANCELLED);
+
     private final GpsWebSocketHandler gpsWebSocketHandler;
+    private final CourierLocationIndex courierLocationIndex;
+    private final CourierPresenceService courierPresenceService;
+    private final DeliveryAssignmentRepository assignmentRepository;
 
     @KafkaListener(
         topics = "${kafka.topics.deliveryGpsUpdates:delivery.gps.updates}",
@@ -24,6 +39,11 @@ public class GpsKafkaConsumerService {
     public void consumeGpsUpdate(@Payload GpsUpdateEvent event) {
         log.debug("Consumed GpsUpdateEvent from Kafka: assignmentId={}, lat={}, lon={}, ts={}",
                   event.getAssignmentId(), event.getLatitude(), event.getLongitude(), event.getTimestamp());
+        try {
+            updateCourierLocation(event);
+        } catch (Exception e) {
+            log.warn("Error updating courier location index for assignmentId {}: {}", event.getAssignmentId(), e.getMessage());
+        }
         try {
             gpsWebSocketHandler.sendGpsUpdateToSubscribers(event);
         } catch (Exception e) {
@@ -33,4 +53,31 @@ public class GpsKafkaConsumerService {
             // Since this is a non-critical, high-frequency stream, logging might be sufficient.
         }
     }
+
+    private void updateCourierLocation(GpsUpdateEvent event) {
+        UUID assignmentId = UUID.fromString(event.getAssignmentId());
+        courierLocationIndex.courierForAssignment(assignmentId)
+                .or(() -> resolveCourier(assignmentId))
+                .ifPresent(courierId -> courierPresenceService.recordLocation(courierId,
+                        event.getLatitude(), event.getLongitude(), Instant.ofEpochMilli(event.getTimestamp())));
+    }
+
+    /**
+     * Resolves an assignment created before this instance started (or on another instance) to its courier once.
+     * Unknown, unassigned and finished assignments are remembered by the index so their updates skip the lookup.
+     */
+    private Optional<UUID> resolveCourier(UUID assignmentId) {
+        if (courierLocationIndex.isUnresolved(assignmentId)) {
+            return Optional.empty();
+        }
+        Optional<DeliveryAssignment> assignment = assignmentRepository.findById(assignmentId)
+                .filter(a -> a.getCourier() != null && !TERMINAL_STATUSES.contains(a.getStatus()));
+        if (assignment.isEmpty()) {
+            courierLocationIndex.markUnresolved(assignmentId);
+            return Optional.empty();
+        }
+        UUID courierId = assignment.get().getCourier().getId();
+        courierLocationIndex.trackAssignment(assignmentId, courierId);
+        return Optional.of(courierId);
+    }
 }
@@ -0,0 +1,189 @@
+package com.mysillydreams.delivery.websocket;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans GPS updates out to the WebSocket sessions tracking an assignment.
+ * <p>
+ * An update is serialized once by the caller and handed to every subscriber's {@link TrackingSession}, which
+ * keeps only the latest unsent position per assignment and sends on a small sender pool through a
+ * {@link org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator}. Publishing never blocks on
+ * a client, and a stalled client holds at most one sender thread; a client whose write has been stuck longer than
+ * {@code send-time-limit-ms}, or whose unsent backlog exceeds {@code send-buffer-size-limit} bytes, is
+ * disconnected. Each session also records its own subscriptions, so disconnect cleanup only touches the
+ * assignments it was tracking.
+ */
+@Component
+public class GpsFanOutEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(GpsFanOutEngine.class);
+
+    private final Map<UUID, Set<TrackingSession>> sessionsByAssignment = new ConcurrentHashMap<>();
+    private final Map<String, TrackingSession> sessionsById = new ConcurrentHashMap<>();
+
+    private final Executor senderExecutor;
+    private final ExecutorService ownedExecutor; // null when the executor is supplied by the caller
+    private final int sendTimeLimitMs;
+    private final int sendBufferSizeLimit;
+    private final int maxSubscriptionsPerSession;
+    private final int maxControlMessages;
+
+    @Autowired
+    public GpsFanOutEngine(@Value("${delivery.tracking.websocket.sender-threads:8}") int senderThreads,
+                           @Value("${delivery.tracking.websocket.send-time-limit-ms:5000}") int sendTimeLimitMs,
+                           @Value("${delivery.tracking.websocket.send-buffer-size-limit:65536}") int sendBufferSizeLimit,
+                           @Value("${delivery.tracking.websocket.max-subscriptions-per-session:20}") int maxSubscriptionsPerSession,
+                           @Value("${delivery.tracking.websocket.max-pending-replies:16}") int maxControlMessages) {
+        this(newSenderPool(senderThreads), sendTimeLimitMs, sendBufferSizeLimit, maxSubscriptionsPerSession, maxControlMessages);
+    }
+
+    GpsFanOutEngine(Executor senderExecutor, int sendTimeLimitMs, int sendBufferSizeLimit,
+                    int maxSubscriptionsPerSession, int maxControlMessages) {
+        this.senderExecutor = senderExecutor;
+        this.ownedExecutor = senderExecutor instanceof ExecutorService executorService ? executorService : null;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.sendBufferSizeLimit = sendBufferSizeLimit;
+        this.maxSubscriptionsPerSession = maxSubscriptionsPerSession;
+        this.maxControlMessages = maxControlMessages;
+    }
+
+    private static ExecutorService newSenderPool(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "gps-ws-sender-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void register(WebSocketSession session) {
+        sessionsById.computeIfAbsent(session.getId(),
+                id -> new TrackingSession(session, senderExecutor, maxControlMessages, sendTimeLimitMs, sendBufferSizeLimit));
+    }
+
+    /**
+     * Subscribes the session to an assignment's updates.
+     *
+     * @return false if the session already tracks the maximum number of assignments.
+     */
+    public boolean subscribe(WebSocketSession session, UUID assignmentId) {
+        register(session);
+        TrackingSession trackingSession = sessionsById.get(session.getId());
+        if (trackingSession == null) {
+            return false; // closed concurrently
+        }
+        Set<UUID> assignments = trackingSession.getAssignments();
+        if (!assignments.contains(assignmentId) && assignments.size() >= maxSubscriptionsPerSession) {
+            log.warn("Session {} reached the limit of {} tracked assignments; not subscribing to {}.",
+                    session.getId(), maxSubscriptionsPerSession, assignmentId);
+            return false;
+        }
+        assignments.add(assignmentId);
+        sessionsByAssignment.computeIfAbsent(assignmentId, id -> ConcurrentHashMap.newKeySet()).add(trackingSession);
+        log.info("Session {} subscribed to GPS updates for assignmentId: {}", session.getId(), assignmentId);
+        return true;
+    }
+
+    public void unsubscribe(WebSocketSession session, UUID assignmentId) {
+        TrackingSession trackingSession = sessionsById.get(session.getId());
+        if (trackingSession != null && trackingSession.getAssignments().remove(assignmentId)) {
+            removeSubscriber(assignmentId, trackingSession);
+            log.info("Session {} unsubscribed from assignmentId: {}", session.getId(), assignmentId);
+        }
+    }
+
+    /**
+     * Drops the session and all its subscriptions. Cost is proportional to the session's own subscriptions.
+     */
+    public void unregister(WebSocketSession session) {
+        TrackingSession trackingSession = sessionsById.remove(session.getId());
+        if (trackingSession == null) {
+            return;
+        }
+        for (UUID assignmentId : trackingSession.getAssignments()) {
+            removeSubscriber(assignmentId, trackingSession);
+        }
+        trackingSession.getAssignments().clear();
+        trackingSession.clearPending();
+    }
+
+    /**
+     * Queues a command reply for the session, in order with its other replies.
+     */
+    public void reply(WebSocketSession session, String json) {
+        register(session);
+        TrackingSession trackingSession = sessionsById.get(session.getId());
+        if (trackingSession != null && !trackingSession.offerControl(new TextMessage(json))) {
+            log.warn("Session {} is not reading its replies; dropping reply.", session.getId());
+        }
+    }
+
+    /**
+     * Hands an already serialized update to every subscriber of the assignment without blocking.
+     *
+     * @return the number of sessions the update was queued for.
+     */
+    public int publish(UUID assignmentId, String json) {
+        Set<TrackingSession> subscribers = sessionsByAssignment.get(assignmentId);
+        if (subscribers == null || subscribers.isEmpty()) {
+            return 0;
+        }
+        TextMessage message = new TextMessage(json);
+        int queued = 0;
+        for (TrackingSession subscriber : subscribers) {
+            if (!subscriber.getSession().isOpen()) {
+                unregister(subscriber.getSession());
+            } else if (subscriber.currentSendMillis() > sendTimeLimitMs) {
+                // Backstop for a client that receives nothing else that would trip the decorator's limit
+                closeSlowSession(subscriber);
+            } else {
+                subscriber.offerPosition(assignmentId, message);
+                queued++;
+            }
+        }
+        return queued;
+    }
+
+    public int subscriberCount(UUID assignmentId) {
+        Set<TrackingSession> subscribers = sessionsByAssignment.get(assignmentId);
+        return subscribers == null ? 0 : subscribers.size();
+    }
+
+    private void removeSubscriber(UUID assignmentId, TrackingSession trackingSession) {
+        sessionsByAssignment.computeIfPresent(assignmentId, (id, subscribers) -> {
+            subscribers.remove(trackingSession);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    private void closeSlowSession(TrackingSession trackingSession) {
+        log.warn("Session {} has been blocked on a send for more than {} ms; closing it.",
+                trackingSession.getId(), sendTimeLimitMs);
+        unregister(trackingSession.getSession());
+        trackingSession.close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+        }
+    }
+}
@@ -10,23 +10,20 @@ import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import java.io.IOException;
-import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class GpsWebSocketHandler extends TextWebSocketHandler {
 
     private static final Logger log = LoggerFactory.getLogger(GpsWebSocketHandler.class);
 
-    // assignmentId -> List of sessions subscribed to this assignment
-    private final Map<UUID, List<WebSocketSession>> sessionsByAssignment = new ConcurrentHashMap<>();
+    // Subscriptions and all outbound traffic (updates and command replies) go through the fan-out engine
+    private final GpsFanOutEngine fanOutEngine;
     private final ObjectMapper objectMapper; // For converting GpsUpdateEvent to JSON string for WebSocket
 
-    public GpsWebSocketHandler(ObjectMapper objectMapper) {
+    public GpsWebSocketHandler(GpsFanOutEngine fanOutEngine, ObjectMapper objectMapper) {
+        this.fanOutEngine = fanOutEngine;
         this.objectMapper = objectMapper;
     }
 
@@ -37,9 +34,10 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
         // Example URI: /delivery-updates/gps?assignmentId=some-uuid
         // Or client sends a JSON message: {"type": "SUBSCRIBE", "assignmentId": "some-uuid"}
         // For simplicity, let's parse assignmentId from URI query param if present.
+        fanOutEngine.register(session);
         UUID assignmentId = extractAssignmentId(session);
         if (assignmentId != null) {
-            addSession(assignmentId, session);
+            fanOutEngine.subscribe(session, assignmentId);
         } else {
             log.warn("No assignmentId provided for session {}. Closing connection.", session.getId());
             // session.sendMessage(new TextMessage("{\"error\":\"assignmentId query parameter is required.\"}"));
@@ -51,7 +49,7 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
         String payload = message.getPayload();
-        log.info("Received WebSocket message: {} from session: {}", payload, session.getId());
+        log.debug("Received WebSocket message: {} from session: {}", payload, session.getId());
 
         try {
             // Expecting a JSON message like: {"type": "SUBSCRIBE", "assignmentId": "uuid-string"}
@@ -61,33 +59,34 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
             String assignmentIdStr = command.get("assignmentId");
 
             if (assignmentIdStr == null) {
-                session.sendMessage(new TextMessage("{\"error\":\"assignmentId is required in command.\"}"));
+                fanOutEngine.reply(session, "{\"error\":\"assignmentId is required in command.\"}");
                 return;
             }
             UUID assignmentId = UUID.fromString(assignmentIdStr);
 
             if ("SUBSCRIBE".equalsIgnoreCase(type)) {
-                addSession(assignmentId, session);
-                session.sendMessage(new TextMessage("{\"status\":\"SUBSCRIBED\",\"assignmentId\":\"" + assignmentIdStr + "\"}"));
+                if (fanOutEngine.subscribe(session, assignmentId)) {
+                    fanOutEngine.reply(session, "{\"status\":\"SUBSCRIBED\",\"assignmentId\":\"" + assignmentId + "\"}");
+                } else {
+                    fanOutEngine.reply(session, "{\"error\":\"Too many tracked assignments.\",\"assignmentId\":\"" + assignmentId + "\"}");
+                }
             } else if ("UNSUBSCRIBE".equalsIgnoreCase(type)) {
-                removeSession(assignmentId, session);
-                session.sendMessage(new TextMessage("{\"status\":\"UNSUBSCRIBED\",\"assignmentId\":\"" + assignmentIdStr + "\"}"));
+                fanOutEngine.unsubscribe(session, assignmentId);
+                fanOutEngine.reply(session, "{\"status\":\"UNSUBSCRIBED\",\"assignmentId\":\"" + assignmentId + "\"}");
             } else {
-                session.sendMessage(new TextMessage("{\"error\":\"Unknown command type: " + type + "\"}"));
+                fanOutEngine.reply(session, objectMapper.writeValueAsString(Map.of("error", "Unknown command type: " + type)));
             }
         } catch (Exception e) {
             log.error("Error processing WebSocket message: {} from session: {}", payload, session.getId(), e);
-            session.sendMessage(new TextMessage("{\"error\":\"Invalid message format.\"}"));
+            fanOutEngine.reply(session, "{\"error\":\"Invalid message format.\"}");
         }
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         log.info("WebSocket connection closed: Session ID - {}, Status - {}", session.getId(), status);
-        // Remove session from all subscriptions
-        sessionsByAssignment.forEach((assignmentId, sessionList) -> sessionList.remove(session));
-        // Clean up empty lists (optional, can be done periodically)
-        sessionsByAssignment.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+        // Remove session from its own subscriptions only (reverse index in the fan-out engine)
+        fanOutEngine.unregister(session);
     }
 
     @Override
@@ -96,59 +95,25 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
         afterConnectionClosed(session, CloseStatus.SERVER_ERROR.withReason(exception.getMessage()));
     }
 
-    // Method to be called by a Kafka listener/service when a new GPS update is available
+    // Method to be called by a Kafka listener/service when a new GPS update is available.
+    // Serializes the update once and queues it for every subscriber; never blocks on a client.
     public void sendGpsUpdateToSubscribers(GpsUpdateEvent gpsUpdate) {
         if (gpsUpdate == null || gpsUpdate.getAssignmentId() == null) {
             log.warn("Received null GPS update or update with null assignmentId.");
             return;
         }
         UUID assignmentId = UUID.fromString(gpsUpdate.getAssignmentId()); // Assuming assignmentId in Avro is String
-        List<WebSocketSession> subscribedSessions = sessionsByAssignment.get(assignmentId);
-
-        if (subscribedSessions != null && !subscribedSessions.isEmpty()) {
-            try {
-                // Convert Avro GpsUpdateEvent to JSON string to send over WebSocket
-                String gpsUpdateJson = objectMapper.writeValueAsString(gpsUpdate);
-                TextMessage message = new TextMessage(gpsUpdateJson);
-                log.debug("Sending GPS update for assignment {}: {} to {} sessions", assignmentId, gpsUpdateJson, subscribedSessions.size());
-
-                // Iterate over a copy in case of concurrent modifications, or use CopyOnWriteArrayList
-                for (WebSocketSession session : new CopyOnWriteArrayList<>(subscribedSessions)) { // Iterate on a copy
-                    if (session.isOpen()) {
-                        try {
-                            session.sendMessage(message);
-                        } catch (IOException e) {
-                            log.error("IOException sending GPS update to session {}: {}", session.getId(), e.getMessage());
-                            // Optionally remove session if send fails repeatedly
-                            removeSession(assignmentId, session);
-                        }
-                    } else {
-                        // Session closed, remove it
-                        removeSession(assignmentId, session);
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Error serializing or sending GPS update for assignment {}: {}", assignmentId, e.getMessage(), e);
-            }
-        } else {
+        if (fanOutEngine.subscriberCount(assignmentId) == 0) {
             log.trace("No active WebSocket subscribers for GPS updates on assignmentId: {}", assignmentId);
+            return;
         }
-    }
-
-    private void addSession(UUID assignmentId, WebSocketSession session) {
-        sessionsByAssignment.computeIfAbsent(assignmentId, k -> new CopyOnWriteArrayList<>()).add(session);
-        log.info("Session {} subscribed to GPS updates for assignmentId: {}", session.getId(), assignmentId);
-    }
-
-    private void removeSession(UUID assignmentId, WebSocketSession session) {
-        List<WebSocketSession> sessionList = sessionsByAssignment.get(assignmentId);
-        if (sessionList != null) {
-            if(sessionList.remove(session)) {
-                 log.info("Session {} unsubscribed from assignmentId: {}", session.getId(), assignmentId);
-            }
-            if (sessionList.isEmpty()) {
-                sessionsByAssignment.remove(assignmentId);
-            }
+        try {
+            // Convert Avro GpsUpdateEvent to JSON string to send over WebSocket
+            String gpsUpdateJson = objectMapper.writeValueAsString(gpsUpdate);
+            int queued = fanOutEngine.publish(assignmentId, gpsUpdateJson);
+            log.debug("Queued GPS update for assignment {} to {} sessions", assignmentId, queued);
+        } catch (Exception e) {
+            log.error("Error serializing GPS update for assignment {}: {}", assignmentId, e.getMessage(), e);
         }
     }
 
@@ -0,0 +1,149 @@
+package com.mysillydreams.delivery.websocket;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Outbound side of one tracking WebSocket session.
+ * <p>
+ * Positions are coalesced per assignment (only the latest unsent one is kept), and command replies are held in a
+ * small bounded queue, so memory per session is bounded by its subscriptions no matter how slow the client is.
+ * Drain tasks on the sender executor hand these messages to a {@link ConcurrentWebSocketSessionDecorator}: only
+ * one thread at a time writes to the client, and a drain that finds a write already in progress only adds to the
+ * decorator's buffer and returns, so a stalled client holds at most one sender thread. Once that write has been
+ * blocked longer than the send time limit, or the buffer grows past its limit, the next drain gets a
+ * {@link SessionLimitExceededException} and the session is closed.
+ */
+class TrackingSession {
+
+    private final ConcurrentWebSocketSessionDecorator session;
+    private final Executor senderExecutor;
+    private final int maxControlMessages;
+
+    // Reverse index: assignments this session is subscribed to, for O(subscriptions) cleanup on close
+    private final Set<UUID> assignments = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, TextMessage> latestPositions = new ConcurrentHashMap<>();
+    private final Queue<TextMessage> controlMessages = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger controlMessageCount = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    TrackingSession(WebSocketSession session, Executor senderExecutor, int maxControlMessages,
+                    int sendTimeLimitMs, int sendBufferSizeLimit) {
+        this.session = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, sendBufferSizeLimit,
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE);
+        this.senderExecutor = senderExecutor;
+        this.maxControlMessages = maxControlMessages;
+    }
+
+    WebSocketSession getSession() {
+        return session;
+    }
+
+    String getId() {
+        return session.getId();
+    }
+
+    Set<UUID> getAssignments() {
+        return assignments;
+    }
+
+    /**
+     * Queues a position update, replacing any unsent one for the same assignment, and schedules a drain.
+     */
+    void offerPosition(UUID assignmentId, TextMessage message) {
+        latestPositions.put(assignmentId, message);
+        scheduleDrain();
+    }
+
+    /**
+     * Queues a command reply. Returns false, dropping the reply, if the client is not reading its replies.
+     */
+    boolean offerControl(TextMessage message) {
+        if (controlMessageCount.incrementAndGet() > maxControlMessages) {
+            controlMessageCount.decrementAndGet();
+            return false;
+        }
+        controlMessages.add(message);
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * Milliseconds the current write to the client has been blocked for, or 0 if none is in progress.
+     */
+    long currentSendMillis() {
+        return session.getTimeSinceSendStarted();
+    }
+
+    void clearPending() {
+        latestPositions.clear();
+        controlMessages.clear();
+        controlMessageCount.set(0);
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            senderExecutor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        // Cleared first: a message queued from now on gets its own drain, even while this one is blocked writing
+        drainScheduled.set(false);
+        try {
+            TextMessage message;
+            while ((message = nextMessage()) != null) {
+                if (!session.isOpen()) {
+                    clearPending();
+                    return;
+                }
+                session.sendMessage(message); // Only buffered if another drain is writing to the client
+            }
+        } catch (SessionLimitExceededException e) {
+            clearPending();
+            close(e.getStatus());
+        } catch (IOException | RuntimeException e) {
+            // The transport reports the failure through handleTransportError/afterConnectionClosed
+            clearPending();
+        }
+    }
+
+    void close(CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (IOException e) {
+            // Already closing; the handler's afterConnectionClosed cleans up
+        }
+    }
+
+    private TextMessage nextMessage() {
+        TextMessage control = controlMessages.poll();
+        if (control != null) {
+            controlMessageCount.decrementAndGet();
+            return control;
+        }
+        Iterator<UUID> pending = latestPositions.keySet().iterator();
+        while (pending.hasNext()) {
+            TextMessage position = latestPositions.remove(pending.next());
+            if (position != null) {
+                return position;
+            }
+        }
+        return null;
+    }
+}
@@ -32,6 +32,7 @@ import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -48,6 +49,8 @@ class AssignmentServiceTest {
     private OutboxEventService outboxEventService; // Real OutboxEventService (not Local stub)
     @Mock
     private KafkaTemplate<String, Object> kafkaTemplate; // For direct GPS publishing
+    @Mock
+    private CourierLocationIndex courierLocationIndex;
 
     @Spy // Use Spy for ObjectMapper if we need to test its actual conversion
     private ObjectMapper objectMapper = new ObjectMapper(); // Real ObjectMapper for conversions
@@ -83,6 +86,8 @@ class AssignmentServiceTest {
         ReflectionTestUtils.setField(assignmentService, "objectMapper", objectMapper);
         // Inject topic names (if they were @Value annotated in service and not passed via constructor)
         ReflectionTestUtils.setField(assignmentService, "gpsUpdatesTopic", gpsUpdatesTopic);
+        ReflectionTestUtils.setField(assignmentService, "nearestCandidates", 5);
+        ReflectionTestUtils.setField(assignmentService, "maxLocationAgeSeconds", 120L);
         // The other topic names are used as eventType strings directly when calling outbox.
 
         AddressAvro pickupAddress = AddressAvro.newBuilder().setStreet("123 Vendor St").setCity("VendorCity").setStateOrProvince("VS").setPostalCode("V1V1V1").setCountryCode("VC").build();
@@ -103,8 +108,8 @@ class AssignmentServiceTest {
 
     @Test
     void createAssignment_whenCourierAvailable_createsAssignmentAndPublishesEvent() {
-        // Given
-        when(profileRepository.findByStatus("ACTIVE")).thenReturn(List.of(testCourier));
+        // Given: pickup has no coordinates, so the most recently seen ACTIVE courier is used
+        when(profileRepository.findMostRecentlySeenAvailableByStatus(eq("ACTIVE"), anyCollection())).thenReturn(Optional.of(testCourier));
 
         DeliveryAssignment savedAssignmentMock = new DeliveryAssignment();
         // Populate savedAssignmentMock with expected fields after service logic
@@ -157,12 +162,75 @@ class AssignmentServiceTest {
         assertEquals(resultAssignmentId.toString(), event.getAssignmentId());
         assertEquals(orderId.toString(), event.getOrderId());
         assertEquals(courierId.toString(), event.getCourierId());
+        verify(courierLocationIndex).trackAssignment(resultAssignmentId, courierId);
+        verifyNoMoreInteractions(courierLocationIndex);
+    }
+
+    @Test
+    void createAssignment_whenPickupHasCoordinates_assignsNearestActiveCourier() {
+        // Given
+        shipmentRequestedEvent.getPickupAddress().setLatitude(12.9716);
+        shipmentRequestedEvent.getPickupAddress().setLongitude(77.5946);
+        DeliveryProfile inactiveCourier = new DeliveryProfile();
+        inactiveCourier.setId(UUID.randomUUID());
+        inactiveCourier.setStatus("INACTIVE");
+        when(courierLocationIndex.findNearest(eq(12.9716), eq(77.5946), eq(5), any(), any())).thenReturn(List.of(
+                new CourierLocationIndex.CourierPosition(inactiveCourier.getId(), 12.9717, 77.5946, Instant.now()),
+                new CourierLocationIndex.CourierPosition(courierId, 12.9800, 77.6000, Instant.now())));
+        when(profileRepository.findAllById(List.of(inactiveCourier.getId(), courierId)))
+                .thenReturn(List.of(testCourier, inactiveCourier));
+        when(assignmentRepository.findCourierIdsWithAssignmentStatusIn(eq(List.of(inactiveCourier.getId(), courierId)), any()))
+                .thenReturn(List.of());
+        when(assignmentRepository.save(any(DeliveryAssignment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        UUID resultAssignmentId = assignmentService.createAssignment(shipmentRequestedEvent);
+
+        // Then
+        ArgumentCaptor<DeliveryAssignment> assignmentCaptor = ArgumentCaptor.forClass(DeliveryAssignment.class);
+        verify(assignmentRepository).save(assignmentCaptor.capture());
+        assertEquals(courierId, assignmentCaptor.getValue().getCourier().getId());
+        verify(courierLocationIndex).remove(inactiveCourier.getId());
+        verify(courierLocationIndex).trackAssignment(resultAssignmentId, courierId);
+        verify(profileRepository, never()).findMostRecentlySeenAvailableByStatus(any(), any());
+    }
+
+    @Test
+    void createAssignment_skipsCouriersBusyWithAnotherAssignment() {
+        // Given: the nearest courier is carrying an assignment, the next batch from the index holds a free one
+        shipmentRequestedEvent.getPickupAddress().setLatitude(12.9716);
+        shipmentRequestedEvent.getPickupAddress().setLongitude(77.5946);
+        DeliveryProfile busyCourier = new DeliveryProfile();
+        busyCourier.setId(UUID.randomUUID());
+        busyCourier.setStatus("ACTIVE");
+        ReflectionTestUtils.setField(assignmentService, "nearestCandidates", 1);
+        when(courierLocationIndex.findNearest(eq(12.9716), eq(77.5946), eq(1), any(), any()))
+                .thenReturn(List.of(new CourierLocationIndex.CourierPosition(busyCourier.getId(), 12.9717, 77.5946, Instant.now())))
+                .thenReturn(List.of(new CourierLocationIndex.CourierPosition(courierId, 12.9800, 77.6000, Instant.now())));
+        when(profileRepository.findAllById(List.of(busyCourier.getId()))).thenReturn(List.of(busyCourier));
+        when(profileRepository.findAllById(List.of(courierId))).thenReturn(List.of(testCourier));
+        when(assignmentRepository.findCourierIdsWithAssignmentStatusIn(eq(List.of(busyCourier.getId())), any()))
+                .thenReturn(List.of(busyCourier.getId()));
+        when(assignmentRepository.findCourierIdsWithAssignmentStatusIn(eq(List.of(courierId)), any()))
+                .thenReturn(List.of());
+        when(assignmentRepository.save(any(DeliveryAssignment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        assignmentService.createAssignment(shipmentRequestedEvent);
+
+        // Then
+        ArgumentCaptor<DeliveryAssignment> assignmentCaptor = ArgumentCaptor.forClass(DeliveryAssignment.class);
+        verify(assignmentRepository).save(assignmentCaptor.capture());
+        assertEquals(courierId, assignmentCaptor.getValue().getCourier().getId());
+        verify(courierLocationIndex, never()).remove(any());
+        verify(courierLocationIndex, times(2)).findNearest(eq(12.9716), eq(77.5946), eq(1), any(), any());
+        verify(profileRepository, never()).findMostRecentlySeenAvailableByStatus(any(), any());
     }
 
     @Test
     void createAssignment_whenNoCourierAvailable_throwsIllegalStateException() {
         // Given
-        when(profileRepository.findByStatus("ACTIVE")).thenReturn(Collections.emptyList());
+        when(profileRepository.findMostRecentlySeenAvailableByStatus(eq("ACTIVE"), anyCollection())).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(IllegalStateException.class, () -> {
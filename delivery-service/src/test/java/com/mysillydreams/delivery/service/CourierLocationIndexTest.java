@@ -0,0 +1,166 @@
+package com.mysillydreams.delivery.service;
+
+import com.mysillydreams.delivery.domain.DeliveryProfile;
+import com.mysillydreams.delivery.repository.DeliveryProfileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CourierLocationIndexTest {
+
+    @Mock
+    private DeliveryProfileRepository profileRepository;
+
+    private CourierLocationIndex index;
+
+    private final double pickupLat = 12.9716;
+    private final double pickupLon = 77.5946;
+
+    @BeforeEach
+    void setUp() {
+        index = new CourierLocationIndex(profileRepository, 0.01, 25, 300, 2);
+    }
+
+    @Test
+    void findNearest_returnsCouriersOrderedByDistance() {
+        UUID far = UUID.randomUUID();
+        UUID near = UUID.randomUUID();
+        UUID middle = UUID.randomUUID();
+        index.updateLocation(far, pickupLat + 0.05, pickupLon, Instant.now());
+        index.updateLocation(near, pickupLat + 0.001, pickupLon, Instant.now());
+        index.updateLocation(middle, pickupLat, pickupLon + 0.02, Instant.now());
+
+        List<CourierLocationIndex.CourierPosition> result = index.findNearest(pickupLat, pickupLon, 2, Duration.ofMinutes(2));
+
+        assertEquals(List.of(near, middle), result.stream().map(CourierLocationIndex.CourierPosition::courierId).toList());
+    }
+
+    @Test
+    void findNearest_prefersCloserCourierInFartherCell() {
+        // Query point sits at the east edge of its cell; the courier just across the boundary is closer
+        // than one at the far (west) side of the query's own cell
+        double lat = 12.9750;
+        double lon = 77.5999;
+        UUID sameCell = UUID.randomUUID();
+        UUID neighbourCell = UUID.randomUUID();
+        index.updateLocation(sameCell, lat, 77.5901, Instant.now());
+        index.updateLocation(neighbourCell, lat, 77.6002, Instant.now());
+
+        List<CourierLocationIndex.CourierPosition> result = index.findNearest(lat, lon, 1, Duration.ofMinutes(2));
+
+        assertEquals(neighbourCell, result.get(0).courierId());
+    }
+
+    @Test
+    void findNearest_ignoresStalePositionsAndCouriersOutsideRadius() {
+        UUID stale = UUID.randomUUID();
+        UUID distant = UUID.randomUUID();
+        index.updateLocation(stale, pickupLat, pickupLon, Instant.now().minusSeconds(600));
+        index.updateLocation(distant, pickupLat + 1.0, pickupLon, Instant.now()); // ~111 km away
+
+        assertTrue(index.findNearest(pickupLat, pickupLon, 3, Duration.ofMinutes(2)).isEmpty());
+    }
+
+    @Test
+    void updateLocation_movesCourierBetweenCellsAndIgnoresOutOfOrderUpdates() {
+        UUID courier = UUID.randomUUID();
+        Instant now = Instant.now();
+        index.updateLocation(courier, pickupLat + 0.2, pickupLon, now.minusSeconds(10));
+        index.updateLocation(courier, pickupLat, pickupLon, now);
+        index.updateLocation(courier, pickupLat + 0.2, pickupLon, now.minusSeconds(5)); // arrives late, ignored
+
+        List<CourierLocationIndex.CourierPosition> result = index.findNearest(pickupLat, pickupLon, 5, Duration.ofMinutes(2));
+
+        assertEquals(1, result.size());
+        assertEquals(pickupLat, result.get(0).latitude());
+        assertTrue(index.findNearest(pickupLat + 0.2, pickupLon, 5, Duration.ofMinutes(2)).stream()
+                .allMatch(p -> p.latitude() == pickupLat));
+    }
+
+    @Test
+    void findNearest_skipsExcludedCouriers() {
+        UUID busy = UUID.randomUUID();
+        UUID free = UUID.randomUUID();
+        index.updateLocation(busy, pickupLat, pickupLon, Instant.now());
+        index.updateLocation(free, pickupLat + 0.03, pickupLon, Instant.now());
+
+        List<CourierLocationIndex.CourierPosition> result =
+                index.findNearest(pickupLat, pickupLon, 1, Duration.ofMinutes(2), Set.of(busy));
+
+        assertEquals(List.of(free), result.stream().map(CourierLocationIndex.CourierPosition::courierId).toList());
+    }
+
+    @Test
+    void courierForAssignment_resolvesTrackedAssignmentsOnly() {
+        UUID courier = UUID.randomUUID();
+        UUID assignment = UUID.randomUUID();
+
+        assertTrue(index.courierForAssignment(assignment).isEmpty());
+
+        index.trackAssignment(assignment, courier);
+        assertEquals(Optional.of(courier), index.courierForAssignment(assignment));
+
+        index.untrackAssignment(assignment);
+        assertTrue(index.courierForAssignment(assignment).isEmpty());
+    }
+
+    @Test
+    void markUnresolved_isClearedByTrackingAndBoundedInSize() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+
+        index.markUnresolved(first);
+        assertTrue(index.isUnresolved(first));
+        index.trackAssignment(first, UUID.randomUUID());
+        assertFalse(index.isUnresolved(first));
+
+        index.markUnresolved(first);
+        index.markUnresolved(second);
+        index.markUnresolved(third); // max of 2 entries, one older entry is evicted
+
+        assertTrue(index.isUnresolved(third));
+        assertEquals(1, Stream.of(first, second).filter(index::isUnresolved).count());
+    }
+
+    @Test
+    void isUnresolved_expiresAfterTtl() {
+        CourierLocationIndex noTtl = new CourierLocationIndex(profileRepository, 0.01, 25, 0, 10);
+        UUID assignment = UUID.randomUUID();
+
+        noTtl.markUnresolved(assignment);
+
+        assertFalse(noTtl.isUnresolved(assignment));
+    }
+
+    @Test
+    void loadActiveCouriers_seedsCouriersWithKnownPosition() {
+        DeliveryProfile located = new DeliveryProfile();
+        located.setId(UUID.randomUUID());
+        located.setCurrentLatitude(pickupLat);
+        located.setCurrentLongitude(pickupLon);
+        located.setLastSeenAt(Instant.now());
+        DeliveryProfile neverSeen = new DeliveryProfile();
+        neverSeen.setId(UUID.randomUUID());
+        when(profileRepository.findByStatus("ACTIVE")).thenReturn(List.of(located, neverSeen));
+
+        index.loadActiveCouriers();
+
+        assertTrue(index.getPosition(located.getId()).isPresent());
+        assertFalse(index.getPosition(neverSeen.getId()).isPresent());
+    }
+}
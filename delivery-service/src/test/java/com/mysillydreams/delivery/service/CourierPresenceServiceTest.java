@@ -0,0 +1,75 @@
+package com.mysillydreams.delivery.service;
+
+import com.mysillydreams.delivery.repository.DeliveryProfileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CourierPresenceServiceTest {
+
+    @Mock
+    private CourierLocationIndex courierLocationIndex;
+    @Mock
+    private DeliveryProfileRepository profileRepository;
+
+    private CourierPresenceService presenceService;
+
+    private final UUID courierId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        presenceService = new CourierPresenceService(courierLocationIndex, profileRepository, 30, 5);
+    }
+
+    @Test
+    void recordLocation_updatesIndexEveryTimeAndPersistsAtMostOncePerInterval() {
+        Instant first = Instant.now().minusSeconds(60);
+
+        presenceService.recordLocation(courierId, 12.97, 77.59, first);
+        presenceService.recordLocation(courierId, 12.98, 77.59, first.plusSeconds(10));
+        presenceService.recordLocation(courierId, 12.99, 77.59, first.plusSeconds(30));
+
+        verify(courierLocationIndex, times(3)).updateLocation(eq(courierId), anyDouble(), anyDouble(), any());
+        verify(profileRepository).updateLastSeen(courierId, 12.97, 77.59, first);
+        verify(profileRepository).updateLastSeen(courierId, 12.99, 77.59, first.plusSeconds(30));
+        verifyNoMoreInteractions(profileRepository);
+    }
+
+    @Test
+    void markOffline_removesCourierFromIndexAndPersistsNextReport() {
+        Instant now = Instant.now();
+        presenceService.recordLocation(courierId, 12.97, 77.59, now);
+
+        presenceService.markOffline(courierId);
+        presenceService.recordLocation(courierId, 12.97, 77.59, now.plusSeconds(1));
+
+        verify(courierLocationIndex).remove(courierId);
+        verify(profileRepository, times(2)).updateLastSeen(eq(courierId), anyDouble(), anyDouble(), any());
+    }
+
+    @Test
+    void recordLocation_capsFutureReportTimeSoLaterReportsAreNotStale() {
+        Instant farFuture = Instant.now().plus(Duration.ofDays(1));
+
+        presenceService.recordLocation(courierId, 12.97, 77.59, farFuture);
+
+        ArgumentCaptor<Instant> seenAt = ArgumentCaptor.forClass(Instant.class);
+        verify(courierLocationIndex).updateLocation(eq(courierId), eq(12.97), eq(77.59), seenAt.capture());
+        assertTrue(seenAt.getValue().isBefore(Instant.now().plusSeconds(6)), "future report time was not capped");
+        verify(profileRepository).updateLastSeen(courierId, 12.97, 77.59, seenAt.getValue());
+    }
+}
@@ -0,0 +1,205 @@
+package com.mysillydreams.delivery.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class GpsFanOutEngineTest {
+
+    @Mock
+    private WebSocketSession session;
+    @Mock
+    private WebSocketSession otherSession;
+
+    // Drain tasks are queued here and run explicitly, so tests control when sends happen
+    private final List<Runnable> pendingTasks = new ArrayList<>();
+    private GpsFanOutEngine engine;
+
+    private final UUID assignmentId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        engine = new GpsFanOutEngine(pendingTasks::add, 5000, 65536, 2, 4);
+        when(session.getId()).thenReturn("s1");
+        when(session.isOpen()).thenReturn(true);
+        when(otherSession.getId()).thenReturn("s2");
+        when(otherSession.isOpen()).thenReturn(true);
+    }
+
+    private void runPendingTasks() {
+        while (!pendingTasks.isEmpty()) {
+            pendingTasks.remove(0).run();
+        }
+    }
+
+    @Test
+    void publish_sharesOneMessageAcrossSubscribers() throws Exception {
+        engine.subscribe(session, assignmentId);
+        engine.subscribe(otherSession, assignmentId);
+
+        assertEquals(2, engine.publish(assignmentId, "{\"lat\":1}"));
+        runPendingTasks();
+
+        ArgumentCaptor<TextMessage> first = ArgumentCaptor.forClass(TextMessage.class);
+        ArgumentCaptor<TextMessage> second = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session).sendMessage(first.capture());
+        verify(otherSession).sendMessage(second.capture());
+        assertSame(first.getValue(), second.getValue());
+        assertEquals("{\"lat\":1}", first.getValue().getPayload());
+    }
+
+    @Test
+    void publish_keepsOnlyLatestUnsentPositionPerAssignment() throws Exception {
+        engine.subscribe(session, assignmentId);
+
+        engine.publish(assignmentId, "{\"lat\":1}");
+        engine.publish(assignmentId, "{\"lat\":2}");
+        engine.publish(assignmentId, "{\"lat\":3}");
+        assertEquals(1, pendingTasks.size(), "one drain task per session");
+        runPendingTasks();
+
+        ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, times(1)).sendMessage(sent.capture());
+        assertEquals("{\"lat\":3}", sent.getValue().getPayload());
+    }
+
+    @Test
+    void publish_coalescesPerAssignmentNotAcrossAssignments() throws Exception {
+        UUID otherAssignment = UUID.randomUUID();
+        engine.subscribe(session, assignmentId);
+        engine.subscribe(session, otherAssignment);
+
+        engine.publish(assignmentId, "{\"a\":1}");
+        engine.publish(otherAssignment, "{\"b\":1}");
+        runPendingTasks();
+
+        verify(session, times(2)).sendMessage(any(TextMessage.class));
+    }
+
+    @Test
+    void reply_isNotCoalescedAndSentBeforePositions() throws Exception {
+        engine.subscribe(session, assignmentId);
+        engine.publish(assignmentId, "{\"lat\":1}");
+        engine.reply(session, "{\"status\":\"A\"}");
+        engine.reply(session, "{\"status\":\"B\"}");
+        runPendingTasks();
+
+        ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, times(3)).sendMessage(sent.capture());
+        assertEquals(List.of("{\"status\":\"A\"}", "{\"status\":\"B\"}", "{\"lat\":1}"),
+                sent.getAllValues().stream().map(TextMessage::getPayload).toList());
+    }
+
+    @Test
+    void subscribe_rejectsBeyondPerSessionLimit() {
+        assertTrue(engine.subscribe(session, UUID.randomUUID()));
+        assertTrue(engine.subscribe(session, UUID.randomUUID()));
+        assertFalse(engine.subscribe(session, assignmentId));
+        assertEquals(0, engine.subscriberCount(assignmentId));
+    }
+
+    @Test
+    void unregister_removesAllSubscriptionsOfTheSession() throws Exception {
+        UUID otherAssignment = UUID.randomUUID();
+        engine.subscribe(session, assignmentId);
+        engine.subscribe(session, otherAssignment);
+        engine.subscribe(otherSession, assignmentId);
+
+        engine.unregister(session);
+
+        assertEquals(1, engine.subscriberCount(assignmentId));
+        assertEquals(0, engine.subscriberCount(otherAssignment));
+        assertEquals(1, engine.publish(assignmentId, "{\"lat\":1}"));
+        runPendingTasks();
+        verify(session, never()).sendMessage(any());
+    }
+
+    @Test
+    void publish_dropsClosedSessions() throws Exception {
+        engine.subscribe(session, assignmentId);
+        when(session.isOpen()).thenReturn(false);
+
+        assertEquals(0, engine.publish(assignmentId, "{\"lat\":1}"));
+        assertEquals(0, engine.subscriberCount(assignmentId));
+        verify(session, never()).sendMessage(any());
+    }
+
+    @Test
+    void publish_closesSessionStuckOnASend() throws Exception {
+        GpsFanOutEngine threadedEngine = new GpsFanOutEngine(task -> new Thread(task).start(), 1, 65536, 2, 4);
+        CountDownLatch sendStarted = new CountDownLatch(1);
+        CountDownLatch releaseSend = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sendStarted.countDown();
+            releaseSend.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(session).sendMessage(any());
+        threadedEngine.subscribe(session, assignmentId);
+        threadedEngine.subscribe(otherSession, assignmentId);
+
+        threadedEngine.publish(assignmentId, "{\"lat\":1}");
+        assertTrue(sendStarted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(20);
+
+        try {
+            threadedEngine.publish(assignmentId, "{\"lat\":2}");
+            verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+            verify(otherSession, never()).close(any());
+            assertEquals(1, threadedEngine.subscriberCount(assignmentId));
+        } finally {
+            releaseSend.countDown();
+        }
+    }
+
+    @Test
+    void drain_whileAnotherSendIsBlocked_onlyBuffersAndClosesSessionOverBufferLimit() throws Exception {
+        CountDownLatch drainsFinished = new CountDownLatch(1);
+        GpsFanOutEngine threadedEngine = new GpsFanOutEngine(task -> new Thread(() -> {
+            task.run();
+            drainsFinished.countDown();
+        }).start(), 5000, 16, 2, 4);
+        CountDownLatch sendStarted = new CountDownLatch(1);
+        CountDownLatch releaseSend = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sendStarted.countDown();
+            releaseSend.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(session).sendMessage(any());
+        UUID otherAssignment = UUID.randomUUID();
+        threadedEngine.subscribe(session, assignmentId);
+        threadedEngine.subscribe(session, otherAssignment);
+
+        threadedEngine.publish(assignmentId, "{\"lat\":1}");
+        assertTrue(sendStarted.await(5, TimeUnit.SECONDS));
+
+        try {
+            threadedEngine.publish(otherAssignment, "{\"lat\":12.9716,\"lng\":77.5946}"); // Over the 16 byte buffer
+            // The second drain returns while the first is still blocked on the client
+            assertTrue(drainsFinished.await(5, TimeUnit.SECONDS));
+            verify(session, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+            verify(session, times(1)).sendMessage(any());
+        } finally {
+            releaseSend.countDown();
+        }
+    }
+}
@@ -13,6 +13,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.listener.ContainerProperties;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -29,6 +30,9 @@ public class KafkaConfig {
     @Value("${kafka.consumer.group-id}")
     private String consumerGroupId;
 
+    @Value("${inventory.reservation.batch.max-records:500}")
+    private int reservationBatchMaxRecords;
+
     // Consumer Factory for ReservationRequestedEvent
     @Bean
     public ConsumerFactory<String, ReservationRequestedEvent> reservationRequestedConsumerFactory() {
@@ -39,6 +43,9 @@ public class KafkaConfig {
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, KafkaAvroDeserializer.class);
         props.put(KafkaAvroDeserializerConfig.SCHEMA_REGISTRY_URL_CONFIG, schemaRegistryUrl);
         props.put(KafkaAvroDeserializerConfig.SPECIFIC_AVRO_READER_CONFIG, true);
+        // Reservations are consumed in batches (one DB transaction per poll) and acknowledged manually
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, reservationBatchMaxRecords);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
         // Add other consumer properties as needed from application.yml (e.g., auto.offset.reset)
         // props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         return new DefaultKafkaConsumerFactory<>(props);
@@ -49,6 +56,8 @@ public class KafkaConfig {
         ConcurrentKafkaListenerContainerFactory<String, ReservationRequestedEvent> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(reservationRequestedConsumerFactory());
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
         // Add other factory configurations if needed (e.g., error handlers, filtering)
         return factory;
     }
@@ -61,8 +70,12 @@ public class KafkaConfig {
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, KafkaAvroSerializer.class);
         props.put(KafkaAvroSerializerConfig.SCHEMA_REGISTRY_URL_CONFIG, schemaRegistryUrl);
-        // Add other producer properties as needed from application.yml (e.g., acks, retries)
-        // props.put(ProducerConfig.ACKS_CONFIG, "all");
+        // The outbox relay pipelines a whole batch of sends before waiting for acks:
+        // idempotence keeps per-partition ordering intact across retries, and a short linger
+        // lets the producer coalesce the batch into few requests.
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 5);
         return new DefaultKafkaProducerFactory<>(props);
     }
 
@@ -37,6 +37,9 @@ public class OutboxEvent {
     @Column(nullable = false)
     private boolean processed = false;
 
+    @Column(name = "claimed_until")
+    private Instant claimedUntil; // Lease held by the relay instance publishing this event
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
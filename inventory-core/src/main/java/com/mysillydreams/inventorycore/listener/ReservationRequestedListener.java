@@ -6,10 +6,13 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 import org.springframework.kafka.support.Acknowledgment;
-import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Component
 @RequiredArgsConstructor
 @Slf4j
@@ -18,35 +21,48 @@ public class ReservationRequestedListener {
     private final ReservationService reservationService; // Corrected from 'svc' to match typical naming
 
     // The listener container factory name "reservationRequestedKafkaListenerContainerFactory"
-    // should match the bean name in KafkaConfig.java
+    // should match the bean name in KafkaConfig.java (batch mode, manual ack)
     @KafkaListener(
             topics = "${kafka.topics.reservationRequested}",
             containerFactory = "reservationRequestedKafkaListenerContainerFactory"
             // groupId is configured in ConsumerFactory, so not needed here explicitly
             // unless overriding.
     )
-    public void onReservationRequested(@Payload ReservationRequestedEvent event,
-                                       ConsumerRecord<String, ReservationRequestedEvent> record,
+    public void onReservationRequested(List<ConsumerRecord<String, ReservationRequestedEvent>> records,
                                        Acknowledgment acknowledgment) {
-        log.info("Received ReservationRequestedEvent: Order ID = {}, Key = {}, Partition = {}, Offset = {}",
-                event.getOrderId(), record.key(), record.partition(), record.offset());
+        if (records.isEmpty()) {
+            return;
+        }
+        log.info("Received batch of {} ReservationRequestedEvent(s), first: Partition = {}, Offset = {}",
+                records.size(), records.get(0).partition(), records.get(0).offset());
+
+        List<ReservationRequestedEvent> events = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, ReservationRequestedEvent> record : records) {
+            log.debug("Batching ReservationRequestedEvent: Order ID = {}, Key = {}, Partition = {}, Offset = {}",
+                    record.value().getOrderId(), record.key(), record.partition(), record.offset());
+            events.add(record.value());
+        }
+
         try {
-            reservationService.handleReservationRequest(event);
-            acknowledgment.acknowledge(); // Acknowledge message after successful processing
-            log.info("Successfully processed ReservationRequestedEvent for order ID: {}", event.getOrderId());
+            // Records arrive in offset order per partition; the service keeps that order per order outcome
+            reservationService.handleReservationRequests(events);
         } catch (Exception e) {
-            // This catch block is for unexpected errors during service call or acknowledgment.
-            // Business logic errors (like INSUFFICIENT_STOCK) are handled within ReservationServiceImpl
-            // and result in a "failed" event being published, not an exception here.
-            // If an exception IS thrown from handleReservationRequest (e.g., DB down, critical bug),
-            // it will prevent acknowledgment if it happens before ack.acknowledge().
-            // Spring Kafka's default ErrorHandler might retry.
-            // Consider configuring a DeadLetterPublishingRecoverer for non-transient errors.
-            log.error("Error processing ReservationRequestedEvent for order ID {}: {}", event.getOrderId(), e.getMessage(), e);
-            // Not acknowledging, so message might be redelivered based on Kafka error handler config.
-            // Or, if you have specific error handling (e.g., send to DLT immediately for certain errors):
-            // acknowledgment.nack(0); // Example for non-redelivery, depending on broker config
-            // For now, rely on default error handling (likely retry, then log/stop or DLT if configured).
+            // The batch transaction rolled back as a whole. Fall back to one transaction per record so a
+            // single poison request cannot block the rest of the batch.
+            log.error("Batch reservation of {} request(s) failed, retrying one by one: {}", events.size(), e.getMessage(), e);
+            for (int i = 0; i < records.size(); i++) {
+                try {
+                    reservationService.handleReservationRequest(events.get(i));
+                } catch (Exception recordException) {
+                    // Records before i are committed; the error handler commits their offsets and redelivers from i
+                    log.error("Error processing ReservationRequestedEvent for order ID {}: {}",
+                            events.get(i).getOrderId(), recordException.getMessage(), recordException);
+                    throw new BatchListenerFailedException("Reservation request failed for order " + events.get(i).getOrderId(),
+                            recordException, records.get(i));
+                }
+            }
         }
+        acknowledgment.acknowledge(); // Acknowledge the whole batch after its outcomes are committed
+        log.info("Successfully processed batch of {} ReservationRequestedEvent(s)", records.size());
     }
 }
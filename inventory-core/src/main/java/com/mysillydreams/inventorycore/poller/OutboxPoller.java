@@ -2,114 +2,268 @@ package com.mysillydreams.inventorycore.poller;
 
 import com.mysillydreams.inventorycore.domain.OutboxEvent;
 import com.mysillydreams.inventorycore.repository.OutboxRepository;
-import com.mysillydreams.inventorycore.service.OutboxEventService; // For transactional method
-import lombok.RequiredArgsConstructor;
+import com.mysillydreams.inventorycore.service.OutboxEventSavedEvent;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Relays outbox events to Kafka in batches.
+ * <p>
+ * Each cycle claims up to {@code batch-size} rows with {@code FOR UPDATE SKIP LOCKED} and leases them
+ * for {@code claim-lease} ms in a short transaction; claims are serialized across replicas, and an event
+ * is not claimed while an earlier event of its aggregate is leased elsewhere. It then sends them outside any transaction, waits
+ * for the acks, and in a second short transaction marks every acknowledged row processed and releases
+ * the lease on the rest, which are retried on a later cycle. Events sharing a key are sent in order, and
+ * the first failure for a key holds back that key's later events. A relay that dies mid-cycle leaves its
+ * rows leased until the lease expires.
+ * <p>
+ * The relay runs on its own thread. It is woken as soon as a transaction that wrote an outbox row
+ * commits, and otherwise polls every {@code inventory.outbox.poll.delay} ms to pick up rows written
+ * by other replicas or left over after a failed send. A cycle that relays nothing although it claimed
+ * events (Kafka or the database is down) is followed by a back-off that starts at {@code failure-backoff} ms
+ * and doubles up to {@code max-failure-backoff} ms, instead of re-claiming the same rows in a tight loop.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
-public class OutboxPoller {
+public class OutboxPoller implements SmartLifecycle {
 
     private final OutboxRepository outboxRepository;
     private final KafkaTemplate<String, Object> kafkaTemplate; // Using the avroKafkaTemplate bean
+    private final TransactionTemplate transactionTemplate;
 
-    // Note: The guide's OutboxPoller uses ev.getEventType().contains("succeeded") ? succTopic : failTopic;
-    // This implies eventType in OutboxEvent might be a generic type like "InventoryReservationSucceeded"
-    // and not the actual topic name.
-    // However, ReservationServiceImpl currently stores the topic name itself in eventType.
-    // If eventType IS the topic name, then the logic `String topic = ev.getEventType()` is simpler.
-    // The current ReservationServiceImpl sets eventType to reservationSucceededTopic / reservationFailedTopic.
-    // So, ev.getEventType() will directly give the topic.
-
-    // Let's assume eventType in OutboxEvent IS the topic name as per current ReservationServiceImpl.
-    // If it were a logical type, we'd need these @Value fields:
-    // @Value("${kafka.topics.reservationSucceeded}") private String reservationSucceededTopic;
-    // @Value("${kafka.topics.reservationFailed}") private String reservationFailedTopic;
-
-
-    // We need a transactional method to update the OutboxEvent, preferably in its own service
-    // or by self-injecting this poller to call a @Transactional method.
-    // For simplicity, let's add a helper method here and call it.
-    // A better approach would be a dedicated method in OutboxEventService,
-    // but a private @Transactional method called locally works if component-scan is correctly configured
-    // or if called via self-injection. The current setup with REQUIRES_NEW on the public method
-    // markEventAsProcessed should work when called from the CompletableFuture callback.
-
-
-    @Scheduled(fixedDelayString = "${inventory.outbox.poll.delay:5000}", initialDelayString = "${inventory.outbox.poll.initialDelay:10000}")
-    @Transactional(propagation = Propagation.REQUIRES_NEW) // Process each batch in a new transaction
-    public void pollOutbox() {
-        Pageable pageable = PageRequest.of(0, 50); // Process up to 50 events per poll
-        // Using findByProcessedFalseOrderByCreatedAtAsc from OutboxRepository
-        var eventsToProcess = outboxRepository.findByProcessedFalseOrderByCreatedAtAsc(pageable);
-
-        if (eventsToProcess.isEmpty()) {
-            return;
+    private final Semaphore wakeUp = new Semaphore(0);
+    private volatile boolean running = false;
+    private Thread relayThread;
+
+    @Value("${inventory.outbox.poll.delay:5000}")
+    private long maxIdleMs;
+
+    @Value("${inventory.outbox.poll.initialDelay:10000}")
+    private long initialDelayMs;
+
+    @Value("${inventory.outbox.poll.batch-size:500}")
+    private int batchSize;
+
+    @Value("${inventory.outbox.poll.ack-timeout:10000}")
+    private long ackTimeoutMs;
+
+    @Value("${inventory.outbox.poll.claim-lease:30000}")
+    private long claimLeaseMs;
+
+    @Value("${inventory.outbox.poll.failure-backoff:1000}")
+    private long failureBackoffMs;
+
+    @Value("${inventory.outbox.poll.max-failure-backoff:30000}")
+    private long maxFailureBackoffMs;
+
+    private int consecutiveFailedCycles = 0; // Only touched by the relay thread
+
+    public OutboxPoller(OutboxRepository outboxRepository,
+                        KafkaTemplate<String, Object> kafkaTemplate,
+                        PlatformTransactionManager transactionManager) {
+        this.outboxRepository = outboxRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Wakes the relay once the transaction that wrote an outbox row has committed,
+     * so the row is visible to the claim query.
+     */
+    @TransactionalEventListener
+    public void onOutboxEventSaved(OutboxEventSavedEvent event) {
+        if (wakeUp.availablePermits() == 0) {
+            wakeUp.release();
         }
-        log.info("Polling outbox: Found {} unprocessed events.", eventsToProcess.size());
-
-        for (OutboxEvent event : eventsToProcess) {
-            String topic = event.getEventType(); // Directly use eventType as topic
-            Object payload = event.getPayload(); // This is Map<String, Object>
-            String key = event.getAggregateId(); // SKU
-
-            log.debug("Attempting to send event ID {} to topic {}: key={}, payload={}", event.getId(), topic, key, payload);
-
-            try {
-                // kafkaTemplate.send returns CompletableFuture
-                CompletableFuture<SendResult<String, Object>> future = kafkaTemplate.send(topic, key, payload);
-
-                future.whenComplete((result, ex) -> {
-                    if (ex == null) {
-                        log.info("Successfully sent event ID {} to topic {} partition {} offset {}.",
-                                event.getId(), topic, result.getRecordMetadata().partition(), result.getRecordMetadata().offset());
-                        // Mark as processed in a new transaction to ensure atomicity for this specific event's update
-                        markEventAsProcessed(event.getId());
-                    } else {
-                        // Kafka send failed
-                        log.error("Failed to send event ID {} to topic {}. Error: {}", event.getId(), topic, ex.getMessage(), ex);
-                        // Error handling:
-                        // - Increment retry count (if OutboxEvent has such a field)
-                        // - Log for monitoring
-                        // - Potentially move to a dead letter table after N retries
-                        // - For now, it will be picked up by the next poll if not marked processed.
-                        // This could lead to repeated processing attempts if Kafka is down.
-                        // Consider adding a transient error check or max attempts.
-                    }
-                });
-            } catch (Exception e) {
-                // This catches immediate exceptions from the .send() call itself (e.g., serialization issues before async send)
-                log.error("Immediate exception while trying to send event ID {} to topic {}. Error: {}", event.getId(), topic, e.getMessage(), e);
-                // Event will not be marked processed and will be retried.
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        relayThread = new Thread(this::relayLoop, "outbox-relay");
+        relayThread.setDaemon(true);
+        relayThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (relayThread != null) {
+            relayThread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void relayLoop() {
+        try {
+            Thread.sleep(initialDelayMs);
+            while (running) {
+                int relayed = relayBatch();
+                if (consecutiveFailedCycles > 0) {
+                    // Nothing could be relayed: wait it out rather than re-claim on every outbox commit
+                    Thread.sleep(failureBackoffMs(consecutiveFailedCycles));
+                } else if (relayed < batchSize) {
+                    // Backlog drained: sleep until new rows are committed or the fallback poll interval elapses
+                    wakeUp.tryAcquire(maxIdleMs, TimeUnit.MILLISECONDS);
+                    wakeUp.drainPermits();
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        log.info("Outbox relay stopped.");
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void markEventAsProcessed(UUID eventId) {
+    /**
+     * Back-off after the given number of consecutive failed cycles: {@code failure-backoff} ms, doubled per
+     * further failure and capped at {@code max-failure-backoff} ms.
+     */
+    long failureBackoffMs(int failedCycles) {
+        int doublings = Math.min(failedCycles - 1, 20);
+        return Math.min(maxFailureBackoffMs, failureBackoffMs << doublings);
+    }
+
+    /**
+     * Claims, publishes and marks one batch of outbox events.
+     *
+     * @return The number of events relayed, i.e. acknowledged by Kafka and marked processed.
+     */
+    int relayBatch() {
         try {
-            OutboxEvent event = outboxRepository.findById(eventId)
-                .orElseThrow(() -> new IllegalStateException("OutboxEvent not found by id " + eventId + " for processing update. This should not happen."));
-            event.setProcessed(true);
-            outboxRepository.save(event);
-            log.debug("Marked event ID {} as processed.", eventId);
+            List<OutboxEvent> batch = claimBatch();
+            if (batch.isEmpty()) {
+                consecutiveFailedCycles = 0;
+                return 0;
+            }
+            log.debug("Relaying {} outbox events.", batch.size());
+
+            List<CompletableFuture<SendResult<String, Object>>> acks = publish(batch);
+
+            List<UUID> acknowledged = new ArrayList<>(batch.size());
+            List<UUID> unacknowledged = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                CompletableFuture<SendResult<String, Object>> ack = acks.get(i);
+                if (ack.isDone() && !ack.isCompletedExceptionally()) {
+                    acknowledged.add(batch.get(i).getId());
+                } else {
+                    unacknowledged.add(batch.get(i).getId());
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!acknowledged.isEmpty()) {
+                    outboxRepository.markProcessed(acknowledged);
+                }
+                if (!unacknowledged.isEmpty()) {
+                    outboxRepository.releaseClaims(unacknowledged);
+                }
+            });
+            if (!unacknowledged.isEmpty()) {
+                log.warn("Relayed {}/{} outbox events; the rest will be retried.", acknowledged.size(), batch.size());
+            } else {
+                log.info("Relayed {} outbox events.", acknowledged.size());
+            }
+            consecutiveFailedCycles = acknowledged.isEmpty() ? consecutiveFailedCycles + 1 : 0;
+            return acknowledged.size();
         } catch (Exception e) {
-            log.error("Failed to mark event ID {} as processed. Error: {}", eventId, e.getMessage(), e);
-            // This is problematic. If the event was sent but marking failed, it might be resent.
-            // This requires careful consideration for idempotency or more robust 2PC-like mechanisms if possible.
-            // For now, log and it might be retried by the poller (undesirable if already sent).
+            log.error("Outbox relay cycle failed. Error: {}", e.getMessage(), e);
+            consecutiveFailedCycles++;
+            return 0;
+        }
+    }
+
+    /**
+     * Claims a batch by leasing it in its own short transaction, so no row locks are held while publishing.
+     */
+    private List<OutboxEvent> claimBatch() {
+        List<OutboxEvent> batch = transactionTemplate.execute(status -> {
+            outboxRepository.lockClaiming();
+            Instant now = Instant.now();
+            List<OutboxEvent> claimed = outboxRepository.claimUnprocessedBatch(batchSize, now);
+            if (!claimed.isEmpty()) {
+                outboxRepository.lease(claimed.stream().map(OutboxEvent::getId).toList(), now.plusMillis(claimLeaseMs));
+            }
+            return claimed;
+        });
+        return batch == null ? List.of() : batch;
+    }
+
+    /**
+     * Sends the batch and waits for the acks. Events for different keys are pipelined; events for the
+     * same key are sent one after another, each only once the previous one was acknowledged, so a failure
+     * stops that key's remaining events instead of letting a later event overtake it.
+     *
+     * @return One ack per event, aligned with the batch; events left unsent complete exceptionally or not at all.
+     */
+    private List<CompletableFuture<SendResult<String, Object>>> publish(List<OutboxEvent> batch) {
+        AtomicBoolean expired = new AtomicBoolean(false);
+        Map<String, CompletableFuture<SendResult<String, Object>>> lastAckByKey = new HashMap<>();
+        List<CompletableFuture<SendResult<String, Object>>> acks = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            // eventType is the topic name, aggregateId (order ID) is the key
+            CompletableFuture<SendResult<String, Object>> previous = lastAckByKey.get(event.getAggregateId());
+            CompletableFuture<SendResult<String, Object>> ack = previous == null
+                    ? send(event)
+                    : previous.thenCompose(ignored -> expired.get()
+                            ? CompletableFuture.failedFuture(new TimeoutException("Relay cycle timed out"))
+                            : send(event));
+            lastAckByKey.put(event.getAggregateId(), ack);
+            acks.add(ack);
+        }
+        awaitAcks(acks);
+        expired.set(true);
+        return acks;
+    }
+
+    private CompletableFuture<SendResult<String, Object>> send(OutboxEvent event) {
+        try {
+            return kafkaTemplate.send(event.getEventType(), event.getAggregateId(), event.getPayload())
+                    .whenComplete((result, ex) -> {
+                        if (ex != null) {
+                            log.error("Failed to send event ID {} to topic {}. Error: {}",
+                                    event.getId(), event.getEventType(), ex.getMessage());
+                        }
+                    });
+        } catch (Exception e) {
+            // Immediate failures from send() itself (e.g., serialization issues before the async send)
+            log.error("Immediate exception while trying to send event ID {} to topic {}. Error: {}",
+                    event.getId(), event.getEventType(), e.getMessage(), e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void awaitAcks(List<CompletableFuture<SendResult<String, Object>>> acks) {
+        try {
+            CompletableFuture.allOf(acks.toArray(new CompletableFuture[0])).get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // At least one send failed; the per-event outcome is checked by the caller
+        } catch (TimeoutException e) {
+            log.warn("Timed out after {} ms waiting for Kafka acks; unacknowledged events will be retried.", ackTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 }
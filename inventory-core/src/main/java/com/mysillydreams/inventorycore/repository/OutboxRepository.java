@@ -1,10 +1,14 @@
 package com.mysillydreams.inventorycore.repository;
 
 import com.mysillydreams.inventorycore.domain.OutboxEvent;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -12,24 +16,62 @@ import java.util.UUID;
 public interface OutboxRepository extends JpaRepository<OutboxEvent, UUID> {
 
     /**
-     * Finds a list of OutboxEvent entities that have not yet been processed,
-     * ordered by their creation timestamp in ascending order.
-     * This ensures that events are typically processed in the order they were created.
+     * Serializes claiming across relay instances until the calling transaction ends. Each claim then sees
+     * the leases committed by the previous one, which {@link #claimUnprocessedBatch} relies on to keep an
+     * aggregate's events in order. Only the short claim transaction is serialized, not publishing.
+     */
+    @Query(value = "SELECT count(*) FROM (SELECT pg_advisory_xact_lock(hashtext('inventory-core.outbox-claim'))) AS claim_lock",
+            nativeQuery = true)
+    long lockClaiming();
+
+    /**
+     * Selects up to {@code limit} unprocessed, unleased events, oldest first, and locks them for the
+     * current transaction so they can be leased with {@link #lease}. An event is not claimable while an
+     * earlier unprocessed event of the same aggregate is leased to a relay (possibly another replica), so
+     * an aggregate's events are never published out of order; they are claimed once that event is
+     * processed, or released for retry. Must run after {@link #lockClaiming} in the same transaction.
+     * Served by the partial indexes on (created_at) and (aggregate_id, created_at) WHERE processed = false.
+     *
+     * @param limit The maximum number of events to claim.
+     * @param now   Rows whose lease expired before this instant are claimable again.
+     * @return The claimed events, locked until the calling transaction ends.
+     */
+    @Query(value = "SELECT * FROM outbox_events o " +
+            "WHERE o.processed = false " +
+            "AND (o.claimed_until IS NULL OR o.claimed_until < :now) " +
+            "AND NOT EXISTS (SELECT 1 FROM outbox_events earlier " +
+            "    WHERE earlier.aggregate_id = o.aggregate_id " +
+            "    AND earlier.processed = false " +
+            "    AND earlier.created_at < o.created_at " +
+            "    AND earlier.claimed_until >= :now) " +
+            "ORDER BY o.created_at ASC " +
+            "LIMIT :limit " +
+            "FOR UPDATE OF o SKIP LOCKED",
+            nativeQuery = true)
+    List<OutboxEvent> claimUnprocessedBatch(@Param("limit") int limit, @Param("now") Instant now);
+
+    /**
+     * Leases the given events to the calling relay until {@code until}, so they stay claimed once the
+     * claiming transaction commits and its row locks are released.
+     */
+    @Modifying
+    @Query("UPDATE OutboxEvent o SET o.claimedUntil = :until WHERE o.id IN :ids")
+    int lease(@Param("ids") Collection<UUID> ids, @Param("until") Instant until);
+
+    /**
+     * Releases the lease on events that were not published, so the next relay cycle retries them.
+     */
+    @Modifying
+    @Query("UPDATE OutboxEvent o SET o.claimedUntil = null WHERE o.id IN :ids AND o.processed = false")
+    int releaseClaims(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Marks all given events as processed in a single statement.
      *
-     * @param pageable  The pagination information (e.g., page number, size).
-     * @return A list of unprocessed OutboxEvent entities.
+     * @param ids The IDs of the events whose publication was acknowledged by Kafka.
+     * @return The number of rows updated.
      */
-    List<OutboxEvent> findByProcessedFalseOrderByCreatedAtAsc(Pageable pageable);
-
-    // The guide's OutboxPoller uses repo.findByProcessedFalse(PageRequest.of(0,50)).
-    // If that exact method signature is required without explicit ordering in the name,
-    // and if the default sort by the underlying database or JPA provider is not reliable,
-    // an @Query annotation might be needed or rely on the poller to sort if necessary.
-    // However, findByProcessedFalseOrderByCreatedAtAsc is more robust for this pattern.
-    // The poller can call this method.
-
-    // If strictly adhering to the poller's example repo.findByProcessedFalse(PageRequest.of(0,50)):
-    // List<OutboxEvent> findByProcessedFalse(Pageable pageable);
-    // And ensure data is inserted in a way that default retrieval order is acceptable, or handle in poller.
-    // For robustness, OrderByCreatedAtAsc is preferred.
+    @Modifying
+    @Query("UPDATE OutboxEvent o SET o.processed = true, o.claimedUntil = null WHERE o.id IN :ids")
+    int markProcessed(@Param("ids") Collection<UUID> ids);
 }
@@ -2,10 +2,80 @@ package com.mysillydreams.inventorycore.repository;
 
 import com.mysillydreams.inventorycore.domain.StockLevel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface StockLevelRepository extends JpaRepository<StockLevel, String> {
     // JpaRepository provides common methods like findById, save, findAll, etc.
-    // Custom query methods can be added here if needed.
+
+    /**
+     * Reserves every requested SKU of an order in a single statement, or none of them.
+     * Rows are locked in SKU order (so concurrent multi-SKU orders cannot deadlock each other),
+     * and the update is applied only if every SKU exists and has enough available stock.
+     * The version column is bumped so that any JPA-managed writer still detects the change.
+     *
+     * @param skus          The SKUs to reserve, distinct and sorted ascending.
+     * @param quantities    The quantity to reserve for each SKU, positionally aligned with {@code skus}.
+     * @param expectedCount The number of distinct SKUs requested.
+     * @return The number of stock rows updated: {@code expectedCount} on success, 0 otherwise.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "WITH requested AS (" +
+            "  SELECT r.sku, r.quantity" +
+            "  FROM unnest(CAST(:skus AS varchar[]), CAST(:quantities AS int[])) AS r(sku, quantity)" +
+            "), locked AS (" +
+            "  SELECT s.sku, s.available, r.quantity" +
+            "  FROM stock_levels s JOIN requested r ON r.sku = s.sku" +
+            "  ORDER BY s.sku" +
+            "  FOR UPDATE OF s" +
+            ") " +
+            "UPDATE stock_levels s " +
+            "SET available = s.available - l.quantity, " +
+            "    reserved = s.reserved + l.quantity, " +
+            "    version = s.version + 1, " +
+            "    updated_at = now() " +
+            "FROM locked l " +
+            "WHERE s.sku = l.sku " +
+            "  AND (SELECT count(*) FROM locked WHERE available >= quantity) = :expectedCount",
+            nativeQuery = true)
+    int reserveAllOrNothing(@Param("skus") String[] skus,
+                            @Param("quantities") Integer[] quantities,
+                            @Param("expectedCount") long expectedCount);
+
+    /**
+     * Locks the stock rows of the given SKUs for the rest of the transaction, in SKU order
+     * (the same order as {@link #reserveAllOrNothing}, so the two cannot deadlock each other).
+     * Unknown SKUs are simply absent from the result.
+     *
+     * @param skus The SKUs to lock, distinct.
+     * @return The locked stock rows, ordered by SKU.
+     */
+    @Query(value = "SELECT * FROM stock_levels WHERE sku = ANY(CAST(:skus AS varchar[])) ORDER BY sku FOR UPDATE",
+            nativeQuery = true)
+    List<StockLevel> lockAllBySku(@Param("skus") String[] skus);
+
+    /**
+     * Moves the given quantities from available to reserved, one row update per SKU.
+     * The caller must hold the row locks (see {@link #lockAllBySku}) and have checked availability.
+     *
+     * @param skus       The SKUs to reserve, distinct.
+     * @param quantities The total quantity to reserve for each SKU, positionally aligned with {@code skus}.
+     * @return The number of stock rows updated.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE stock_levels s " +
+            "SET available = s.available - r.quantity, " +
+            "    reserved = s.reserved + r.quantity, " +
+            "    version = s.version + 1, " +
+            "    updated_at = now() " +
+            "FROM unnest(CAST(:skus AS varchar[]), CAST(:quantities AS int[])) AS r(sku, quantity) " +
+            "WHERE s.sku = r.sku",
+            nativeQuery = true)
+    int applyReservations(@Param("skus") String[] skus,
+                          @Param("quantities") Integer[] quantities);
 }
@@ -0,0 +1,11 @@
+package com.mysillydreams.inventorycore.service;
+
+/**
+ * Application event raised when an outbox row has been written.
+ * Listeners bound to the transaction commit (see OutboxPoller) use it to relay
+ * new events immediately instead of waiting for the next fallback poll.
+ *
+ * @param eventType The event type (topic) of the saved outbox row.
+ */
+public record OutboxEventSavedEvent(String eventType) {
+}
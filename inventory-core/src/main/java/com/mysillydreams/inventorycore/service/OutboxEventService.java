@@ -6,6 +6,7 @@ import com.mysillydreams.inventorycore.repository.OutboxRepository;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,6 +20,7 @@ public class OutboxEventService {
     private static final Logger log = LoggerFactory.getLogger(OutboxEventService.class);
 
     private final OutboxRepository outboxRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
     // ObjectMapper can be used if complex objects need conversion to Map<String, Object>,
     // but for simple Map.of(...) it's straightforward.
     // private final ObjectMapper objectMapper;
@@ -47,6 +49,8 @@ public class OutboxEventService {
             outboxEvent.setProcessed(false);
 
             outboxRepository.save(outboxEvent);
+            // Delivered to the relay only after the surrounding transaction commits
+            applicationEventPublisher.publishEvent(new OutboxEventSavedEvent(eventType));
             log.info("Saved outbox event: type={}, aggregateId={}, eventType={}", aggregateType, aggregateId, eventType);
         } catch (Exception e) {
             log.error("Failed to create and save outbox event: type={}, aggregateId={}, eventType={}. Error: {}",
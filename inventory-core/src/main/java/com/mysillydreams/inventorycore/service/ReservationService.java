@@ -2,13 +2,26 @@ package com.mysillydreams.inventorycore.service;
 
 import com.mysillydreams.inventorycore.dto.ReservationRequestedEvent;
 
+import java.util.List;
+
 public interface ReservationService {
     /**
      * Handles an incoming reservation request event.
-     * This typically involves checking stock, updating stock levels,
-     * and publishing success or failure events via the outbox pattern.
+     * All items of the order are reserved atomically (all-or-nothing), and a single
+     * success or failure event for the whole order is published via the outbox pattern.
      *
      * @param event The reservation request event.
      */
     void handleReservationRequest(ReservationRequestedEvent event);
+
+    /**
+     * Handles a batch of reservation requests in one transaction.
+     * Orders are evaluated in the given order against stock locked once per SKU, so every order gets
+     * the same outcome it would get if the requests were handled one by one; each SKU's stock row is
+     * then updated once for the whole batch. One success or failure event per order is published via
+     * the outbox pattern, in request order.
+     *
+     * @param events The reservation request events, in consumption order.
+     */
+    void handleReservationRequests(List<ReservationRequestedEvent> events);
 }
@@ -11,7 +11,13 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Value;
 
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 @Service
 @RequiredArgsConstructor
@@ -37,91 +43,186 @@ public class ReservationServiceImpl implements ReservationService {
             return;
         }
 
-        // This logic processes each item individually.
-        // A multi-item request might need all-or-nothing semantics,
-        // which would require a different approach (e.g., check all first, then reserve all).
-        // The current implementation emits one success/failure event PER item.
-        // The guide's outbox.publish calls imply eventType is the topic name.
-        // Let's use the eventType as a logical name and the OutboxPoller can map to topics.
-        // The guide for OutboxPoller uses ev.getEventType().contains("succeeded") ? succTopic : failTopic;
-        // So, event types like "InventoryReservationSucceeded" / "InventoryReservationFailed" would work.
-        // The guide's example for ReservationServiceImpl uses "order.reservation.succeeded" and "order.reservation.failed"
-        // as event types which are also the topic names. This is simpler.
+        // All-or-nothing: quantities are summed per SKU and sorted so that the single
+        // conditional update locks rows in a deterministic order. Either every SKU is
+        // reserved or none is, so a failed order never needs compensation.
+        Map<String, Integer> requested = requestedQuantities(event);
+        if (requested == null) {
+            return;
+        }
 
-        for (LineItem item : event.getItems()) {
-            String sku = item.getSku();
-            int quantityToReserve = item.getQuantity();
-            log.debug("Processing item: SKU={}, Quantity={}", sku, quantityToReserve);
+        String[] skus = requested.keySet().toArray(new String[0]);
+        Integer[] quantities = requested.values().toArray(new Integer[0]);
+
+        // Not caught: a failed statement aborts the PostgreSQL transaction, so no outbox event could be written
+        // in it. The exception rolls the transaction back and the listener's error handler redelivers the request.
+        int reservedRows = stockLevelRepository.reserveAllOrNothing(skus, quantities, skus.length);
+
+        if (reservedRows == skus.length) {
+            log.info("Stock reserved for order ID {}: {} SKU(s) {}", event.getOrderId(), skus.length, requested);
+            publishSucceeded(event.getOrderId());
+            return;
+        }
+
+        // Nothing was reserved. Work out why only on this (rare) path so the happy path stays one statement.
+        Map<String, Integer> availableBySku = new HashMap<>();
+        for (StockLevel stockLevel : stockLevelRepository.findAllById(requested.keySet())) {
+            availableBySku.put(stockLevel.getSku(), stockLevel.getAvailable());
+        }
+        publishFailed(event.getOrderId(), describeFailure(event.getOrderId(), requested, availableBySku));
+    }
 
-            if (quantityToReserve <= 0) {
-                log.warn("Skipping item with SKU {} due to non-positive quantity: {}", sku, quantityToReserve);
-                // Optionally publish a specific failure event for this item if needed
+    @Override
+    public void handleReservationRequests(List<ReservationRequestedEvent> events) {
+        // Collect the reservable orders, in request order, and every SKU they touch
+        List<String> orderIds = new ArrayList<>(events.size());
+        List<Map<String, Integer>> orderRequests = new ArrayList<>(events.size());
+        Set<String> batchSkus = new TreeSet<>();
+        for (ReservationRequestedEvent event : events) {
+            if (event.getItems() == null || event.getItems().isEmpty()) {
+                log.warn("Reservation request for order ID {} has no items.", event.getOrderId());
                 continue;
             }
+            Map<String, Integer> requested = requestedQuantities(event);
+            if (requested == null) {
+                continue;
+            }
+            orderIds.add(event.getOrderId());
+            orderRequests.add(requested);
+            batchSkus.addAll(requested.keySet());
+        }
+        if (orderIds.isEmpty()) {
+            return;
+        }
+
+        // One round trip locks every SKU of the batch (in SKU order, like reserveAllOrNothing);
+        // nothing else can change these rows until the batch commits.
+        Map<String, Integer> availableBySku = new HashMap<>();
+        for (StockLevel stockLevel : stockLevelRepository.lockAllBySku(batchSkus.toArray(new String[0]))) {
+            availableBySku.put(stockLevel.getSku(), stockLevel.getAvailable());
+        }
 
-            try {
-                StockLevel stockLevel = stockLevelRepository.findById(sku)
-                        .orElseThrow(() -> new IllegalArgumentException("Unknown SKU: " + sku));
-
-                if (stockLevel.getAvailable() >= quantityToReserve) {
-                    stockLevel.setAvailable(stockLevel.getAvailable() - quantityToReserve);
-                    stockLevel.setReserved(stockLevel.getReserved() + quantityToReserve);
-                    stockLevelRepository.save(stockLevel); // JPA handles optimistic locking via @Version
-
-                    log.info("Stock reserved for SKU {}: {} units. New available: {}, New reserved: {}",
-                            sku, quantityToReserve, stockLevel.getAvailable(), stockLevel.getReserved());
-
-                    outboxEventService.publish(
-                            "Inventory", // Aggregate Type
-                            sku,         // Aggregate ID (SKU)
-                            reservationSucceededTopic, // Event Type (using topic name as per guide)
-                            Map.of("orderId", event.getOrderId()) // Payload (orderId is already String)
-                    );
-                } else {
-                    log.warn("Insufficient stock for SKU {}: requested {}, available {}. Order ID: {}",
-                            sku, quantityToReserve, stockLevel.getAvailable(), event.getOrderId());
-                    outboxEventService.publish(
-                            "Inventory", // Aggregate Type
-                            sku,         // Aggregate ID (SKU)
-                            reservationFailedTopic, // Event Type (using topic name as per guide)
-                            Map.of(
-                                    "orderId", event.getOrderId(),
-                                    "reason", "INSUFFICIENT_STOCK",
-                                    "sku", sku,
-                                    "requestedQuantity", quantityToReserve,
-                                    "availableQuantity", stockLevel.getAvailable()
-                            )
-                    );
-                }
-            } catch (IllegalArgumentException e) {
-                log.error("Error processing reservation for SKU {}: {}. Order ID: {}", sku, e.getMessage(), event.getOrderId());
-                outboxEventService.publish(
-                        "Inventory",
-                        sku,
-                        reservationFailedTopic,
-                        Map.of(
-                                "orderId", event.getOrderId(),
-                                "reason", "UNKNOWN_SKU",
-                                "sku", sku
-                        )
+        // Evaluate orders in request order against the locked stock, exactly as one-by-one handling would
+        Map<String, Integer> reservedBySku = new TreeMap<>();
+        List<Map<String, Object>> failures = new ArrayList<>(orderIds.size()); // null entry = reserved
+        for (int i = 0; i < orderIds.size(); i++) {
+            Map<String, Integer> requested = orderRequests.get(i);
+            Map<String, Object> failure = canReserve(requested, availableBySku)
+                    ? null
+                    : describeFailure(orderIds.get(i), requested, availableBySku);
+            if (failure == null) {
+                requested.forEach((sku, quantity) -> {
+                    availableBySku.merge(sku, -quantity, Integer::sum);
+                    reservedBySku.merge(sku, quantity, Integer::sum);
+                });
+            }
+            failures.add(failure);
+        }
+
+        // Hot SKUs are decremented once for the whole batch
+        if (!reservedBySku.isEmpty()) {
+            String[] skus = reservedBySku.keySet().toArray(new String[0]);
+            Integer[] quantities = reservedBySku.values().toArray(new Integer[0]);
+            int updatedRows = stockLevelRepository.applyReservations(skus, quantities);
+            if (updatedRows != skus.length) {
+                // Rows are locked, so this means the data changed under us: roll the whole batch back
+                throw new IllegalStateException("Batch reservation updated " + updatedRows + " of " + skus.length + " locked SKU rows");
+            }
+        }
+
+        int reservedOrders = 0;
+        for (int i = 0; i < orderIds.size(); i++) {
+            if (failures.get(i) == null) {
+                reservedOrders++;
+                publishSucceeded(orderIds.get(i));
+            } else {
+                publishFailed(orderIds.get(i), failures.get(i));
+            }
+        }
+        log.info("Handled reservation batch of {} request(s): {} order(s) reserved, {} failed, {} SKU row(s) updated",
+                events.size(), reservedOrders, orderIds.size() - reservedOrders, reservedBySku.size());
+    }
+
+    /**
+     * Sums the order's positive quantities per SKU, sorted by SKU.
+     *
+     * @return The requested quantities, or {@code null} if the order has nothing reservable.
+     */
+    private Map<String, Integer> requestedQuantities(ReservationRequestedEvent event) {
+        Map<String, Integer> requested = new TreeMap<>();
+        for (LineItem item : event.getItems()) {
+            if (item.getQuantity() <= 0) {
+                log.warn("Skipping item with SKU {} due to non-positive quantity: {}", item.getSku(), item.getQuantity());
+                continue;
+            }
+            requested.merge(item.getSku(), item.getQuantity(), Integer::sum);
+        }
+        if (requested.isEmpty()) {
+            log.warn("Reservation request for order ID {} has no reservable items.", event.getOrderId());
+            return null;
+        }
+        return requested;
+    }
+
+    private static boolean canReserve(Map<String, Integer> requested, Map<String, Integer> availableBySku) {
+        for (Map.Entry<String, Integer> entry : requested.entrySet()) {
+            Integer available = availableBySku.get(entry.getKey());
+            if (available == null || available < entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void publishSucceeded(String orderId) {
+        outboxEventService.publish(
+                "Inventory",         // Aggregate Type
+                orderId,             // Aggregate ID (order): one event per order, keyed by order
+                reservationSucceededTopic,
+                Map.of("orderId", orderId)
+        );
+    }
+
+    private void publishFailed(String orderId, Map<String, Object> failure) {
+        outboxEventService.publish(
+                "Inventory",
+                orderId,
+                reservationFailedTopic,
+                failure
+        );
+    }
+
+    private Map<String, Object> describeFailure(String orderId, Map<String, Integer> requested, Map<String, Integer> availableBySku) {
+        for (Map.Entry<String, Integer> entry : requested.entrySet()) {
+            String sku = entry.getKey();
+            Integer available = availableBySku.get(sku);
+            if (available == null) {
+                log.error("Error processing reservation for SKU {}: Unknown SKU. Order ID: {}", sku, orderId);
+                return Map.of(
+                        "orderId", orderId,
+                        "reason", "UNKNOWN_SKU",
+                        "sku", sku
                 );
-            } catch (Exception e) { // Catching other potential exceptions like OptimisticLockException
-                log.error("Failed to reserve stock for SKU {} due to: {}. Order ID: {}", sku, e.getMessage(), event.getOrderId(), e);
-                // This is a more generic failure
-                outboxEventService.publish(
-                        "Inventory",
-                        sku,
-                        reservationFailedTopic,
-                        Map.of(
-                                "orderId", event.getOrderId(),
-                                "reason", "RESERVATION_PROCESSING_ERROR",
-                                "sku", sku,
-                                "detail", e.getMessage()
-                        )
+            }
+            if (available < entry.getValue()) {
+                log.warn("Insufficient stock for SKU {}: requested {}, available {}. Order ID: {}",
+                        sku, entry.getValue(), available, orderId);
+                return Map.of(
+                        "orderId", orderId,
+                        "reason", "INSUFFICIENT_STOCK",
+                        "sku", sku,
+                        "requestedQuantity", entry.getValue(),
+                        "availableQuantity", available
                 );
-                // Depending on policy, might rethrow to ensure transaction rollback if not already by a runtime ex.
-                // if (!(e instanceof OptimisticLockException)) { throw e; }
             }
         }
+
+        // Stock was short when the update ran but was replenished before this read.
+        log.warn("Reservation for order ID {} was not applied; stock changed concurrently.", orderId);
+        return Map.of(
+                "orderId", orderId,
+                "reason", "RESERVATION_PROCESSING_ERROR",
+                "detail", "Stock levels changed concurrently; reservation not applied"
+        );
     }
 }
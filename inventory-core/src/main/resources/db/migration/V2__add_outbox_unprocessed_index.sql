@@ -0,0 +1,5 @@
+-- Supports the outbox relay's claim query (processed = false ORDER BY created_at ... FOR UPDATE SKIP LOCKED).
+-- Partial, so the index only holds the (small) backlog of pending events, not the full history.
+CREATE INDEX IF NOT EXISTS idx_outbox_events_unprocessed_created_at
+  ON outbox_events (created_at)
+  WHERE processed = false;
@@ -0,0 +1,3 @@
+-- The relay claims rows by leasing them (claimed_until) in a short transaction, then publishes outside it,
+-- so row locks are no longer held while waiting for Kafka acks. An expired lease makes the row claimable again.
+ALTER TABLE outbox_events ADD COLUMN IF NOT EXISTS claimed_until TIMESTAMPTZ;
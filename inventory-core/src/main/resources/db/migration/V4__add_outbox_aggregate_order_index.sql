@@ -0,0 +1,5 @@
+-- Supports the claim query's per-aggregate ordering guard (an earlier pending event of the same aggregate
+-- that is still leased to a relay holds back the later ones). Partial, like the created_at index.
+CREATE INDEX IF NOT EXISTS idx_outbox_events_unprocessed_aggregate
+  ON outbox_events (aggregate_id, created_at)
+  WHERE processed = false;
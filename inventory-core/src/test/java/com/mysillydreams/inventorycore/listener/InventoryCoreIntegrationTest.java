@@ -191,7 +191,7 @@ class InventoryCoreIntegrationTest {
             List<OutboxEvent> outboxEvents = outboxRepository.findAll();
             assertThat(outboxEvents).hasSize(1);
             assertThat(outboxEvents.get(0).getEventType()).isEqualTo(reservationSucceededTopic);
-            assertThat(outboxEvents.get(0).getAggregateId()).isEqualTo(sku);
+            assertThat(outboxEvents.get(0).getAggregateId()).isEqualTo(orderId);
             Map<String, Object> payload = outboxEvents.get(0).getPayload();
             assertThat(payload.get("orderId")).isEqualTo(orderId);
         });
@@ -203,7 +203,7 @@ class InventoryCoreIntegrationTest {
         assertThat(records.count()).isGreaterThanOrEqualTo(1); // Ensure at least one message received
         boolean found = false;
         for (ConsumerRecord<String, SpecificRecord> record : records) {
-             if (record.key().equals(sku) && record.value() instanceof ReservationSucceededEvent) {
+             if (record.key().equals(orderId) && record.value() instanceof ReservationSucceededEvent) {
                  ReservationSucceededEvent successEvent = (ReservationSucceededEvent) record.value();
                  assertThat(successEvent.getOrderId()).isEqualTo(orderId);
                  found = true;
@@ -217,7 +217,7 @@ class InventoryCoreIntegrationTest {
             // Find the specific outbox event related to this test
             List<OutboxEvent> events = outboxRepository.findAll();
             Optional<OutboxEvent> outboxEventOpt = events.stream()
-                .filter(e -> e.getAggregateId().equals(sku) && e.getEventType().equals(reservationSucceededTopic))
+                .filter(e -> e.getAggregateId().equals(orderId) && e.getEventType().equals(reservationSucceededTopic))
                 .findFirst();
             assertThat(outboxEventOpt).isPresent().withFailMessage("Outbox event for SKU " + sku + " not found");
             assertThat(outboxEventOpt.get().isProcessed()).isTrue().withFailMessage("Outbox event for SKU " + sku + " was not marked processed");
@@ -262,7 +262,7 @@ class InventoryCoreIntegrationTest {
             assertThat(outboxEvents).hasSize(1);
             OutboxEvent failedOutboxEvent = outboxEvents.get(0);
             assertThat(failedOutboxEvent.getEventType()).isEqualTo(reservationFailedTopic);
-            assertThat(failedOutboxEvent.getAggregateId()).isEqualTo(sku);
+            assertThat(failedOutboxEvent.getAggregateId()).isEqualTo(orderId);
             Map<String, Object> payload = failedOutboxEvent.getPayload();
             assertThat(payload.get("orderId")).isEqualTo(orderId);
             assertThat(payload.get("reason")).isEqualTo("INSUFFICIENT_STOCK");
@@ -275,7 +275,7 @@ class InventoryCoreIntegrationTest {
         assertThat(records.count()).isGreaterThanOrEqualTo(1);
         boolean found = false;
         for (ConsumerRecord<String, SpecificRecord> record : records) {
-            if (record.key().equals(sku) && record.value() instanceof ReservationFailedEvent) {
+            if (record.key().equals(orderId) && record.value() instanceof ReservationFailedEvent) {
                 ReservationFailedEvent failedEvent = (ReservationFailedEvent) record.value();
                 assertThat(failedEvent.getOrderId()).isEqualTo(orderId);
                 assertThat(failedEvent.getSku()).isEqualTo(sku);
@@ -294,7 +294,7 @@ class InventoryCoreIntegrationTest {
         await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
             List<OutboxEvent> events = outboxRepository.findAll();
             Optional<OutboxEvent> outboxEventOpt = events.stream()
-                .filter(e -> e.getAggregateId().equals(sku) && e.getEventType().equals(reservationFailedTopic))
+                .filter(e -> e.getAggregateId().equals(orderId) && e.getEventType().equals(reservationFailedTopic))
                 .findFirst();
             assertThat(outboxEventOpt).isPresent().withFailMessage("Outbox event for SKU " + sku + " (failed) not found");
             assertThat(outboxEventOpt.get().isProcessed()).isTrue().withFailMessage("Outbox event for SKU " + sku + " (failed) was not marked processed");
@@ -0,0 +1,165 @@
+package com.mysillydreams.inventorycore.poller;
+
+import com.mysillydreams.inventorycore.domain.OutboxEvent;
+import com.mysillydreams.inventorycore.repository.OutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxPollerTest {
+
+    @Mock
+    private OutboxRepository outboxRepository;
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    private OutboxPoller poller;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        poller = new OutboxPoller(outboxRepository, kafkaTemplate, transactionManager);
+        ReflectionTestUtils.setField(poller, "batchSize", 10);
+        ReflectionTestUtils.setField(poller, "ackTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(poller, "claimLeaseMs", 30000L);
+        ReflectionTestUtils.setField(poller, "failureBackoffMs", 1000L);
+        ReflectionTestUtils.setField(poller, "maxFailureBackoffMs", 30000L);
+    }
+
+    private OutboxEvent event(String key, String name) {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(UUID.randomUUID());
+        event.setAggregateType("Reservation");
+        event.setAggregateId(key);
+        event.setEventType("order.reservation.succeeded");
+        event.setPayload(Map.of("name", name));
+        return event;
+    }
+
+    private CompletableFuture<SendResult<String, Object>> acked() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Test
+    void relayBatch_whenSendFails_shouldHoldBackLaterEventsForSameKeyOnly() {
+        OutboxEvent first = event("order-1", "first");
+        OutboxEvent second = event("order-1", "second");
+        OutboxEvent other = event("order-2", "other");
+        when(outboxRepository.claimUnprocessedBatch(eq(10), any(Instant.class))).thenReturn(List.of(first, second, other));
+        when(kafkaTemplate.send(anyString(), eq("order-1"), eq(first.getPayload())))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker unavailable")));
+        when(kafkaTemplate.send(anyString(), eq("order-2"), eq(other.getPayload()))).thenReturn(acked());
+
+        assertEquals(1, poller.relayBatch()); // Only the acknowledged event counts as relayed
+
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), eq(second.getPayload()));
+        verify(outboxRepository).markProcessed(List.of(other.getId()));
+        verify(outboxRepository).releaseClaims(List.of(first.getId(), second.getId()));
+    }
+
+    @Test
+    void relayBatch_shouldSendEventsForSameKeyOnlyAfterPreviousIsAcknowledged() {
+        OutboxEvent first = event("order-1", "first");
+        OutboxEvent second = event("order-1", "second");
+        when(outboxRepository.claimUnprocessedBatch(eq(10), any(Instant.class))).thenReturn(List.of(first, second));
+        CompletableFuture<SendResult<String, Object>> firstAck = new CompletableFuture<>();
+        when(kafkaTemplate.send(anyString(), anyString(), eq(first.getPayload()))).thenAnswer(inv -> {
+            firstAck.completeAsync(() -> null, CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS));
+            return firstAck;
+        });
+        when(kafkaTemplate.send(anyString(), anyString(), eq(second.getPayload()))).thenAnswer(inv -> {
+            assertTrue(firstAck.isDone(), "second event sent before the first was acknowledged");
+            return acked();
+        });
+
+        poller.relayBatch();
+
+        InOrder inOrder = inOrder(kafkaTemplate, outboxRepository);
+        inOrder.verify(kafkaTemplate).send(anyString(), anyString(), eq(first.getPayload()));
+        inOrder.verify(kafkaTemplate).send(anyString(), anyString(), eq(second.getPayload()));
+        inOrder.verify(outboxRepository).markProcessed(List.of(first.getId(), second.getId()));
+        verify(outboxRepository, never()).releaseClaims(any());
+    }
+
+    @Test
+    void relayBatch_shouldCommitClaimBeforePublishing() {
+        OutboxEvent event = event("order-1", "only");
+        when(outboxRepository.claimUnprocessedBatch(eq(10), any(Instant.class))).thenReturn(List.of(event));
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(acked());
+
+        poller.relayBatch();
+
+        InOrder inOrder = inOrder(outboxRepository, transactionManager, kafkaTemplate);
+        inOrder.verify(outboxRepository).lockClaiming();
+        inOrder.verify(outboxRepository).claimUnprocessedBatch(eq(10), any(Instant.class));
+        inOrder.verify(outboxRepository).lease(eq(List.of(event.getId())), any(Instant.class));
+        inOrder.verify(transactionManager).commit(transactionStatus);
+        inOrder.verify(kafkaTemplate).send("order.reservation.succeeded", "order-1", event.getPayload());
+        inOrder.verify(outboxRepository).markProcessed(List.of(event.getId()));
+        inOrder.verify(transactionManager).commit(transactionStatus);
+    }
+
+    @Test
+    void relayBatch_whenEverySendFails_shouldReportNothingRelayedAndBackOff() {
+        OutboxEvent event = event("order-1", "only");
+        when(outboxRepository.claimUnprocessedBatch(eq(10), any(Instant.class))).thenReturn(List.of(event));
+        when(kafkaTemplate.send(anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker unavailable")));
+
+        assertEquals(0, poller.relayBatch());
+        assertEquals(0, poller.relayBatch());
+
+        assertEquals(2, ReflectionTestUtils.getField(poller, "consecutiveFailedCycles"));
+        verify(outboxRepository, times(2)).releaseClaims(List.of(event.getId()));
+        verify(outboxRepository, never()).markProcessed(any());
+    }
+
+    @Test
+    void relayBatch_afterSuccessfulCycle_shouldResetBackOff() {
+        OutboxEvent event = event("order-1", "only");
+        when(outboxRepository.claimUnprocessedBatch(eq(10), any(Instant.class))).thenReturn(List.of(event));
+        when(kafkaTemplate.send(anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker unavailable")))
+                .thenReturn(acked());
+
+        poller.relayBatch();
+        assertEquals(1, poller.relayBatch());
+
+        assertEquals(0, ReflectionTestUtils.getField(poller, "consecutiveFailedCycles"));
+    }
+
+    @Test
+    void failureBackoffMs_shouldDoublePerFailedCycleUpToMax() {
+        assertEquals(1000L, poller.failureBackoffMs(1));
+        assertEquals(2000L, poller.failureBackoffMs(2));
+        assertEquals(16000L, poller.failureBackoffMs(5));
+        assertEquals(30000L, poller.failureBackoffMs(6));
+        assertEquals(30000L, poller.failureBackoffMs(1000));
+    }
+}
@@ -0,0 +1,155 @@
+package com.mysillydreams.inventorycore.repository;
+
+import com.mysillydreams.inventorycore.domain.OutboxEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the relay's claim queries against PostgreSQL, with two claimers standing in for two relay replicas.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // Each claimer commits its own transactions
+@Testcontainers
+class OutboxRepositoryTest {
+
+    private static final long LEASE_MS = 30_000;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:15.3-alpine"))
+            .withDatabaseName("testdb")
+            .withUsername("testuser")
+            .withPassword("testpass");
+
+    @DynamicPropertySource
+    static void dynamicProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.flyway.enabled", () -> "true");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate"); // Flyway handles schema
+    }
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        outboxRepository.deleteAll();
+    }
+
+    private OutboxEvent save(String aggregateId, String name) throws InterruptedException {
+        OutboxEvent event = new OutboxEvent();
+        event.setAggregateType("Inventory");
+        event.setAggregateId(aggregateId);
+        event.setEventType("order.reservation.succeeded");
+        event.setPayload(Map.of("name", name));
+        OutboxEvent saved = outboxRepository.save(event);
+        Thread.sleep(2); // Distinct created_at values, so the claim order is well defined
+        return saved;
+    }
+
+    /**
+     * Claims and leases a batch the way OutboxPoller does, in one transaction.
+     */
+    private List<UUID> claim(int limit) {
+        return transactionTemplate.execute(status -> {
+            outboxRepository.lockClaiming();
+            Instant now = Instant.now();
+            List<UUID> ids = outboxRepository.claimUnprocessedBatch(limit, now).stream().map(OutboxEvent::getId).toList();
+            if (!ids.isEmpty()) {
+                outboxRepository.lease(ids, now.plusMillis(LEASE_MS));
+            }
+            return ids;
+        });
+    }
+
+    @Test
+    void claimUnprocessedBatch_shouldNotLetSecondClaimerOvertakeLeasedEventsOfSameAggregate() throws Exception {
+        OutboxEvent first = save("order-1", "first");
+        OutboxEvent second = save("order-1", "second");
+        OutboxEvent third = save("order-1", "third"); // Beyond the first claimer's limit
+        OutboxEvent other = save("order-2", "other");
+
+        // The first claimer holds its claim transaction open while the second one tries to claim
+        CountDownLatch firstClaimed = new CountDownLatch(1);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        CompletableFuture<List<UUID>> firstClaimer = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> {
+            outboxRepository.lockClaiming();
+            Instant now = Instant.now();
+            List<UUID> ids = outboxRepository.claimUnprocessedBatch(2, now).stream().map(OutboxEvent::getId).toList();
+            outboxRepository.lease(ids, now.plusMillis(LEASE_MS));
+            firstClaimed.countDown();
+            try {
+                secondStarted.await(5, TimeUnit.SECONDS);
+                Thread.sleep(200); // Give the second claimer time to reach the claim lock
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ids;
+        }));
+        assertThat(firstClaimed.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<List<UUID>> secondClaimer = CompletableFuture.supplyAsync(() -> {
+            secondStarted.countDown();
+            return claim(10);
+        });
+
+        assertThat(firstClaimer.get(10, TimeUnit.SECONDS)).containsExactly(first.getId(), second.getId());
+        // order-1's third event waits for the leased ones; the unrelated aggregate is not held back
+        assertThat(secondClaimer.get(10, TimeUnit.SECONDS)).containsExactly(other.getId());
+
+        transactionTemplate.executeWithoutResult(status -> outboxRepository.markProcessed(List.of(first.getId(), second.getId())));
+        assertThat(claim(10)).containsExactly(third.getId());
+    }
+
+    @Test
+    void claimUnprocessedBatch_shouldReclaimAggregateInOrderAfterRelease() throws Exception {
+        OutboxEvent first = save("order-1", "first");
+        OutboxEvent second = save("order-1", "second");
+
+        assertThat(claim(1)).containsExactly(first.getId());
+        assertThat(claim(10)).isEmpty(); // second waits while first is leased
+
+        transactionTemplate.executeWithoutResult(status -> outboxRepository.releaseClaims(List.of(first.getId())));
+        assertThat(claim(10)).containsExactly(first.getId(), second.getId());
+    }
+
+    @Test
+    void claimUnprocessedBatch_shouldReclaimExpiredLease() throws Exception {
+        OutboxEvent first = save("order-1", "first");
+        OutboxEvent second = save("order-1", "second");
+        transactionTemplate.executeWithoutResult(status ->
+                outboxRepository.lease(List.of(first.getId()), Instant.now().minusSeconds(1))); // A relay died mid-cycle
+
+        assertThat(claim(10)).containsExactly(first.getId(), second.getId());
+    }
+}
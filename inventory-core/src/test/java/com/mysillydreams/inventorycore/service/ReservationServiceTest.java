@@ -8,6 +8,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -17,9 +18,9 @@ import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -51,36 +52,50 @@ class ReservationServiceTest {
         String sku = "SKU123";
         String orderId = "ORDER789";
         int quantityToReserve = 5;
-        int initialAvailable = 10;
 
         ReservationRequestedEvent event = new ReservationRequestedEvent(orderId,
                 List.of(new LineItem(sku, quantityToReserve)));
-
-        StockLevel stockLevel = new StockLevel(sku, initialAvailable, 0, 0L, Instant.now());
-        when(stockLevelRepository.findById(sku)).thenReturn(Optional.of(stockLevel));
-        // outboxEventService.publish is void, so no when(..).thenReturn(..) needed unless verifying interactions
+        when(stockLevelRepository.reserveAllOrNothing(any(String[].class), any(Integer[].class), eq(1L))).thenReturn(1);
 
         // Act
         reservationService.handleReservationRequest(event);
 
         // Assert
-        // Verify stock level updated and saved
-        ArgumentCaptor<StockLevel> stockLevelCaptor = ArgumentCaptor.forClass(StockLevel.class);
-        verify(stockLevelRepository).save(stockLevelCaptor.capture());
-        StockLevel savedStockLevel = stockLevelCaptor.getValue();
-        assertEquals(initialAvailable - quantityToReserve, savedStockLevel.getAvailable());
-        assertEquals(quantityToReserve, savedStockLevel.getReserved());
-
-        // Verify success event published to outbox
+        verify(stockLevelRepository).reserveAllOrNothing(
+                aryEq(new String[]{sku}), aryEq(new Integer[]{quantityToReserve}), eq(1L));
+        verify(stockLevelRepository, never()).save(any(StockLevel.class));
+
+        // Verify success event published to outbox, keyed by order
         ArgumentCaptor<Map<String, Object>> payloadCaptor = ArgumentCaptor.forClass(Map.class);
         verify(outboxEventService).publish(
                 eq("Inventory"),
-                eq(sku),
+                eq(orderId),
                 eq(SUCCEEDED_TOPIC),
                 payloadCaptor.capture()
         );
         assertEquals(orderId, payloadCaptor.getValue().get("orderId"));
-        verifyNoMoreInteractions(outboxEventService); // Ensure only one event published for this item
+        verifyNoMoreInteractions(outboxEventService); // Ensure only one event published for the order
+    }
+
+    @Test
+    void handleReservationRequest_withMultipleItems_shouldReserveAllInOneSortedStatementAndPublishOneEvent() {
+        // Arrange
+        String orderId = "ORDER_MULTI";
+        ReservationRequestedEvent event = new ReservationRequestedEvent(orderId, List.of(
+                new LineItem("SKU_C", 1),
+                new LineItem("SKU_A", 2),
+                new LineItem("SKU_C", 3))); // Duplicate SKU lines are summed
+        when(stockLevelRepository.reserveAllOrNothing(any(String[].class), any(Integer[].class), eq(2L))).thenReturn(2);
+
+        // Act
+        reservationService.handleReservationRequest(event);
+
+        // Assert
+        verify(stockLevelRepository).reserveAllOrNothing(
+                aryEq(new String[]{"SKU_A", "SKU_C"}), aryEq(new Integer[]{2, 4}), eq(2L));
+        verify(stockLevelRepository, never()).findAllById(any());
+        verify(outboxEventService).publish(eq("Inventory"), eq(orderId), eq(SUCCEEDED_TOPIC), anyMap());
+        verifyNoMoreInteractions(outboxEventService);
     }
 
     @Test
@@ -93,21 +108,21 @@ class ReservationServiceTest {
 
         ReservationRequestedEvent event = new ReservationRequestedEvent(orderId,
                 List.of(new LineItem(sku, quantityToReserve)));
+        when(stockLevelRepository.reserveAllOrNothing(any(String[].class), any(Integer[].class), eq(1L))).thenReturn(0);
         StockLevel stockLevel = new StockLevel(sku, initialAvailable, 0, 0L, Instant.now());
-        when(stockLevelRepository.findById(sku)).thenReturn(Optional.of(stockLevel));
+        when(stockLevelRepository.findAllById(any())).thenReturn(List.of(stockLevel));
 
         // Act
         reservationService.handleReservationRequest(event);
 
         // Assert
-        // Verify stock level NOT saved (no change)
         verify(stockLevelRepository, never()).save(any(StockLevel.class));
 
         // Verify failure event published
         ArgumentCaptor<Map<String, Object>> payloadCaptor = ArgumentCaptor.forClass(Map.class);
         verify(outboxEventService).publish(
                 eq("Inventory"),
-                eq(sku),
+                eq(orderId),
                 eq(FAILED_TOPIC),
                 payloadCaptor.capture()
         );
@@ -120,6 +135,30 @@ class ReservationServiceTest {
         verifyNoMoreInteractions(outboxEventService);
     }
 
+    @Test
+    void handleReservationRequest_whenOneOfSeveralSkusIsShort_shouldPublishSingleFailureNamingThatSku() {
+        // Arrange
+        String orderId = "ORDER_PARTIAL";
+        ReservationRequestedEvent event = new ReservationRequestedEvent(orderId, List.of(
+                new LineItem("SKU_OK", 1),
+                new LineItem("SKU_SHORT", 4)));
+        when(stockLevelRepository.reserveAllOrNothing(any(String[].class), any(Integer[].class), eq(2L))).thenReturn(0);
+        when(stockLevelRepository.findAllById(any())).thenReturn(List.of(
+                new StockLevel("SKU_OK", 10, 0, 0L, Instant.now()),
+                new StockLevel("SKU_SHORT", 3, 0, 0L, Instant.now())));
+
+        // Act
+        reservationService.handleReservationRequest(event);
+
+        // Assert: one order-level failure, nothing saved item by item
+        verify(stockLevelRepository, never()).save(any(StockLevel.class));
+        ArgumentCaptor<Map<String, Object>> payloadCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(outboxEventService).publish(eq("Inventory"), eq(orderId), eq(FAILED_TOPIC), payloadCaptor.capture());
+        assertEquals("INSUFFICIENT_STOCK", payloadCaptor.getValue().get("reason"));
+        assertEquals("SKU_SHORT", payloadCaptor.getValue().get("sku"));
+        verifyNoMoreInteractions(outboxEventService);
+    }
+
     @Test
     void handleReservationRequest_whenSkuIsUnknown_shouldPublishFailure() {
         // Arrange
@@ -129,7 +168,8 @@ class ReservationServiceTest {
 
         ReservationRequestedEvent event = new ReservationRequestedEvent(orderId,
                 List.of(new LineItem(sku, quantityToReserve)));
-        when(stockLevelRepository.findById(sku)).thenReturn(Optional.empty());
+        when(stockLevelRepository.reserveAllOrNothing(any(String[].class), any(Integer[].class), eq(1L))).thenReturn(0);
+        when(stockLevelRepository.findAllById(any())).thenReturn(Collections.emptyList());
 
         // Act
         reservationService.handleReservationRequest(event);
@@ -139,7 +179,7 @@ class ReservationServiceTest {
         ArgumentCaptor<Map<String, Object>> payloadCaptor = ArgumentCaptor.forClass(Map.class);
         verify(outboxEventService).publish(
                 eq("Inventory"),
-                eq(sku),
+                eq(orderId),
                 eq(FAILED_TOPIC),
                 payloadCaptor.capture()
         );
@@ -162,8 +202,7 @@ class ReservationServiceTest {
         reservationService.handleReservationRequest(event);
 
         // Assert
-        verify(stockLevelRepository, never()).findById(anyString());
-        verify(stockLevelRepository, never()).save(any(StockLevel.class));
+        verifyNoInteractions(stockLevelRepository);
         verifyNoInteractions(outboxEventService); // Nothing should be published
     }
 
@@ -179,8 +218,7 @@ class ReservationServiceTest {
         reservationService.handleReservationRequest(event);
 
         // Assert
-        verify(stockLevelRepository, never()).findById(anyString());
-        verify(stockLevelRepository, never()).save(any(StockLevel.class));
+        verifyNoInteractions(stockLevelRepository);
         verifyNoInteractions(outboxEventService);
     }
 
@@ -200,7 +238,7 @@ class ReservationServiceTest {
     }
 
     @Test
-    void handleReservationRequest_whenRepositorySaveFails_shouldPublishGenericFailure() {
+    void handleReservationRequest_whenReservationUpdateFails_shouldPropagateWithoutPublishing() {
         // Arrange
         String sku = "SKU_SAVE_FAIL";
         String orderId = "ORDER_SAVE_FAIL";
@@ -208,25 +246,101 @@ class ReservationServiceTest {
         ReservationRequestedEvent event = new ReservationRequestedEvent(orderId,
                 List.of(new LineItem(sku, quantityToReserve)));
 
-        StockLevel stockLevel = new StockLevel(sku, 1, 0, 0L, Instant.now());
-        when(stockLevelRepository.findById(sku)).thenReturn(Optional.of(stockLevel));
-        // Simulate OptimisticLockException or other save failure
-        doThrow(new RuntimeException("DB save failed")).when(stockLevelRepository).save(any(StockLevel.class));
+        // Simulate a lock timeout or other database failure; it aborts the transaction
+        RuntimeException failure = new RuntimeException("DB save failed");
+        when(stockLevelRepository.reserveAllOrNothing(any(String[].class), any(Integer[].class), anyLong()))
+                .thenThrow(failure);
+
+        // Act & Assert: rolled back and left to the listener to redeliver, not written to the aborted transaction
+        assertSame(failure, assertThrows(RuntimeException.class, () -> reservationService.handleReservationRequest(event)));
+        verifyNoInteractions(outboxEventService);
+    }
+
+    @Test
+    void handleReservationRequests_hotSkuAcrossOrders_shouldLockOnceUpdateOnceAndPublishPerOrderInOrder() {
+        // Arrange
+        List<ReservationRequestedEvent> events = List.of(
+                new ReservationRequestedEvent("ORDER_1", List.of(new LineItem("SKU_HOT", 2))),
+                new ReservationRequestedEvent("ORDER_2", List.of(new LineItem("SKU_HOT", 3), new LineItem("SKU_B", 1))));
+        when(stockLevelRepository.lockAllBySku(any(String[].class))).thenReturn(List.of(
+                new StockLevel("SKU_B", 5, 0, 0L, Instant.now()),
+                new StockLevel("SKU_HOT", 10, 0, 0L, Instant.now())));
+        when(stockLevelRepository.applyReservations(any(String[].class), any(Integer[].class))).thenReturn(2);
+
+        // Act
+        reservationService.handleReservationRequests(events);
+
+        // Assert: one lock and one update for the batch, quantities summed per SKU
+        verify(stockLevelRepository).lockAllBySku(aryEq(new String[]{"SKU_B", "SKU_HOT"}));
+        verify(stockLevelRepository).applyReservations(aryEq(new String[]{"SKU_B", "SKU_HOT"}), aryEq(new Integer[]{1, 5}));
+        verify(stockLevelRepository, never()).reserveAllOrNothing(any(String[].class), any(Integer[].class), anyLong());
+
+        InOrder inOrder = inOrder(outboxEventService);
+        inOrder.verify(outboxEventService).publish(eq("Inventory"), eq("ORDER_1"), eq(SUCCEEDED_TOPIC), anyMap());
+        inOrder.verify(outboxEventService).publish(eq("Inventory"), eq("ORDER_2"), eq(SUCCEEDED_TOPIC), anyMap());
+        verifyNoMoreInteractions(outboxEventService);
+    }
+
+    @Test
+    void handleReservationRequests_laterOrderExceedsRemainingStock_shouldFailOnlyThatOrderAsIfSequential() {
+        // Arrange: 5 available; ORDER_1 takes 4, ORDER_2 wants 3 (fails against the remaining 1), ORDER_3 takes 1
+        List<ReservationRequestedEvent> events = List.of(
+                new ReservationRequestedEvent("ORDER_1", List.of(new LineItem("SKU_HOT", 4))),
+                new ReservationRequestedEvent("ORDER_2", List.of(new LineItem("SKU_HOT", 3))),
+                new ReservationRequestedEvent("ORDER_3", List.of(new LineItem("SKU_HOT", 1))));
+        when(stockLevelRepository.lockAllBySku(any(String[].class))).thenReturn(List.of(
+                new StockLevel("SKU_HOT", 5, 0, 0L, Instant.now())));
+        when(stockLevelRepository.applyReservations(any(String[].class), any(Integer[].class))).thenReturn(1);
 
         // Act
-        reservationService.handleReservationRequest(event);
+        reservationService.handleReservationRequests(events);
 
         // Assert
+        verify(stockLevelRepository).applyReservations(aryEq(new String[]{"SKU_HOT"}), aryEq(new Integer[]{5}));
         ArgumentCaptor<Map<String, Object>> payloadCaptor = ArgumentCaptor.forClass(Map.class);
-        verify(outboxEventService).publish(
-                eq("Inventory"),
-                eq(sku),
-                eq(FAILED_TOPIC),
-                payloadCaptor.capture()
-        );
-        Map<String, Object> capturedPayload = payloadCaptor.getValue();
-        assertEquals(orderId, capturedPayload.get("orderId"));
-        assertEquals("RESERVATION_PROCESSING_ERROR", capturedPayload.get("reason"));
-        assertEquals("DB save failed", capturedPayload.get("detail"));
+        InOrder inOrder = inOrder(outboxEventService);
+        inOrder.verify(outboxEventService).publish(eq("Inventory"), eq("ORDER_1"), eq(SUCCEEDED_TOPIC), anyMap());
+        inOrder.verify(outboxEventService).publish(eq("Inventory"), eq("ORDER_2"), eq(FAILED_TOPIC), payloadCaptor.capture());
+        inOrder.verify(outboxEventService).publish(eq("Inventory"), eq("ORDER_3"), eq(SUCCEEDED_TOPIC), anyMap());
+        verifyNoMoreInteractions(outboxEventService);
+
+        Map<String, Object> failure = payloadCaptor.getValue();
+        assertEquals("INSUFFICIENT_STOCK", failure.get("reason"));
+        assertEquals("SKU_HOT", failure.get("sku"));
+        assertEquals(3, failure.get("requestedQuantity"));
+        assertEquals(1, failure.get("availableQuantity"));
+    }
+
+    @Test
+    void handleReservationRequests_unknownSkuAndEmptyOrders_shouldFailOrSkipWithoutUpdating() {
+        // Arrange
+        List<ReservationRequestedEvent> events = List.of(
+                new ReservationRequestedEvent("ORDER_EMPTY", Collections.emptyList()),
+                new ReservationRequestedEvent("ORDER_UNKNOWN", List.of(new LineItem("NO_SUCH_SKU", 1))));
+        when(stockLevelRepository.lockAllBySku(any(String[].class))).thenReturn(Collections.emptyList());
+
+        // Act
+        reservationService.handleReservationRequests(events);
+
+        // Assert
+        verify(stockLevelRepository, never()).applyReservations(any(String[].class), any(Integer[].class));
+        ArgumentCaptor<Map<String, Object>> payloadCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(outboxEventService).publish(eq("Inventory"), eq("ORDER_UNKNOWN"), eq(FAILED_TOPIC), payloadCaptor.capture());
+        assertEquals("UNKNOWN_SKU", payloadCaptor.getValue().get("reason"));
+        verifyNoMoreInteractions(outboxEventService);
+    }
+
+    @Test
+    void handleReservationRequests_whenLockedRowsAreNotAllUpdated_shouldThrowToRollBackBatch() {
+        // Arrange
+        List<ReservationRequestedEvent> events = List.of(
+                new ReservationRequestedEvent("ORDER_1", List.of(new LineItem("SKU_A", 1))));
+        when(stockLevelRepository.lockAllBySku(any(String[].class))).thenReturn(List.of(
+                new StockLevel("SKU_A", 5, 0, 0L, Instant.now())));
+        when(stockLevelRepository.applyReservations(any(String[].class), any(Integer[].class))).thenReturn(0);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> reservationService.handleReservationRequests(events));
+        verifyNoInteractions(outboxEventService);
     }
 }
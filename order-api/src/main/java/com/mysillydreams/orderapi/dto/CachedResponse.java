@@ -6,7 +6,15 @@ import lombok.NoArgsConstructor;
 import org.springframework.http.HttpHeaders; // Using Spring's HttpHeaders
 import org.springframework.http.HttpStatus;   // Using Spring's HttpStatus
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -15,6 +23,7 @@ import java.util.Map;
 @AllArgsConstructor
 public class CachedResponse implements Serializable {
     private static final long serialVersionUID = 1L; // Good practice for Serializable classes
+    private static final byte FORMAT_VERSION = 1;
 
     private int statusCode; // Store as int for broader compatibility
     private Map<String, List<String>> headers; // Store headers as a map
@@ -30,12 +39,10 @@ public class CachedResponse implements Serializable {
         return HttpStatus.valueOf(this.statusCode);
     }
 
-    // Helper to convert Spring HttpHeaders to Map
+    // Helper to convert Spring HttpHeaders to Map, keeping every value of multi-valued headers
     public void setHttpHeaders(HttpHeaders httpHeaders) {
-        this.headers = httpHeaders.toSingleValueMap().entrySet().stream()
-            .collect(java.util.stream.Collectors.toMap(Map.Entry::getKey, e -> List.of(e.getValue())));
-        // A more direct way if multi-values per header are needed:
-        // this.headers = new HashMap<>(httpHeaders);
+        this.headers = new LinkedHashMap<>();
+        httpHeaders.forEach((name, values) -> this.headers.put(name, new ArrayList<>(values)));
     }
 
     // Helper to get Spring HttpHeaders from Map
@@ -48,4 +55,67 @@ public class CachedResponse implements Serializable {
         }
         return httpHeaders;
     }
+
+    /**
+     * Compact binary form for storage: version, status, headers, then the raw body.
+     * About the size of the body itself, where JSON would Base64-encode it and add type information.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + (body != null ? body.length : 0));
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeShort(statusCode);
+            Map<String, List<String>> headerMap = headers != null ? headers : Map.of();
+            out.writeShort(headerMap.size());
+            for (Map.Entry<String, List<String>> header : headerMap.entrySet()) {
+                out.writeUTF(header.getKey());
+                out.writeShort(header.getValue().size());
+                for (String value : header.getValue()) {
+                    out.writeUTF(value);
+                }
+            }
+            out.writeInt(body != null ? body.length : -1);
+            if (body != null) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown by in-memory streams
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reverse of {@link #toBytes()}.
+     *
+     * @throws IllegalArgumentException if the bytes are not in a known format
+     */
+    public static CachedResponse fromBytes(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unknown cached response format version: " + version);
+            }
+            int statusCode = in.readUnsignedShort();
+            int headerCount = in.readUnsignedShort();
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (int i = 0; i < headerCount; i++) {
+                String name = in.readUTF();
+                int valueCount = in.readUnsignedShort();
+                List<String> values = new ArrayList<>(valueCount);
+                for (int j = 0; j < valueCount; j++) {
+                    values.add(in.readUTF());
+                }
+                headers.put(name, values);
+            }
+            int bodyLength = in.readInt();
+            byte[] body = null;
+            if (bodyLength >= 0) {
+                body = new byte[bodyLength];
+                in.readFully(body);
+            }
+            return new CachedResponse(statusCode, headers, body);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Truncated cached response", e);
+        }
+    }
 }
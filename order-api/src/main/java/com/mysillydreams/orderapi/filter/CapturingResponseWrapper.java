@@ -0,0 +1,122 @@
+package com.mysillydreams.orderapi.filter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Response wrapper that streams the body to the client as it is written and keeps a copy of up to
+ * {@code maxCaptureBytes} of it. Unlike {@link org.springframework.web.util.ContentCachingResponseWrapper}, the
+ * client gets the response as it is produced and memory stays bounded; a body over the limit is simply not captured.
+ */
+class CapturingResponseWrapper extends HttpServletResponseWrapper {
+
+    private final int maxCaptureBytes;
+    private final ByteArrayOutputStream capture = new ByteArrayOutputStream(256);
+    private boolean overflowed;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    CapturingResponseWrapper(HttpServletResponse response, int maxCaptureBytes) {
+        super(response);
+        this.maxCaptureBytes = maxCaptureBytes;
+    }
+
+    /**
+     * @return The captured body, or null if it was larger than the capture limit.
+     */
+    byte[] getCapturedBody() throws IOException {
+        flushBuffer();
+        return overflowed ? null : capture.toByteArray();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called on this response");
+        }
+        if (outputStream == null) {
+            outputStream = new TeeOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (outputStream != null && writer == null) {
+            throw new IllegalStateException("getOutputStream() has already been called on this response");
+        }
+        if (writer == null) {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+            outputStream = new TeeOutputStream(super.getOutputStream());
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, charset));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        } else if (outputStream != null) {
+            outputStream.flush();
+        }
+        super.flushBuffer();
+    }
+
+    private void captured(byte[] bytes, int offset, int length) {
+        if (overflowed) {
+            return;
+        }
+        if (capture.size() + length > maxCaptureBytes) {
+            overflowed = true;
+            capture.reset(); // Free what was captured: it will not be used
+            return;
+        }
+        capture.write(bytes, offset, length);
+    }
+
+    private final class TeeOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        private TeeOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            captured(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            captured(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
@@ -16,7 +16,6 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -26,7 +25,24 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Single-flight handling of {@code POST /orders} by Idempotency-Key, across all instances:
+ * - The first request with a key takes the key's lock and is processed; its lease is renewed while it runs, so a
+ *   slow request is never processed a second time. A renewal that fails because the store is unreachable is retried
+ *   on the next tick; renewal only stops once the lock is known to be lost.
+ * - Its response is streamed to the client and captured (up to {@code app.idempotency.max-response-bytes}); a 2xx
+ *   response is cached for {@code app.idempotency.cache-ttl-minutes}. A larger 2xx response is cached without its
+ *   body, so duplicates get its status and headers, marked with {@code Idempotency-Response-Not-Cached}, and are
+ *   still never processed twice.
+ * - Requests with the same key that arrive meanwhile wait for that response, polling with backoff for up to
+ *   {@code app.idempotency.wait-timeout-ms}. If the first request ends without a cacheable response, one of them
+ *   takes over. Only a wait that times out is rejected (409).
+ */
 @Component
 @Order(Ordered.HIGHEST_PRECEDENCE + 1) // Ensure it runs early, but after security filters
 public class IdempotencyFilter extends OncePerRequestFilter {
@@ -34,19 +50,40 @@ public class IdempotencyFilter extends OncePerRequestFilter {
     private static final Logger log = LoggerFactory.getLogger(IdempotencyFilter.class);
     private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 
+    private static final long INITIAL_POLL_MILLIS = 20;
+    private static final long MAX_POLL_MILLIS = 500;
+
     private final IdempotencyService idempotencyService;
     private final long cacheTtlMinutes;
-    private final ObjectMapper objectMapper = new ObjectMapper(); // For creating error responses
+    private final long lockTtlMillis;
+    private final long waitTimeoutMillis;
+    private final int maxResponseBytes;
+    private final ObjectMapper objectMapper; // For creating error responses
+    private final ScheduledExecutorService leaseRenewer;
     private final Counter idempotentHitsCounter;
     private final Counter idempotentMissesCounter;
     private final Counter missingIdempotencyKeyCounter;
+    private final Counter waitedRequestsCounter;
 
     // Inject the specific RedisIdempotencyService or the interface if only one impl is expected
     public IdempotencyFilter(IdempotencyService idempotencyService, // Spring will inject RedisIdempotencyService if it's primary or only one
                              @Value("${app.idempotency.cache-ttl-minutes:60}") long cacheTtlMinutes,
+                             @Value("${app.idempotency.lock-ttl-seconds:10}") long lockTtlSeconds,
+                             @Value("${app.idempotency.wait-timeout-ms:10000}") long waitTimeoutMillis,
+                             @Value("${app.idempotency.max-response-bytes:65536}") int maxResponseBytes,
+                             ObjectMapper objectMapper,
                              MeterRegistry meterRegistry) {
         this.idempotencyService = idempotencyService; // Now expects RedisIdempotencyService
         this.cacheTtlMinutes = cacheTtlMinutes;
+        this.lockTtlMillis = TimeUnit.SECONDS.toMillis(lockTtlSeconds);
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.maxResponseBytes = maxResponseBytes;
+        this.objectMapper = objectMapper;
+        this.leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-lease-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
         this.idempotentHitsCounter = Counter.builder("idempotency.filter.hits")
             .description("Number of requests served from idempotency cache")
             .register(meterRegistry);
@@ -56,6 +93,9 @@ public class IdempotencyFilter extends OncePerRequestFilter {
         this.missingIdempotencyKeyCounter = Counter.builder("idempotency.filter.missing_key")
             .description("Number of requests rejected due to missing Idempotency-Key header")
             .register(meterRegistry);
+        this.waitedRequestsCounter = Counter.builder("idempotency.filter.waited")
+            .description("Number of requests that waited for a concurrent request with the same Idempotency-Key")
+            .register(meterRegistry);
     }
 
     @Override
@@ -79,90 +119,131 @@ public class IdempotencyFilter extends OncePerRequestFilter {
 
         MDC.put("idempotencyKey", idempotencyKey); // Add to MDC
 
-        // Try to acquire a lock for this key to handle concurrent requests
-        if (!idempotencyService.tryLock(idempotencyKey)) {
-            log.warn("Concurrent request detected for Idempotency-Key: {}", idempotencyKey);
-            // HTTP 429 Too Many Requests or 409 Conflict can be used. 409 seems appropriate.
-            sendErrorResponse(response, HttpStatus.CONFLICT, "A request with this Idempotency-Key is already being processed.");
-            return;
-        }
-
         try {
-            Optional<ResponseEntity<Object>> cachedResponseOpt = idempotencyService.getCachedResponse(idempotencyKey);
-
-            if (cachedResponseOpt.isPresent()) {
-                idempotentHitsCounter.increment(); // Metric for cache hit
-                ResponseEntity<Object> cachedResponse = cachedResponseOpt.get();
-                log.info("Returning cached response for Idempotency-Key: {}", idempotencyKey);
-                response.setStatus(cachedResponse.getStatusCodeValue());
-                cachedResponse.getHeaders().forEach((name, values) ->
-                    values.forEach(value -> response.addHeader(name, value))
-                );
-                // Ensure content type is set, especially for JSON responses
-                if (cachedResponse.getHeaders().getContentType() != null) {
-                    response.setContentType(cachedResponse.getHeaders().getContentType().toString());
-                } else if (cachedResponse.getBody() != null && !(cachedResponse.getBody() instanceof byte[])) {
-                     // Default to JSON if not specified and body is not raw bytes
-                    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+            long pollMillis = INITIAL_POLL_MILLIS;
+            boolean waited = false;
+            while (true) {
+                // Checked before and after locking: the request holding the lock may have just finished
+                if (replayCachedResponse(idempotencyKey, response)) {
+                    return;
                 }
-
-                if (cachedResponse.getBody() != null) {
-                    objectMapper.writeValue(response.getWriter(), cachedResponse.getBody());
+                Optional<String> lockOwner = idempotencyService.tryLock(idempotencyKey);
+                if (lockOwner.isPresent()) {
+                    processWithLease(idempotencyKey, lockOwner.get(), request, response, filterChain);
+                    return;
+                }
+                if (!waited) {
+                    log.info("Request with Idempotency-Key {} is in flight elsewhere, waiting for its response", idempotencyKey);
+                    waitedRequestsCounter.increment();
+                    waited = true;
                 }
-                return; // Return cached response
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    log.warn("Concurrent request detected for Idempotency-Key: {} and it did not complete within {} ms", idempotencyKey, waitTimeoutMillis);
+                    // HTTP 429 Too Many Requests or 409 Conflict can be used. 409 seems appropriate.
+                    sendErrorResponse(response, HttpStatus.CONFLICT, "A request with this Idempotency-Key is already being processed.");
+                    return;
+                }
+                sleep(Math.min(pollMillis, remaining));
+                pollMillis = Math.min(pollMillis * 2, MAX_POLL_MILLIS);
+            }
+        } finally {
+            MDC.remove("idempotencyKey"); // Clean up MDC
+        }
+    }
+
+    private void processWithLease(String idempotencyKey, String lockOwner, HttpServletRequest request,
+                                  HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        // Renew the lease well before it expires for as long as the request runs; after a renewal that errors,
+        // the next attempt still comes before the lease runs out
+        long renewEveryMillis = Math.max(1, lockTtlMillis / 3);
+        ScheduledFuture<?> renewal = leaseRenewer.scheduleAtFixedRate(() -> {
+            if (idempotencyService.renewLock(idempotencyKey, lockOwner) == IdempotencyService.LockRenewal.NOT_OWNER) {
+                throw new IllegalStateException("Lease lost"); // Cancels further renewals
+            }
+        }, renewEveryMillis, renewEveryMillis, TimeUnit.MILLISECONDS);
+        try {
+            if (replayCachedResponse(idempotencyKey, response)) {
+                return;
             }
 
-            // Wrap the response to cache it after the request is processed
-            ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+            // Stream the response to the client while keeping a bounded copy to cache
+            CapturingResponseWrapper responseWrapper = new CapturingResponseWrapper(response, maxResponseBytes);
             filterChain.doFilter(request, responseWrapper); // Proceed with the actual request handling
+            idempotentMissesCounter.increment(); // Metric for cache miss (processed, cached if successful)
 
             // After request processing, if successful (e.g., 2xx status codes), cache the response
             int status = responseWrapper.getStatus();
             if (status >= 200 && status < 300) { // Successful response, eligible for caching
-                idempotentMissesCounter.increment(); // Metric for cache miss (processed and will be cached)
-                // Construct ResponseEntity from the wrapper
                 HttpHeaders responseHeaders = new HttpHeaders();
                 responseWrapper.getHeaderNames().forEach(headerName ->
                     responseWrapper.getHeaders(headerName).forEach(headerValue ->
                         responseHeaders.add(headerName, headerValue)
                     )
                 );
-
                 // Ensure Content-Type is captured correctly
                 if (responseWrapper.getContentType() != null) {
                     responseHeaders.setContentType(MediaType.parseMediaType(responseWrapper.getContentType()));
                 }
 
-
+                byte[] body = responseWrapper.getCapturedBody();
                 ResponseEntity<Object> responseToCache;
-                // Try to parse body as JSON if it's JSON, otherwise handle as byte array or string
-                // For simplicity, we'll cache the raw body bytes if Content-Type suggests it's not text/JSON
-                // or if parsing fails. A more robust solution might be needed depending on expected response types.
-
-                // We need to be careful here. The body of the response might be already written.
-                // The `ContentCachingResponseWrapper` captures the output.
-                // We should cache what was written to the client.
-                // The guide implies caching the "request->response mapping".
-                // The controller returns ResponseEntity<Map<String, UUID>>.
-                // We need to reconstruct this or a similar object to cache.
-
-                // Let's try to deserialize the JSON response body if it's JSON
-                // This is tricky because the response body might be complex.
-                // For now, let's cache the important parts: status, headers, and body.
-                // The body will be cached as a byte array.
-
-                byte[] body = responseWrapper.getContentAsByteArray();
-                responseToCache = new ResponseEntity<>(body, responseHeaders, HttpStatus.valueOf(status));
-
+                if (body == null) {
+                    // Still record the outcome, so a duplicate is not processed again
+                    log.warn("Response for Idempotency-Key {} exceeds {} bytes; caching its status and headers only", idempotencyKey, maxResponseBytes);
+                    responseToCache = IdempotencyService.withoutBody(HttpStatus.valueOf(status), responseHeaders);
+                } else {
+                    // The body is cached exactly as it was written to the client
+                    responseToCache = new ResponseEntity<>(body, responseHeaders, HttpStatus.valueOf(status));
+                }
                 idempotencyService.cacheResponse(idempotencyKey, responseToCache, cacheTtlMinutes);
                 log.info("Cached response for Idempotency-Key: {} with status {}", idempotencyKey, status);
             }
-            responseWrapper.copyBodyToResponse(); // IMPORTANT: copy content of wrapper to original response
-
         } finally {
-            idempotencyService.unlock(idempotencyKey); // Always release the lock
-            MDC.remove("idempotencyKey"); // Clean up MDC
+            renewal.cancel(false);
+            idempotencyService.unlock(idempotencyKey, lockOwner); // Always release the lock, if it is still ours
+        }
+    }
+
+    private boolean replayCachedResponse(String idempotencyKey, HttpServletResponse response) throws IOException {
+        Optional<ResponseEntity<Object>> cachedResponseOpt = idempotencyService.getCachedResponse(idempotencyKey);
+        if (cachedResponseOpt.isEmpty()) {
+            return false;
+        }
+        idempotentHitsCounter.increment(); // Metric for cache hit
+        ResponseEntity<Object> cachedResponse = cachedResponseOpt.get();
+        if (cachedResponse.getHeaders().containsKey(IdempotencyService.RESPONSE_NOT_CACHED_HEADER)) {
+            log.info("Returning cached status (response body not cached) for Idempotency-Key: {}", idempotencyKey);
+        } else {
+            log.info("Returning cached response for Idempotency-Key: {}", idempotencyKey);
         }
+        response.setStatus(cachedResponse.getStatusCodeValue());
+        cachedResponse.getHeaders().forEach((name, values) ->
+            values.forEach(value -> response.addHeader(name, value))
+        );
+        if (cachedResponse.getHeaders().getContentType() != null) {
+            response.setContentType(cachedResponse.getHeaders().getContentType().toString());
+        }
+        // The cached body holds the exact bytes of the original response
+        if (cachedResponse.getBody() instanceof byte[]) {
+            response.getOutputStream().write((byte[]) cachedResponse.getBody());
+        }
+        return true;
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a concurrent request", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        leaseRenewer.shutdownNow();
     }
 
     private void sendErrorResponse(HttpServletResponse response, HttpStatus status, String message) throws IOException {
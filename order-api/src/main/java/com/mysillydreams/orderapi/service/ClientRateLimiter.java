@@ -0,0 +1,136 @@
+package com.mysillydreams.orderapi.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-client rate limiting across all replicas.
+ * Each client has one token bucket in the shared {@link TokenBucketStore}. Instead of going to the store for every
+ * request, an instance leases up to {@code lease-size} tokens at a time and spends them locally, so most requests
+ * cost no network round-trip. Unused leased tokens are dropped after {@code lease-ttl-millis}; a client can
+ * therefore be throttled slightly early, but never gets more than the bucket allows.
+ * Leases are kept for at most {@code max-clients} clients, least recently used dropped first.
+ * If the store fails, the limiter uses a local bucket per client and tries the store again after a short pause.
+ */
+@Service
+public class ClientRateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientRateLimiter.class);
+    private static final Duration STORE_RETRY_DELAY = Duration.ofSeconds(5);
+
+    private final TokenBucketStore store;
+    private final TokenBucketStore fallbackStore;
+    private final TokenBucketStore.Limit limit;
+    private final long leaseSize;
+    private final long leaseTtlMillis;
+    private final Clock clock;
+    private final Map<String, Lease> leases;
+    private volatile long storeRetryAt;
+
+    @Autowired
+    public ClientRateLimiter(TokenBucketStore store,
+                             @Value("${app.ratelimit.capacity:100}") long capacity,
+                             @Value("${app.ratelimit.refill-tokens:100}") long refillTokens,
+                             @Value("${app.ratelimit.refill-duration-minutes:1}") long refillDurationMinutes,
+                             @Value("${app.ratelimit.lease-size:5}") long leaseSize,
+                             @Value("${app.ratelimit.lease-ttl-millis:1000}") long leaseTtlMillis,
+                             @Value("${app.ratelimit.max-clients:10000}") int maxClients) {
+        this(store, new TokenBucketStore.Limit(capacity, refillTokens, Duration.ofMinutes(refillDurationMinutes)),
+            leaseSize, leaseTtlMillis, maxClients, Clock.systemUTC());
+    }
+
+    ClientRateLimiter(TokenBucketStore store, TokenBucketStore.Limit limit, long leaseSize, long leaseTtlMillis,
+                      int maxClients, Clock clock) {
+        if (leaseSize <= 0 || leaseTtlMillis <= 0 || maxClients <= 0) {
+            throw new IllegalArgumentException("Rate limit lease size, lease TTL and max clients must be positive");
+        }
+        this.store = store;
+        this.fallbackStore = new InMemoryTokenBucketStore(maxClients, clock);
+        this.limit = limit;
+        this.leaseSize = Math.min(leaseSize, limit.capacity());
+        this.leaseTtlMillis = leaseTtlMillis;
+        this.clock = clock;
+        this.leases = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Lease> eldest) {
+                return size() > maxClients;
+            }
+        };
+        log.info("Rate limiter configured: capacity={}, refillTokens={}, refillPeriod={}, leaseSize={}, leaseTtlMillis={}, maxClients={}",
+            limit.capacity(), limit.refillTokens(), limit.refillPeriod(), this.leaseSize, leaseTtlMillis, maxClients);
+    }
+
+    /**
+     * Spends one token of the client's budget.
+     *
+     * @param clientKey Identifies the client, e.g. {@code user:<subject>} or {@code ip:<address>}.
+     * @return Whether the request may proceed and, if not, when to retry.
+     */
+    public Decision tryAcquire(String clientKey) {
+        Lease lease;
+        synchronized (leases) {
+            lease = leases.computeIfAbsent(clientKey, k -> new Lease());
+        }
+        synchronized (lease) {
+            long now = clock.millis();
+            if (lease.tokens > 0 && now < lease.expiresAt) {
+                lease.tokens--;
+                return Decision.ALLOWED;
+            }
+            if (now < lease.deniedUntil) {
+                return Decision.denied(Duration.ofMillis(lease.deniedUntil - now));
+            }
+            TokenBucketStore.Grant grant = take(clientKey);
+            if (grant.tokens() == 0) {
+                lease.tokens = 0;
+                lease.deniedUntil = now + grant.retryAfter().toMillis();
+                return Decision.denied(grant.retryAfter());
+            }
+            lease.tokens = grant.tokens() - 1;
+            lease.expiresAt = now + leaseTtlMillis;
+            lease.deniedUntil = 0;
+            return Decision.ALLOWED;
+        }
+    }
+
+    int trackedClients() {
+        synchronized (leases) {
+            return leases.size();
+        }
+    }
+
+    private TokenBucketStore.Grant take(String clientKey) {
+        if (clock.millis() >= storeRetryAt) {
+            try {
+                return store.take(clientKey, limit, leaseSize);
+            } catch (Exception e) {
+                storeRetryAt = clock.millis() + STORE_RETRY_DELAY.toMillis();
+                log.warn("Rate limit store unavailable, limiting locally for {}: {}", STORE_RETRY_DELAY, e.getMessage());
+            }
+        }
+        return fallbackStore.take(clientKey, limit, leaseSize);
+    }
+
+    public record Decision(boolean allowed, Duration retryAfter) {
+
+        static final Decision ALLOWED = new Decision(true, Duration.ZERO);
+
+        static Decision denied(Duration retryAfter) {
+            return new Decision(false, retryAfter);
+        }
+    }
+
+    private static final class Lease {
+        private long tokens;
+        private long expiresAt;
+        private long deniedUntil;
+    }
+}
@@ -1,11 +1,33 @@
 package com.mysillydreams.orderapi.service;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import java.util.Optional;
 
 public interface IdempotencyService {
 
+    /**
+     * Set on a cached response whose body was too large to keep: it records that the request completed, with its
+     * status and headers, so a duplicate is answered from it instead of being processed again.
+     */
+    String RESPONSE_NOT_CACHED_HEADER = "Idempotency-Response-Not-Cached";
+
+    /**
+     * Builds the status-only stand-in for a response whose body is not cached: same status and headers, minus those
+     * describing the dropped body, plus {@link #RESPONSE_NOT_CACHED_HEADER}.
+     */
+    static ResponseEntity<Object> withoutBody(HttpStatus status, HttpHeaders headers) {
+        HttpHeaders statusOnly = new HttpHeaders();
+        statusOnly.putAll(headers);
+        statusOnly.remove(HttpHeaders.CONTENT_TYPE);
+        statusOnly.remove(HttpHeaders.CONTENT_LENGTH);
+        statusOnly.remove(HttpHeaders.TRANSFER_ENCODING);
+        statusOnly.set(RESPONSE_NOT_CACHED_HEADER, "true");
+        return new ResponseEntity<>(statusOnly, status);
+    }
+
     /**
      * Checks if a request with the given idempotency key has been processed.
      *
@@ -24,20 +46,44 @@ public interface IdempotencyService {
      */
     void cacheResponse(String idempotencyKey, ResponseEntity<Object> response, long ttlMinutes);
 
+    /**
+     * Outcome of {@link #renewLock(String, String)}.
+     */
+    enum LockRenewal {
+        /** The lock is still held by the caller and its lease was extended. */
+        RENEWED,
+        /** The lock is no longer held by the caller (it expired, possibly to another request). */
+        NOT_OWNER,
+        /** The store could not be reached; the lock may still be held and renewal should be retried. */
+        ERROR
+    }
+
     /**
      * Marks an idempotency key as currently being processed.
      * This is to prevent concurrent requests with the same key from processing simultaneously.
+     * The lock is a lease: it expires unless renewed with {@link #renewLock(String, String)}.
+     *
+     * @param idempotencyKey The idempotency key.
+     * @return The owner token of the acquired lock, to be passed to {@link #renewLock(String, String)} and
+     *         {@link #unlock(String, String)}; empty if the lock was not acquired (e.g., key already locked).
+     */
+    Optional<String> tryLock(String idempotencyKey);
+
+    /**
+     * Extends the lease of a lock, for requests that take longer than the lease.
      *
      * @param idempotencyKey The idempotency key.
-     * @return true if the lock was acquired, false otherwise (e.g., key already locked).
+     * @param ownerToken     The token returned by {@link #tryLock(String)} when the lock was acquired.
+     * @return Whether the lease was extended, the lock was lost, or the store could not be reached.
      */
-    boolean tryLock(String idempotencyKey);
+    LockRenewal renewLock(String idempotencyKey, String ownerToken);
 
     /**
-     * Releases the lock for an idempotency key.
+     * Releases the lock for an idempotency key, if it is still held under the given owner token.
      * Should be called after processing is complete or if an error occurs.
      *
      * @param idempotencyKey The idempotency key.
+     * @param ownerToken     The token returned by {@link #tryLock(String)} when the lock was acquired.
      */
-    void unlock(String idempotencyKey);
+    void unlock(String idempotencyKey, String ownerToken);
 }
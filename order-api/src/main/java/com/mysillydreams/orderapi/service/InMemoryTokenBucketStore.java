@@ -0,0 +1,64 @@
+package com.mysillydreams.orderapi.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link TokenBucketStore} local to this instance, with the same refill rules as {@link RedisTokenBucketStore}.
+ * {@link ClientRateLimiter} falls back to it while Redis is unreachable, so each replica then enforces the limit
+ * on its own. Holds at most {@code maxBuckets} buckets, dropping the least recently used one first.
+ */
+public class InMemoryTokenBucketStore implements TokenBucketStore {
+
+    private final Clock clock;
+    private final Map<String, Bucket> buckets;
+
+    public InMemoryTokenBucketStore(int maxBuckets, Clock clock) {
+        this.clock = clock;
+        this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                return size() > maxBuckets;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Grant take(String bucketKey, Limit limit, long requested) {
+        long now = clock.millis();
+        Bucket bucket = buckets.computeIfAbsent(bucketKey, k -> new Bucket(limit.capacity(), now));
+        bucket.refill(limit, now);
+        long granted = Math.min(requested, (long) Math.floor(bucket.tokens));
+        bucket.tokens -= granted;
+        if (granted > 0) {
+            return Grant.granted(granted);
+        }
+        return new Grant(0, retryAfter(limit, bucket.tokens));
+    }
+
+    static Duration retryAfter(Limit limit, double tokens) {
+        double missing = 1 - tokens;
+        return Duration.ofMillis((long) Math.ceil(missing * limit.refillPeriod().toMillis() / limit.refillTokens()));
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long updatedAt;
+
+        private Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+
+        // Greedy refill: tokens come back continuously rather than all at the end of the period
+        private void refill(Limit limit, long now) {
+            if (now > updatedAt) {
+                double refilled = (double) (now - updatedAt) * limit.refillTokens() / limit.refillPeriod().toMillis();
+                tokens = Math.min(limit.capacity(), tokens + refilled);
+                updatedAt = now;
+            }
+        }
+    }
+}
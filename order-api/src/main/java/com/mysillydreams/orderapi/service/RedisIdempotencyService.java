@@ -5,43 +5,73 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.Collections;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.util.UUID;
 
+/**
+ * Idempotency store in Redis, shared by all instances.
+ * Responses are stored under {@code idempotency:<key>} in the compact binary form of {@link CachedResponse}, up to
+ * {@code app.idempotency.max-response-bytes}; a larger response is stored without its body (see
+ * {@link IdempotencyService#withoutBody}). Locks are leases of {@code app.idempotency.lock-ttl-seconds} under
+ * {@code lock:idempotency:<key>}, holding a random owner token that is handed to the request that acquired the lock,
+ * so that only that request can renew or release it.
+ */
 @Service("redisIdempotencyService")
 public class RedisIdempotencyService implements IdempotencyService {
 
     private static final Logger log = LoggerFactory.getLogger(RedisIdempotencyService.class);
+    private static final String RESPONSE_KEY_PREFIX = "idempotency:";
     private static final String LOCK_KEY_PREFIX = "lock:idempotency:";
-    private static final long LOCK_TTL_SECONDS = 10; // Short TTL for the lock itself
 
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final ValueOperations<String, Object> valueOps;
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end return 0",
+        Long.class);
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+        Long.class);
 
-    public RedisIdempotencyService(RedisTemplate<String, Object> redisTemplate) {
-        this.redisTemplate = redisTemplate;
-        this.valueOps = redisTemplate.opsForValue();
+    private final StringRedisTemplate lockTemplate;
+    private final ValueOperations<String, byte[]> responseOps;
+    private final Duration lockTtl;
+    private final int maxResponseBytes;
+
+    public RedisIdempotencyService(RedisTemplate<String, Object> redisTemplate,
+                                   @Value("${app.idempotency.lock-ttl-seconds:10}") long lockTtlSeconds,
+                                   @Value("${app.idempotency.max-response-bytes:65536}") int maxResponseBytes) {
+        this.lockTemplate = new StringRedisTemplate(redisTemplate.getConnectionFactory());
+        RedisTemplate<String, byte[]> responseTemplate = new RedisTemplate<>();
+        responseTemplate.setConnectionFactory(redisTemplate.getConnectionFactory());
+        responseTemplate.setKeySerializer(new StringRedisSerializer());
+        responseTemplate.setValueSerializer(RedisSerializer.byteArray());
+        responseTemplate.afterPropertiesSet();
+        this.responseOps = responseTemplate.opsForValue();
+        this.lockTtl = Duration.ofSeconds(lockTtlSeconds);
+        this.maxResponseBytes = maxResponseBytes;
     }
 
     @Override
     public Optional<ResponseEntity<Object>> getCachedResponse(String idempotencyKey) {
         try {
-            CachedResponse cachedDto = (CachedResponse) valueOps.get(idempotencyKey);
-            if (cachedDto != null) {
+            byte[] cachedBytes = responseOps.get(RESPONSE_KEY_PREFIX + idempotencyKey);
+            if (cachedBytes != null) {
                 log.debug("Cache hit for idempotency key: {}", idempotencyKey);
-                // Reconstruct ResponseEntity from CachedResponse DTO
+                CachedResponse cachedDto = CachedResponse.fromBytes(cachedBytes);
+                // Reconstruct ResponseEntity from CachedResponse DTO; the body stays raw bytes
                 HttpHeaders httpHeaders = cachedDto.getHttpHeaders();
                 HttpStatus httpStatus = cachedDto.getHttpStatus();
-                // The body in CachedResponse is byte[]. ResponseEntity can take Object.
-                // The GenericJackson2JsonRedisSerializer should handle deserializing it back to a common type if it was JSON,
-                // but here we stored raw bytes. The IdempotencyFilter handles the body as byte[] when caching.
                 return Optional.of(new ResponseEntity<>(cachedDto.getBody(), httpHeaders, httpStatus));
             }
             log.debug("Cache miss for idempotency key: {}", idempotencyKey);
@@ -54,62 +84,90 @@ public class RedisIdempotencyService implements IdempotencyService {
 
     @Override
     public void cacheResponse(String idempotencyKey, ResponseEntity<Object> response, long ttlMinutes) {
+        String responseKey = RESPONSE_KEY_PREFIX + idempotencyKey;
         if (ttlMinutes <= 0) {
             log.debug("TTL is zero or negative, not caching response for key: {}", idempotencyKey);
-            redisTemplate.delete(idempotencyKey); // Remove if exists
+            responseOps.getOperations().delete(responseKey); // Remove if exists
             return;
         }
 
         try {
             // Convert ResponseEntity to CachedResponse DTO
             CachedResponse cachedDto = new CachedResponse();
-            cachedDto.setHttpStatus(response.getStatusCode());
+            cachedDto.setHttpStatus(HttpStatus.valueOf(response.getStatusCodeValue()));
             cachedDto.setHttpHeaders(response.getHeaders());
 
-            // Body handling: IdempotencyFilter now caches byte[]
+            // Body handling: IdempotencyFilter caches byte[]
             if (response.getBody() instanceof byte[]) {
                 cachedDto.setBody((byte[]) response.getBody());
             } else if (response.getBody() != null) {
-                // This case should ideally not happen if filter always caches byte[]
-                // For safety, log a warning. Consider serializing to byte[] if necessary.
                 log.warn("Response body is not byte[] for key {}. Type: {}", idempotencyKey, response.getBody().getClass().getName());
-                // Potentially serialize here using ObjectMapper if that's the convention
-                // For now, assuming filter provides byte[]
-                cachedDto.setBody(null); // Or handle appropriately
+                cachedDto.setBody(null);
             } else {
                 cachedDto.setBody(null);
             }
 
-            valueOps.set(idempotencyKey, cachedDto, Duration.ofMinutes(ttlMinutes));
-            log.debug("Cached response for idempotency key: {} with TTL: {} minutes", idempotencyKey, ttlMinutes);
+            byte[] cachedBytes = cachedDto.toBytes();
+            if (cachedBytes.length > maxResponseBytes && cachedDto.getBody() != null) {
+                log.warn("Response for idempotency key {} is {} bytes, over the {} byte limit; caching its status and headers only",
+                    idempotencyKey, cachedBytes.length, maxResponseBytes);
+                ResponseEntity<Object> statusOnly = IdempotencyService.withoutBody(cachedDto.getHttpStatus(), cachedDto.getHttpHeaders());
+                cachedDto.setHttpHeaders(statusOnly.getHeaders());
+                cachedDto.setBody(null);
+                cachedBytes = cachedDto.toBytes();
+            }
+            if (cachedBytes.length > maxResponseBytes) {
+                log.warn("Response for idempotency key {} is {} bytes, over the {} byte limit; not caching",
+                    idempotencyKey, cachedBytes.length, maxResponseBytes);
+                return;
+            }
+            responseOps.set(responseKey, cachedBytes, Duration.ofMinutes(ttlMinutes));
+            log.debug("Cached response for idempotency key: {} ({} bytes) with TTL: {} minutes", idempotencyKey, cachedBytes.length, ttlMinutes);
         } catch (Exception e) {
             log.error("Error caching response for key {}: {}", idempotencyKey, e.getMessage(), e);
         }
     }
 
     @Override
-    public boolean tryLock(String idempotencyKey) {
+    public Optional<String> tryLock(String idempotencyKey) {
         String lockKey = LOCK_KEY_PREFIX + idempotencyKey;
+        String owner = UUID.randomUUID().toString();
         try {
             // SETNX operation: Set if Not Exists. Returns true if key was set (lock acquired).
-            Boolean acquired = valueOps.setIfAbsent(lockKey, "locked", LOCK_TTL_SECONDS, TimeUnit.SECONDS);
+            Boolean acquired = lockTemplate.opsForValue().setIfAbsent(lockKey, owner, lockTtl);
             if (acquired != null && acquired) {
                 log.debug("Lock acquired for key: {}", idempotencyKey);
-                return true;
+                return Optional.of(owner);
             }
             log.debug("Lock NOT acquired for key: {} (already locked or error)", idempotencyKey);
-            return false;
+            return Optional.empty();
         } catch (Exception e) {
             log.error("Error trying to acquire lock for key {}: {}", idempotencyKey, e.getMessage(), e);
-            return false; // Fail safe
+            return Optional.empty(); // Fail safe
         }
     }
 
     @Override
-    public void unlock(String idempotencyKey) {
-        String lockKey = LOCK_KEY_PREFIX + idempotencyKey;
+    public LockRenewal renewLock(String idempotencyKey, String ownerToken) {
+        try {
+            Long renewed = lockTemplate.execute(RENEW_SCRIPT, Collections.singletonList(LOCK_KEY_PREFIX + idempotencyKey),
+                ownerToken, Long.toString(lockTtl.toMillis()));
+            if (renewed == null || renewed != 1) {
+                log.warn("Lock for key {} was lost before processing finished", idempotencyKey);
+                return LockRenewal.NOT_OWNER;
+            }
+            return LockRenewal.RENEWED;
+        } catch (Exception e) {
+            log.error("Error renewing lock for key {}: {}", idempotencyKey, e.getMessage(), e);
+            return LockRenewal.ERROR;
+        }
+    }
+
+    @Override
+    public void unlock(String idempotencyKey, String ownerToken) {
         try {
-            redisTemplate.delete(lockKey);
+            // Only delete the lock if it is still ours: after an expiry it may belong to another request
+            lockTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(LOCK_KEY_PREFIX + idempotencyKey), ownerToken);
             log.debug("Lock released for key: {}", idempotencyKey);
         } catch (Exception e) {
             log.error("Error releasing lock for key {}: {}", idempotencyKey, e.getMessage(), e);
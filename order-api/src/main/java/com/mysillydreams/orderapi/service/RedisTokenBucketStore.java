@@ -0,0 +1,88 @@
+package com.mysillydreams.orderapi.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link TokenBucketStore} shared by all replicas through Redis. Each bucket is a hash ({@code tokens}, {@code ts})
+ * updated by a Lua script, so refill and take are one atomic round-trip. A bucket expires once it would be full
+ * again, which keeps idle clients from accumulating keys.
+ */
+@Service
+public class RedisTokenBucketStore implements TokenBucketStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisTokenBucketStore.class);
+    static final String KEY_PREFIX = "ratelimit:";
+
+    // The caller passes the time in: Redis before 3.2 refuses writes after TIME in a script
+    private static final RedisScript<List> TAKE_SCRIPT = new DefaultRedisScript<>(
+        "local capacity = tonumber(ARGV[1])\n" +
+        "local refillTokens = tonumber(ARGV[2])\n" +
+        "local refillMillis = tonumber(ARGV[3])\n" +
+        "local now = tonumber(ARGV[4])\n" +
+        "local requested = tonumber(ARGV[5])\n" +
+        "local ttlMillis = tonumber(ARGV[6])\n" +
+        "local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')\n" +
+        "local tokens = tonumber(state[1])\n" +
+        "local ts = tonumber(state[2])\n" +
+        "if tokens == nil or ts == nil then\n" +
+        "  tokens = capacity\n" +
+        "  ts = now\n" +
+        "end\n" +
+        "if now > ts then\n" +
+        "  tokens = math.min(capacity, tokens + (now - ts) * refillTokens / refillMillis)\n" +
+        "  ts = now\n" +
+        "end\n" +
+        "local granted = math.min(requested, math.floor(tokens))\n" +
+        "tokens = tokens - granted\n" +
+        "redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(ts))\n" +
+        "redis.call('PEXPIRE', KEYS[1], ttlMillis)\n" +
+        "local retryAfter = 0\n" +
+        "if granted == 0 then\n" +
+        "  retryAfter = math.ceil((1 - tokens) * refillMillis / refillTokens)\n" +
+        "end\n" +
+        "return {granted, retryAfter}",
+        List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final Clock clock;
+
+    @Autowired
+    public RedisTokenBucketStore(RedisConnectionFactory connectionFactory) {
+        this(new StringRedisTemplate(connectionFactory), Clock.systemUTC());
+    }
+
+    RedisTokenBucketStore(StringRedisTemplate redisTemplate, Clock clock) {
+        this.redisTemplate = redisTemplate;
+        this.clock = clock;
+    }
+
+    @Override
+    public Grant take(String bucketKey, Limit limit, long requested) {
+        List<?> result = redisTemplate.execute(TAKE_SCRIPT, Collections.singletonList(KEY_PREFIX + bucketKey),
+            Long.toString(limit.capacity()),
+            Long.toString(limit.refillTokens()),
+            Long.toString(limit.refillPeriod().toMillis()),
+            Long.toString(clock.millis()),
+            Long.toString(requested),
+            Long.toString(limit.timeToFull().toMillis()));
+        if (result == null || result.size() != 2) {
+            throw new IllegalStateException("Unexpected rate limit script result for " + bucketKey + ": " + result);
+        }
+        long granted = ((Number) result.get(0)).longValue();
+        long retryAfterMillis = ((Number) result.get(1)).longValue();
+        log.debug("Took {}/{} tokens from rate limit bucket {}", granted, requested, bucketKey);
+        return new Grant(granted, Duration.ofMillis(retryAfterMillis));
+    }
+}
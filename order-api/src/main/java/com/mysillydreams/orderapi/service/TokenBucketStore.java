@@ -0,0 +1,44 @@
+package com.mysillydreams.orderapi.service;
+
+import java.time.Duration;
+
+/**
+ * Token buckets keyed by client, held where every replica of the service can reach them.
+ * Callers take tokens in batches and spend them locally (see {@link ClientRateLimiter}).
+ */
+public interface TokenBucketStore {
+
+    /**
+     * Takes up to {@code requested} tokens from the bucket, creating it full if it does not exist.
+     *
+     * @param bucketKey The client's bucket key.
+     * @param limit     Capacity and refill rate of the bucket.
+     * @param requested The number of tokens wanted.
+     * @return The tokens granted (between 0 and {@code requested}) and, if none were, how long until one is.
+     */
+    Grant take(String bucketKey, Limit limit, long requested);
+
+    record Limit(long capacity, long refillTokens, Duration refillPeriod) {
+
+        public Limit {
+            if (capacity <= 0 || refillTokens <= 0 || refillPeriod.isZero() || refillPeriod.isNegative()) {
+                throw new IllegalArgumentException("Rate limit capacity, refill tokens and refill period must be positive");
+            }
+        }
+
+        /**
+         * Time for an empty bucket to fill up. A bucket unused for that long is the same as a new one.
+         */
+        public Duration timeToFull() {
+            return Duration.ofMillis(Math.max(1, (long) Math.ceil(
+                (double) capacity * refillPeriod.toMillis() / refillTokens)));
+        }
+    }
+
+    record Grant(long tokens, Duration retryAfter) {
+
+        static Grant granted(long tokens) {
+            return new Grant(tokens, Duration.ZERO);
+        }
+    }
+}
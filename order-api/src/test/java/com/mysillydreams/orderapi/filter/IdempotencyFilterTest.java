@@ -0,0 +1,233 @@
+package com.mysillydreams.orderapi.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mysillydreams.orderapi.service.IdempotencyService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyFilterTest {
+
+    private static final String BODY = "{\"orderId\":\"3f1c2b9e-0000-0000-0000-000000000001\"}";
+
+    private final InMemoryIdempotencyService idempotencyService = new InMemoryIdempotencyService();
+    private final AtomicInteger executions = new AtomicInteger();
+    private IdempotencyFilter filter = newFilter(10_000, 65536);
+
+    @AfterEach
+    void tearDown() {
+        filter.destroy();
+    }
+
+    @Test
+    void duplicateInFlightRequests_shouldWaitForFirstResponseInsteadOfFailing() throws Exception {
+        FilterChain slowChain = (request, response) -> {
+            executions.incrementAndGet();
+            sleep(300);
+            writeOrderCreated((javax.servlet.http.HttpServletResponse) response);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<MockHttpServletResponse> first = executor.submit(() -> post("key-1", slowChain));
+            sleep(50);
+            Future<MockHttpServletResponse> second = executor.submit(() -> post("key-1", slowChain));
+            Future<MockHttpServletResponse> third = executor.submit(() -> post("key-1", slowChain));
+
+            for (Future<MockHttpServletResponse> future : java.util.List.of(first, second, third)) {
+                MockHttpServletResponse response = future.get();
+                assertEquals(HttpStatus.ACCEPTED.value(), response.getStatus());
+                assertEquals(BODY, response.getContentAsString());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void leaseIsRenewedWhileRequestRuns() throws Exception {
+        post("key-1", (request, response) -> {
+            sleep(700); // Renewals run every third of the 1s lease
+            writeOrderCreated((javax.servlet.http.HttpServletResponse) response);
+        });
+
+        assertTrue(idempotencyService.renewals.get() > 0);
+    }
+
+    @Test
+    void leaseRenewal_shouldContinueAfterStoreError() throws Exception {
+        idempotencyService.failingRenewals.set(1); // First renewal hits an unreachable store
+
+        post("key-1", (request, response) -> {
+            sleep(900); // Room for the failed renewal and at least one more
+            writeOrderCreated((javax.servlet.http.HttpServletResponse) response);
+        });
+
+        assertTrue(idempotencyService.renewals.get() >= 2, "renewal stopped after a store error");
+    }
+
+    @Test
+    void leaseRenewal_shouldStopOnceLockIsLost() throws Exception {
+        post("key-1", (request, response) -> {
+            idempotencyService.locks.put("key-1", "another-request"); // Lease expired and was taken over
+            sleep(900);
+            writeOrderCreated((javax.servlet.http.HttpServletResponse) response);
+        });
+
+        assertEquals(1, idempotencyService.renewals.get());
+        assertEquals("another-request", idempotencyService.locks.get("key-1")); // Not released by the first request
+    }
+
+    @Test
+    void failedFirstRequest_shouldLetWaitingRequestProcess() throws Exception {
+        String owner = idempotencyService.tryLock("key-1").orElseThrow(); // Held by a request that will fail
+        Thread releaser = new Thread(() -> {
+            sleep(200);
+            idempotencyService.unlock("key-1", owner); // Ends without caching a response
+        });
+        releaser.start();
+
+        MockHttpServletResponse response = post("key-1", (request, resp) -> {
+            executions.incrementAndGet();
+            writeOrderCreated((javax.servlet.http.HttpServletResponse) resp);
+        });
+        releaser.join();
+
+        assertEquals(HttpStatus.ACCEPTED.value(), response.getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void waitTimeout_shouldReturnConflict() throws Exception {
+        filter.destroy();
+        filter = newFilter(100, 65536);
+        idempotencyService.tryLock("key-1");
+
+        MockHttpServletResponse response = post("key-1", (request, resp) -> executions.incrementAndGet());
+
+        assertEquals(HttpStatus.CONFLICT.value(), response.getStatus());
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void responseOverSizeLimit_shouldBeStreamedAndDuplicatesAnsweredWithStatusOnly() throws Exception {
+        filter.destroy();
+        filter = newFilter(10_000, 10);
+        FilterChain chain = (request, resp) -> {
+            executions.incrementAndGet();
+            ((javax.servlet.http.HttpServletResponse) resp).setHeader("Location", "/orders/1");
+            writeOrderCreated((javax.servlet.http.HttpServletResponse) resp);
+        };
+
+        MockHttpServletResponse response = post("key-1", chain);
+        MockHttpServletResponse duplicate = post("key-1", chain);
+
+        assertEquals(BODY, response.getContentAsString());
+        assertEquals(1, executions.get());
+        assertEquals(HttpStatus.ACCEPTED.value(), duplicate.getStatus());
+        assertEquals("/orders/1", duplicate.getHeader("Location"));
+        assertEquals("true", duplicate.getHeader(IdempotencyService.RESPONSE_NOT_CACHED_HEADER));
+        assertEquals("", duplicate.getContentAsString());
+        assertNull(duplicate.getContentType());
+    }
+
+    @Test
+    void cachedResponse_shouldBeReplayedWithOriginalBytes() throws Exception {
+        FilterChain chain = (request, resp) -> {
+            executions.incrementAndGet();
+            writeOrderCreated((javax.servlet.http.HttpServletResponse) resp);
+        };
+        post("key-1", chain);
+
+        MockHttpServletResponse replayed = post("key-1", chain);
+
+        assertEquals(1, executions.get());
+        assertEquals(HttpStatus.ACCEPTED.value(), replayed.getStatus());
+        assertEquals(BODY, replayed.getContentAsString());
+        assertEquals(MediaType.APPLICATION_JSON_VALUE, replayed.getContentType());
+    }
+
+    private IdempotencyFilter newFilter(long waitTimeoutMillis, int maxResponseBytes) {
+        // The in-memory service never expires locks, it only counts renewals
+        return new IdempotencyFilter(idempotencyService, 1, 1, waitTimeoutMillis, maxResponseBytes,
+            new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    private MockHttpServletResponse post(String idempotencyKey, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/orders");
+        request.addHeader("Idempotency-Key", idempotencyKey);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static void writeOrderCreated(javax.servlet.http.HttpServletResponse response) throws java.io.IOException {
+        response.setStatus(HttpStatus.ACCEPTED.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getOutputStream().write(BODY.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class InMemoryIdempotencyService implements IdempotencyService {
+        private final Map<String, ResponseEntity<Object>> responses = new ConcurrentHashMap<>();
+        private final Map<String, String> locks = new ConcurrentHashMap<>();
+        private final AtomicInteger renewals = new AtomicInteger();
+        private final AtomicInteger failingRenewals = new AtomicInteger();
+
+        @Override
+        public Optional<ResponseEntity<Object>> getCachedResponse(String idempotencyKey) {
+            return Optional.ofNullable(responses.get(idempotencyKey));
+        }
+
+        @Override
+        public void cacheResponse(String idempotencyKey, ResponseEntity<Object> response, long ttlMinutes) {
+            responses.put(idempotencyKey, response);
+        }
+
+        @Override
+        public Optional<String> tryLock(String idempotencyKey) {
+            String owner = UUID.randomUUID().toString();
+            return locks.putIfAbsent(idempotencyKey, owner) == null ? Optional.of(owner) : Optional.empty();
+        }
+
+        @Override
+        public LockRenewal renewLock(String idempotencyKey, String ownerToken) {
+            renewals.incrementAndGet();
+            if (failingRenewals.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                return LockRenewal.ERROR;
+            }
+            return ownerToken.equals(locks.get(idempotencyKey)) ? LockRenewal.RENEWED : LockRenewal.NOT_OWNER;
+        }
+
+        @Override
+        public void unlock(String idempotencyKey, String ownerToken) {
+            locks.remove(idempotencyKey, ownerToken);
+        }
+    }
+}
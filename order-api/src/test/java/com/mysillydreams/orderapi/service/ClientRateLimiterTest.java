@@ -0,0 +1,151 @@
+package com.mysillydreams.orderapi.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientRateLimiterTest {
+
+    // 4 requests per minute, i.e. one token back every 15 seconds
+    private static final TokenBucketStore.Limit LIMIT = new TokenBucketStore.Limit(4, 4, Duration.ofMinutes(1));
+
+    private MutableClock clock;
+    private CountingStore store;
+    private ClientRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock();
+        store = new CountingStore(new InMemoryTokenBucketStore(100, clock));
+        rateLimiter = new ClientRateLimiter(store, LIMIT, 2, 1000, 100, clock);
+    }
+
+    @Test
+    void tryAcquire_shouldSpendLeasedTokensWithoutGoingToStore() {
+        assertTrue(rateLimiter.tryAcquire("user:alice").allowed());
+        assertTrue(rateLimiter.tryAcquire("user:alice").allowed());
+        assertEquals(1, store.calls.get()); // One lease of 2 tokens
+
+        assertTrue(rateLimiter.tryAcquire("user:alice").allowed());
+        assertTrue(rateLimiter.tryAcquire("user:alice").allowed());
+        assertEquals(2, store.calls.get());
+    }
+
+    @Test
+    void tryAcquire_whenBudgetSpent_shouldDenyWithRetryAfterAndNotAffectOtherClients() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(rateLimiter.tryAcquire("ip:10.0.0.1").allowed());
+        }
+        ClientRateLimiter.Decision denied = rateLimiter.tryAcquire("ip:10.0.0.1");
+        assertFalse(denied.allowed());
+        assertEquals(Duration.ofSeconds(15), denied.retryAfter());
+
+        // Denials are remembered until the retry time, without asking the store again
+        int calls = store.calls.get();
+        assertFalse(rateLimiter.tryAcquire("ip:10.0.0.1").allowed());
+        assertEquals(calls, store.calls.get());
+
+        assertTrue(rateLimiter.tryAcquire("ip:10.0.0.2").allowed());
+
+        clock.advance(Duration.ofSeconds(15));
+        assertTrue(rateLimiter.tryAcquire("ip:10.0.0.1").allowed());
+    }
+
+    @Test
+    void tryAcquire_shouldDropUnusedLeasedTokensAfterLeaseTtl() {
+        assertTrue(rateLimiter.tryAcquire("user:alice").allowed()); // Leases 2, 1 left locally
+
+        clock.advance(Duration.ofMillis(1000));
+        assertTrue(rateLimiter.tryAcquire("user:alice").allowed());
+
+        assertEquals(2, store.calls.get());
+    }
+
+    @Test
+    void instancesSharingStore_shouldNeverExceedBucketTogether() {
+        ClientRateLimiter otherInstance = new ClientRateLimiter(store, LIMIT, 2, 1000, 100, clock);
+
+        int allowed = 0;
+        for (int i = 0; i < 10; i++) {
+            ClientRateLimiter instance = i % 2 == 0 ? rateLimiter : otherInstance;
+            if (instance.tryAcquire("user:partner").allowed()) {
+                allowed++;
+            }
+        }
+        assertEquals(4, allowed);
+    }
+
+    @Test
+    void tryAcquire_shouldEvictLeastRecentlyUsedClients() {
+        ClientRateLimiter small = new ClientRateLimiter(store, LIMIT, 2, 1000, 2, clock);
+
+        small.tryAcquire("ip:1"); // Each leases 2 tokens, 1 left locally
+        small.tryAcquire("ip:2");
+        small.tryAcquire("ip:3"); // Evicts ip:1
+        assertEquals(2, small.trackedClients());
+
+        int calls = store.calls.get();
+        small.tryAcquire("ip:2"); // Still has a leased token
+        assertEquals(calls, store.calls.get());
+        small.tryAcquire("ip:1"); // Lease was dropped
+        assertEquals(calls + 1, store.calls.get());
+    }
+
+    @Test
+    void tryAcquire_whenStoreFails_shouldLimitLocally() {
+        ClientRateLimiter limiter = new ClientRateLimiter((key, limit, requested) -> {
+            throw new IllegalStateException("Redis down");
+        }, LIMIT, 2, 1000, 100, clock);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire("user:alice").allowed());
+        }
+        assertFalse(limiter.tryAcquire("user:alice").allowed());
+    }
+
+    private static final class CountingStore implements TokenBucketStore {
+        private final TokenBucketStore delegate;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private CountingStore(TokenBucketStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Grant take(String bucketKey, Limit limit, long requested) {
+            calls.incrementAndGet();
+            return delegate.take(bucketKey, limit, requested);
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
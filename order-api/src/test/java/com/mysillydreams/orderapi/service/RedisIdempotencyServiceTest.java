@@ -41,32 +41,93 @@ class RedisIdempotencyServiceTest {
     void setUp() {
         testKey = "idempotency-" + UUID.randomUUID().toString();
         // Clean up the key before each test to ensure independence
-        redisTemplate.delete(testKey);
+        redisTemplate.delete("idempotency:" + testKey);
         redisTemplate.delete("lock:idempotency:" + testKey);
     }
 
     @Test
-    void tryLock_whenNotLocked_acquiresLockAndReturnsTrue() {
-        assertTrue(redisIdempotencyService.tryLock(testKey));
+    void tryLock_whenNotLocked_acquiresLockAndReturnsOwnerToken() {
+        assertTrue(redisIdempotencyService.tryLock(testKey).isPresent());
         // Verify lock exists in Redis
         assertThat(redisTemplate.hasKey("lock:idempotency:" + testKey)).isTrue();
     }
 
     @Test
-    void tryLock_whenAlreadyLocked_returnsFalse() {
+    void tryLock_whenAlreadyLocked_returnsEmpty() {
         redisIdempotencyService.tryLock(testKey); // First lock
-        assertFalse(redisIdempotencyService.tryLock(testKey)); // Second attempt should fail
+        assertFalse(redisIdempotencyService.tryLock(testKey).isPresent()); // Second attempt should fail
     }
 
     @Test
     void unlock_releasesLock() {
-        redisIdempotencyService.tryLock(testKey);
+        String owner = redisIdempotencyService.tryLock(testKey).orElseThrow();
         assertTrue(redisTemplate.hasKey("lock:idempotency:" + testKey));
 
-        redisIdempotencyService.unlock(testKey);
+        redisIdempotencyService.unlock(testKey, owner);
         assertThat(redisTemplate.hasKey("lock:idempotency:" + testKey)).isFalse();
     }
 
+    @Test
+    void renewLock_extendsLeaseOnlyForOwner() throws InterruptedException {
+        String owner = redisIdempotencyService.tryLock(testKey).orElseThrow();
+        Thread.sleep(600);
+        assertEquals(IdempotencyService.LockRenewal.RENEWED, redisIdempotencyService.renewLock(testKey, owner)); // Lease is 1s in the test profile
+        Thread.sleep(600);
+        assertTrue(redisTemplate.hasKey("lock:idempotency:" + testKey)); // Would have expired without renewal
+
+        assertEquals(IdempotencyService.LockRenewal.NOT_OWNER, redisIdempotencyService.renewLock(testKey, UUID.randomUUID().toString()));
+    }
+
+    @Test
+    void unlock_withOtherOwnerToken_keepsLock() {
+        assertTrue(redisIdempotencyService.tryLock(testKey).isPresent());
+
+        redisIdempotencyService.unlock(testKey, UUID.randomUUID().toString());
+
+        assertTrue(redisTemplate.hasKey("lock:idempotency:" + testKey));
+    }
+
+    @Test
+    void afterLeaseLoss_firstRequestCanNeitherRenewNorReleaseSecondRequestsLock() throws InterruptedException {
+        String firstOwner = redisIdempotencyService.tryLock(testKey).orElseThrow();
+        Thread.sleep(1100); // The first request's lease expires while it is still running
+        String secondOwner = redisIdempotencyService.tryLock(testKey).orElseThrow(); // Same instance takes it over
+
+        assertEquals(IdempotencyService.LockRenewal.NOT_OWNER, redisIdempotencyService.renewLock(testKey, firstOwner));
+        redisIdempotencyService.unlock(testKey, firstOwner);
+
+        assertTrue(redisTemplate.hasKey("lock:idempotency:" + testKey));
+        assertEquals(IdempotencyService.LockRenewal.RENEWED, redisIdempotencyService.renewLock(testKey, secondOwner));
+    }
+
+    @Test
+    void cacheResponse_overSizeLimit_cachesStatusAndHeadersOnly() {
+        RedisIdempotencyService smallLimit = new RedisIdempotencyService(redisTemplate, 1, 100);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.add("Location", "/orders/1");
+        ResponseEntity<Object> response = new ResponseEntity<>(new byte[200], headers, HttpStatus.ACCEPTED);
+
+        smallLimit.cacheResponse(testKey, response, 1);
+
+        ResponseEntity<Object> cached = smallLimit.getCachedResponse(testKey).orElseThrow();
+        assertEquals(HttpStatus.ACCEPTED, cached.getStatusCode());
+        assertNull(cached.getBody());
+        assertEquals("/orders/1", cached.getHeaders().getFirst("Location"));
+        assertEquals("true", cached.getHeaders().getFirst(IdempotencyService.RESPONSE_NOT_CACHED_HEADER));
+        assertNull(cached.getHeaders().getContentType());
+    }
+
+    @Test
+    void cacheResponse_overSizeLimitEvenWithoutBody_doesNotCache() {
+        RedisIdempotencyService tinyLimit = new RedisIdempotencyService(redisTemplate, 1, 8);
+        ResponseEntity<Object> response = new ResponseEntity<>(new byte[200], HttpStatus.ACCEPTED);
+
+        tinyLimit.cacheResponse(testKey, response, 1);
+
+        assertFalse(tinyLimit.getCachedResponse(testKey).isPresent());
+    }
+
     @Test
     void cacheResponse_and_getCachedResponse_worksCorrectly() {
         HttpHeaders headers = new HttpHeaders();
@@ -0,0 +1,71 @@
+package com.mysillydreams.orderapi.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = {RedisTokenBucketStore.class})
+@ActiveProfiles("test") // Embedded Redis, as in RedisIdempotencyServiceTest
+class RedisTokenBucketStoreTest {
+
+    private static final TokenBucketStore.Limit LIMIT = new TokenBucketStore.Limit(5, 5, Duration.ofMinutes(1));
+
+    @Autowired
+    private RedisTokenBucketStore store;
+
+    @Autowired
+    private RedisConnectionFactory connectionFactory;
+
+    private String bucketKey;
+
+    @BeforeEach
+    void setUp() {
+        bucketKey = "user:" + UUID.randomUUID();
+    }
+
+    @Test
+    void take_shouldGrantUpToRemainingTokens() {
+        assertEquals(3, store.take(bucketKey, LIMIT, 3).tokens());
+        assertEquals(2, store.take(bucketKey, LIMIT, 3).tokens());
+
+        TokenBucketStore.Grant denied = store.take(bucketKey, LIMIT, 3);
+        assertEquals(0, denied.tokens());
+        assertThat(denied.retryAfter()).isPositive().isLessThanOrEqualTo(Duration.ofSeconds(12));
+    }
+
+    @Test
+    void take_shouldExpireBucketOnceItWouldBeFull() {
+        store.take(bucketKey, LIMIT, 1);
+
+        Long ttlMillis = new StringRedisTemplate(connectionFactory).getExpire(
+            RedisTokenBucketStore.KEY_PREFIX + bucketKey, TimeUnit.MILLISECONDS);
+        assertNotNull(ttlMillis);
+        assertThat(ttlMillis).isPositive().isLessThanOrEqualTo(LIMIT.timeToFull().toMillis());
+    }
+
+    @Test
+    void limitersSharingRedis_shouldNeverExceedBucketTogether() {
+        ClientRateLimiter first = new ClientRateLimiter(store, LIMIT, 2, 60_000, 100, Clock.systemUTC());
+        ClientRateLimiter second = new ClientRateLimiter(store, LIMIT, 2, 60_000, 100, Clock.systemUTC());
+
+        int allowed = 0;
+        for (int i = 0; i < 12; i++) {
+            if ((i % 2 == 0 ? first : second).tryAcquire(bucketKey).allowed()) {
+                allowed++;
+            }
+        }
+        assertEquals(5, allowed);
+    }
+}
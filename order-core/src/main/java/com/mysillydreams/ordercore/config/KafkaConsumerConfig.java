@@ -85,6 +85,23 @@ public class KafkaConsumerConfig {
         return factory;
     }
 
+    // Batch listener container factory for saga steps: a listener gets every record of a poll at once,
+    // so steps of the same order can be coalesced and the batch written in one transaction.
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactoryAvroBatch() {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactoryAvro());
+        factory.setBatchListener(true);
+
+        // A BatchListenerFailedException from the listener commits the records before the failed one and retries from it
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(new FixedBackOff(2000L, 3L));
+        errorHandler.setCommitRecovered(true);
+        factory.setCommonErrorHandler(errorHandler);
+
+        return factory;
+    }
+
     // If consuming Avro specific records, a separate factory would be needed:
     /*
     @Bean
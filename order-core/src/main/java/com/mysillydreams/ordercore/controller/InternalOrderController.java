@@ -1,6 +1,9 @@
 package com.mysillydreams.ordercore.controller;
 
-import com.mysillydreams.ordercore.domain.Order; // Assuming a simple Order DTO/view might be better
+import com.mysillydreams.ordercore.dto.OrderDetailView;
+import com.mysillydreams.ordercore.dto.OrderHistoryPage;
+import com.mysillydreams.ordercore.dto.OrderTimelineEntry;
+import com.mysillydreams.ordercore.service.OrderQueryService;
 import com.mysillydreams.ordercore.service.OrderService;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -11,10 +14,10 @@ import org.springframework.security.access.prepost.PreAuthorize; // For method-l
 import org.springframework.web.bind.annotation.*;
 import jakarta.persistence.EntityNotFoundException; // For handling not found
 
+import java.util.List;
 import java.util.UUID;
 
-// Define DTOs for request/response if different from domain objects
-// For simplicity, using domain Order for GET, and a simple request DTO for cancel.
+// Reads return the views in the dto package; cancel takes a simple request DTO.
 
 // Request DTO for cancel operation
 class CancelOrderRequestCmd { // Renamed to avoid clash with potential future CancelOrderCommand
@@ -27,11 +30,6 @@ class CancelOrderRequestCmd { // Renamed to avoid clash with potential future Ca
     public void setChangedBy(String changedBy) { this.changedBy = changedBy; }
 }
 
-// Response DTO for Order View (could be more tailored than the full Order entity)
-// For now, let's assume we might return the Order entity directly or a simplified view.
-// For this example, we'll fetch the Order entity but ideally map to a DTO.
-// record OrderView(UUID id, UUID customerId, String status, BigDecimal totalAmount, String currency, Instant createdAt) {}
-
 
 @RestController
 @RequestMapping("/internal/orders") // Base path for internal order operations
@@ -41,37 +39,54 @@ public class InternalOrderController {
 
     private static final Logger log = LoggerFactory.getLogger(InternalOrderController.class);
     private final OrderService orderService;
-    // private final OrderRepository orderRepository; // Or inject repository for direct reads if OrderService doesn't expose findById
+    private final OrderQueryService orderQueryService;
 
     /**
-     * Get order details by ID.
+     * Get order details by ID, with its items.
      * This endpoint might be used by other internal services or admin tools.
      * @param id The UUID of the order.
      * @return The order details or 404 if not found.
      */
     @GetMapping("/{id}")
     @PreAuthorize("hasRole('ROLE_ORDER_ADMIN') or hasRole('ORDER_ADMIN')") // Keycloak roles might not have ROLE_ prefix by default
-    public ResponseEntity<?> getOrderById(@PathVariable UUID id) {
+    public ResponseEntity<OrderDetailView> getOrderById(@PathVariable UUID id) {
         log.info("Internal request to get order by ID: {}", id);
-        // Ideally, OrderService would have a findById method returning a DTO or Optional<Order>
-        // For now, assuming a direct repository access or extending OrderService.
-        // Let's assume OrderService needs a method like `findOrderById(UUID id)`
-        // For this quick scaffold, I'll simulate fetching. This part needs refinement based on actual service/repo capabilities.
+        return orderQueryService.findOrderDetail(id)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> {
+                log.warn("Order not found with ID: {}", id);
+                return ResponseEntity.notFound().build();
+            });
+    }
+
+    /**
+     * Get the status timeline of an order, newest change first.
+     * @param id The UUID of the order.
+     * @return The status changes; empty if the order does not exist.
+     */
+    @GetMapping("/{id}/timeline")
+    @PreAuthorize("hasRole('ROLE_ORDER_ADMIN') or hasRole('ORDER_ADMIN')")
+    public ResponseEntity<List<OrderTimelineEntry>> getOrderTimeline(@PathVariable UUID id) {
+        return ResponseEntity.ok(orderQueryService.findTimeline(id));
+    }
+
+    /**
+     * List a customer's orders, newest first, one page at a time.
+     * @param customerId The UUID of the customer.
+     * @param cursor The {@code nextCursor} of the previous page; omit for the first page.
+     * @param limit Page size, at most {@link OrderQueryService#MAX_PAGE_SIZE}.
+     * @return The page, or 400 if the cursor is invalid.
+     */
+    @GetMapping
+    @PreAuthorize("hasRole('ROLE_ORDER_ADMIN') or hasRole('ORDER_ADMIN')")
+    public ResponseEntity<OrderHistoryPage> getCustomerOrders(@RequestParam UUID customerId,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(defaultValue = "" + OrderQueryService.DEFAULT_PAGE_SIZE) int limit) {
         try {
-            // This is a placeholder. OrderService should provide a method to get order details.
-            // Order order = orderService.findOrderById(id); // Assuming this method exists
-            // For now, to make it runnable without changing OrderService interface yet:
-            log.warn("Placeholder: getOrderById needs OrderService.findOrderById or direct repository access.");
-            // Simulating a found order for structure, replace with actual logic
-            // Order mockOrder = new Order(); mockOrder.setId(id); mockOrder.setCurrentStatus(OrderStatus.CREATED);
-            // return ResponseEntity.ok(mockOrder);
-            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body("Get order by ID not fully implemented.");
-        } catch (EntityNotFoundException e) {
-            log.warn("Order not found with ID: {}", id);
-            return ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            log.error("Error fetching order with ID: {}", id, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            return ResponseEntity.ok(orderQueryService.findCustomerOrders(customerId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected order history request for customer {}: {}", customerId, e.getMessage());
+            return ResponseEntity.badRequest().build();
         }
     }
 
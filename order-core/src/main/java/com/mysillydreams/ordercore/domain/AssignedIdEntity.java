@@ -0,0 +1,33 @@
+package com.mysillydreams.ordercore.domain;
+
+import org.springframework.data.domain.Persistable;
+
+import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import java.util.UUID;
+
+/**
+ * Base for entities whose UUID is assigned by the application and that have no {@code @Version}.
+ * Spring Data cannot tell such an entity is new from its ID, so {@code save()} would merge it, selecting the row
+ * before inserting it. Tracking whether the entity came from the database makes {@code save()} persist new ones
+ * directly, and keeps their inserts in the JDBC batch.
+ */
+@MappedSuperclass
+public abstract class AssignedIdEntity implements Persistable<UUID> {
+
+    @Transient
+    private boolean persisted;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        this.persisted = true;
+    }
+}
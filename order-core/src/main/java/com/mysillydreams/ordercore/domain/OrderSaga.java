@@ -0,0 +1,42 @@
+package com.mysillydreams.ordercore.domain;
+
+import com.mysillydreams.ordercore.domain.enums.SagaStep;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Where an order's saga stands and until when it may wait there.
+ * {@code deadline} is set while a step is awaited and cleared once the saga ends; the timeout scan only looks at
+ * rows that have one.
+ */
+@Entity
+@Table(name = "order_sagas") // Matches Flyway script
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSaga {
+
+    @Id
+    @Column(name = "order_id")
+    private UUID orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private SagaStep step;
+
+    private Instant deadline;
+
+    @Column(name = "payment_received", nullable = false)
+    private boolean paymentReceived;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @Version
+    private Long version;
+}
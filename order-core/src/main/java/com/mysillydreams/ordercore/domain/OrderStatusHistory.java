@@ -1,6 +1,7 @@
 package com.mysillydreams.ordercore.domain;
 
 import com.mysillydreams.ordercore.domain.enums.OrderStatus;
+import com.mysillydreams.ordercore.util.TimeOrderedUuid;
 import io.hypersistence.utils.hibernate.type.json.JsonType; // For JSONB mapping
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -19,8 +20,8 @@ import java.util.Map;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@EqualsAndHashCode(exclude = "order") // Exclude parent from hashCode/equals
-public class OrderStatusHistory {
+@EqualsAndHashCode(callSuper = false, exclude = "order") // Exclude parent from hashCode/equals
+public class OrderStatusHistory extends AssignedIdEntity {
 
     @Id
     private UUID id; // Application-assigned UUID
@@ -50,7 +51,7 @@ public class OrderStatusHistory {
     // Constructors, getters, setters by Lombok
     // Convenience constructor
     public OrderStatusHistory(Order order, OrderStatus oldStatus, OrderStatus newStatus, String changedBy, Map<String, Object> metadata) {
-        this.id = UUID.randomUUID(); // Generate ID on creation
+        this.id = TimeOrderedUuid.next(); // Generate ID on creation
         this.order = order;
         this.oldStatus = oldStatus;
         this.newStatus = newStatus;
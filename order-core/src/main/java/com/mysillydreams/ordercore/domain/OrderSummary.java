@@ -0,0 +1,79 @@
+package com.mysillydreams.ordercore.domain;
+
+import com.mysillydreams.ordercore.domain.enums.OrderStatus;
+import com.mysillydreams.ordercore.domain.enums.OrderType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Denormalized, read-only view of an order for order lists: one row per order, no joins.
+ * Written by OrderServiceImpl in the same transaction as the order itself, so it is never stale.
+ */
+@Entity
+@Table(name = "order_summaries") // Matches Flyway script
+@Data
+@EqualsAndHashCode(callSuper = false)
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSummary extends AssignedIdEntity {
+
+    @Id
+    @Column(name = "order_id")
+    private UUID orderId;
+
+    @Column(name = "customer_id", nullable = false)
+    private UUID customerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private OrderType type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "current_status", nullable = false, length = 30)
+    private OrderStatus currentStatus;
+
+    @Column(name = "total_amount", nullable = false, precision = 12, scale = 2)
+    private BigDecimal totalAmount;
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Column(name = "item_count", nullable = false)
+    private int itemCount;
+
+    @Column(name = "total_quantity", nullable = false)
+    private int totalQuantity;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column(name = "status_changed_at", nullable = false)
+    private Instant statusChangedAt;
+
+    @Override
+    public UUID getId() {
+        return orderId;
+    }
+
+    public static OrderSummary of(Order order) {
+        OrderSummary summary = new OrderSummary();
+        summary.setOrderId(order.getId());
+        summary.setCustomerId(order.getCustomerId());
+        summary.setType(order.getType());
+        summary.setCurrentStatus(order.getCurrentStatus());
+        summary.setTotalAmount(order.getTotalAmount());
+        summary.setCurrency(order.getCurrency());
+        summary.setItemCount(order.getItems().size());
+        summary.setTotalQuantity(order.getItems().stream().mapToInt(OrderItem::getQuantity).sum());
+        summary.setCreatedAt(order.getCreatedAt() != null ? order.getCreatedAt() : Instant.now());
+        summary.setStatusChangedAt(order.getUpdatedAt() != null ? order.getUpdatedAt() : summary.getCreatedAt());
+        return summary;
+    }
+}
@@ -1,5 +1,6 @@
 package com.mysillydreams.ordercore.domain;
 
+import com.mysillydreams.ordercore.util.TimeOrderedUuid;
 import io.hypersistence.utils.hibernate.type.json.JsonType;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -55,7 +56,7 @@ public class OutboxEvent {
     @PrePersist
     protected void onCreate() {
         if (this.id == null) {
-            this.id = UUID.randomUUID();
+            this.id = TimeOrderedUuid.next();
         }
         this.createdAt = Instant.now();
     }
@@ -0,0 +1,12 @@
+package com.mysillydreams.ordercore.domain.enums;
+
+public enum SagaStep {
+    AWAITING_RESERVATION, // Order created, waiting for inventory to reserve the items
+    AWAITING_PAYMENT,     // Items reserved, waiting for the payment
+    COMPLETED,            // Reserved and paid
+    CANCELLED;            // Cancelled, by request or because a step timed out
+
+    public boolean isAwaiting() {
+        return this == AWAITING_RESERVATION || this == AWAITING_PAYMENT;
+    }
+}
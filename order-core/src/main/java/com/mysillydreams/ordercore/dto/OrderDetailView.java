@@ -0,0 +1,43 @@
+package com.mysillydreams.ordercore.dto;
+
+import com.mysillydreams.ordercore.domain.Order;
+import com.mysillydreams.ordercore.domain.OrderItem;
+import com.mysillydreams.ordercore.domain.enums.OrderStatus;
+import com.mysillydreams.ordercore.domain.enums.OrderType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+public record OrderDetailView(
+    UUID id,
+    UUID customerId,
+    OrderType type,
+    OrderStatus status,
+    BigDecimal totalAmount,
+    String currency,
+    Instant createdAt,
+    Instant updatedAt,
+    List<Item> items
+) {
+
+    /**
+     * @param order An order whose items are already loaded.
+     */
+    public static OrderDetailView of(Order order) {
+        return new OrderDetailView(order.getId(), order.getCustomerId(), order.getType(), order.getCurrentStatus(),
+            order.getTotalAmount(), order.getCurrency(), order.getCreatedAt(), order.getUpdatedAt(),
+            order.getItems().stream().map(Item::of).collect(Collectors.toList()));
+    }
+
+    public record Item(UUID productId, String productSku, int quantity, BigDecimal unitPrice, BigDecimal discount,
+                       BigDecimal totalPrice) {
+
+        static Item of(OrderItem item) {
+            return new Item(item.getProductId(), item.getProductSku(), item.getQuantity(), item.getUnitPrice(),
+                item.getDiscount(), item.getTotalPrice());
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.mysillydreams.ordercore.dto;
+
+import java.util.List;
+
+/**
+ * One page of a customer's orders, newest first.
+ *
+ * @param nextCursor Opaque cursor for the next page, or {@code null} if this is the last one.
+ */
+public record OrderHistoryPage(List<OrderSummaryView> orders, String nextCursor) {
+}
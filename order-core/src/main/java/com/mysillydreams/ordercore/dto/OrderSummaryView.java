@@ -0,0 +1,28 @@
+package com.mysillydreams.ordercore.dto;
+
+import com.mysillydreams.ordercore.domain.OrderSummary;
+import com.mysillydreams.ordercore.domain.enums.OrderStatus;
+import com.mysillydreams.ordercore.domain.enums.OrderType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+public record OrderSummaryView(
+    UUID orderId,
+    OrderType type,
+    OrderStatus status,
+    BigDecimal totalAmount,
+    String currency,
+    int itemCount,
+    int totalQuantity,
+    Instant createdAt,
+    Instant statusChangedAt
+) {
+
+    public static OrderSummaryView of(OrderSummary summary) {
+        return new OrderSummaryView(summary.getOrderId(), summary.getType(), summary.getCurrentStatus(),
+            summary.getTotalAmount(), summary.getCurrency(), summary.getItemCount(), summary.getTotalQuantity(),
+            summary.getCreatedAt(), summary.getStatusChangedAt());
+    }
+}
@@ -0,0 +1,21 @@
+package com.mysillydreams.ordercore.dto;
+
+import com.mysillydreams.ordercore.domain.OrderStatusHistory;
+import com.mysillydreams.ordercore.domain.enums.OrderStatus;
+
+import java.time.Instant;
+import java.util.Map;
+
+public record OrderTimelineEntry(
+    OrderStatus oldStatus,
+    OrderStatus newStatus,
+    String changedBy,
+    Instant timestamp,
+    Map<String, Object> metadata
+) {
+
+    public static OrderTimelineEntry of(OrderStatusHistory history) {
+        return new OrderTimelineEntry(history.getOldStatus(), history.getNewStatus(), history.getChangedBy(),
+            history.getTimestamp(), history.getMetadata());
+    }
+}
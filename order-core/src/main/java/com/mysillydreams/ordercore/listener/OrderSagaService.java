@@ -27,26 +27,62 @@ import com.mysillydreams.orderapi.dto.avro.OrderCreatedEvent as OrderApiOrderCre
 import com.mysillydreams.ordercore.dto.avro.PaymentSucceededEvent;
 import com.mysillydreams.ordercore.dto.avro.ReservationSucceededEvent;
 
+import com.mysillydreams.ordercore.domain.OrderSaga;
 import com.mysillydreams.ordercore.domain.enums.OrderStatus;
+import com.mysillydreams.ordercore.domain.enums.SagaStep;
+import com.mysillydreams.ordercore.dto.CreateOrderCommand;
+import com.mysillydreams.ordercore.service.OrderSagaStateService;
 import com.mysillydreams.ordercore.service.OrderService;
 
-import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
+/**
+ * Drives each order through reservation and payment, and cancels it when a step takes too long.
+ * Step events are consumed in batches: a batch is coalesced per order (duplicates dropped, payment before
+ * reservation handled) and applied in one transaction, with the sagas of all its orders loaded in one query.
+ * If the batch fails it is retried order by order, so one bad order does not hold back the others.
+ * The state of each saga, and the deadline of the step it waits on, is kept by {@link OrderSagaStateService}.
+ */
 @Component
-@RequiredArgsConstructor
 public class OrderSagaService {
 
     private static final Logger log = LoggerFactory.getLogger(OrderSagaService.class);
+    static final String TIMEOUT_CHANGED_BY = "OrderSagaTimeout";
+
     private final OrderService orderService;
-    // private final OutboxEventService outboxEventService; // If listeners directly publish next saga step
+    private final OrderSagaStateService sagaStateService;
+    private final TransactionTemplate transactionTemplate;
+    private final int timeoutBatchSize;
+
+    @Autowired
+    public OrderSagaService(OrderService orderService,
+                            OrderSagaStateService sagaStateService,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.saga.timeout-batch-size:100}") int timeoutBatchSize) {
+        this.orderService = orderService;
+        this.sagaStateService = sagaStateService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.timeoutBatchSize = timeoutBatchSize;
+    }
 
     // Listener for OrderCreatedEvent from Order-API (if this is the flow)
     // The plan implies Order-Core's OrderService.createOrder is the entry point,
@@ -56,61 +92,165 @@ public class OrderSagaService {
     // Let's assume the listeners here are for downstream saga events AFTER Order-Core has created an order.
 
     @KafkaListener(
-        topics = "${kafka.topics.inventoryReservationSucceeded}",
+        topics = {"${kafka.topics.inventoryReservationSucceeded}", "${kafka.topics.paymentSucceeded}"},
         groupId = "${kafka.consumer.group-id}",
-        containerFactory = "kafkaListenerContainerFactoryAvro" // Use Avro factory
+        containerFactory = "kafkaListenerContainerFactoryAvroBatch" // Batch of Avro records
     )
-    @Transactional
-    public void onReservationSucceeded(@Payload ReservationSucceededEvent event) { // Consume Avro type
+    public void onSagaStepEvents(List<ConsumerRecord<String, Object>> records) {
+        Map<UUID, PendingSteps> stepsByOrder = coalesce(records);
+        if (stepsByOrder.isEmpty()) {
+            return;
+        }
         try {
-            UUID orderId = UUID.fromString(event.orderId()); // Access field from record/Avro object
-            log.info("Received ReservationSucceeded event for orderId: {}", orderId);
-
-            // Update order status to PAID
-            // The guide states: "orderSvc.updateStatus(id, OrderStatus.PAID, "inventory");"
-            // This implies that after reservation, the order is considered ready for payment/paid.
-            // This might vary based on exact saga flow (e.g., might go to RESERVED, then trigger payment).
-            // Following guide: update to PAID, then trigger payment.
-            orderService.updateOrderStatus(orderId, OrderStatus.PAID, "InventoryService");
-
-            // Next step in saga: Trigger payment request
-            // This would typically involve publishing an event like RequestPaymentCommand or PaymentRequestedEvent
-            // via the outbox.
-            // Example:
-            // PaymentRequestPayload paymentRequest = new PaymentRequestPayload(orderId, amount, ...);
-            // outboxEventService.createAndSaveOutboxEvent("Order", orderId.toString(), "payment.request", paymentRequest);
-            log.info("Order {} status updated to PAID after inventory reservation. Next: Trigger payment.", orderId);
-
-        } catch (Exception e) {
-            log.error("Error processing ReservationSucceeded event for payload {}: {}", event.toString(), e.getMessage(), e);
-            // Error handling: depends on KafkaConsumerConfig's error handler (e.g., retry, DLT)
-            throw e; // Re-throw to engage Kafka error handler
+            transactionTemplate.executeWithoutResult(status -> applySteps(stepsByOrder));
+        } catch (RuntimeException e) {
+            log.warn("Saga batch of {} orders failed, retrying order by order: {}", stepsByOrder.size(), e.getMessage());
+            for (Map.Entry<UUID, PendingSteps> entry : stepsByOrder.entrySet()) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> applySteps(Map.of(entry.getKey(), entry.getValue())));
+                } catch (RuntimeException orderFailure) {
+                    // Orders before this one are committed; from this order on the batch is redelivered,
+                    // and steps already applied are then ignored as duplicates
+                    throw new BatchListenerFailedException("Saga step failed for orderId: " + entry.getKey(),
+                        orderFailure, entry.getValue().firstIndex);
+                }
+            }
         }
     }
 
-    @KafkaListener(
-        topics = "${kafka.topics.paymentSucceeded}",
-        groupId = "${kafka.consumer.group-id}",
-        containerFactory = "kafkaListenerContainerFactoryAvro" // Use Avro factory
-    )
-    @Transactional
-    public void onPaymentSucceeded(@Payload PaymentSucceededEvent event) { // Consume Avro type
-        try {
-            UUID orderId = UUID.fromString(event.orderId());
-            log.info("Received PaymentSucceeded event for orderId: {}", orderId);
+    /**
+     * Cancels orders whose saga has waited past its deadline. Sagas are claimed in batches so several instances
+     * can scan at once; each claimed order is then compensated in its own transaction.
+     */
+    @Scheduled(fixedDelayString = "${app.saga.timeout-scan-delay-ms:10000}", initialDelayString = "${app.saga.timeout-scan-initial-delay-ms:15000}")
+    public void compensateTimedOutSagas() {
+        List<UUID> claimed;
+        do {
+            claimed = transactionTemplate.execute(status -> sagaStateService.claimExpired(timeoutBatchSize));
+            if (claimed == null || claimed.isEmpty()) {
+                return;
+            }
+            log.info("Compensating {} order sagas past their deadline", claimed.size());
+            for (UUID orderId : claimed) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> compensate(orderId));
+                } catch (RuntimeException e) {
+                    // Claimed again by a later scan once the claim lease runs out
+                    log.error("Failed to compensate timed out saga for orderId: {}. Error: {}", orderId, e.getMessage(), e);
+                }
+            }
+        } while (claimed.size() == timeoutBatchSize);
+    }
+
+    void compensate(UUID orderId) {
+        // Locked until the cancellation commits: a payment or reservation being applied right now either commits
+        // first, and the saga is then no longer awaiting, or waits and fails its optimistic check on the saga
+        OrderSaga saga = sagaStateService.findForUpdate(orderId).orElse(null);
+        if (saga == null || !saga.getStep().isAwaiting()) {
+            return; // Advanced or cancelled since it was claimed
+        }
+        String awaited = saga.getStep() == SagaStep.AWAITING_RESERVATION
+            ? "inventory reservation" : "payment";
+        log.warn("Order {} timed out waiting for {}, cancelling it", orderId, awaited);
+        // Publishes order.cancelled, on which inventory releases whatever it reserved
+        orderService.cancelOrder(orderId, "Timed out waiting for " + awaited, TIMEOUT_CHANGED_BY);
+    }
 
-            // Update order status to CONFIRMED
-            orderService.updateOrderStatus(orderId, OrderStatus.CONFIRMED, "PaymentService");
+    private Map<UUID, PendingSteps> coalesce(List<ConsumerRecord<String, Object>> records) {
+        Map<UUID, PendingSteps> stepsByOrder = new LinkedHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            Object event = records.get(i).value();
+            String orderId;
+            boolean payment;
+            if (event instanceof ReservationSucceededEvent reservation) {
+                orderId = reservation.orderId();
+                payment = false;
+            } else if (event instanceof PaymentSucceededEvent paymentSucceeded) {
+                orderId = paymentSucceeded.orderId();
+                payment = true;
+            } else {
+                // Undeserializable (null) or unexpected payloads cannot be retried into shape
+                log.error("Skipping saga record at offset {} of {}: unexpected payload {}",
+                    records.get(i).offset(), records.get(i).topic(), event);
+                continue;
+            }
+            UUID id;
+            try {
+                id = UUID.fromString(orderId);
+            } catch (RuntimeException e) {
+                log.error("Skipping saga record at offset {} of {}: invalid orderId {}", records.get(i).offset(), records.get(i).topic(), orderId);
+                continue;
+            }
+            PendingSteps steps = stepsByOrder.computeIfAbsent(id, k -> new PendingSteps());
+            if (steps.firstIndex < 0) {
+                steps.firstIndex = i;
+            }
+            if (payment) {
+                steps.paymentSucceeded = true;
+            } else {
+                steps.reservationSucceeded = true;
+            }
+        }
+        return stepsByOrder;
+    }
 
-            // Next step in saga: e.g., notify fulfillment, vendor assignment
-            log.info("Order {} status updated to CONFIRMED after payment. Next: Trigger fulfillment.", orderId);
+    private void applySteps(Map<UUID, PendingSteps> stepsByOrder) {
+        Map<UUID, OrderSaga> sagas = sagaStateService.findAll(stepsByOrder.keySet());
+        stepsByOrder.forEach((orderId, steps) -> {
+            OrderSaga saga = sagas.get(orderId);
+            if (saga == null) {
+                log.warn("No saga for orderId: {}, ignoring reservation={} payment={}", orderId,
+                    steps.reservationSucceeded, steps.paymentSucceeded);
+                return;
+            }
+            advance(saga, steps);
+        });
+    }
 
-        } catch (Exception e) {
-            log.error("Error processing PaymentSucceeded event for payload {}: {}", event.toString(), e.getMessage(), e);
-            throw e; // Re-throw
+    private void advance(OrderSaga saga, PendingSteps steps) {
+        UUID orderId = saga.getOrderId();
+        boolean paid = steps.paymentSucceeded || saga.isPaymentReceived();
+        switch (saga.getStep()) {
+            case AWAITING_RESERVATION:
+                if (steps.reservationSucceeded) {
+                    // Following the guide, a reserved order is PAID and then awaits payment confirmation
+                    orderService.updateOrderStatus(orderId, OrderStatus.PAID, "InventoryService");
+                    if (paid) {
+                        orderService.updateOrderStatus(orderId, OrderStatus.CONFIRMED, "PaymentService");
+                        sagaStateService.complete(saga);
+                        log.info("Order {} reserved and paid. Next: Trigger fulfillment.", orderId);
+                    } else {
+                        sagaStateService.awaitPayment(saga);
+                        log.info("Order {} status updated to PAID after inventory reservation. Next: Trigger payment.", orderId);
+                    }
+                } else if (steps.paymentSucceeded) {
+                    sagaStateService.paymentReceivedEarly(saga);
+                    log.info("Payment for order {} arrived before its reservation; confirming once reserved.", orderId);
+                }
+                break;
+            case AWAITING_PAYMENT:
+                if (paid) {
+                    orderService.updateOrderStatus(orderId, OrderStatus.CONFIRMED, "PaymentService");
+                    sagaStateService.complete(saga);
+                    log.info("Order {} status updated to CONFIRMED after payment. Next: Trigger fulfillment.", orderId);
+                }
+                break;
+            default:
+                // Redelivered, or arrived after the saga ended (e.g. payment for a timed out order)
+                log.warn("Ignoring saga steps for order {} in step {}: reservation={} payment={}", orderId,
+                    saga.getStep(), steps.reservationSucceeded, steps.paymentSucceeded);
         }
     }
 
+    /**
+     * The steps seen for one order in a batch, and where in the batch the order first appears.
+     */
+    private static final class PendingSteps {
+        private int firstIndex = -1;
+        private boolean reservationSucceeded;
+        private boolean paymentSucceeded;
+    }
+
     // Listener for OrderCreatedEvent from Order-API (assuming it's Avro)
     // This listener would be responsible for initiating the order creation in Order-Core
     // if the Order-API `order.created` event is the trigger.
@@ -163,6 +303,7 @@ public class OrderSagaService {
     // Add more listeners for other saga steps:
     // - InventoryFailed/ReservationFailed -> Handle compensation (e.g., notify customer, cancel order)
     // - PaymentFailed -> Handle compensation (e.g., retry payment, notify customer, cancel order)
+    //   (steps that never arrive are already compensated by compensateTimedOutSagas)
     // - FulfillmentUpdate (e.g., order.shipped from FulfillmentService) -> Update order status in Order-Core
     // - etc.
 }
@@ -1,9 +1,11 @@
 package com.mysillydreams.ordercore.repository;
 
 import com.mysillydreams.ordercore.domain.Order;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
@@ -13,4 +15,9 @@ public interface OrderRepository extends JpaRepository<Order, UUID> {
     // For example:
     // Optional<Order> findByCustomerIdAndId(UUID customerId, UUID orderId);
     // List<Order> findByCurrentStatus(OrderStatus status);
+
+    // Order and its items in one query. History is read separately: fetching both bags at once is not allowed
+    // and would multiply the rows.
+    @EntityGraph(attributePaths = "items")
+    Optional<Order> findWithItemsById(UUID id);
 }
@@ -0,0 +1,44 @@
+package com.mysillydreams.ordercore.repository;
+
+import com.mysillydreams.ordercore.domain.OrderSaga;
+import com.mysillydreams.ordercore.domain.enums.SagaStep;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface OrderSagaRepository extends JpaRepository<OrderSaga, UUID> {
+
+    // Row lock held until the caller's transaction ends: a saga step committed meanwhile is seen, not overwritten
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM OrderSaga s WHERE s.orderId = :orderId")
+    Optional<OrderSaga> findByIdForUpdate(@Param("orderId") UUID orderId);
+
+    // Oldest expired sagas first, from idx_order_sagas_deadline. SKIP LOCKED lets several instances scan at once
+    // without claiming the same rows.
+    @Query(value = "SELECT order_id FROM order_sagas WHERE deadline <= :now " +
+                   "ORDER BY deadline LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<UUID> lockExpired(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE OrderSaga s SET s.deadline = :deadline, s.updatedAt = :now, s.version = s.version + 1 " +
+           "WHERE s.orderId IN :orderIds")
+    int extendDeadlines(@Param("orderIds") Collection<UUID> orderIds, @Param("deadline") Instant deadline,
+                        @Param("now") Instant now);
+
+    @Modifying
+    @Query("UPDATE OrderSaga s SET s.step = :step, s.deadline = null, s.updatedAt = :now, s.version = s.version + 1 " +
+           "WHERE s.orderId = :orderId")
+    int end(@Param("orderId") UUID orderId, @Param("step") SagaStep step, @Param("now") Instant now);
+}
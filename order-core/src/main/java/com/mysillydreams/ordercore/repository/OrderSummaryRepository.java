@@ -0,0 +1,38 @@
+package com.mysillydreams.ordercore.repository;
+
+import com.mysillydreams.ordercore.domain.OrderSummary;
+import com.mysillydreams.ordercore.domain.enums.OrderStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface OrderSummaryRepository extends JpaRepository<OrderSummary, UUID> {
+
+    // Keyset pagination, newest first. Both queries are range scans of idx_order_summaries_customer_created,
+    // so a page costs the same however deep into a customer's history it is.
+    @Query(value = "SELECT * FROM order_summaries WHERE customer_id = :customerId " +
+                   "ORDER BY created_at DESC, order_id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<OrderSummary> findFirstPage(@Param("customerId") UUID customerId, @Param("limit") int limit);
+
+    // The row comparison lets PostgreSQL start the scan right after the cursor
+    @Query(value = "SELECT * FROM order_summaries WHERE customer_id = :customerId " +
+                   "AND (created_at, order_id) < (:createdAt, :orderId) " +
+                   "ORDER BY created_at DESC, order_id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<OrderSummary> findPageAfter(@Param("customerId") UUID customerId,
+                                     @Param("createdAt") Instant createdAt,
+                                     @Param("orderId") UUID orderId,
+                                     @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE OrderSummary s SET s.currentStatus = :status, s.statusChangedAt = :changedAt WHERE s.orderId = :orderId")
+    int updateStatus(@Param("orderId") UUID orderId, @Param("status") OrderStatus status, @Param("changedAt") Instant changedAt);
+}
@@ -0,0 +1,100 @@
+package com.mysillydreams.ordercore.service;
+
+import com.mysillydreams.ordercore.domain.OrderSummary;
+import com.mysillydreams.ordercore.dto.OrderDetailView;
+import com.mysillydreams.ordercore.dto.OrderHistoryPage;
+import com.mysillydreams.ordercore.dto.OrderSummaryView;
+import com.mysillydreams.ordercore.dto.OrderTimelineEntry;
+import com.mysillydreams.ordercore.repository.OrderRepository;
+import com.mysillydreams.ordercore.repository.OrderStatusHistoryRepository;
+import com.mysillydreams.ordercore.repository.OrderSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Read side of order-core. Every method is a single query:
+ * - order lists come from the {@code order_summaries} read model, paged by keyset rather than offset;
+ * - an order's detail view loads the order with its items in one join;
+ * - the timeline reads the status history by order ID without loading the order.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class OrderQueryService {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final OrderSummaryRepository orderSummaryRepository;
+    private final OrderRepository orderRepository;
+    private final OrderStatusHistoryRepository orderStatusHistoryRepository;
+
+    /**
+     * @param cursor {@code nextCursor} of the previous page, or {@code null} for the first page.
+     * @param limit  Page size, capped at {@link #MAX_PAGE_SIZE}.
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    public OrderHistoryPage findCustomerOrders(UUID customerId, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // One extra row tells whether there is a next page without a count query
+        List<OrderSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = orderSummaryRepository.findFirstPage(customerId, pageSize + 1);
+        } else {
+            Cursor after = Cursor.decode(cursor);
+            rows = orderSummaryRepository.findPageAfter(customerId, after.createdAt(), after.orderId(), pageSize + 1);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<OrderSummary> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            OrderSummary last = page.get(page.size() - 1);
+            nextCursor = new Cursor(last.getCreatedAt(), last.getOrderId()).encode();
+        }
+        return new OrderHistoryPage(page.stream().map(OrderSummaryView::of).collect(Collectors.toList()), nextCursor);
+    }
+
+    public Optional<OrderDetailView> findOrderDetail(UUID orderId) {
+        return orderRepository.findWithItemsById(orderId).map(OrderDetailView::of);
+    }
+
+    /**
+     * @return The order's status changes, newest first; empty if the order does not exist.
+     */
+    public List<OrderTimelineEntry> findTimeline(UUID orderId) {
+        return orderStatusHistoryRepository.findByOrderIdOrderByTimestampDesc(orderId).stream()
+            .map(OrderTimelineEntry::of)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Position after the last order of a page. Encoded opaquely so clients pass it back unchanged.
+     */
+    record Cursor(Instant createdAt, UUID orderId) {
+
+        String encode() {
+            String raw = createdAt + "|" + orderId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new Cursor(Instant.parse(raw.substring(0, separator)), UUID.fromString(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid order history cursor", e);
+            }
+        }
+    }
+}
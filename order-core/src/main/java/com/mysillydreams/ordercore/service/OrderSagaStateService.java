@@ -0,0 +1,133 @@
+package com.mysillydreams.ordercore.service;
+
+import com.mysillydreams.ordercore.domain.OrderSaga;
+import com.mysillydreams.ordercore.domain.enums.SagaStep;
+import com.mysillydreams.ordercore.repository.OrderSagaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Persists saga state and owns the saga's timing: how long each step may take and how expired sagas are claimed.
+ * Changes join the caller's transaction, so the saga row always moves together with the order's status.
+ */
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class OrderSagaStateService {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderSagaStateService.class);
+
+    private final OrderSagaRepository orderSagaRepository;
+    private final Duration reservationTimeout;
+    private final Duration paymentTimeout;
+    private final Duration claimLease;
+    private final Clock clock;
+
+    @Autowired
+    public OrderSagaStateService(OrderSagaRepository orderSagaRepository,
+                                 @Value("${app.saga.reservation-timeout-minutes:15}") long reservationTimeoutMinutes,
+                                 @Value("${app.saga.payment-timeout-minutes:30}") long paymentTimeoutMinutes,
+                                 @Value("${app.saga.claim-lease-seconds:60}") long claimLeaseSeconds) {
+        this(orderSagaRepository, Duration.ofMinutes(reservationTimeoutMinutes), Duration.ofMinutes(paymentTimeoutMinutes),
+            Duration.ofSeconds(claimLeaseSeconds), Clock.systemUTC());
+    }
+
+    OrderSagaStateService(OrderSagaRepository orderSagaRepository, Duration reservationTimeout, Duration paymentTimeout,
+                          Duration claimLease, Clock clock) {
+        this.orderSagaRepository = orderSagaRepository;
+        this.reservationTimeout = reservationTimeout;
+        this.paymentTimeout = paymentTimeout;
+        this.claimLease = claimLease;
+        this.clock = clock;
+    }
+
+    /**
+     * Opens the saga of a new order, waiting for its reservation.
+     */
+    public void start(UUID orderId) {
+        Instant now = clock.instant();
+        orderSagaRepository.save(new OrderSaga(orderId, SagaStep.AWAITING_RESERVATION, now.plus(reservationTimeout),
+            false, now, null));
+    }
+
+    /**
+     * Loads the sagas of several orders in one query. Orders without a saga are missing from the result.
+     */
+    public Map<UUID, OrderSaga> findAll(Collection<UUID> orderIds) {
+        return orderSagaRepository.findAllById(orderIds).stream()
+            .collect(Collectors.toMap(OrderSaga::getOrderId, Function.identity()));
+    }
+
+    public Optional<OrderSaga> find(UUID orderId) {
+        return orderSagaRepository.findById(orderId);
+    }
+
+    /**
+     * Loads the saga and locks its row until the caller's transaction ends, so no saga step can commit in between.
+     * Waits for a step that is being applied concurrently and returns the saga as that step left it.
+     */
+    public Optional<OrderSaga> findForUpdate(UUID orderId) {
+        return orderSagaRepository.findByIdForUpdate(orderId);
+    }
+
+    public void awaitPayment(OrderSaga saga) {
+        Instant now = clock.instant();
+        saga.setStep(SagaStep.AWAITING_PAYMENT);
+        saga.setDeadline(now.plus(paymentTimeout));
+        saga.setUpdatedAt(now);
+    }
+
+    /**
+     * Records a payment that arrived while the reservation is still awaited; the deadline stays as it is.
+     */
+    public void paymentReceivedEarly(OrderSaga saga) {
+        saga.setPaymentReceived(true);
+        saga.setUpdatedAt(clock.instant());
+    }
+
+    public void complete(OrderSaga saga) {
+        saga.setStep(SagaStep.COMPLETED);
+        saga.setDeadline(null);
+        saga.setUpdatedAt(clock.instant());
+    }
+
+    /**
+     * Ends the saga without loading it, e.g. when the order is cancelled. Does nothing for orders without a saga.
+     */
+    public void end(UUID orderId, SagaStep step) {
+        if (orderSagaRepository.end(orderId, step, clock.instant()) == 0) {
+            log.debug("No saga to end for orderId: {}", orderId);
+        }
+    }
+
+    /**
+     * Claims up to {@code limit} sagas whose deadline has passed by pushing their deadline one lease ahead.
+     * The claim commits with the caller's transaction; a claimed saga that is not compensated before the lease
+     * runs out is claimed again by a later scan.
+     *
+     * @return The claimed order IDs, oldest deadline first.
+     */
+    public List<UUID> claimExpired(int limit) {
+        Instant now = clock.instant();
+        List<UUID> expired = orderSagaRepository.lockExpired(now, limit);
+        if (!expired.isEmpty()) {
+            orderSagaRepository.extendDeadlines(expired, now.plus(claimLease), now);
+        }
+        return expired;
+    }
+}
@@ -3,7 +3,9 @@ package com.mysillydreams.ordercore.service;
 import com.mysillydreams.ordercore.domain.Order;
 import com.mysillydreams.ordercore.domain.OrderItem;
 import com.mysillydreams.ordercore.domain.OrderStatusHistory;
+import com.mysillydreams.ordercore.domain.OrderSummary;
 import com.mysillydreams.ordercore.domain.enums.OrderStatus;
+import com.mysillydreams.ordercore.domain.enums.SagaStep;
 import com.mysillydreams.ordercore.dto.CreateOrderCommand;
 import com.mysillydreams.ordercore.dto.OrderCancelledEventDto;
 import com.mysillydreams.ordercore.dto.OrderCreatedEventDto;
@@ -11,6 +13,8 @@ import com.mysillydreams.ordercore.dto.OrderStatusUpdatedEventDto; // Create thi
 import com.mysillydreams.ordercore.repository.OrderRepository;
 import com.mysillydreams.ordercore.repository.OrderItemRepository; // Not used in guide's snippet directly but likely needed
 import com.mysillydreams.ordercore.repository.OrderStatusHistoryRepository;
+import com.mysillydreams.ordercore.repository.OrderSummaryRepository;
+import com.mysillydreams.ordercore.util.TimeOrderedUuid;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +39,8 @@ public class OrderServiceImpl implements OrderService {
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository; // Added for saving items
     private final OrderStatusHistoryRepository orderStatusHistoryRepository;
+    private final OrderSummaryRepository orderSummaryRepository; // Read model for order lists
+    private final OrderSagaStateService orderSagaStateService;
     private final OutboxEventService outboxEventService;
 
     @Override
@@ -42,7 +48,7 @@ public class OrderServiceImpl implements OrderService {
         log.info("Attempting to create order for customer: {}", cmd.getCustomerId());
 
         Order order = new Order();
-        order.setId(UUID.randomUUID()); // Generate new Order ID
+        order.setId(TimeOrderedUuid.next()); // Generate new Order ID
         order.setCustomerId(cmd.getCustomerId());
         order.setType(cmd.getOrderType());
         order.setCurrency(cmd.getCurrency());
@@ -54,7 +60,7 @@ public class OrderServiceImpl implements OrderService {
         if (cmd.getItems() != null) {
             for (CreateOrderCommand.LineItemCommand itemCmd : cmd.getItems()) {
                 OrderItem orderItem = new OrderItem();
-                orderItem.setId(UUID.randomUUID());
+                orderItem.setId(TimeOrderedUuid.next());
                 orderItem.setProductId(itemCmd.getProductId());
                 orderItem.setProductSku(itemCmd.getProductSku()); // Assuming SKU is passed or can be fetched
                 orderItem.setQuantity(itemCmd.getQuantity());
@@ -80,6 +86,8 @@ public class OrderServiceImpl implements OrderService {
 
         // Record initial status history
         addOrderStatusHistory(savedOrder, null, OrderStatus.CREATED, "system", null);
+        orderSummaryRepository.save(OrderSummary.of(savedOrder));
+        orderSagaStateService.start(savedOrder.getId()); // Times out unless inventory reserves the items in time
 
         // Publish OrderCreatedEvent via Outbox
         List<OrderCreatedEventDto.LineItemDto> eventItems = savedOrder.getItems().stream()
@@ -96,7 +104,7 @@ public class OrderServiceImpl implements OrderService {
             savedOrder.getCurrency(),
             savedOrder.getCreatedAt()
         );
-        outboxEventService.createAndSaveOutboxEvent("Order", savedOrder.getId().toString(), "order.created", eventDto);
+        outboxEventService.createAndSaveOutboxEvent("Order", savedOrder.getId().toString(), OutboxEventRegistry.ORDER_CREATED, eventDto);
 
         log.info("Order created successfully with ID: {}", savedOrder.getId());
         return savedOrder.getId();
@@ -118,10 +126,11 @@ public class OrderServiceImpl implements OrderService {
         orderRepository.save(order); // Version will be incremented
 
         addOrderStatusHistory(order, oldStatus, newStatus, changedBy, null); // Metadata can be added if needed
+        updateOrderSummary(order);
 
         // Publish OrderStatusUpdatedEvent via Outbox
         // Example: eventType could be "order.status.paid", "order.status.confirmed"
-        String eventType = "order.status." + newStatus.name().toLowerCase();
+        String eventType = OutboxEventRegistry.statusEventType(newStatus);
         OrderStatusUpdatedEventDto eventDto = new OrderStatusUpdatedEventDto(orderId, oldStatus, newStatus, changedBy, Instant.now());
         outboxEventService.createAndSaveOutboxEvent("Order", orderId.toString(), eventType, eventDto);
 
@@ -133,16 +142,25 @@ public class OrderServiceImpl implements OrderService {
         log.info("Attempting to cancel orderId: {} by {} with reason: {}", orderId, changedBy, reason);
         // First, update status to CANCELLED. This will also publish a generic status update event.
         updateOrderStatus(orderId, OrderStatus.CANCELLED, changedBy);
+        orderSagaStateService.end(orderId, SagaStep.CANCELLED);
 
         // Then, publish a specific OrderCancelledEvent as per the guide's snippet for OrderServiceImpl.
         // This might be redundant if the generic status update is sufficient, or it might carry more specific cancellation details.
         // The guide's example implies a separate specific event.
         OrderCancelledEventDto eventDto = new OrderCancelledEventDto(orderId, reason, Instant.now());
-        outboxEventService.createAndSaveOutboxEvent("Order", orderId.toString(), "order.cancelled", eventDto);
+        outboxEventService.createAndSaveOutboxEvent("Order", orderId.toString(), OutboxEventRegistry.ORDER_CANCELLED, eventDto);
 
         log.info("Order cancellation process completed for orderId: {}", orderId);
     }
 
+    private void updateOrderSummary(Order order) {
+        // Bulk update: no need to load the summary just to change two columns
+        if (orderSummaryRepository.updateStatus(order.getId(), order.getCurrentStatus(), Instant.now()) == 0) {
+            log.warn("No order summary for orderId: {}, rebuilding it", order.getId());
+            orderSummaryRepository.save(OrderSummary.of(order));
+        }
+    }
+
     private void addOrderStatusHistory(Order order, OrderStatus oldStatus, OrderStatus newStatus, String changedBy, Map<String, Object> metadata) {
         OrderStatusHistory historyEntry = new OrderStatusHistory(order, oldStatus, newStatus, changedBy, metadata);
         // order.addStatusHistory(historyEntry); // This would add to list but not save directly if Order manages collection
@@ -0,0 +1,89 @@
+package com.mysillydreams.ordercore.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mysillydreams.ordercore.domain.enums.OrderStatus;
+import com.mysillydreams.ordercore.dto.avro.OrderCancelledEvent;
+import com.mysillydreams.ordercore.dto.avro.OrderCreatedEvent;
+import com.mysillydreams.ordercore.dto.avro.OrderStatusAvro;
+import com.mysillydreams.ordercore.dto.avro.OrderStatusUpdatedEvent;
+import com.mysillydreams.ordercore.util.JsonAvroBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Every event type Order-Core writes to the outbox, with the topic it is published to and the binder that turns its
+ * JSON payload into Avro. Built once at startup: a type whose topic or Avro mapping is invalid stops the application
+ * from starting instead of failing at send time, and {@link OutboxEventService} refuses to store unregistered types.
+ */
+@Component
+public class OutboxEventRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxEventRegistry.class);
+
+    public static final String ORDER_CREATED = "order.created";
+    public static final String ORDER_CANCELLED = "order.cancelled";
+    private static final String ORDER_STATUS_PREFIX = "order.status.";
+
+    private final Map<String, Route> routes;
+
+    public OutboxEventRegistry(@Value("${kafka.topics.orderCreated:order.core.created}") String orderCreatedTopic,
+                               @Value("${kafka.topics.orderCancelled:order.core.cancelled}") String orderCancelledTopic) {
+        Map<String, Route> registered = new HashMap<>();
+        register(registered, ORDER_CREATED, orderCreatedTopic, JsonAvroBinder.forClass(OrderCreatedEvent.class));
+        register(registered, ORDER_CANCELLED, orderCancelledTopic, JsonAvroBinder.forClass(OrderCancelledEvent.class));
+
+        // One type per status, all sharing one binder; each status type is also the name of its topic
+        JsonAvroBinder<OrderStatusUpdatedEvent> statusBinder = JsonAvroBinder.forClass(OrderStatusUpdatedEvent.class);
+        for (OrderStatus status : OrderStatus.values()) {
+            try {
+                OrderStatusAvro.valueOf(status.name());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("OrderStatusAvro has no symbol for order status " + status, e);
+            }
+            String eventType = statusEventType(status);
+            register(registered, eventType, eventType, statusBinder);
+        }
+        this.routes = Map.copyOf(registered);
+        log.info("Registered {} outbox event types", routes.size());
+    }
+
+    /**
+     * @return The outbox event type for a change to the given status, e.g. {@code order.status.paid}.
+     */
+    public static String statusEventType(OrderStatus status) {
+        return ORDER_STATUS_PREFIX + status.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return The route for the event type, or {@code null} if it is not registered.
+     */
+    public Route route(String eventType) {
+        return eventType != null ? routes.get(eventType) : null;
+    }
+
+    public boolean isRegistered(String eventType) {
+        return route(eventType) != null;
+    }
+
+    private static void register(Map<String, Route> routes, String eventType, String topic, JsonAvroBinder<?> binder) {
+        if (topic == null || topic.trim().isEmpty()) {
+            throw new IllegalStateException("No topic configured for outbox event type " + eventType);
+        }
+        if (routes.putIfAbsent(eventType, new Route(topic, binder)) != null) {
+            throw new IllegalStateException("Outbox event type registered twice: " + eventType);
+        }
+    }
+
+    public record Route(String topic, JsonAvroBinder<?> binder) {
+
+        public Object toAvro(JsonNode payload) {
+            return binder.bind(payload);
+        }
+    }
+}
@@ -19,6 +19,7 @@ public class OutboxEventService {
 
     private final OutboxRepository outboxRepository;
     private final ObjectMapper objectMapper; // Spring Boot auto-configures one, or define a custom one
+    private final OutboxEventRegistry eventRegistry;
 
     /**
      * Creates and saves an outbox event.
@@ -27,11 +28,15 @@ public class OutboxEventService {
      *
      * @param aggregateType The type of the aggregate root (e.g., "Order").
      * @param aggregateId   The ID of the aggregate root.
-     * @param eventType     The type of the event (e.g., "order.created").
+     * @param eventType     The type of the event (e.g., "order.created"). Must be registered in {@link OutboxEventRegistry}.
      * @param payload       The event payload object.
      */
     @Transactional(propagation = Propagation.MANDATORY) // Ensures this is part of an existing transaction
     public void createAndSaveOutboxEvent(String aggregateType, String aggregateId, String eventType, Object payload) {
+        // An event the poller cannot route would sit in the outbox forever, so fail the business transaction instead
+        if (!eventRegistry.isRegistered(eventType)) {
+            throw new IllegalArgumentException("Unregistered outbox event type: " + eventType);
+        }
         try {
             JsonNode payloadJsonNode = objectMapper.valueToTree(payload);
 
@@ -0,0 +1,260 @@
+package com.mysillydreams.ordercore.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.avro.Schema;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificRecord;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converts outbox JSON payloads into one Avro-generated record class.
+ * The record's schema is walked once, when the binder is created, into a tree of converters: field positions,
+ * enum constants and record constructors are all resolved up front, so binding a payload is a plain walk of the
+ * JSON with no reflection or class lookups. Schemas the binder cannot handle are rejected at creation.
+ * Longs also accept ISO-8601 instants and decimal epoch seconds, the two ways Jackson writes the event DTOs'
+ * {@code Instant} fields; they are bound as epoch milliseconds.
+ */
+public final class JsonAvroBinder<T extends SpecificRecord> {
+
+    private final Class<T> recordClass;
+    private final Converter converter;
+
+    private JsonAvroBinder(Class<T> recordClass, Converter converter) {
+        this.recordClass = recordClass;
+        this.converter = converter;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the class has no Avro schema or its schema uses a type the binder does
+     *                                  not support.
+     */
+    public static <T extends SpecificRecord> JsonAvroBinder<T> forClass(Class<T> recordClass) {
+        Schema schema = SpecificData.get().getSchema(recordClass);
+        if (schema.getType() != Schema.Type.RECORD) {
+            throw new IllegalArgumentException(recordClass.getName() + " is not an Avro record class");
+        }
+        return new JsonAvroBinder<>(recordClass, compile(schema, schema.getName(), new HashSet<>()));
+    }
+
+    public Class<T> getRecordClass() {
+        return recordClass;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the payload does not match the schema.
+     */
+    public T bind(JsonNode json) {
+        return recordClass.cast(converter.convert(json, recordClass.getSimpleName()));
+    }
+
+    @FunctionalInterface
+    private interface Converter {
+        Object convert(JsonNode node, String path);
+    }
+
+    private static Converter compile(Schema schema, String path, Set<String> recordsInProgress) {
+        switch (schema.getType()) {
+            case RECORD:
+                return compileRecord(schema, path, recordsInProgress);
+            case UNION:
+                return compileNullable(schema, path, recordsInProgress);
+            case ENUM:
+                return compileEnum(schema, path);
+            case ARRAY: {
+                Converter element = compile(schema.getElementType(), path + "[]", recordsInProgress);
+                return nonNull((node, at) -> {
+                    require(node.isArray(), node, at, "an array");
+                    List<Object> values = new ArrayList<>(node.size());
+                    for (int i = 0; i < node.size(); i++) {
+                        values.add(element.convert(node.get(i), at + "[" + i + "]"));
+                    }
+                    return values;
+                });
+            }
+            case MAP: {
+                Converter value = compile(schema.getValueType(), path + "{}", recordsInProgress);
+                return nonNull((node, at) -> {
+                    require(node.isObject(), node, at, "an object");
+                    Map<String, Object> values = new LinkedHashMap<>();
+                    for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+                        Map.Entry<String, JsonNode> entry = it.next();
+                        values.put(entry.getKey(), value.convert(entry.getValue(), at + "." + entry.getKey()));
+                    }
+                    return values;
+                });
+            }
+            case STRING:
+                return nonNull((node, at) -> {
+                    require(node.isValueNode(), node, at, "a string");
+                    return node.asText();
+                });
+            case INT:
+                return nonNull((node, at) -> {
+                    require(node.isIntegralNumber() && node.canConvertToInt(), node, at, "an int");
+                    return node.intValue();
+                });
+            case LONG:
+                return nonNull(JsonAvroBinder::toLong);
+            case DOUBLE:
+                return nonNull((node, at) -> {
+                    require(node.isNumber(), node, at, "a number");
+                    return node.doubleValue();
+                });
+            case FLOAT:
+                return nonNull((node, at) -> {
+                    require(node.isNumber(), node, at, "a number");
+                    return node.floatValue();
+                });
+            case BOOLEAN:
+                return nonNull((node, at) -> {
+                    require(node.isBoolean(), node, at, "a boolean");
+                    return node.booleanValue();
+                });
+            case NULL:
+                return (node, at) -> {
+                    require(node.isNull(), node, at, "null");
+                    return null;
+                };
+            default:
+                throw new IllegalArgumentException("Unsupported Avro type " + schema.getType() + " at " + path);
+        }
+    }
+
+    private static Converter compileRecord(Schema schema, String path, Set<String> recordsInProgress) {
+        if (!recordsInProgress.add(schema.getFullName())) {
+            throw new IllegalArgumentException("Recursive Avro record " + schema.getFullName() + " at " + path);
+        }
+        Constructor<?> constructor = recordConstructor(schema, path);
+        List<FieldBinding> fields = new ArrayList<>();
+        for (Schema.Field field : schema.getFields()) {
+            fields.add(new FieldBinding(field, compile(field.schema(), path + "." + field.name(), recordsInProgress)));
+        }
+        recordsInProgress.remove(schema.getFullName());
+
+        return nonNull((node, at) -> {
+            require(node.isObject(), node, at, "an object");
+            SpecificRecord record = newRecord(constructor, at);
+            for (FieldBinding binding : fields) {
+                JsonNode value = node.get(binding.field.name());
+                if (value != null) {
+                    record.put(binding.field.pos(), binding.converter.convert(value, at + "." + binding.field.name()));
+                } else if (binding.field.hasDefaultValue()) {
+                    record.put(binding.field.pos(), SpecificData.get().getDefaultValue(binding.field));
+                } else {
+                    throw new IllegalArgumentException("Missing required field " + at + "." + binding.field.name());
+                }
+            }
+            return record;
+        });
+    }
+
+    // Only the optional-value union, ["null", T], is supported: that is the only union the event schemas use
+    private static Converter compileNullable(Schema schema, String path, Set<String> recordsInProgress) {
+        List<Schema> types = schema.getTypes();
+        if (types.size() != 2 || types.stream().noneMatch(type -> type.getType() == Schema.Type.NULL)) {
+            throw new IllegalArgumentException("Unsupported Avro union " + schema + " at " + path);
+        }
+        Schema valueType = types.get(0).getType() == Schema.Type.NULL ? types.get(1) : types.get(0);
+        Converter value = compile(valueType, path, recordsInProgress);
+        return (node, at) -> node.isNull() ? null : value.convert(node, at);
+    }
+
+    private static Converter compileEnum(Schema schema, String path) {
+        Class<?> enumClass = SpecificData.get().getClass(schema);
+        if (enumClass == null || !enumClass.isEnum()) {
+            throw new IllegalArgumentException("No generated enum class for " + schema.getFullName() + " at " + path);
+        }
+        Map<String, Object> constants = new HashMap<>();
+        for (Object constant : enumClass.getEnumConstants()) {
+            constants.put(((Enum<?>) constant).name(), constant);
+        }
+        for (String symbol : schema.getEnumSymbols()) {
+            if (!constants.containsKey(symbol)) {
+                throw new IllegalArgumentException("Enum " + enumClass.getName() + " has no constant " + symbol + " at " + path);
+            }
+        }
+        return nonNull((node, at) -> {
+            Object constant = node.isTextual() ? constants.get(node.textValue()) : null;
+            require(constant != null, node, at, "one of " + schema.getEnumSymbols());
+            return constant;
+        });
+    }
+
+    private static Constructor<?> recordConstructor(Schema schema, String path) {
+        Class<?> recordClass = SpecificData.get().getClass(schema);
+        if (recordClass == null || !SpecificRecord.class.isAssignableFrom(recordClass)) {
+            throw new IllegalArgumentException("No generated record class for " + schema.getFullName() + " at " + path);
+        }
+        try {
+            return recordClass.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(recordClass.getName() + " has no public no-arg constructor", e);
+        }
+    }
+
+    private static SpecificRecord newRecord(Constructor<?> constructor, String path) {
+        try {
+            return (SpecificRecord) constructor.newInstance();
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not create " + constructor.getDeclaringClass().getName() + " at " + path, e);
+        }
+    }
+
+    private static Object toLong(JsonNode node, String path) {
+        if (node.isIntegralNumber() && node.canConvertToLong()) {
+            return node.longValue();
+        }
+        if (node.isFloatingPointNumber()) { // Epoch seconds with a fraction
+            return node.decimalValue().movePointRight(3).longValue();
+        }
+        if (node.isTextual()) {
+            try {
+                return Instant.parse(node.textValue()).toEpochMilli();
+            } catch (DateTimeParseException e) {
+                // Reported below
+            }
+        }
+        throw mismatch(node, path, "a long or an ISO-8601 instant");
+    }
+
+    private static Converter nonNull(Converter converter) {
+        return (node, at) -> {
+            if (node.isNull()) {
+                throw new IllegalArgumentException("Null value for non-nullable " + at);
+            }
+            return converter.convert(node, at);
+        };
+    }
+
+    private static void require(boolean condition, JsonNode node, String path, String expected) {
+        if (!condition) {
+            throw mismatch(node, path, expected);
+        }
+    }
+
+    private static IllegalArgumentException mismatch(JsonNode node, String path, String expected) {
+        return new IllegalArgumentException("Expected " + expected + " at " + path + " but got " + node.getNodeType());
+    }
+
+    private static final class FieldBinding {
+        private final Schema.Field field;
+        private final Converter converter;
+
+        private FieldBinding(Schema.Field field, Converter converter) {
+            this.field = field;
+            this.converter = converter;
+        }
+    }
+}
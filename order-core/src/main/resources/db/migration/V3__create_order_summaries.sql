@@ -0,0 +1,31 @@
+-- V3: Read model for order lists, maintained by OrderServiceImpl in the same transaction as the order
+
+-- Order Summaries Table: one row per order, enough to render an order list without touching items or history
+CREATE TABLE order_summaries (
+  order_id UUID PRIMARY KEY REFERENCES orders(id) ON DELETE CASCADE,
+  customer_id UUID NOT NULL,
+  type VARCHAR(20) NOT NULL,
+  current_status VARCHAR(30) NOT NULL,
+  total_amount NUMERIC(12,2) NOT NULL,
+  currency CHAR(3) NOT NULL,
+  item_count INT NOT NULL, -- Number of order lines
+  total_quantity INT NOT NULL, -- Units across all lines
+  created_at TIMESTAMPTZ NOT NULL,
+  status_changed_at TIMESTAMPTZ NOT NULL -- When current_status was last set
+);
+
+-- Backfill existing orders
+INSERT INTO order_summaries (order_id, customer_id, type, current_status, total_amount, currency,
+                             item_count, total_quantity, created_at, status_changed_at)
+SELECT o.id, o.customer_id, o.type, o.current_status, o.total_amount, o.currency,
+       COUNT(i.id), COALESCE(SUM(i.quantity), 0), o.created_at, o.updated_at
+FROM orders o
+LEFT JOIN order_items i ON i.order_id = o.id
+GROUP BY o.id;
+
+-- Keyset pagination of a customer's orders, newest first: (created_at, order_id) is the page cursor
+CREATE INDEX idx_order_summaries_customer_created ON order_summaries(customer_id, created_at DESC, order_id DESC);
+
+-- Timeline reads history newest first for one order
+CREATE INDEX idx_order_status_history_order_timestamp ON order_status_history(order_id, timestamp DESC);
+DROP INDEX idx_order_status_history_order_id;
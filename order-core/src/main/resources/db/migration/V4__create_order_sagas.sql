@@ -0,0 +1,20 @@
+-- V4: Saga state per order, with a deadline for the step it is waiting on
+
+-- Order Sagas Table: one small row per order
+CREATE TABLE order_sagas (
+  order_id UUID PRIMARY KEY REFERENCES orders(id) ON DELETE CASCADE,
+  step VARCHAR(30) NOT NULL, -- Current step from SagaStep enum
+  deadline TIMESTAMPTZ, -- When the awaited step times out; NULL once the saga has ended
+  payment_received BOOLEAN NOT NULL DEFAULT FALSE, -- Payment arrived before the reservation
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  version BIGINT NOT NULL DEFAULT 0 -- For optimistic locking between listeners and the timeout scan
+);
+
+-- Timeout scan: only sagas still waiting are indexed, so the index stays as small as the set of open orders
+CREATE INDEX idx_order_sagas_deadline ON order_sagas(deadline) WHERE deadline IS NOT NULL;
+
+-- Open sagas for orders already waiting, with a grace period so they are not all cancelled on deploy
+INSERT INTO order_sagas (order_id, step, deadline)
+SELECT id, 'AWAITING_RESERVATION', now() + INTERVAL '30 minutes' FROM orders WHERE current_status = 'CREATED';
+INSERT INTO order_sagas (order_id, step, deadline)
+SELECT id, 'AWAITING_PAYMENT', now() + INTERVAL '30 minutes' FROM orders WHERE current_status = 'PAID';
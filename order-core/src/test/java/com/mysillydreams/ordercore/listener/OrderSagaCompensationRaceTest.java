@@ -0,0 +1,154 @@
+package com.mysillydreams.ordercore.listener;
+
+import com.mysillydreams.ordercore.domain.enums.OrderStatus;
+import com.mysillydreams.ordercore.domain.enums.OrderType;
+import com.mysillydreams.ordercore.domain.enums.SagaStep;
+import com.mysillydreams.ordercore.dto.CreateOrderCommand;
+import com.mysillydreams.ordercore.repository.OrderRepository;
+import com.mysillydreams.ordercore.repository.OrderSagaRepository;
+import com.mysillydreams.ordercore.service.OrderSagaStateService;
+import com.mysillydreams.ordercore.service.OrderServiceImpl;
+import com.mysillydreams.ordercore.service.OutboxEventRegistry;
+import com.mysillydreams.ordercore.service.OutboxEventService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import jakarta.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A timed out saga is compensated while its payment is being applied. The compensation must wait for the payment's
+ * transaction and then leave the confirmed order alone, instead of cancelling it from a stale read of the saga.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({OrderServiceImpl.class, OrderSagaStateService.class, OutboxEventService.class, OutboxEventRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // Transactions are driven by the test, from two threads
+@Testcontainers
+class OrderSagaCompensationRaceTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:13.3"))
+            .withDatabaseName("ordercore_test_db")
+            .withUsername("testuser")
+            .withPassword("testpass");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.flyway.url", postgres::getJdbcUrl);
+        registry.add("spring.flyway.user", postgres::getUsername);
+        registry.add("spring.flyway.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private OrderServiceImpl orderService;
+    @Autowired
+    private OrderSagaStateService sagaStateService;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private OrderSagaRepository orderSagaRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private EntityManager entityManager;
+
+    private TransactionTemplate transactionTemplate;
+    private OrderSagaService orderSagaService;
+    private ExecutorService compensator;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        orderSagaService = new OrderSagaService(orderService, sagaStateService, transactionManager, 100);
+        compensator = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        compensator.shutdownNow();
+    }
+
+    @Test
+    void compensate_shouldWaitForInFlightPaymentAndNotCancelConfirmedOrder() throws Exception {
+        UUID orderId = orderAwaitingPayment();
+
+        // The payment is applied but not yet committed; its flush holds the saga and order rows
+        TransactionStatus payment = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        orderService.updateOrderStatus(orderId, OrderStatus.CONFIRMED, "PaymentService");
+        sagaStateService.complete(sagaStateService.find(orderId).orElseThrow());
+        entityManager.flush();
+
+        Future<?> compensation = compensator.submit(
+            () -> transactionTemplate.executeWithoutResult(status -> orderSagaService.compensate(orderId)));
+        assertThatThrownBy(() -> compensation.get(1, TimeUnit.SECONDS)).isInstanceOf(TimeoutException.class);
+
+        transactionManager.commit(payment);
+        compensation.get(10, TimeUnit.SECONDS);
+
+        assertThat(orderRepository.findById(orderId).orElseThrow().getCurrentStatus()).isEqualTo(OrderStatus.CONFIRMED);
+        assertThat(orderSagaRepository.findById(orderId).orElseThrow().getStep()).isEqualTo(SagaStep.COMPLETED);
+    }
+
+    @Test
+    void compensate_shouldCancelOrderStillAwaitingPayment() {
+        UUID orderId = orderAwaitingPayment();
+
+        transactionTemplate.executeWithoutResult(status -> orderSagaService.compensate(orderId));
+
+        assertThat(orderRepository.findById(orderId).orElseThrow().getCurrentStatus()).isEqualTo(OrderStatus.CANCELLED);
+        assertThat(orderSagaRepository.findById(orderId).orElseThrow().getStep()).isEqualTo(SagaStep.CANCELLED);
+    }
+
+    private UUID orderAwaitingPayment() {
+        CreateOrderCommand command = CreateOrderCommand.builder()
+            .customerId(UUID.randomUUID())
+            .orderType(OrderType.CUSTOMER)
+            .items(List.of(CreateOrderCommand.LineItemCommand.builder()
+                .productId(UUID.randomUUID())
+                .quantity(1)
+                .unitPrice(new BigDecimal("5.00"))
+                .build()))
+            .currency("USD")
+            .build();
+        UUID orderId = transactionTemplate.execute(status -> orderService.createOrder(command));
+        transactionTemplate.executeWithoutResult(status -> {
+            orderService.updateOrderStatus(orderId, OrderStatus.PAID, "InventoryService");
+            sagaStateService.awaitPayment(sagaStateService.find(orderId).orElseThrow());
+        });
+        return orderId;
+    }
+}
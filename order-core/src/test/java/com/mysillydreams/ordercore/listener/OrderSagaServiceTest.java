@@ -1,6 +1,9 @@
 package com.mysillydreams.ordercore.listener;
 
+import com.mysillydreams.ordercore.domain.OrderSaga;
 import com.mysillydreams.ordercore.domain.enums.OrderStatus;
+import com.mysillydreams.ordercore.domain.enums.SagaStep;
+import com.mysillydreams.ordercore.service.OrderSagaStateService;
 import com.mysillydreams.ordercore.service.OrderService;
 
 // Import placeholder Avro records used in OrderSagaService
@@ -11,19 +14,29 @@ import com.mysillydreams.orderapi.dto.avro.OrderCreatedEvent as OrderApiOrderCre
 import com.mysillydreams.orderapi.dto.avro.LineItem as OrderApiLineItem;
 
 
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.times;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.any;
 import com.mysillydreams.ordercore.dto.CreateOrderCommand;
@@ -32,44 +45,155 @@ import com.mysillydreams.ordercore.dto.CreateOrderCommand;
 @ExtendWith(MockitoExtension.class)
 class OrderSagaServiceTest {
 
+    private static final String RESERVATIONS = "inventory.reservation.succeeded";
+    private static final String PAYMENTS = "payment.payment.succeeded";
+
     @Mock
     private OrderService orderService;
+    @Mock
+    private OrderSagaStateService sagaStateService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
-    @InjectMocks
     private OrderSagaService orderSagaService;
+    private long offset;
+
+    @BeforeEach
+    void setUp() {
+        orderSagaService = new OrderSagaService(orderService, sagaStateService, transactionManager, 2);
+    }
 
     @Test
-    void onReservationSucceeded_shouldUpdateOrderStatusToPaid() {
+    void reservationSucceeded_shouldUpdateOrderStatusToPaidAndAwaitPayment() {
         // Given
-        String orderIdStr = UUID.randomUUID().toString();
-        ReservationSucceededEvent event = new ReservationSucceededEvent(orderIdStr, UUID.randomUUID().toString());
+        UUID orderId = UUID.randomUUID();
+        OrderSaga saga = saga(orderId, SagaStep.AWAITING_RESERVATION);
+        when(sagaStateService.findAll(Set.of(orderId))).thenReturn(Map.of(orderId, saga));
 
         // When
-        orderSagaService.onReservationSucceeded(event);
+        orderSagaService.onSagaStepEvents(List.of(reservation(orderId)));
 
         // Then
-        verify(orderService, times(1)).updateOrderStatus(
-            eq(UUID.fromString(orderIdStr)),
-            eq(OrderStatus.PAID),
-            eq("InventoryService")
-        );
+        verify(orderService, times(1)).updateOrderStatus(eq(orderId), eq(OrderStatus.PAID), eq("InventoryService"));
+        verify(sagaStateService).awaitPayment(saga);
     }
 
     @Test
-    void onPaymentSucceeded_shouldUpdateOrderStatusToConfirmed() {
+    void paymentSucceeded_shouldUpdateOrderStatusToConfirmedAndComplete() {
         // Given
-        String orderIdStr = UUID.randomUUID().toString();
-        PaymentSucceededEvent event = new PaymentSucceededEvent(orderIdStr, UUID.randomUUID().toString(), BigDecimal.TEN);
+        UUID orderId = UUID.randomUUID();
+        OrderSaga saga = saga(orderId, SagaStep.AWAITING_PAYMENT);
+        when(sagaStateService.findAll(Set.of(orderId))).thenReturn(Map.of(orderId, saga));
+
+        // When
+        orderSagaService.onSagaStepEvents(List.of(payment(orderId)));
+
+        // Then
+        verify(orderService, times(1)).updateOrderStatus(eq(orderId), eq(OrderStatus.CONFIRMED), eq("PaymentService"));
+        verify(sagaStateService).complete(saga);
+    }
+
+    @Test
+    void stepsOfSameOrderInOneBatch_shouldBeCoalescedAndAppliedInSagaOrder() {
+        // Given: payment delivered before the reservation, and the reservation redelivered
+        UUID orderId = UUID.randomUUID();
+        OrderSaga saga = saga(orderId, SagaStep.AWAITING_RESERVATION);
+        when(sagaStateService.findAll(Set.of(orderId))).thenReturn(Map.of(orderId, saga));
 
         // When
-        orderSagaService.onPaymentSucceeded(event);
+        orderSagaService.onSagaStepEvents(List.of(payment(orderId), reservation(orderId), reservation(orderId)));
 
         // Then
-        verify(orderService, times(1)).updateOrderStatus(
-            eq(UUID.fromString(orderIdStr)),
-            eq(OrderStatus.CONFIRMED),
-            eq("PaymentService")
-        );
+        InOrder inOrder = inOrder(orderService);
+        inOrder.verify(orderService).updateOrderStatus(orderId, OrderStatus.PAID, "InventoryService");
+        inOrder.verify(orderService).updateOrderStatus(orderId, OrderStatus.CONFIRMED, "PaymentService");
+        verifyNoMoreInteractions(orderService);
+        verify(sagaStateService).complete(saga);
+    }
+
+    @Test
+    void paymentBeforeReservation_shouldBeRememberedUntilReserved() {
+        UUID orderId = UUID.randomUUID();
+        OrderSaga saga = saga(orderId, SagaStep.AWAITING_RESERVATION);
+        when(sagaStateService.findAll(Set.of(orderId))).thenReturn(Map.of(orderId, saga));
+
+        orderSagaService.onSagaStepEvents(List.of(payment(orderId)));
+
+        verify(sagaStateService).paymentReceivedEarly(saga);
+        verifyNoInteractions(orderService);
+    }
+
+    @Test
+    void stepsForEndedSaga_shouldBeIgnored() {
+        UUID orderId = UUID.randomUUID();
+        when(sagaStateService.findAll(Set.of(orderId))).thenReturn(Map.of(orderId, saga(orderId, SagaStep.CANCELLED)));
+
+        orderSagaService.onSagaStepEvents(List.of(payment(orderId)));
+
+        verifyNoInteractions(orderService);
+    }
+
+    @Test
+    void failingOrder_shouldNotHoldBackOrdersBeforeIt() {
+        // Given
+        UUID goodOrder = UUID.randomUUID();
+        UUID badOrder = UUID.randomUUID();
+        OrderSaga goodSaga = saga(goodOrder, SagaStep.AWAITING_PAYMENT);
+        OrderSaga badSaga = saga(badOrder, SagaStep.AWAITING_PAYMENT);
+        when(sagaStateService.findAll(any())).thenAnswer(invocation -> {
+            Set<UUID> ids = Set.copyOf(invocation.getArgument(0));
+            Map<UUID, OrderSaga> found = new HashMap<>();
+            if (ids.contains(goodOrder)) found.put(goodOrder, goodSaga);
+            if (ids.contains(badOrder)) found.put(badOrder, badSaga);
+            return found;
+        });
+        doThrow(new IllegalStateException("boom"))
+            .when(orderService).updateOrderStatus(badOrder, OrderStatus.CONFIRMED, "PaymentService");
+
+        // When
+        BatchListenerFailedException e = assertThrows(BatchListenerFailedException.class,
+            () -> orderSagaService.onSagaStepEvents(List.of(payment(goodOrder), payment(badOrder))));
+
+        // Then: the batch is retried order by order, and redelivery starts at the failing order's record
+        assertEquals(1, e.getIndex());
+        verify(orderService, times(2)).updateOrderStatus(goodOrder, OrderStatus.CONFIRMED, "PaymentService");
+    }
+
+    @Test
+    void timedOutSagas_shouldBeCancelledUntilNoneAreLeft() {
+        // Given
+        UUID awaitingPayment = UUID.randomUUID();
+        UUID awaitingReservation = UUID.randomUUID();
+        UUID alreadyCompleted = UUID.randomUUID();
+        when(sagaStateService.claimExpired(2))
+            .thenReturn(List.of(awaitingPayment, awaitingReservation))
+            .thenReturn(List.of(alreadyCompleted));
+        when(sagaStateService.findForUpdate(awaitingPayment)).thenReturn(Optional.of(saga(awaitingPayment, SagaStep.AWAITING_PAYMENT)));
+        when(sagaStateService.findForUpdate(awaitingReservation)).thenReturn(Optional.of(saga(awaitingReservation, SagaStep.AWAITING_RESERVATION)));
+        when(sagaStateService.findForUpdate(alreadyCompleted)).thenReturn(Optional.of(saga(alreadyCompleted, SagaStep.COMPLETED)));
+
+        // When
+        orderSagaService.compensateTimedOutSagas();
+
+        // Then
+        verify(orderService).cancelOrder(awaitingPayment, "Timed out waiting for payment", OrderSagaService.TIMEOUT_CHANGED_BY);
+        verify(orderService).cancelOrder(awaitingReservation, "Timed out waiting for inventory reservation", OrderSagaService.TIMEOUT_CHANGED_BY);
+        verify(orderService, never()).cancelOrder(eq(alreadyCompleted), any(), any());
+        verify(sagaStateService, times(2)).claimExpired(2);
+    }
+
+    private ConsumerRecord<String, Object> reservation(UUID orderId) {
+        return new ConsumerRecord<>(RESERVATIONS, 0, offset++, orderId.toString(),
+            new ReservationSucceededEvent(orderId.toString(), UUID.randomUUID().toString()));
+    }
+
+    private ConsumerRecord<String, Object> payment(UUID orderId) {
+        return new ConsumerRecord<>(PAYMENTS, 0, offset++, orderId.toString(),
+            new PaymentSucceededEvent(orderId.toString(), UUID.randomUUID().toString(), BigDecimal.TEN));
+    }
+
+    private static OrderSaga saga(UUID orderId, SagaStep step) {
+        return new OrderSaga(orderId, step, step.isAwaiting() ? Instant.now() : null, false, Instant.now(), 0L);
     }
 
     @Test
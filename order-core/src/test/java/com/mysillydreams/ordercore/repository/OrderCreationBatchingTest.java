@@ -0,0 +1,117 @@
+package com.mysillydreams.ordercore.repository;
+
+import com.mysillydreams.ordercore.domain.enums.OrderType;
+import com.mysillydreams.ordercore.dto.CreateOrderCommand;
+import com.mysillydreams.ordercore.service.OrderSagaStateService;
+import com.mysillydreams.ordercore.service.OrderServiceImpl;
+import com.mysillydreams.ordercore.service.OutboxEventRegistry;
+import com.mysillydreams.ordercore.service.OutboxEventService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Guards the JDBC batching of order creation: the number of statements sent for a new order must not grow with
+ * its line items. Runs against PostgreSQL with the batching settings of application.yml.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({OrderServiceImpl.class, OrderSagaStateService.class, OutboxEventService.class, OutboxEventRegistry.class})
+@Testcontainers
+class OrderCreationBatchingTest {
+
+    // Order, items, status history, summary, saga and outbox event: one statement per table
+    private static final long MAX_STATEMENTS_PER_ORDER = 6;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:13.3"))
+            .withDatabaseName("ordercore_test_db")
+            .withUsername("testuser")
+            .withPassword("testpass")
+            .withUrlParam("reWriteBatchedInserts", "true"); // As in application.yml
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.flyway.url", postgres::getJdbcUrl);
+        registry.add("spring.flyway.user", postgres::getUsername);
+        registry.add("spring.flyway.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private OrderServiceImpl orderService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void createOrder_shouldSendSameNumberOfStatementsRegardlessOfLineCount() {
+        long singleLine = statementsToCreate(1);
+        long manyLines = statementsToCreate(30);
+
+        assertThat(singleLine).isLessThanOrEqualTo(MAX_STATEMENTS_PER_ORDER);
+        assertThat(manyLines).isEqualTo(singleLine);
+    }
+
+    private long statementsToCreate(int lineCount) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        orderService.createOrder(command(lineCount));
+        entityManager.flush();
+
+        return statistics.getPrepareStatementCount();
+    }
+
+    private CreateOrderCommand command(int lineCount) {
+        List<CreateOrderCommand.LineItemCommand> items = IntStream.range(0, lineCount)
+            .mapToObj(i -> CreateOrderCommand.LineItemCommand.builder()
+                .productId(UUID.randomUUID())
+                .productSku("SKU-" + i)
+                .quantity(1)
+                .unitPrice(new BigDecimal("5.00"))
+                .build())
+            .collect(Collectors.toList());
+        return CreateOrderCommand.builder()
+            .customerId(UUID.randomUUID())
+            .orderType(OrderType.CUSTOMER)
+            .items(items)
+            .currency("USD")
+            .build();
+    }
+}
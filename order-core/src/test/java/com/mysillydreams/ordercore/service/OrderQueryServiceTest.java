@@ -0,0 +1,81 @@
+package com.mysillydreams.ordercore.service;
+
+import com.mysillydreams.ordercore.domain.OrderSummary;
+import com.mysillydreams.ordercore.domain.enums.OrderStatus;
+import com.mysillydreams.ordercore.domain.enums.OrderType;
+import com.mysillydreams.ordercore.dto.OrderHistoryPage;
+import com.mysillydreams.ordercore.repository.OrderRepository;
+import com.mysillydreams.ordercore.repository.OrderStatusHistoryRepository;
+import com.mysillydreams.ordercore.repository.OrderSummaryRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderQueryServiceTest {
+
+    @Mock
+    private OrderSummaryRepository orderSummaryRepository;
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private OrderStatusHistoryRepository orderStatusHistoryRepository;
+
+    @InjectMocks
+    private OrderQueryService orderQueryService;
+
+    private final UUID customerId = UUID.randomUUID();
+
+    @Test
+    void findCustomerOrders_shouldReturnCursorOfLastRowWhenMoreRowsExist() {
+        OrderSummary newest = summary(Instant.parse("2024-05-03T10:00:00.123456Z"));
+        OrderSummary middle = summary(Instant.parse("2024-05-02T10:00:00Z"));
+        OrderSummary oldest = summary(Instant.parse("2024-05-01T10:00:00Z"));
+        when(orderSummaryRepository.findFirstPage(customerId, 3)).thenReturn(List.of(newest, middle, oldest));
+
+        OrderHistoryPage page = orderQueryService.findCustomerOrders(customerId, null, 2);
+
+        assertEquals(2, page.orders().size());
+        assertEquals(middle.getOrderId(), page.orders().get(1).orderId());
+        assertNotNull(page.nextCursor());
+
+        when(orderSummaryRepository.findPageAfter(customerId, middle.getCreatedAt(), middle.getOrderId(), 3))
+            .thenReturn(List.of(oldest));
+        OrderHistoryPage next = orderQueryService.findCustomerOrders(customerId, page.nextCursor(), 2);
+
+        assertEquals(1, next.orders().size());
+        assertNull(next.nextCursor());
+    }
+
+    @Test
+    void findCustomerOrders_shouldCapPageSize() {
+        when(orderSummaryRepository.findFirstPage(customerId, OrderQueryService.MAX_PAGE_SIZE + 1)).thenReturn(List.of());
+
+        OrderHistoryPage page = orderQueryService.findCustomerOrders(customerId, null, 10_000);
+
+        assertTrue(page.orders().isEmpty());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void findCustomerOrders_shouldRejectMalformedCursor() {
+        assertThrows(IllegalArgumentException.class,
+            () -> orderQueryService.findCustomerOrders(customerId, "not-a-cursor", 20));
+        verifyNoInteractions(orderSummaryRepository);
+    }
+
+    private OrderSummary summary(Instant createdAt) {
+        return new OrderSummary(UUID.randomUUID(), customerId, OrderType.CUSTOMER, OrderStatus.CREATED,
+            new BigDecimal("19.00"), "USD", 1, 2, createdAt, createdAt);
+    }
+}
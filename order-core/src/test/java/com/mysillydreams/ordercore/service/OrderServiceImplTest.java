@@ -3,8 +3,10 @@ package com.mysillydreams.ordercore.service;
 import com.mysillydreams.ordercore.domain.Order;
 import com.mysillydreams.ordercore.domain.OrderItem;
 import com.mysillydreams.ordercore.domain.OrderStatusHistory;
+import com.mysillydreams.ordercore.domain.OrderSummary;
 import com.mysillydreams.ordercore.domain.enums.OrderStatus;
 import com.mysillydreams.ordercore.domain.enums.OrderType;
+import com.mysillydreams.ordercore.domain.enums.SagaStep;
 import com.mysillydreams.ordercore.dto.CreateOrderCommand;
 // Assuming Avro events are published via Outbox
 import com.mysillydreams.ordercore.dto.avro.OrderCancelledEvent as AvroOrderCancelledEvent;
@@ -15,6 +17,7 @@ import com.mysillydreams.ordercore.dto.avro.LineItem as AvroLineItem;
 import com.mysillydreams.ordercore.repository.OrderRepository;
 import com.mysillydreams.ordercore.repository.OrderItemRepository;
 import com.mysillydreams.ordercore.repository.OrderStatusHistoryRepository;
+import com.mysillydreams.ordercore.repository.OrderSummaryRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -44,6 +47,10 @@ class OrderServiceImplTest {
     @Mock
     private OrderStatusHistoryRepository orderStatusHistoryRepository;
     @Mock
+    private OrderSummaryRepository orderSummaryRepository;
+    @Mock
+    private OrderSagaStateService orderSagaStateService;
+    @Mock
     private OutboxEventService outboxEventService;
 
     @InjectMocks
@@ -124,6 +131,8 @@ class OrderServiceImplTest {
 
         verify(orderRepository).save(any(Order.class));
         verify(orderStatusHistoryRepository).save(any(OrderStatusHistory.class));
+        verify(orderSummaryRepository).save(any(OrderSummary.class));
+        verify(orderSagaStateService).start(createdOrderId);
         verify(outboxEventService).createAndSaveOutboxEvent(eq("Order"), eq(createdOrderId.toString()), eventTypeCaptor.capture(), payloadCaptor.capture());
 
         assertEquals("order.created", eventTypeCaptor.getValue());
@@ -167,6 +176,7 @@ class OrderServiceImplTest {
         assertEquals(OrderStatus.PAID, existingOrder.getCurrentStatus());
         verify(orderRepository).save(existingOrder);
         verify(orderStatusHistoryRepository).save(any(OrderStatusHistory.class));
+        verify(orderSummaryRepository).updateStatus(eq(orderId), eq(OrderStatus.PAID), any(Instant.class));
         verify(outboxEventService).createAndSaveOutboxEvent(eq("Order"), eq(orderId.toString()), eventTypeCaptor.capture(), payloadCaptor.capture());
 
         // Event type should be like "order.status.paid" based on OrderServiceImpl
@@ -203,6 +213,7 @@ class OrderServiceImplTest {
         assertEquals(OrderStatus.CANCELLED, existingOrder.getCurrentStatus());
         verify(orderRepository).save(existingOrder);
         verify(orderStatusHistoryRepository).save(any(OrderStatusHistory.class));
+        verify(orderSagaStateService).end(orderId, SagaStep.CANCELLED);
 
         verify(outboxEventService, times(2)).createAndSaveOutboxEvent(eq("Order"), eq(orderId.toString()), eventTypeCaptor.capture(), payloadCaptor.capture());
 
@@ -0,0 +1,101 @@
+package com.mysillydreams.ordercore.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mysillydreams.ordercore.domain.enums.OrderStatus;
+import com.mysillydreams.ordercore.domain.enums.OrderType;
+import com.mysillydreams.ordercore.dto.OrderCreatedEventDto;
+import com.mysillydreams.ordercore.dto.OrderStatusUpdatedEventDto;
+import com.mysillydreams.ordercore.dto.avro.OrderCreatedEvent;
+import com.mysillydreams.ordercore.dto.avro.OrderStatusAvro;
+import com.mysillydreams.ordercore.dto.avro.OrderStatusUpdatedEvent;
+import com.mysillydreams.ordercore.dto.avro.OrderTypeAvro;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxEventRegistryTest {
+
+    // Configured like Spring Boot's ObjectMapper, which OutboxEventService uses to store payloads
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final OutboxEventRegistry registry = new OutboxEventRegistry("order.core.created", "order.core.cancelled");
+
+    @Test
+    void orderCreated_shouldRouteToConfiguredTopicAndBindPayload() {
+        UUID orderId = UUID.randomUUID();
+        UUID productId = UUID.randomUUID();
+        Instant createdAt = Instant.parse("2024-05-01T10:15:30.123Z");
+        OrderCreatedEventDto dto = new OrderCreatedEventDto(orderId, UUID.randomUUID(), OrderType.CUSTOMER,
+            List.of(new OrderCreatedEventDto.LineItemDto(productId, null, 2, new BigDecimal("10.00"),
+                new BigDecimal("1.00"), new BigDecimal("19.00"))),
+            new BigDecimal("19.00"), "USD", createdAt);
+
+        OutboxEventRegistry.Route route = registry.route(OutboxEventRegistry.ORDER_CREATED);
+        OrderCreatedEvent event = (OrderCreatedEvent) route.toAvro(objectMapper.valueToTree(dto));
+
+        assertEquals("order.core.created", route.topic());
+        assertEquals(orderId.toString(), event.getOrderId());
+        assertEquals(OrderTypeAvro.CUSTOMER, event.getOrderType());
+        assertEquals(createdAt.toEpochMilli(), event.getCreatedAt());
+        assertEquals(1, event.getItems().size());
+        assertEquals(productId.toString(), event.getItems().get(0).getProductId());
+        assertNull(event.getItems().get(0).getProductSku());
+        assertEquals(19.0, event.getItems().get(0).getTotalPrice(), 0.0001);
+    }
+
+    @Test
+    void statusEventTypes_shouldBeRegisteredForEveryStatusWithTheTypeAsTopic() {
+        for (OrderStatus status : OrderStatus.values()) {
+            String eventType = OutboxEventRegistry.statusEventType(status);
+            assertEquals(eventType, registry.route(eventType).topic());
+        }
+        assertEquals("order.status.paid", OutboxEventRegistry.statusEventType(OrderStatus.PAID));
+    }
+
+    @Test
+    void statusUpdated_shouldBindNullableEnumAndMissingOptionalFields() {
+        UUID orderId = UUID.randomUUID();
+        OrderStatusUpdatedEventDto dto = new OrderStatusUpdatedEventDto(orderId, null, OrderStatus.PAID, "system",
+            Instant.parse("2024-05-01T10:15:30Z"));
+        ObjectNode json = objectMapper.valueToTree(dto);
+        json.remove("metadata");
+
+        OrderStatusUpdatedEvent event = (OrderStatusUpdatedEvent)
+            registry.route(OutboxEventRegistry.statusEventType(OrderStatus.PAID)).toAvro(json);
+
+        assertNull(event.getOldStatus());
+        assertEquals(OrderStatusAvro.PAID, event.getNewStatus());
+        assertNull(event.getMetadata());
+    }
+
+    @Test
+    void unknownEventType_shouldHaveNoRoute() {
+        assertNull(registry.route("order.shipped"));
+        assertFalse(registry.isRegistered(null));
+    }
+
+    @Test
+    void payloadMissingRequiredField_shouldBeRejected() {
+        JsonNode json = objectMapper.createObjectNode().put("orderId", UUID.randomUUID().toString());
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> registry.route(OutboxEventRegistry.ORDER_CANCELLED).toAvro(json));
+        assertTrue(e.getMessage().contains("cancelledAt"));
+    }
+
+    @Test
+    void blankTopic_shouldFailAtStartup() {
+        assertThrows(IllegalStateException.class, () -> new OutboxEventRegistry(" ", "order.core.cancelled"));
+    }
+}
@@ -6,8 +6,8 @@ import org.springframework.scheduling.annotation.EnableAsync; // Import @EnableA
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
-@EnableScheduling // For OutboxPoller
-@EnableAsync      // For @Async methods like in VendorPayoutService
+@EnableScheduling // For OutboxPoller and PayoutDispatcher
+@EnableAsync
 public class PaymentApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,11 @@
+package com.mysillydreams.payment.domain;
+
+/**
+ * Next step of the Razorpay payment pipeline for a {@link PaymentTransaction}.
+ */
+public enum PaymentStep {
+    CREATE_ORDER, // Create the Razorpay order
+    FIND_PAYMENT, // Fetch the payments made against the Razorpay order
+    CAPTURE,      // Capture the authorized payment (razorpay_payment_id is set)
+    DONE          // SUCCEEDED or FAILED; nothing left to run
+}
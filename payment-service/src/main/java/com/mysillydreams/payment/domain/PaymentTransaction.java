@@ -42,6 +42,16 @@ public class PaymentTransaction {
     @Column(name = "error_message", columnDefinition = "TEXT")
     private String errorMessage;
 
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private PaymentStep step = PaymentStep.CREATE_ORDER; // Where a retried payment resumes
+
+    @Column(name = "step_attempts", nullable = false)
+    private int stepAttempts; // Retryable failures so far
+
+    @Column(name = "next_attempt_at")
+    private Instant nextAttemptAt; // Not resumed before this time (in-flight lease or retry backoff)
+
     @CreationTimestamp // Automatically set on creation
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
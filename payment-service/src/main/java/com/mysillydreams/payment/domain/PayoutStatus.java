@@ -2,6 +2,7 @@ package com.mysillydreams.payment.domain;
 
 public enum PayoutStatus {
     INIT,       // Payout initiated internally, before calling Razorpay
+    DISPATCHING, // Claimed by PayoutDispatcher, Razorpay Payout API call in flight (re-dispatched if the claim goes stale)
     PENDING,    // Razorpay Payout API called, waiting for webhook confirmation (e.g., status 'pending' or 'processing' from Razorpay)
     PROCESSING, // Razorpay Payout status is 'processing' (intermediate state from webhook)
     SUCCESS,    // Razorpay Payout successful (e.g., status 'processed' from webhook)
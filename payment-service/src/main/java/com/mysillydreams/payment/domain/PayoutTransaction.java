@@ -56,6 +56,12 @@ public class PayoutTransaction {
     @Column(name = "error_message", columnDefinition = "TEXT")
     private String errorMessage;
 
+    @Column(name = "dispatch_attempts", nullable = false)
+    private int dispatchAttempts; // Retryable dispatch failures so far (see PayoutDispatcher)
+
+    @Column(name = "next_attempt_at")
+    private Instant nextAttemptAt; // An INIT payout is not dispatched before this time
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
@@ -0,0 +1,40 @@
+package com.mysillydreams.payment.domain;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "webhook_events") // Table name matches V3 migration script
+@Data
+@NoArgsConstructor
+public class WebhookEvent {
+
+    @Id
+    @Column(name = "event_id", length = 128)
+    private String eventId; // X-Razorpay-Event-Id, or the signature when the header is absent
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload; // Raw webhook body exactly as signed
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private WebhookEventStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "next_attempt_at")
+    private Instant nextAttemptAt; // Not re-queued by the sweeper before this time (retry backoff)
+
+    @Column(name = "received_at", nullable = false, updatable = false)
+    private Instant receivedAt;
+
+    @Column(name = "processed_at")
+    private Instant processedAt;
+}
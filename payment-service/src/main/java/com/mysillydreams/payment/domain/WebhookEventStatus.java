@@ -0,0 +1,7 @@
+package com.mysillydreams.payment.domain;
+
+public enum WebhookEventStatus {
+    RECEIVED,   // Signature verified and stored, not processed yet
+    PROCESSED,  // Handled successfully; kept for deduplication until retention expires
+    FAILED      // Processing failed on every attempt, needs manual investigation
+}
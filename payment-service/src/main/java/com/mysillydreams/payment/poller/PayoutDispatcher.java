@@ -0,0 +1,143 @@
+package com.mysillydreams.payment.poller;
+
+import com.mysillydreams.payment.domain.PayoutTransaction;
+import com.mysillydreams.payment.service.RazorpayPayoutClient;
+import com.mysillydreams.payment.service.RazorpayPayoutClient.PayoutResult;
+import com.mysillydreams.payment.service.VendorPayoutService;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends INIT vendor payouts to Razorpay in bounded batches.
+ * <p>
+ * Each batch is claimed in one short transaction (INIT -> DISPATCHING), sent through a window of at most
+ * {@code max-in-flight} concurrent non-blocking calls paced by the {@code razorpayPayoutsApi} rate limiter, and
+ * its outcome is persisted with one bulk update per outcome. A 429 stops the rest of the batch from being sent;
+ * those payouts go back to INIT. Payouts that failed with a retryable error go back to INIT with an exponential
+ * backoff ({@code retry-backoff-ms}) and are FAILED after {@code max-attempts}; a run never claims a payout it has
+ * already handled. If the dispatcher dies mid-batch, the claimed payouts are picked up again once their claim is
+ * older than {@code claim-timeout-ms}, and re-sent with the same idempotency key.
+ */
+@Service
+@Slf4j
+public class PayoutDispatcher {
+
+    static final String RATE_LIMITER_NAME = "razorpayPayoutsApi";
+
+    private final VendorPayoutService vendorPayoutService;
+    private final RazorpayPayoutClient payoutClient;
+    private final RateLimiter rateLimiter;
+
+    @Value("${payment.payout.dispatcher.batch-size:200}")
+    private int batchSize;
+    @Value("${payment.payout.dispatcher.max-in-flight:20}")
+    private int maxInFlight;
+    @Value("${payment.payout.dispatcher.claim-timeout-ms:300000}")
+    private long claimTimeoutMs;
+
+    public PayoutDispatcher(VendorPayoutService vendorPayoutService,
+                            RazorpayPayoutClient payoutClient,
+                            RateLimiterRegistry rateLimiterRegistry) {
+        this.vendorPayoutService = vendorPayoutService;
+        this.payoutClient = payoutClient;
+        this.rateLimiter = rateLimiterRegistry.rateLimiter(RATE_LIMITER_NAME);
+    }
+
+    @Scheduled(fixedDelayString = "${payment.payout.dispatcher.poll-delay-ms:2000}",
+               initialDelayString = "${payment.payout.dispatcher.initial-delay-ms:10000}")
+    public void dispatchPendingPayouts() {
+        // Keep going while batches come back full, so a settlement run drains without waiting for the next poll.
+        // Payouts handled earlier in the run are not claimed again, whatever their outcome.
+        Set<UUID> handled = new HashSet<>();
+        while (dispatchBatch(handled)) {
+            log.debug("[PayoutDispatcher] Full batch dispatched, claiming the next one.");
+        }
+    }
+
+    /**
+     * Claims, sends and records one batch, skipping the payouts in {@code handled} and adding the claimed ones to it.
+     *
+     * @return true if the batch was full and nothing was rate limited, i.e. more work is likely waiting.
+     */
+    boolean dispatchBatch(Set<UUID> handled) {
+        Instant staleBefore = Instant.now().minusMillis(claimTimeoutMs);
+        List<PayoutTransaction> claimed = vendorPayoutService.claimPayoutsForDispatch(batchSize, staleBefore, handled);
+        if (claimed.isEmpty()) {
+            return false;
+        }
+        claimed.forEach(pt -> handled.add(pt.getId()));
+
+        Map<UUID, PayoutTransaction> dispatched = new LinkedHashMap<>();
+        claimed.forEach(pt -> dispatched.put(pt.getId(), pt));
+        Map<UUID, PayoutResult> results = new ConcurrentHashMap<>();
+        AtomicBoolean rateLimited = new AtomicBoolean();
+        List<CompletableFuture<?>> inFlight = new ArrayList<>(claimed.size());
+        Semaphore window = new Semaphore(maxInFlight);
+
+        try {
+            for (PayoutTransaction pt : claimed) {
+                if (rateLimited.get()) {
+                    break;
+                }
+                JSONObject payoutRequest;
+                try {
+                    payoutRequest = vendorPayoutService.buildPayoutRequest(pt);
+                } catch (RuntimeException e) {
+                    log.error("[PayoutDispatcher] Cannot build payout request for Payout ID {}: {}", pt.getId(), e.getMessage());
+                    results.put(pt.getId(), PayoutResult.rejected(0, e.getClass().getSimpleName(), e.getMessage()));
+                    continue;
+                }
+                if (!rateLimiter.acquirePermission()) {
+                    log.warn("[PayoutDispatcher] Rate limiter '{}' did not grant a permit in time; deferring the rest of the batch.",
+                            RATE_LIMITER_NAME);
+                    rateLimited.set(true);
+                    break;
+                }
+                window.acquire();
+                UUID payoutId = pt.getId();
+                inFlight.add(payoutClient.createPayout(payoutRequest, payoutId.toString())
+                        .handle((result, ex) -> {
+                            window.release();
+                            PayoutResult outcome = result != null ? result
+                                    : PayoutResult.retryable(0, "DispatchError", String.valueOf(ex));
+                            results.put(payoutId, outcome);
+                            if (outcome.isRateLimited()) {
+                                rateLimited.set(true);
+                            }
+                            return outcome;
+                        }));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("[PayoutDispatcher] Interrupted while dispatching; recording what was sent.");
+        }
+
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).join();
+
+        // Anything without a result (rate limited, interrupted) was not sent and goes back to INIT as is
+        vendorPayoutService.recordDispatchResults(dispatched, results);
+
+        if (rateLimited.get()) {
+            log.warn("[PayoutDispatcher] Batch of {} payouts was throttled; unsent payouts resume on the next poll.", claimed.size());
+        }
+        return claimed.size() == batchSize && !rateLimited.get() && !Thread.currentThread().isInterrupted();
+    }
+}
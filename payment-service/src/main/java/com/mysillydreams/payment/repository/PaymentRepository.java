@@ -2,8 +2,13 @@ package com.mysillydreams.payment.repository;
 
 import com.mysillydreams.payment.domain.PaymentTransaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -19,6 +24,24 @@ public interface PaymentRepository extends JpaRepository<PaymentTransaction, UUI
     // Find by Razorpay Order ID
     Optional<PaymentTransaction> findByRazorpayOrderId(String razorpayOrderId);
 
+    /**
+     * Locks payments whose pipeline is unfinished and whose lease or retry backoff has expired.
+     * Rows locked by another instance are skipped.
+     */
+    @Query(value = "SELECT id FROM payment_transactions " +
+            "WHERE step <> 'DONE' AND (next_attempt_at IS NULL OR next_attempt_at <= :now) " +
+            "ORDER BY next_attempt_at " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<UUID> lockResumable(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE payment_transactions SET next_attempt_at = :leaseUntil " +
+            "WHERE id = ANY(CAST(:ids AS uuid[]))",
+            nativeQuery = true)
+    int leaseUntil(@Param("ids") UUID[] ids, @Param("leaseUntil") Instant leaseUntil);
+
     // Add other query methods as needed, e.g., finding transactions by status, date range, etc.
     // List<PaymentTransaction> findByStatus(String status);
 }
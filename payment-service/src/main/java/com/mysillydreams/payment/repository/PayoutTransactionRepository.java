@@ -2,8 +2,13 @@ package com.mysillydreams.payment.repository;
 
 import com.mysillydreams.payment.domain.PayoutTransaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -19,4 +24,78 @@ public interface PayoutTransactionRepository extends JpaRepository<PayoutTransac
     // Find by vendor ID (to see all payouts for a vendor)
     // List<PayoutTransaction> findByVendorId(UUID vendorId);
 
+    /**
+     * Locks the oldest payouts that are ready for dispatch: INIT payouts whose retry backoff has elapsed, and
+     * DISPATCHING payouts whose claim was last touched before {@code staleBefore}. Payouts in {@code excludedIds}
+     * (already handled in the current dispatcher run) and rows locked by another dispatcher are skipped.
+     */
+    @Query(value = "SELECT * FROM payout_transactions " +
+            "WHERE ((status = 'INIT' AND (next_attempt_at IS NULL OR next_attempt_at <= now())) " +
+            "OR (status = 'DISPATCHING' AND updated_at < :staleBefore)) " +
+            "AND id <> ALL(CAST(:excludedIds AS uuid[])) " +
+            "ORDER BY created_at " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<PayoutTransaction> lockDispatchable(@Param("staleBefore") Instant staleBefore,
+                                             @Param("excludedIds") UUID[] excludedIds,
+                                             @Param("limit") int limit);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE payout_transactions SET status = 'DISPATCHING', updated_at = now() " +
+            "WHERE id = ANY(CAST(:ids AS uuid[]))",
+            nativeQuery = true)
+    int markDispatching(@Param("ids") UUID[] ids);
+
+    /**
+     * Records the Razorpay payout IDs of accepted payouts, one row update per payout.
+     *
+     * @param ids               The payout IDs.
+     * @param razorpayPayoutIds The Razorpay payout ID for each payout, positionally aligned with {@code ids}.
+     * @return The number of payouts moved from DISPATCHING to PENDING.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE payout_transactions p " +
+            "SET status = 'PENDING', razorpay_payout_id = r.razorpay_payout_id, updated_at = now() " +
+            "FROM unnest(CAST(:ids AS uuid[]), CAST(:razorpayPayoutIds AS varchar[])) AS r(id, razorpay_payout_id) " +
+            "WHERE p.id = r.id AND p.status = 'DISPATCHING'",
+            nativeQuery = true)
+    int markPending(@Param("ids") UUID[] ids, @Param("razorpayPayoutIds") String[] razorpayPayoutIds);
+
+    /**
+     * Marks payouts rejected by Razorpay as FAILED, one row update per payout.
+     * Error codes and messages are positionally aligned with {@code ids}.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE payout_transactions p " +
+            "SET status = 'FAILED', error_code = r.error_code, error_message = r.error_message, updated_at = now() " +
+            "FROM unnest(CAST(:ids AS uuid[]), CAST(:errorCodes AS varchar[]), CAST(:errorMessages AS text[])) " +
+            "AS r(id, error_code, error_message) " +
+            "WHERE p.id = r.id AND p.status = 'DISPATCHING'",
+            nativeQuery = true)
+    int markFailed(@Param("ids") UUID[] ids,
+                   @Param("errorCodes") String[] errorCodes,
+                   @Param("errorMessages") String[] errorMessages);
+
+    /**
+     * Puts payouts that failed with a retryable error back to INIT, counting the attempt and holding them back
+     * for {@code backoffMs * 2^(attempts so far)}, capped at {@code maxBackoffMs}.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE payout_transactions " +
+            "SET status = 'INIT', dispatch_attempts = dispatch_attempts + 1, " +
+            "next_attempt_at = now() + LEAST(:backoffMs * power(2, dispatch_attempts), :maxBackoffMs) * interval '1 millisecond', " +
+            "updated_at = now() " +
+            "WHERE id = ANY(CAST(:ids AS uuid[])) AND status = 'DISPATCHING'",
+            nativeQuery = true)
+    int releaseForRetry(@Param("ids") UUID[] ids, @Param("backoffMs") long backoffMs, @Param("maxBackoffMs") long maxBackoffMs);
+
+    /**
+     * Puts claimed payouts that were never sent (rate limited, interrupted) back to INIT without counting an attempt.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE payout_transactions SET status = 'INIT', updated_at = now() " +
+            "WHERE id = ANY(CAST(:ids AS uuid[])) AND status = 'DISPATCHING'",
+            nativeQuery = true)
+    int releaseUnsent(@Param("ids") UUID[] ids);
 }
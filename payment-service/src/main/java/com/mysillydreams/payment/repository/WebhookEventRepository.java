@@ -0,0 +1,74 @@
+package com.mysillydreams.payment.repository;
+
+import com.mysillydreams.payment.domain.WebhookEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WebhookEventRepository extends JpaRepository<WebhookEvent, String> {
+
+    /**
+     * Stores a verified webhook unless an event with the same ID was already received.
+     *
+     * @return 1 if the event was stored, 0 if it is a duplicate delivery.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO webhook_events (event_id, payload, status, attempts, received_at) " +
+            "VALUES (:eventId, :payload, 'RECEIVED', 0, now()) " +
+            "ON CONFLICT (event_id) DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("eventId") String eventId, @Param("payload") String payload);
+
+    /**
+     * Locks an event that is still waiting to be processed. Returns empty if it was already processed,
+     * or if another worker holds it.
+     */
+    @Query(value = "SELECT * FROM webhook_events WHERE event_id = :eventId AND status = 'RECEIVED' FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    Optional<WebhookEvent> lockReceived(@Param("eventId") String eventId);
+
+    /**
+     * Finds events still waiting to be processed that were received before {@code receivedBefore} and whose
+     * retry backoff, if any, has elapsed.
+     */
+    @Query(value = "SELECT event_id FROM webhook_events " +
+            "WHERE status = 'RECEIVED' AND received_at < :receivedBefore " +
+            "AND (next_attempt_at IS NULL OR next_attempt_at <= now()) " +
+            "ORDER BY received_at LIMIT :limit",
+            nativeQuery = true)
+    List<String> findReceivedIdsBefore(@Param("receivedBefore") Instant receivedBefore, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "UPDATE webhook_events SET status = 'PROCESSED', attempts = attempts + 1, processed_at = now() " +
+            "WHERE event_id = :eventId",
+            nativeQuery = true)
+    int markProcessed(@Param("eventId") String eventId);
+
+    /**
+     * Records a failed processing attempt, holding the event back from the sweeper for
+     * {@code backoffMs * 2^(attempts so far)}, capped at {@code maxBackoffMs}; the event is marked FAILED once it
+     * reaches {@code maxAttempts}.
+     */
+    @Modifying
+    @Query(value = "UPDATE webhook_events " +
+            "SET attempts = attempts + 1, last_error = :error, " +
+            "    next_attempt_at = now() + LEAST(:backoffMs * power(2, attempts), :maxBackoffMs) * interval '1 millisecond', " +
+            "    status = CASE WHEN attempts + 1 >= :maxAttempts THEN 'FAILED' ELSE status END " +
+            "WHERE event_id = :eventId AND status = 'RECEIVED'",
+            nativeQuery = true)
+    int recordFailedAttempt(@Param("eventId") String eventId, @Param("error") String error,
+                            @Param("maxAttempts") int maxAttempts,
+                            @Param("backoffMs") long backoffMs, @Param("maxBackoffMs") long maxBackoffMs);
+
+    @Modifying
+    @Query(value = "DELETE FROM webhook_events WHERE status = 'PROCESSED' AND processed_at < :processedBefore",
+            nativeQuery = true)
+    int deleteProcessedBefore(@Param("processedBefore") Instant processedBefore);
+}
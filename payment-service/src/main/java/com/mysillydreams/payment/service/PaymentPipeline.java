@@ -0,0 +1,405 @@
+package com.mysillydreams.payment.service;
+
+import com.mysillydreams.payment.domain.PaymentStep;
+import com.mysillydreams.payment.domain.PaymentTransaction;
+import com.mysillydreams.payment.repository.PaymentRepository;
+import com.mysillydreams.payment.service.RazorpayPaymentsClient.RazorpayPayment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs a customer payment through Razorpay as a persisted state machine:
+ * CREATE_ORDER -> FIND_PAYMENT -> (CAPTURE) -> DONE.
+ * <p>
+ * Razorpay calls are non-blocking ({@link RazorpayPaymentsClient}); only the short transaction that records each
+ * step's result runs on a pipeline worker. The step, the Razorpay IDs and the attempt count are saved after every
+ * step, so a payment that fails with a retryable error (timeout, open circuit, 429/5xx) is resumed by
+ * {@link #resumePayments} at the step that failed, after an exponential backoff. A capture that failed is resumed
+ * at FIND_PAYMENT, since it may have gone through. Rejections, and payments that are still retryable after
+ * {@code max-attempts}, end FAILED.
+ * <p>
+ * Razorpay order creation takes no idempotency key, so CREATE_ORDER is only sent blind on a payment's first run.
+ * A retried or resumed run first looks up the order by its receipt (our order ID), and only creates one if an
+ * earlier attempt did not.
+ * <p>
+ * A running payment holds a lease ({@code next_attempt_at}); {@code lease-ms} must exceed the sum of the step
+ * time budgets so the resumer never picks up a payment that is still in flight.
+ */
+@Service
+@Slf4j
+public class PaymentPipeline {
+
+    private final PaymentRepository paymentRepository;
+    private final RazorpayPaymentsClient razorpayClient;
+    private final OutboxEventService outboxEventService;
+    private final VendorPayoutService vendorPayoutService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService workers;
+    private final Semaphore inFlight;
+
+    private final Counter paymentSuccessTotal;
+    private final Counter paymentFailureTotal;
+    private final Counter paymentRetryTotal;
+
+    @Value("${kafka.topics.paymentSucceeded}")
+    private String paymentSucceededTopic;
+    @Value("${kafka.topics.paymentFailed}")
+    private String paymentFailedTopic;
+
+    @Value("${payment.pipeline.max-attempts:5}")
+    private int maxAttempts;
+    @Value("${payment.pipeline.retry-backoff-ms:2000}")
+    private long retryBackoffMs;
+    @Value("${payment.pipeline.max-retry-backoff-ms:300000}")
+    private long maxRetryBackoffMs;
+    @Value("${payment.pipeline.lease-ms:60000}")
+    private long leaseMs;
+    @Value("${payment.pipeline.resume-batch-size:100}")
+    private int resumeBatchSize;
+
+    public PaymentPipeline(PaymentRepository paymentRepository,
+                           RazorpayPaymentsClient razorpayClient,
+                           OutboxEventService outboxEventService,
+                           VendorPayoutService vendorPayoutService,
+                           TransactionTemplate transactionTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${payment.pipeline.workers:8}") int workerThreads,
+                           @Value("${payment.pipeline.max-in-flight:200}") int maxInFlight) {
+        this.paymentRepository = paymentRepository;
+        this.razorpayClient = razorpayClient;
+        this.outboxEventService = outboxEventService;
+        this.vendorPayoutService = vendorPayoutService;
+        this.transactionTemplate = transactionTemplate;
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads,
+                runnable -> new Thread(runnable, "payment-pipeline-" + threadCounter.incrementAndGet()));
+        this.inFlight = new Semaphore(maxInFlight);
+
+        this.paymentSuccessTotal = Counter.builder("payment.service.success.total")
+                .description("Total number of successful payment transactions")
+                .tags("type", "capture")
+                .register(meterRegistry);
+        this.paymentFailureTotal = Counter.builder("payment.service.failure.total")
+                .description("Total number of failed payment transactions")
+                .tags("type", "capture")
+                .register(meterRegistry);
+        this.paymentRetryTotal = Counter.builder("payment.service.pipeline.retries.total")
+                .description("Payment steps that failed with a retryable error and were scheduled again")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the {@code next_attempt_at} to store with a payment that is about to be started.
+     */
+    public Instant newLease() {
+        return Instant.now().plusMillis(leaseMs);
+    }
+
+    /**
+     * Starts the payment once the current transaction commits, or right away if there is none.
+     */
+    public void startAfterCommit(UUID transactionId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            start(transactionId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                start(transactionId);
+            }
+        });
+    }
+
+    /**
+     * Runs the payment from its persisted step until it is DONE or waiting for a retry.
+     * If {@code max-in-flight} payments are already running, the payment is left to the resumer.
+     *
+     * @return a future completing when the run stops; it does not complete exceptionally.
+     */
+    public CompletableFuture<Void> start(UUID transactionId) {
+        return run(transactionId, false);
+    }
+
+    /**
+     * Like {@link #start}, for a payment whose previous run may have stopped anywhere, e.g. with its lease expired
+     * after a crash.
+     */
+    CompletableFuture<Void> resume(UUID transactionId) {
+        return run(transactionId, true);
+    }
+
+    private CompletableFuture<Void> run(UUID transactionId, boolean resumed) {
+        if (!inFlight.tryAcquire()) {
+            log.debug("Payment pipeline saturated; transaction {} will be resumed once its lease expires.", transactionId);
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(() -> paymentRepository.findById(transactionId).orElse(null), workers)
+                .thenCompose(transaction -> advance(transaction, resumed))
+                .exceptionally(failure -> {
+                    // Step failures are recorded by advance(); this is the database failing to record them
+                    log.error("Payment pipeline for transaction {} stopped: {}", transactionId, failure.getMessage(), failure);
+                    return null;
+                })
+                .whenComplete((ignored, failure) -> inFlight.release());
+    }
+
+    @Scheduled(fixedDelayString = "${payment.pipeline.resume-delay-ms:5000}",
+               initialDelayString = "${payment.pipeline.resume-initial-delay-ms:15000}")
+    public void resumePayments() {
+        int capacity = Math.min(resumeBatchSize, inFlight.availablePermits());
+        if (capacity == 0) {
+            return;
+        }
+        List<UUID> claimed = transactionTemplate.execute(status -> {
+            List<UUID> ids = paymentRepository.lockResumable(Instant.now(), capacity);
+            if (!ids.isEmpty()) {
+                paymentRepository.leaseUntil(ids.toArray(UUID[]::new), newLease());
+            }
+            return ids;
+        });
+        if (claimed == null || claimed.isEmpty()) {
+            return;
+        }
+        log.info("Resuming {} unfinished payments.", claimed.size());
+        claimed.forEach(this::resume);
+    }
+
+    /**
+     * @param resumed true if an earlier run may already have sent the current step to Razorpay.
+     */
+    CompletableFuture<Void> advance(PaymentTransaction transaction, boolean resumed) {
+        if (transaction == null || transaction.getStep() == PaymentStep.DONE) {
+            return CompletableFuture.completedFuture(null);
+        }
+        UUID id = transaction.getId();
+        PaymentStep step = transaction.getStep();
+        long amountInPaise = amountInPaise(transaction);
+
+        CompletableFuture<PaymentTransaction> next = switch (step) {
+            case CREATE_ORDER -> createOrFindOrder(transaction, amountInPaise, resumed)
+                    .thenApplyAsync(razorpayOrderId -> update(id, step, tx -> {
+                        tx.setRazorpayOrderId(razorpayOrderId);
+                        tx.setStep(PaymentStep.FIND_PAYMENT);
+                        log.info("Razorpay Order created: ID = {} for our Order ID = {}", razorpayOrderId, tx.getOrderId());
+                    }), workers);
+            case FIND_PAYMENT -> razorpayClient
+                    .fetchPayments(transaction.getRazorpayOrderId())
+                    .thenApplyAsync(payments -> onPaymentsFetched(transaction, payments), workers);
+            case CAPTURE -> razorpayClient
+                    .capturePayment(transaction.getRazorpayPaymentId(), amountInPaise, transaction.getCurrency())
+                    .thenApplyAsync(payment -> complete(id, step, payment.id()), workers);
+            case DONE -> CompletableFuture.completedFuture(transaction);
+        };
+
+        return next
+                .handleAsync((updated, failure) -> failure == null
+                        ? advance(updated, false)
+                        : onStepFailure(id, step, failure), workers)
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Creates the Razorpay order for the payment. If an earlier attempt may have created it already (a retry after a
+     * timeout, or a resumed run), the order is first looked up by receipt and reused if found.
+     */
+    private CompletableFuture<String> createOrFindOrder(PaymentTransaction transaction, long amountInPaise, boolean resumed) {
+        String receipt = transaction.getOrderId().toString();
+        if (!resumed && transaction.getStepAttempts() == 0) {
+            return razorpayClient.createOrder(amountInPaise, transaction.getCurrency(), receipt);
+        }
+        return razorpayClient.findOrderIdByReceipt(receipt)
+                .thenCompose(existing -> {
+                    if (existing.isPresent()) {
+                        log.info("Reusing Razorpay Order {} created by an earlier attempt for our Order ID = {}",
+                                existing.get(), receipt);
+                        return CompletableFuture.completedFuture(existing.get());
+                    }
+                    return razorpayClient.createOrder(amountInPaise, transaction.getCurrency(), receipt);
+                });
+    }
+
+    private PaymentTransaction onPaymentsFetched(PaymentTransaction transaction, List<RazorpayPayment> payments) {
+        String razorpayOrderId = transaction.getRazorpayOrderId();
+        Optional<RazorpayPayment> captured = payments.stream().filter(RazorpayPayment::isCaptured).findFirst();
+        if (captured.isPresent()) {
+            return complete(transaction.getId(), PaymentStep.FIND_PAYMENT, captured.get().id());
+        }
+        Optional<RazorpayPayment> authorized = payments.stream().filter(RazorpayPayment::isAuthorized).findFirst();
+        if (authorized.isPresent()) {
+            return update(transaction.getId(), PaymentStep.FIND_PAYMENT, tx -> {
+                tx.setRazorpayPaymentId(authorized.get().id());
+                tx.setStep(PaymentStep.CAPTURE);
+            });
+        }
+        if (payments.isEmpty()) {
+            throw RazorpayApiException.rejected("NoPayment",
+                    "No payment found for Razorpay Order ID " + razorpayOrderId + " to capture/verify.");
+        }
+        throw RazorpayApiException.rejected("NotCapturable", "Payment for order " + razorpayOrderId
+                + " was not in capturable state. Status: " + payments.get(0).status());
+    }
+
+    /**
+     * Marks the payment SUCCEEDED, publishes the success event and initiates the vendor payout, in one transaction.
+     */
+    private PaymentTransaction complete(UUID id, PaymentStep expectedStep, String razorpayPaymentId) {
+        PaymentTransaction completed = update(id, expectedStep, tx -> {
+            tx.setRazorpayPaymentId(razorpayPaymentId);
+            tx.setStatus("SUCCEEDED");
+            tx.setStep(PaymentStep.DONE);
+            tx.setErrorMessage(null);
+            tx.setNextAttemptAt(null);
+            log.info("Payment captured/verified for Razorpay Order ID {}: Payment ID = {}", tx.getRazorpayOrderId(), razorpayPaymentId);
+
+            outboxEventService.publish(
+                    "Payment", // Aggregate Type
+                    tx.getId().toString(), // Aggregate ID (our PaymentTransaction ID)
+                    paymentSucceededTopic,
+                    Map.of("orderId", tx.getOrderId().toString(),
+                           "paymentId", razorpayPaymentId, // Razorpay's payment ID
+                           "transactionTimestamp", System.currentTimeMillis())
+            );
+
+            // After successful customer payment, initiate vendor payout
+            UUID vendorId = determineVendorIdForOrder(tx.getOrderId().toString());
+            log.info("Initiating vendor payout for successful PaymentTransaction ID: {}, Order ID: {}", tx.getId(), tx.getOrderId());
+            vendorPayoutService.initiatePayout(tx.getId(), vendorId, tx.getAmount(), tx.getCurrency());
+        });
+        if (completed != null) {
+            paymentSuccessTotal.increment();
+        }
+        return completed;
+    }
+
+    private CompletableFuture<Void> onStepFailure(UUID id, PaymentStep step, Throwable failure) {
+        Throwable cause = RazorpayPaymentsClient.unwrap(failure);
+        String reason = String.valueOf(cause.getMessage());
+        if (!RazorpayPaymentsClient.isRetryable(cause)) {
+            log.error("Payment step {} rejected for transaction {}: {}", step, id, reason);
+            fail(id, step, reason);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        PaymentTransaction transaction = paymentRepository.findById(id).orElse(null);
+        if (transaction == null || transaction.getStep() != step) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int attempts = transaction.getStepAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            log.error("Payment step {} for transaction {} still failing after {} attempts: {}", step, id, attempts, reason);
+            fail(id, step, reason);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long backoffMs = Math.min(maxRetryBackoffMs, retryBackoffMs << Math.min(attempts - 1, 20));
+        update(id, step, tx -> {
+            tx.setStepAttempts(attempts);
+            tx.setErrorMessage(reason);
+            tx.setNextAttemptAt(Instant.now().plusMillis(backoffMs));
+            if (step == PaymentStep.CAPTURE) {
+                tx.setStep(PaymentStep.FIND_PAYMENT); // The capture may have gone through; look before capturing again
+            }
+        });
+        paymentRetryTotal.increment();
+        log.warn("Payment step {} for transaction {} failed (attempt {}/{}), retrying in {} ms: {}",
+                step, id, attempts, maxAttempts, backoffMs, reason);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void fail(UUID id, PaymentStep expectedStep, String reason) {
+        PaymentTransaction failed = update(id, expectedStep, tx -> {
+            tx.setStatus("FAILED");
+            tx.setStep(PaymentStep.DONE);
+            tx.setErrorMessage(reason);
+            tx.setNextAttemptAt(null);
+
+            outboxEventService.publish(
+                    "Payment",
+                    tx.getId().toString(),
+                    paymentFailedTopic,
+                    Map.of("orderId", tx.getOrderId().toString(),
+                           "reason", reason,
+                           "transactionTimestamp", System.currentTimeMillis())
+            );
+        });
+        if (failed != null) {
+            paymentFailureTotal.increment();
+            log.warn("Payment failed for Order ID {}. Published failure to outbox.", failed.getOrderId());
+        }
+    }
+
+    /**
+     * Applies {@code change} to the payment in its own transaction, unless the payment has moved past
+     * {@code expectedStep} (another run got there first).
+     *
+     * @return the saved payment, or null if it was not changed.
+     */
+    private PaymentTransaction update(UUID id, PaymentStep expectedStep, Consumer<PaymentTransaction> change) {
+        return transactionTemplate.execute(status -> {
+            PaymentTransaction transaction = paymentRepository.findById(id).orElse(null);
+            if (transaction == null || transaction.getStep() != expectedStep) {
+                log.info("Payment transaction {} is no longer at step {}; result discarded.", id, expectedStep);
+                return null;
+            }
+            change.accept(transaction);
+            return paymentRepository.save(transaction);
+        });
+    }
+
+    private static long amountInPaise(PaymentTransaction transaction) {
+        // Amount in the smallest currency unit (e.g., paise for INR)
+        return transaction.getAmount().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * Placeholder method to determine the vendor ID for a given order.
+     * In a real system, this would involve looking up order details,
+     * possibly from another service or a shared data store, or the PaymentRequestedEvent
+     * might need to carry the vendorId.
+     *
+     * @param orderId The order ID.
+     * @return The UUID of the vendor.
+     */
+    private UUID determineVendorIdForOrder(String orderId) {
+        // In a full implementation this would query the Order Service to
+        // determine which vendor owns the items in the order. For now we use
+        // a deterministic mapping based on the orderId so tests can rely on a
+        // predictable vendor identifier.
+        long hash = Math.abs(orderId.hashCode());
+        String vendorHex = String.format("%012d", hash % 1000000000000L);
+        return UUID.fromString("00000000-0000-0000-0000-" + vendorHex);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Unfinished payments keep their step and lease and are resumed after restart
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+}
@@ -10,8 +10,9 @@ public interface PaymentService {
 
     /**
      * Processes a payment request event.
-     * This typically involves interacting with the Razorpay API to create an order and capture payment,
-     * then persisting the transaction and publishing success/failure events.
+     * Persists a PENDING transaction and hands it to {@link PaymentPipeline}, which creates the Razorpay order,
+     * captures the payment and publishes success/failure events asynchronously after the transaction commits.
+     * A redelivered request for an order that already has a transaction is ignored.
      *
      * @param event The payment request event.
      */
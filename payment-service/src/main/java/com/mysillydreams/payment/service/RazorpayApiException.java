@@ -0,0 +1,28 @@
+package com.mysillydreams.payment.service;
+
+import lombok.Getter;
+
+/**
+ * A Razorpay Orders/Payments API call that returned an error, or a response the payment flow cannot continue from.
+ */
+@Getter
+public class RazorpayApiException extends RuntimeException {
+
+    private final int httpStatus;  // 0 if the failure is not an HTTP error response
+    private final String errorCode;
+    private final boolean retryable; // Rate limited or server error; sending the call again may succeed
+
+    public RazorpayApiException(int httpStatus, String errorCode, String message, boolean retryable) {
+        super(message);
+        this.httpStatus = httpStatus;
+        this.errorCode = errorCode;
+        this.retryable = retryable;
+    }
+
+    /**
+     * A failure that will not go away on retry (bad request, payment not in a capturable state, ...).
+     */
+    public static RazorpayApiException rejected(String errorCode, String message) {
+        return new RazorpayApiException(0, errorCode, message, false);
+    }
+}
@@ -0,0 +1,290 @@
+package com.mysillydreams.payment.service;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking client for the Razorpay Orders and Payments APIs used by {@link PaymentPipeline}.
+ * <p>
+ * Every call is guarded by its circuit breaker ({@code razorpayOrdersApi} or {@code razorpayPaymentsApi}) and bounded
+ * by its own time budget; an open breaker or an expired budget fails the future instead of holding a thread.
+ * Fetching an order's payments and looking up an order by receipt are reads, so they are hedged: if the first
+ * request has not answered within {@code fetch-hedge-delay-ms}, a second one is sent and the first successful
+ * response wins. Creating an order and capturing a payment are not idempotent and are never hedged.
+ */
+@Component
+@Slf4j
+public class RazorpayPaymentsClient {
+
+    static final String ORDERS_CIRCUIT_BREAKER = "razorpayOrdersApi";
+    static final String PAYMENTS_CIRCUIT_BREAKER = "razorpayPaymentsApi";
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final String authorization;
+    private final CircuitBreaker ordersCircuitBreaker;
+    private final CircuitBreaker paymentsCircuitBreaker;
+    private final Timer createOrderTimer;
+    private final Timer findOrderTimer;
+    private final Timer fetchPaymentsTimer;
+    private final Timer capturePaymentTimer;
+    private final Counter hedgedRequestsTotal;
+
+    @Value("${payment.pipeline.create-order-timeout-ms:10000}")
+    private long createOrderTimeoutMs;
+    @Value("${payment.pipeline.find-payment-timeout-ms:5000}")
+    private long findPaymentTimeoutMs;
+    @Value("${payment.pipeline.capture-timeout-ms:10000}")
+    private long captureTimeoutMs;
+    @Value("${payment.pipeline.fetch-hedge-delay-ms:750}")
+    private long fetchHedgeDelayMs;
+
+    public RazorpayPaymentsClient(@Value("${payment.razorpay.key-id}") String keyId,
+                                  @Value("${payment.razorpay.key-secret}") String keySecret,
+                                  @Value("${payment.razorpay.api-base-url:https://api.razorpay.com/v1}") String baseUrl,
+                                  @Value("${payment.razorpay.connect-timeout-ms:5000}") long connectTimeoutMs,
+                                  CircuitBreakerRegistry circuitBreakerRegistry,
+                                  MeterRegistry meterRegistry) {
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        this.baseUrl = baseUrl.replaceAll("/+$", "");
+        this.authorization = "Basic " + Base64.getEncoder()
+                .encodeToString((keyId + ":" + keySecret).getBytes(StandardCharsets.UTF_8));
+        this.ordersCircuitBreaker = circuitBreakerRegistry.circuitBreaker(ORDERS_CIRCUIT_BREAKER);
+        this.paymentsCircuitBreaker = circuitBreakerRegistry.circuitBreaker(PAYMENTS_CIRCUIT_BREAKER);
+
+        this.createOrderTimer = timer("payment.service.razorpay.orders.create.timer",
+                "Timer for Razorpay Order create API calls", meterRegistry);
+        this.findOrderTimer = timer("payment.service.razorpay.orders.find.timer",
+                "Timer for Razorpay Order lookups by receipt", meterRegistry);
+        this.fetchPaymentsTimer = timer("payment.service.razorpay.orders.payments.timer",
+                "Timer for Razorpay Order fetch payments API calls", meterRegistry);
+        this.capturePaymentTimer = timer("payment.service.razorpay.payments.capture.timer",
+                "Timer for Razorpay Payment capture API calls", meterRegistry);
+        this.hedgedRequestsTotal = Counter.builder("payment.service.razorpay.hedged.requests.total")
+                .description("Second requests sent because the first fetch payments call was slow")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Creates a Razorpay order.
+     *
+     * @return the Razorpay order ID.
+     */
+    public CompletableFuture<String> createOrder(long amountInPaise, String currency, String receipt) {
+        JSONObject body = new JSONObject();
+        body.put("amount", amountInPaise);
+        body.put("currency", currency);
+        body.put("receipt", receipt); // Our internal order ID
+        return guarded(ordersCircuitBreaker, createOrderTimeoutMs,
+                () -> send(post("/orders", body), createOrderTimer, response -> {
+                    String orderId = response.optString("id", null);
+                    if (orderId == null) {
+                        throw new RazorpayApiException(200, "MissingOrderId", "Razorpay response has no order id", true);
+                    }
+                    return orderId;
+                }));
+    }
+
+    /**
+     * Looks up the order created with the given receipt, so a retried order creation can reuse it. Hedged.
+     *
+     * @return the Razorpay order ID, or empty if no order carries the receipt.
+     */
+    public CompletableFuture<Optional<String>> findOrderIdByReceipt(String receipt) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/orders?receipt="
+                        + URLEncoder.encode(receipt, StandardCharsets.UTF_8)))
+                .header("Authorization", authorization)
+                .GET()
+                .build();
+        return guarded(ordersCircuitBreaker, findPaymentTimeoutMs,
+                () -> hedged(() -> send(request, findOrderTimer, response -> {
+                    JSONArray items = response.optJSONArray("items");
+                    for (int i = 0; items != null && i < items.length(); i++) {
+                        JSONObject order = items.getJSONObject(i);
+                        if (receipt.equals(order.optString("receipt", null)) && order.has("id")) {
+                            return Optional.of(order.getString("id"));
+                        }
+                    }
+                    return Optional.<String>empty();
+                })));
+    }
+
+    /**
+     * Fetches the payments made against a Razorpay order. Hedged.
+     */
+    public CompletableFuture<List<RazorpayPayment>> fetchPayments(String razorpayOrderId) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/orders/" + razorpayOrderId + "/payments"))
+                .header("Authorization", authorization)
+                .GET()
+                .build();
+        return guarded(ordersCircuitBreaker, findPaymentTimeoutMs,
+                () -> hedged(() -> send(request, fetchPaymentsTimer, response -> {
+                    JSONArray items = response.optJSONArray("items");
+                    List<RazorpayPayment> payments = new ArrayList<>();
+                    for (int i = 0; items != null && i < items.length(); i++) {
+                        payments.add(RazorpayPayment.from(items.getJSONObject(i)));
+                    }
+                    return payments;
+                })));
+    }
+
+    /**
+     * Captures an authorized payment.
+     */
+    public CompletableFuture<RazorpayPayment> capturePayment(String razorpayPaymentId, long amountInPaise, String currency) {
+        JSONObject body = new JSONObject();
+        body.put("amount", amountInPaise);
+        body.put("currency", currency);
+        return guarded(paymentsCircuitBreaker, captureTimeoutMs,
+                () -> send(post("/payments/" + razorpayPaymentId + "/capture", body), capturePaymentTimer,
+                        RazorpayPayment::from));
+    }
+
+    /**
+     * @return true if the failure may go away when the call is sent again: transport errors, timeouts, an open
+     * circuit breaker, 429 and 5xx responses.
+     */
+    public static boolean isRetryable(Throwable failure) {
+        Throwable cause = unwrap(failure);
+        return !(cause instanceof RazorpayApiException) || ((RazorpayApiException) cause).isRetryable();
+    }
+
+    static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    private HttpRequest post(String path, JSONObject body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+
+    private <T> CompletableFuture<T> send(HttpRequest request, Timer timer, Function<JSONObject, T> onSuccess) {
+        Timer.Sample sample = Timer.start();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, failure) -> sample.stop(timer))
+                .thenApply(response -> onSuccess.apply(toJson(response)));
+    }
+
+    private static JSONObject toJson(HttpResponse<String> response) {
+        int status = response.statusCode();
+        JSONObject body = parse(response.body());
+        if (status >= 200 && status < 300) {
+            return body;
+        }
+        JSONObject error = body.optJSONObject("error");
+        String errorCode = error != null ? error.optString("code", "HTTP_" + status) : "HTTP_" + status;
+        String errorMessage = error != null ? error.optString("description", response.body()) : response.body();
+        throw new RazorpayApiException(status, errorCode, errorMessage, status == 429 || status >= 500);
+    }
+
+    private static JSONObject parse(String body) {
+        try {
+            return body == null || body.isBlank() ? new JSONObject() : new JSONObject(body);
+        } catch (JSONException e) {
+            return new JSONObject();
+        }
+    }
+
+    /**
+     * Runs the call if the breaker permits it, bounded by {@code timeoutMs}. Rejections (4xx) are reported to the
+     * breaker as successes: they say nothing about Razorpay's health.
+     */
+    private <T> CompletableFuture<T> guarded(CircuitBreaker circuitBreaker, long timeoutMs,
+                                             Supplier<CompletableFuture<T>> call) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return CompletableFuture.failedFuture(CallNotPermittedException.createCallNotPermittedException(circuitBreaker));
+        }
+        long start = circuitBreaker.getCurrentTimestamp();
+        return call.get()
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((result, failure) -> {
+                    long duration = circuitBreaker.getCurrentTimestamp() - start;
+                    if (failure == null || !isRetryable(failure)) {
+                        circuitBreaker.onSuccess(duration, circuitBreaker.getTimestampUnit());
+                    } else {
+                        circuitBreaker.onError(duration, circuitBreaker.getTimestampUnit(), unwrap(failure));
+                    }
+                });
+    }
+
+    /**
+     * Sends the call, and once more if it has not completed after the hedge delay. Completes with the first
+     * success, or with the last failure if every request sent failed.
+     */
+    private <T> CompletableFuture<T> hedged(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        BiConsumer<T, Throwable> settle = (value, failure) -> {
+            if (failure == null) {
+                result.complete(value);
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(unwrap(failure));
+            }
+        };
+        call.get().whenComplete(settle);
+        CompletableFuture.delayedExecutor(fetchHedgeDelayMs, TimeUnit.MILLISECONDS).execute(() -> {
+            // Only hedge while the first request is still outstanding
+            if (!result.isDone() && pending.getAndUpdate(p -> p == 0 ? 0 : p + 1) > 0) {
+                hedgedRequestsTotal.increment();
+                call.get().whenComplete(settle);
+            }
+        });
+        return result;
+    }
+
+    private static Timer timer(String name, String description, MeterRegistry meterRegistry) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    public record RazorpayPayment(String id, String status) {
+
+        static RazorpayPayment from(JSONObject entity) {
+            return new RazorpayPayment(entity.optString("id", null), entity.optString("status", null));
+        }
+
+        public boolean isCaptured() {
+            return "captured".equalsIgnoreCase(status);
+        }
+
+        public boolean isAuthorized() {
+            return "authorized".equalsIgnoreCase(status);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.mysillydreams.payment.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Non-blocking client for the RazorpayX Payouts create API.
+ * <p>
+ * Unlike the Razorpay SDK, calls return a {@link CompletableFuture}, so many payouts can be in flight from one
+ * thread, and the base URL is configurable so the API can be stubbed locally. Every request carries the payout ID
+ * as its idempotency key: re-sending a payout (e.g. after a crash) returns the payout Razorpay already created.
+ */
+@Component
+@Slf4j
+public class RazorpayPayoutClient {
+
+    static final String IDEMPOTENCY_HEADER = "X-Payout-Idempotency";
+
+    private final HttpClient httpClient;
+    private final URI payoutsUri;
+    private final String authorization;
+    private final Duration requestTimeout;
+    private final Timer createPayoutTimer;
+
+    public RazorpayPayoutClient(@Value("${payment.razorpay.key-id}") String keyId,
+                                @Value("${payment.razorpay.key-secret}") String keySecret,
+                                @Value("${payment.razorpay.payout.base-url:https://api.razorpay.com}") String baseUrl,
+                                @Value("${payment.razorpay.payout.connect-timeout-ms:5000}") long connectTimeoutMs,
+                                @Value("${payment.razorpay.payout.request-timeout-ms:15000}") long requestTimeoutMs,
+                                MeterRegistry meterRegistry) {
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        this.payoutsUri = URI.create(baseUrl.replaceAll("/+$", "") + "/v1/payouts");
+        this.authorization = "Basic " + Base64.getEncoder()
+                .encodeToString((keyId + ":" + keySecret).getBytes(StandardCharsets.UTF_8));
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.createPayoutTimer = Timer.builder("payment.service.razorpay.payouts.create.timer")
+                .description("Timer for Razorpay Payouts create API calls")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends a Payouts create request. The returned future never completes exceptionally: transport errors and
+     * timeouts are reported as {@link Outcome#RETRYABLE}.
+     *
+     * @param payoutRequest  the request body.
+     * @param idempotencyKey a key unique to the payout, stable across retries.
+     */
+    public CompletableFuture<PayoutResult> createPayout(JSONObject payoutRequest, String idempotencyKey) {
+        HttpRequest request = HttpRequest.newBuilder(payoutsUri)
+                .timeout(requestTimeout)
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .header(IDEMPOTENCY_HEADER, idempotencyKey)
+                .POST(HttpRequest.BodyPublishers.ofString(payoutRequest.toString()))
+                .build();
+        Timer.Sample sample = Timer.start();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, ex) -> {
+                    sample.stop(createPayoutTimer);
+                    if (ex != null) {
+                        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                        log.warn("Razorpay Payouts create failed for idempotency key {}: {}", idempotencyKey, cause.toString());
+                        return PayoutResult.retryable(0, cause.getClass().getSimpleName(), String.valueOf(cause.getMessage()));
+                    }
+                    return toResult(response);
+                });
+    }
+
+    private PayoutResult toResult(HttpResponse<String> response) {
+        int status = response.statusCode();
+        JSONObject body = parse(response.body());
+        if (status >= 200 && status < 300) {
+            String payoutId = body.optString("id", null);
+            if (payoutId == null) {
+                return PayoutResult.retryable(status, "MissingPayoutId", "Razorpay response has no payout id");
+            }
+            return PayoutResult.created(status, payoutId);
+        }
+        JSONObject error = body.optJSONObject("error");
+        String errorCode = error != null ? error.optString("code", "HTTP_" + status) : "HTTP_" + status;
+        String errorMessage = error != null ? error.optString("description", response.body()) : response.body();
+        if (status == 429 || status >= 500) {
+            return PayoutResult.retryable(status, errorCode, errorMessage);
+        }
+        return PayoutResult.rejected(status, errorCode, errorMessage);
+    }
+
+    private static JSONObject parse(String body) {
+        try {
+            return body == null || body.isBlank() ? new JSONObject() : new JSONObject(body);
+        } catch (JSONException e) {
+            return new JSONObject();
+        }
+    }
+
+    public enum Outcome {
+        CREATED,    // Razorpay accepted the payout (or returned the one already created for this idempotency key)
+        REJECTED,   // Razorpay refused the request; sending it again will not help
+        RETRYABLE   // Rate limited, server error or transport failure; safe to send again with the same key
+    }
+
+    public record PayoutResult(Outcome outcome, int httpStatus, String razorpayPayoutId,
+                               String errorCode, String errorMessage) {
+
+        public static PayoutResult created(int httpStatus, String razorpayPayoutId) {
+            return new PayoutResult(Outcome.CREATED, httpStatus, razorpayPayoutId, null, null);
+        }
+
+        public static PayoutResult rejected(int httpStatus, String errorCode, String errorMessage) {
+            return new PayoutResult(Outcome.REJECTED, httpStatus, null, errorCode, errorMessage);
+        }
+
+        public static PayoutResult retryable(int httpStatus, String errorCode, String errorMessage) {
+            return new PayoutResult(Outcome.RETRYABLE, httpStatus, null, errorCode, errorMessage);
+        }
+
+        public boolean isRateLimited() {
+            return httpStatus == 429;
+        }
+    }
+}
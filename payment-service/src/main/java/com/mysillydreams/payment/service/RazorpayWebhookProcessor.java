@@ -0,0 +1,109 @@
+package com.mysillydreams.payment.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mysillydreams.payment.dto.PaymentAuthorizedWebhookDto;
+import com.mysillydreams.payment.dto.PaymentFailedWebhookDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+
+/**
+ * Routes a stored, already verified Razorpay webhook to the payment or payout service.
+ * Called by WebhookIngestionService workers, never on the request thread.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RazorpayWebhookProcessor {
+
+    private final PaymentService paymentService; // For payment webhooks
+    private final VendorPayoutService vendorPayoutService; // For payout webhooks
+    private final ObjectMapper objectMapper; // Spring Boot auto-configures one
+
+    /**
+     * Parses and handles one webhook body. Exceptions propagate so the caller can retry the event.
+     */
+    public void process(String payload) throws Exception {
+        JsonNode rootNode = objectMapper.readTree(payload);
+        String eventType = rootNode.path("event").asText();
+        JsonNode payloadNode = rootNode.path("payload"); // The actual payload for the event
+
+        log.info("Processing Razorpay event type: {}", eventType);
+
+        // Route based on event type
+        if (eventType.startsWith("payment.")) {
+            handlePaymentEvent(eventType, payloadNode);
+        } else if (eventType.startsWith("payout.")) {
+            handlePayoutEvent(eventType, payloadNode);
+        } else if (eventType.startsWith("order.")) {
+            // Handle order events if needed, e.g., order.paid
+            log.info("Received Razorpay order event: {}", eventType);
+        } else if (eventType.startsWith("refund.")) {
+            // Handle refund events
+            log.info("Received Razorpay refund event: {}", eventType);
+        } else {
+            log.info("Received unhandled Razorpay event category: {}", eventType);
+        }
+    }
+
+    private void handlePaymentEvent(String eventType, JsonNode payloadNode) throws Exception {
+        // Ensure payloadNode contains the "payment" wrapper with "entity" inside for these events
+        JsonNode paymentEntityNode = payloadNode.path("payment").path("entity");
+        if (paymentEntityNode.isMissingNode()) {
+            log.warn("Webhook event {} missing 'payload.payment.entity'. Payload: {}", eventType, payloadNode.toString());
+            return;
+        }
+
+        switch (eventType) {
+            case "payment.authorized":
+                PaymentAuthorizedWebhookDto authEventDto = new PaymentAuthorizedWebhookDto();
+                authEventDto.setPayment(objectMapper.treeToValue(paymentEntityNode, PaymentAuthorizedWebhookDto.RazorpayPaymentEntityDto.class));
+                paymentService.handleWebhookPaymentAuthorized(authEventDto);
+                break;
+            case "payment.failed":
+                PaymentFailedWebhookDto failEventDto = new PaymentFailedWebhookDto();
+                failEventDto.setPayment(objectMapper.treeToValue(paymentEntityNode, PaymentFailedWebhookDto.RazorpayPaymentEntityDto.class));
+                paymentService.handleWebhookPaymentFailed(failEventDto);
+                break;
+            // Add other payment event cases: payment.captured, etc.
+            default:
+                log.info("Received unhandled Razorpay payment event type: {}", eventType);
+                break;
+        }
+    }
+
+    private void handlePayoutEvent(String eventType, JsonNode payloadNode) {
+        // Payout events have structure like: payload.payout.entity
+        JsonNode payoutEntityNode = payloadNode.path("payout").path("entity");
+        if (payoutEntityNode.isMissingNode()) {
+            log.warn("Webhook event {} missing 'payload.payout.entity'. Payload: {}", eventType, payloadNode.toString());
+            return;
+        }
+
+        String razorpayPayoutId = payoutEntityNode.path("id").asText();
+        long createdAtEpoch = payoutEntityNode.path("created_at").asLong(); // Assuming created_at for processed time
+        Instant processedAt = Instant.ofEpochSecond(createdAtEpoch);
+
+        switch (eventType) {
+            case "payout.processed": // This is a common success event for payouts
+                // Or "payout.updated" if status changes to "processed"
+                log.info("Handling payout.processed webhook for Razorpay Payout ID: {}", razorpayPayoutId);
+                vendorPayoutService.handlePayoutSuccess(razorpayPayoutId, processedAt);
+                break;
+            case "payout.failed":
+            case "payout.reversed": // Reversed might also be treated as a failure or specific handling
+                String errorCode = payoutEntityNode.path("failure_reason").asText(); // Or a more specific error field
+                String errorMessage = payoutEntityNode.path("status_details").path("description").asText("Payout failed/reversed via webhook.");
+                log.info("Handling payout.failed/reversed webhook for Razorpay Payout ID: {}, Error: {}", razorpayPayoutId, errorCode);
+                vendorPayoutService.handlePayoutFailed(razorpayPayoutId, errorCode, errorMessage, processedAt); // processedAt is more like failedAt here
+                break;
+            // Add other payout event cases: payout.initiated, payout.queued, etc.
+            default:
+                log.info("Received unhandled Razorpay payout event type: {}", eventType);
+                break;
+        }
+    }
+}
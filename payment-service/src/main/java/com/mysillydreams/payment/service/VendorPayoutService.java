@@ -9,26 +9,22 @@ import com.mysillydreams.payment.dto.VendorPayoutInitiatedEvent;
 import com.mysillydreams.payment.dto.VendorPayoutSucceededEvent;
 import com.mysillydreams.payment.repository.PaymentRepository; // To fetch PaymentTransaction
 import com.mysillydreams.payment.repository.PayoutTransactionRepository;
-import com.razorpay.Payout; // Razorpay Payout class
-import com.razorpay.RazorpayClient;
-import com.razorpay.RazorpayException;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.retry.annotation.Retry;
+import io.micrometer.core.annotation.Counted;
+import io.micrometer.core.annotation.Timed;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Timer;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -39,29 +35,16 @@ public class VendorPayoutService {
 
     private final PayoutTransactionRepository payoutTransactionRepository;
     private final PaymentRepository paymentRepository;
-    private final RazorpayClient razorpayClient;
     private final OutboxEventService outboxEventService;
     private final CommissionProperties commissionProperties;
     private final MeterRegistry meterRegistry;
 
-import io.micrometer.core.annotation.Counted; // Import @Counted
-import io.micrometer.core.annotation.Timed;   // Import @Timed
-
-// ... (other imports)
-
-// @RequiredArgsConstructor // Cannot use with manual constructor for metrics
-@Slf4j
-public class VendorPayoutService {
-
-    // ... (other fields) ...
-    private final MeterRegistry meterRegistry;
-
     // Metrics
     // Metrics
     private final Counter payoutSuccessTotal;    // Programmatic
     private final Counter payoutFailureTotal;    // Programmatic
     // @Counted for payment.service.payouts.attempts.total will be on initiatePayout method
-    // @Timed for Razorpay Payouts.create will be on helper method callRazorpayCreatePayout
+    // Razorpay Payouts create calls are timed by RazorpayPayoutClient
 
     @Value("${kafka.topics.vendorPayoutInitiated:vendor.payout.initiated}")
     private String vendorPayoutInitiatedTopic;
@@ -73,15 +56,21 @@ public class VendorPayoutService {
     @Value("${payment.razorpay.payout.account-id}")
     private String razorpayXAccountId;
 
+    // Retryable dispatch failures: backoff between attempts, and attempts before the payout is FAILED
+    @Value("${payment.payout.dispatcher.max-attempts:8}")
+    private int maxDispatchAttempts;
+    @Value("${payment.payout.dispatcher.retry-backoff-ms:30000}")
+    private long retryBackoffMs;
+    @Value("${payment.payout.dispatcher.max-retry-backoff-ms:1800000}")
+    private long maxRetryBackoffMs;
+
     public VendorPayoutService(PayoutTransactionRepository payoutTransactionRepository,
                                PaymentRepository paymentRepository,
-                               RazorpayClient razorpayClient,
                                OutboxEventService outboxEventService,
                                CommissionProperties commissionProperties,
                                MeterRegistry meterRegistry) {
         this.payoutTransactionRepository = payoutTransactionRepository;
         this.paymentRepository = paymentRepository;
-        this.razorpayClient = razorpayClient;
         this.outboxEventService = outboxEventService;
         this.commissionProperties = commissionProperties;
         this.meterRegistry = meterRegistry; // Keep for programmatic counters
@@ -152,123 +141,154 @@ public class VendorPayoutService {
         );
         log.info("Published VendorPayoutInitiatedEvent for Payout ID: {} to outbox.", payoutTx.getId());
 
-        // Trigger asynchronous processing of Razorpay Payout API call
-        processRazorpayPayoutAsync(payoutTx); // Call the async method
-
+        // The Razorpay Payout API call is made by PayoutDispatcher, which picks up INIT payouts in batches
         return payoutTx.getId();
     }
 
-    @Async // Execute in a separate thread, outside the initial transaction
-    @Transactional(propagation = Propagation.REQUIRES_NEW) // New transaction for this async operation
-    public void processRazorpayPayoutAsync(PayoutTransaction payoutTransaction) {
-        log.info("Async processing Razorpay payout for PayoutTransaction ID: {}", payoutTransaction.getId());
-        PayoutTransaction pt = payoutTransactionRepository.findById(payoutTransaction.getId()).orElse(null);
-        if (pt == null || pt.getStatus() != PayoutStatus.INIT) {
-             log.warn("PayoutTransaction ID {} no longer in INIT state or not found. Current status: {}. Aborting Razorpay call.",
-                payoutTransaction.getId(), pt != null ? pt.getStatus() : "NOT_FOUND");
-            return;
+    /**
+     * Claims up to {@code limit} payouts for dispatch to Razorpay: INIT payouts whose retry backoff has elapsed,
+     * plus DISPATCHING payouts whose claim is older than {@code staleBefore} (left behind by a crashed dispatcher).
+     * Payouts in {@code excludedIds} are not claimed. Rows are locked with SKIP LOCKED, so concurrent dispatchers
+     * never claim the same payout.
+     */
+    @Transactional
+    public List<PayoutTransaction> claimPayoutsForDispatch(int limit, Instant staleBefore, Collection<UUID> excludedIds) {
+        List<PayoutTransaction> claimed = payoutTransactionRepository.lockDispatchable(
+                staleBefore, excludedIds.toArray(UUID[]::new), limit);
+        if (!claimed.isEmpty()) {
+            payoutTransactionRepository.markDispatching(claimed.stream().map(PayoutTransaction::getId).toArray(UUID[]::new));
+            log.info("Claimed {} payouts for dispatch.", claimed.size());
         }
+        return claimed;
+    }
 
-        try {
-            // TODO: Implement lookupVendorFundAccount(pt.getVendorId())
-            // This method needs to fetch the vendor's pre-registered fund_account_id from RazorpayX.
-            // This might involve another service call or DB lookup (e.g., in a VendorProfile entity).
-            // For now, using a placeholder. This is a critical integration point.
-            String fundAccountId = lookupVendorFundAccount(pt.getVendorId());
-            if (fundAccountId == null || fundAccountId.isBlank()) {
-                throw new IllegalStateException("Fund account ID not found for vendor: " + pt.getVendorId());
+    /**
+     * Builds the Razorpay Payouts create request for a payout.
+     *
+     * @throws IllegalStateException if the vendor has no fund account; the payout cannot be dispatched.
+     */
+    public JSONObject buildPayoutRequest(PayoutTransaction pt) {
+        // TODO: Implement lookupVendorFundAccount(pt.getVendorId())
+        // This method needs to fetch the vendor's pre-registered fund_account_id from RazorpayX.
+        // This might involve another service call or DB lookup (e.g., in a VendorProfile entity).
+        // For now, using a placeholder. This is a critical integration point.
+        String fundAccountId = lookupVendorFundAccount(pt.getVendorId());
+        if (fundAccountId == null || fundAccountId.isBlank()) {
+            throw new IllegalStateException("Fund account ID not found for vendor: " + pt.getVendorId());
+        }
+
+        JSONObject payoutRequest = new JSONObject();
+        payoutRequest.put("account_number", razorpayXAccountId); // Your RazorpayX account number from which payout is made
+        payoutRequest.put("fund_account_id", fundAccountId); // Vendor's fund account ID
+        payoutRequest.put("amount", pt.getNetAmount().multiply(BigDecimal.valueOf(100)).intValueExact()); // Amount in paise
+        payoutRequest.put("currency", pt.getCurrency());
+        payoutRequest.put("mode", "IMPS"); // Or NEFT, RTGS, UPI
+        payoutRequest.put("purpose", "vendor_payout"); // e.g., "vendor_payout", "refund", "cashback"
+        payoutRequest.put("queue_if_low_balance", true); // Or false based on policy
+        payoutRequest.put("reference_id", "PAYOUT_" + pt.getId().toString()); // Your internal reference
+        payoutRequest.put("narration", "Payout for order related to payment " + pt.getPaymentTransaction().getId());
+        return payoutRequest;
+    }
+
+    /**
+     * Persists the outcome of one dispatched batch in a single transaction: one bulk update for the payouts
+     * Razorpay accepted (now PENDING), one for the rejected ones (FAILED, with a failure event each), one
+     * releasing the payouts that should be retried back to INIT after a backoff, and one releasing the payouts
+     * that were never sent. A retryable failure on the last of {@code max-attempts} attempts fails the payout
+     * instead. Only rows still DISPATCHING are updated.
+     *
+     * @param dispatched the claimed payouts, by ID.
+     * @param results    the Razorpay outcome for every claimed payout that was sent; claimed payouts without
+     *                   a result were not sent.
+     */
+    @Transactional
+    public void recordDispatchResults(Map<UUID, PayoutTransaction> dispatched,
+                                      Map<UUID, RazorpayPayoutClient.PayoutResult> results) {
+        List<UUID> pendingIds = new ArrayList<>();
+        List<String> razorpayPayoutIds = new ArrayList<>();
+        List<UUID> failedIds = new ArrayList<>();
+        List<String> errorCodes = new ArrayList<>();
+        List<String> errorMessages = new ArrayList<>();
+        List<UUID> retryIds = new ArrayList<>();
+        List<UUID> unsentIds = new ArrayList<>();
+
+        dispatched.forEach((payoutId, pt) -> {
+            RazorpayPayoutClient.PayoutResult result = results.get(payoutId);
+            if (result == null) {
+                unsentIds.add(payoutId);
+                return;
+            }
+            switch (result.outcome()) {
+                case CREATED -> {
+                    pendingIds.add(payoutId);
+                    razorpayPayoutIds.add(result.razorpayPayoutId());
+                }
+                case REJECTED -> {
+                    failedIds.add(payoutId);
+                    errorCodes.add(result.errorCode());
+                    errorMessages.add(result.errorMessage());
+                }
+                case RETRYABLE -> {
+                    if (pt.getDispatchAttempts() + 1 >= maxDispatchAttempts) {
+                        failedIds.add(payoutId);
+                        errorCodes.add(result.errorCode());
+                        errorMessages.add("Gave up after " + (pt.getDispatchAttempts() + 1) + " dispatch attempts: "
+                                + result.errorMessage());
+                    } else {
+                        retryIds.add(payoutId);
+                    }
+                }
             }
+        });
 
-            JSONObject payoutRequest = new JSONObject();
-            payoutRequest.put("account_number", razorpayXAccountId); // Your RazorpayX account number from which payout is made
-            payoutRequest.put("fund_account_id", fundAccountId); // Vendor's fund account ID
-            payoutRequest.put("amount", pt.getNetAmount().multiply(BigDecimal.valueOf(100)).intValueExact()); // Amount in paise
-            payoutRequest.put("currency", pt.getCurrency());
-            payoutRequest.put("mode", "IMPS"); // Or NEFT, RTGS, UPI
-            payoutRequest.put("purpose", "vendor_payout"); // e.g., "vendor_payout", "refund", "cashback"
-            payoutRequest.put("queue_if_low_balance", true); // Or false based on policy
-            payoutRequest.put("reference_id", "PAYOUT_" + pt.getId().toString()); // Your internal reference
-            payoutRequest.put("narration", "Payout for order related to payment " + pt.getPaymentTransaction().getId());
-            // Notes can be added if needed:
-            // payoutRequest.put("notes", new JSONObject().put("internal_payout_id", pt.getId().toString()));
-
-            // Call resilience-enabled helper method
-            Payout razorpayPayout = callRazorpayCreatePayout(payoutRequest);
-
-            String rzpPayoutId = razorpayPayout.get("id");
-            String rzpStatus = razorpayPayout.get("status");
-
-            log.info("Razorpay Payout API call successful for Payout ID: {}. Razorpay Payout ID: {}, Razorpay Status: {}",
-                    pt.getId(), rzpPayoutId, rzpStatus);
-
-            pt.setRazorpayPayoutId(rzpPayoutId);
-            pt.setStatus(PayoutStatus.PENDING);
-            payoutTransactionRepository.save(pt);
-            log.info("PayoutTransaction ID {} updated to PENDING with Razorpay Payout ID {}.", pt.getId(), rzpPayoutId);
-
-        } catch (RazorpayException e) {
-            log.error("RazorpayException during payout for Payout ID {}: {}",
-                    pt.getId(), e.getMessage(), e);
-            pt.setStatus(PayoutStatus.FAILED);
-            pt.setErrorCode(e.getClass().getSimpleName());
-            pt.setErrorMessage(e.getMessage());
-            payoutTransactionRepository.save(pt);
-            payoutFailureTotal.increment(); // Increment failure counter for API call
-
-            VendorPayoutFailedEvent failedEvent = VendorPayoutFailedEvent.newBuilder()
-                    .setPayoutId(pt.getId().toString())
-                    .setPaymentId(pt.getPaymentTransaction().getId().toString())
-                    .setVendorId(pt.getVendorId().toString())
-                    .setNetAmount(pt.getNetAmount().doubleValue())
-                    .setCurrency(pt.getCurrency())
-                    .setErrorCode(pt.getErrorCode()) // Use the code from exception if available
-                    .setErrorMessage(e.getMessage())
-                    .setFailedAt(Instant.now().toEpochMilli())
-                    .build();
-            outboxEventService.publish("VendorPayout", pt.getId().toString(), vendorPayoutFailedTopic,
-                    Map.of(
-                         "payoutId", failedEvent.getPayoutId(),
-                         "paymentId", failedEvent.getPaymentId(),
-                         "vendorId", failedEvent.getVendorId(),
-                         "netAmount", failedEvent.getNetAmount(),
-                         "currency", failedEvent.getCurrency(),
-                         "errorCode", failedEvent.getErrorCode() != null ? failedEvent.getErrorCode().toString() : "RazorpayException",
-                         "errorMessage", failedEvent.getErrorMessage(),
-                         "failedAt", failedEvent.getFailedAt()
-                     )
-            );
-            log.warn("PayoutTransaction ID {} marked FAILED due to Razorpay API error. Published failure event to outbox.", pt.getId());
-        } catch (Exception e) { // Catch other unexpected errors
-            log.error("Unexpected exception during async Razorpay payout for Payout ID {}: {}", pt.getId(), e.getMessage(), e);
-            pt.setStatus(PayoutStatus.FAILED);
-            pt.setErrorCode(e.getClass().getSimpleName());
-            pt.setErrorMessage("Unexpected error: " + e.getMessage());
-            payoutTransactionRepository.save(pt);
-            payoutFailureTotal.increment(); // Increment failure counter for unexpected error during API call phase
-            // Publish failure event (similar to above)
-             VendorPayoutFailedEvent failedEvent = VendorPayoutFailedEvent.newBuilder()
-                    .setPayoutId(pt.getId().toString())
-                    .setPaymentId(pt.getPaymentTransaction().getId().toString())
-                    .setVendorId(pt.getVendorId().toString())
-                    .setNetAmount(pt.getNetAmount().doubleValue())
-                    .setCurrency(pt.getCurrency())
-                    .setErrorCode("InternalError")
-                    .setErrorMessage(e.getMessage())
-                    .setFailedAt(Instant.now().toEpochMilli())
-                    .build();
-            outboxEventService.publish("VendorPayout", pt.getId().toString(), vendorPayoutFailedTopic,
-                 Map.of(
-                         "payoutId", failedEvent.getPayoutId(),
-                         "paymentId", failedEvent.getPaymentId(),
-                         "vendorId", failedEvent.getVendorId(),
-                         "netAmount", failedEvent.getNetAmount(),
-                         "currency", failedEvent.getCurrency(),
-                         "errorCode", failedEvent.getErrorCode().toString(),
-                         "errorMessage", failedEvent.getErrorMessage(),
-                         "failedAt", failedEvent.getFailedAt()
-                     )
-            );
+        if (!pendingIds.isEmpty()) {
+            int updated = payoutTransactionRepository.markPending(
+                    pendingIds.toArray(UUID[]::new), razorpayPayoutIds.toArray(String[]::new));
+            log.info("Marked {} of {} dispatched payouts PENDING.", updated, pendingIds.size());
+        }
+        if (!failedIds.isEmpty()) {
+            payoutTransactionRepository.markFailed(failedIds.toArray(UUID[]::new),
+                    errorCodes.toArray(String[]::new), errorMessages.toArray(String[]::new));
+            Instant failedAt = Instant.now();
+            for (int i = 0; i < failedIds.size(); i++) {
+                publishPayoutFailed(dispatched.get(failedIds.get(i)), errorCodes.get(i), errorMessages.get(i), failedAt);
+            }
+            payoutFailureTotal.increment(failedIds.size());
+            log.warn("Marked {} dispatched payouts FAILED. Published failure events to outbox.", failedIds.size());
         }
+        if (!retryIds.isEmpty()) {
+            payoutTransactionRepository.releaseForRetry(retryIds.toArray(UUID[]::new), retryBackoffMs, maxRetryBackoffMs);
+            log.info("Released {} payouts back to INIT for retry after backoff.", retryIds.size());
+        }
+        if (!unsentIds.isEmpty()) {
+            payoutTransactionRepository.releaseUnsent(unsentIds.toArray(UUID[]::new));
+            log.info("Released {} unsent payouts back to INIT.", unsentIds.size());
+        }
+    }
+
+    private void publishPayoutFailed(PayoutTransaction pt, String errorCode, String errorMessage, Instant failedAt) {
+        VendorPayoutFailedEvent failedEvent = VendorPayoutFailedEvent.newBuilder()
+                .setPayoutId(pt.getId().toString())
+                .setPaymentId(pt.getPaymentTransaction().getId().toString())
+                .setVendorId(pt.getVendorId().toString())
+                .setNetAmount(pt.getNetAmount().doubleValue())
+                .setCurrency(pt.getCurrency())
+                .setErrorCode(errorCode)
+                .setErrorMessage(errorMessage)
+                .setFailedAt(failedAt.toEpochMilli())
+                .build();
+        outboxEventService.publish("VendorPayout", pt.getId().toString(), vendorPayoutFailedTopic,
+                Map.of(
+                    "payoutId", failedEvent.getPayoutId(),
+                    "paymentId", failedEvent.getPaymentId(),
+                    "vendorId", failedEvent.getVendorId(),
+                    "netAmount", failedEvent.getNetAmount(),
+                    "currency", failedEvent.getCurrency(),
+                    "errorCode", failedEvent.getErrorCode() != null ? failedEvent.getErrorCode().toString() : "RazorpayException",
+                    "errorMessage", failedEvent.getErrorMessage() != null ? failedEvent.getErrorMessage().toString() : "",
+                    "failedAt", failedEvent.getFailedAt()
+                )
+        );
     }
 
     @Transactional // For updating PayoutTransaction from webhook
@@ -372,7 +392,7 @@ public class VendorPayoutService {
 
 
     // Placeholder - this needs actual implementation
-    private String lookupVendorFundAccount(UUID vendorId) {
+    protected String lookupVendorFundAccount(UUID vendorId) {
         // TODO: Implement logic to retrieve the vendor's RazorpayX fund_account_id.
         // This might involve:
         // - Querying a local VendorProfile entity that stores this ID.
@@ -390,22 +410,4 @@ public class VendorPayoutService {
         // throw new IllegalStateException("Fund account ID lookup not implemented for vendor: " + vendorId);
         return null; // Simulate not found to test failure path
     }
-
-    // --- Resilience4j Helper Method & Fallback for Razorpay Payouts.create ---
-
-    @Timed(value = "payment.service.razorpay.payouts.create.timer", description = "Timer for Razorpay Payouts create API calls", percentiles = {0.5, 0.95, 0.99})
-    @CircuitBreaker(name = "razorpayPayoutsApi", fallbackMethod = "createPayoutFallback")
-    @Retry(name = "razorpayApiRetry") // Using the same general retry policy
-    protected Payout callRazorpayCreatePayout(JSONObject payoutRequest) throws RazorpayException {
-        log.debug("Calling RazorpayClient.Payouts.create: {}", payoutRequest.toString());
-        // return razorpayPayoutCreateTimer.recordCallable(() -> razorpayClient.Payouts.create(payoutRequest)); // Removed programmatic timer
-        return razorpayClient.Payouts.create(payoutRequest);
-    }
-
-    protected Payout createPayoutFallback(JSONObject payoutRequest, Throwable t) throws RazorpayException {
-        log.warn("Fallback for callRazorpayCreatePayout due to: {}. Request: {}", t.getMessage(), payoutRequest.toString());
-        if (t instanceof RazorpayException) throw (RazorpayException) t;
-        // Wrap other exceptions in RazorpayException to be handled by the calling method's catch block
-        throw new RazorpayException("Razorpay Payouts.create call failed and fallback triggered: " + t.getMessage());
-    }
 }
@@ -0,0 +1,182 @@
+package com.mysillydreams.payment.service;
+
+import com.mysillydreams.payment.domain.WebhookEvent;
+import com.mysillydreams.payment.repository.WebhookEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Durable intake queue for Razorpay webhooks.
+ * <p>
+ * {@link #ingest} stores the verified raw body (one insert, deduplicated by event ID) and hands the event to a
+ * bounded worker pool, so the webhook is acknowledged without waiting for its processing. Each worker locks the
+ * event row, runs {@link RazorpayWebhookProcessor} and marks it PROCESSED in the same transaction, so an event is
+ * handled at most once even if it is queued twice. Events that are not handled right away (pool full, failed
+ * attempt, restart) are picked up again by {@link #requeueReceivedEvents}; a failed event waits out an exponential
+ * backoff ({@code retry-backoff-ms}) before it is re-queued, and is FAILED after {@code max-attempts}.
+ */
+@Service
+@Slf4j
+public class WebhookIngestionService {
+
+    private final WebhookEventRepository webhookEventRepository;
+    private final RazorpayWebhookProcessor webhookProcessor;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor workers;
+    // Events queued or running on this instance, so the sweeper does not queue them twice
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final Counter duplicateTotal;
+
+    @Value("${payment.webhook.max-attempts:5}")
+    private int maxAttempts;
+    @Value("${payment.webhook.retry-backoff-ms:30000}")
+    private long retryBackoffMs;
+    @Value("${payment.webhook.max-retry-backoff-ms:1800000}")
+    private long maxRetryBackoffMs;
+    @Value("${payment.webhook.requeue-after-ms:30000}")
+    private long requeueAfterMs;
+    @Value("${payment.webhook.requeue-batch-size:500}")
+    private int requeueBatchSize;
+    @Value("${payment.webhook.retention-hours:72}")
+    private long retentionHours;
+
+    public WebhookIngestionService(WebhookEventRepository webhookEventRepository,
+                                   RazorpayWebhookProcessor webhookProcessor,
+                                   TransactionTemplate transactionTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${payment.webhook.workers:4}") int workerThreads,
+                                   @Value("${payment.webhook.queue-capacity:1000}") int queueCapacity) {
+        this.webhookEventRepository = webhookEventRepository;
+        this.webhookProcessor = webhookProcessor;
+        this.transactionTemplate = transactionTemplate;
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "webhook-worker-" + threadCounter.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.duplicateTotal = Counter.builder("payment.service.webhooks.duplicate.total")
+                .description("Webhook deliveries ignored because the event ID was already received")
+                .register(meterRegistry);
+        Gauge.builder("payment.service.webhooks.queue.size", workers, pool -> pool.getQueue().size())
+                .description("Webhook events waiting for a worker on this instance")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Durably stores a verified webhook and queues it for processing.
+     *
+     * @return false if an event with this ID was already received (a provider retry); nothing is queued.
+     */
+    public boolean ingest(String eventId, String payload) {
+        Integer inserted = transactionTemplate.execute(status -> webhookEventRepository.insertIfAbsent(eventId, payload));
+        if (inserted == null || inserted == 0) {
+            duplicateTotal.increment();
+            log.info("Duplicate Razorpay webhook {} ignored.", eventId);
+            return false;
+        }
+        submit(eventId);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${payment.webhook.requeue-delay-ms:10000}",
+               initialDelayString = "${payment.webhook.requeue-initial-delay-ms:10000}")
+    public void requeueReceivedEvents() {
+        Instant receivedBefore = Instant.now().minusMillis(requeueAfterMs);
+        List<String> eventIds = webhookEventRepository.findReceivedIdsBefore(receivedBefore, requeueBatchSize);
+        int queued = 0;
+        for (String eventId : eventIds) {
+            if (workers.getQueue().remainingCapacity() == 0) {
+                break; // Workers are saturated; the rest waits for the next sweep
+            }
+            if (submit(eventId)) {
+                queued++;
+            }
+        }
+        if (queued > 0) {
+            log.info("Re-queued {} unprocessed Razorpay webhook events.", queued);
+        }
+    }
+
+    @Scheduled(cron = "${payment.webhook.cleanup-cron:0 15 * * * *}")
+    public void deleteExpiredEvents() {
+        Instant processedBefore = Instant.now().minus(Duration.ofHours(retentionHours));
+        Integer deleted = transactionTemplate.execute(status -> webhookEventRepository.deleteProcessedBefore(processedBefore));
+        if (deleted != null && deleted > 0) {
+            log.info("Deleted {} processed Razorpay webhook events older than {} hours.", deleted, retentionHours);
+        }
+    }
+
+    private boolean submit(String eventId) {
+        if (!inFlight.add(eventId)) {
+            return false;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    process(eventId);
+                } finally {
+                    inFlight.remove(eventId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(eventId);
+            log.warn("Webhook worker queue full; event {} will be picked up by the next sweep.", eventId);
+            return false;
+        }
+    }
+
+    void process(String eventId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Optional<WebhookEvent> event = webhookEventRepository.lockReceived(eventId);
+                if (event.isEmpty()) {
+                    log.debug("Webhook event {} already processed or held by another worker.", eventId);
+                    return;
+                }
+                try {
+                    webhookProcessor.process(event.get().getPayload());
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+                webhookEventRepository.markProcessed(eventId);
+            });
+        } catch (RuntimeException e) {
+            log.error("Processing Razorpay webhook event {} failed: {}", eventId, e.getMessage(), e);
+            transactionTemplate.executeWithoutResult(status ->
+                    webhookEventRepository.recordFailedAttempt(eventId, String.valueOf(e.getMessage()), maxAttempts,
+                            retryBackoffMs, maxRetryBackoffMs));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Queued events are still RECEIVED in the database and will be picked up after restart
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.mysillydreams.payment.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * Verifies Razorpay webhook signatures (hex HMAC-SHA256 of the raw body, keyed with the webhook secret).
+ * Each thread keeps one Mac already initialized with the key; {@code doFinal} resets it for the next request.
+ */
+@Component
+public class WebhookSignatureVerifier {
+
+    private static final String HMAC_SHA256_ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec secretKey;
+    private final ThreadLocal<Mac> macs;
+
+    public WebhookSignatureVerifier(@Value("${payment.razorpay.webhook.secret:}") String webhookSecret) {
+        this.secretKey = StringUtils.hasText(webhookSecret)
+                ? new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), HMAC_SHA256_ALGORITHM)
+                : null;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    public boolean isConfigured() {
+        return secretKey != null;
+    }
+
+    /**
+     * @return true if {@code signature} is the hex HMAC-SHA256 of {@code payload}. Compared in constant time.
+     * @throws IllegalStateException if no webhook secret is configured.
+     */
+    public boolean verify(String payload, String signature) {
+        if (!isConfigured()) {
+            throw new IllegalStateException("Razorpay webhook secret is not configured.");
+        }
+        byte[] expected;
+        try {
+            expected = HexFormat.of().parseHex(signature);
+        } catch (IllegalArgumentException e) {
+            return false; // Not hex, cannot match
+        }
+        byte[] actual = macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        return MessageDigest.isEqual(actual, expected);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_SHA256_ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + HMAC_SHA256_ALGORITHM, e);
+        }
+    }
+}
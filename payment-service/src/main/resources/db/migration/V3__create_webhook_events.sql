@@ -0,0 +1,16 @@
+-- V3__create_webhook_events.sql
+-- Razorpay webhooks are stored here on receipt and processed asynchronously by WebhookIngestionService.
+CREATE TABLE webhook_events (
+  event_id      VARCHAR(128)  PRIMARY KEY, -- X-Razorpay-Event-Id (or the signature if absent); deduplicates provider retries
+  payload       TEXT          NOT NULL,    -- Raw body exactly as signed
+  status        VARCHAR(16)   NOT NULL,    -- RECEIVED, PROCESSED, FAILED
+  attempts      INT           NOT NULL DEFAULT 0,
+  last_error    TEXT          NULL,
+  received_at   TIMESTAMPTZ   NOT NULL DEFAULT now(),
+  processed_at  TIMESTAMPTZ   NULL
+);
+
+-- Sweeper lookups of events still waiting to be processed
+CREATE INDEX idx_webhook_events_received ON webhook_events(received_at) WHERE status = 'RECEIVED';
+-- Retention cleanup of processed events
+CREATE INDEX idx_webhook_events_processed_at ON webhook_events(processed_at) WHERE status = 'PROCESSED';
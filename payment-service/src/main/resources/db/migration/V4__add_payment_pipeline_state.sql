@@ -0,0 +1,15 @@
+-- V4__add_payment_pipeline_state.sql
+-- Persisted step of the Razorpay payment pipeline, so a retried payment resumes where it stopped (see PaymentPipeline).
+ALTER TABLE payment_transactions
+  ADD COLUMN step            VARCHAR(32)  NOT NULL DEFAULT 'DONE', -- Next step to run: CREATE_ORDER, FIND_PAYMENT, CAPTURE, DONE
+  ADD COLUMN step_attempts   INT          NOT NULL DEFAULT 0,      -- Retryable failures so far
+  ADD COLUMN next_attempt_at TIMESTAMPTZ  NULL;                    -- Lease / backoff: not resumed before this time
+
+-- Payments left PENDING by the previous synchronous flow start over (or continue from their Razorpay order)
+UPDATE payment_transactions
+SET step = CASE WHEN razorpay_order_id IS NULL THEN 'CREATE_ORDER' ELSE 'FIND_PAYMENT' END,
+    next_attempt_at = now()
+WHERE status = 'PENDING';
+
+-- Resumer lookups of payments still in flight
+CREATE INDEX idx_payment_transactions_resumable ON payment_transactions(next_attempt_at) WHERE step <> 'DONE';
@@ -0,0 +1,9 @@
+-- V5__add_payout_dispatch_backoff.sql
+-- Retry bookkeeping for PayoutDispatcher: payouts released after a retryable Razorpay error wait out a backoff,
+-- and fail for good once they reach payment.payout.dispatcher.max-attempts.
+ALTER TABLE payout_transactions
+  ADD COLUMN dispatch_attempts INT          NOT NULL DEFAULT 0, -- Retryable dispatch failures so far
+  ADD COLUMN next_attempt_at   TIMESTAMPTZ  NULL;             -- INIT payouts are not claimed before this time
+
+-- Dispatcher claims of INIT payouts that are due
+CREATE INDEX idx_payout_transactions_dispatchable ON payout_transactions(created_at) WHERE status = 'INIT';
@@ -0,0 +1,5 @@
+-- V6__add_webhook_event_backoff.sql
+-- Retry backoff for WebhookIngestionService: an event whose processing failed is not re-queued by the sweeper
+-- before next_attempt_at, and is FAILED for good once it reaches payment.webhook.max-attempts.
+ALTER TABLE webhook_events
+  ADD COLUMN next_attempt_at TIMESTAMPTZ NULL; -- RECEIVED events are not re-queued before this time
@@ -1,13 +1,14 @@
 package com.mysillydreams.payment.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mysillydreams.payment.dto.PaymentAuthorizedWebhookDto;
-import com.mysillydreams.payment.service.PaymentService;
+import com.mysillydreams.payment.service.WebhookIngestionService;
+import com.mysillydreams.payment.service.WebhookSignatureVerifier;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.DynamicPropertyRegistry;
@@ -24,12 +25,17 @@ import java.util.HexFormat;
 import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(RazorpayWebhookController.class)
+@Import(WebhookSignatureVerifier.class) // Real signature verification
 @ActiveProfiles("test") // Use application-test.yml for webhook secret
 class RazorpayWebhookControllerTest {
 
@@ -37,7 +43,7 @@ class RazorpayWebhookControllerTest {
     private MockMvc mockMvc;
 
     @MockBean
-    private PaymentService paymentService; // Mock the service dependency
+    private WebhookIngestionService webhookIngestionService; // Processing is asynchronous, only intake is tested here
 
     @Autowired
     private ObjectMapper objectMapper; // For creating JSON payloads
@@ -51,8 +57,6 @@ class RazorpayWebhookControllerTest {
     @DynamicPropertySource
     static void dynamicProperties(DynamicPropertyRegistry registry) {
         registry.add("payment.razorpay.webhook.secret", () -> TEST_WEBHOOK_SECRET);
-        // Mock other essential properties if controller depends on them via @Value at field level.
-        // For RazorpayWebhookController, only webhook.secret is directly @Value injected.
     }
 
     @BeforeEach
@@ -70,9 +74,7 @@ class RazorpayWebhookControllerTest {
         return HexFormat.of().formatHex(signatureBytes);
     }
 
-    @Test
-    void handleRazorpayWebhook_withValidSignatureAndPaymentAuthorizedEvent_shouldCallServiceAndReturnOk() throws Exception {
-        // Arrange
+    private String paymentAuthorizedPayload() throws Exception {
         Map<String, Object> paymentEntity = Map.of(
                 "id", "pay_test_123",
                 "order_id", "order_test_123",
@@ -84,20 +86,69 @@ class RazorpayWebhookControllerTest {
                 "event", "payment.authorized",
                 "payload", Map.of("payment", Map.of("entity", paymentEntity))
         );
-        String payloadJson = objectMapper.writeValueAsString(payloadMap);
+        return objectMapper.writeValueAsString(payloadMap);
+    }
+
+    @Test
+    void handleRazorpayWebhook_withValidSignature_shouldStoreRawEventAndReturnOk() throws Exception {
+        // Arrange
+        String payloadJson = paymentAuthorizedPayload();
         String signature = calculateSignature(payloadJson, TEST_WEBHOOK_SECRET);
+        when(webhookIngestionService.ingest("evt_test_123", payloadJson)).thenReturn(true);
 
         // Act & Assert
+        mockMvc.perform(post("/webhook/razorpay")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("X-Razorpay-Signature", signature)
+                        .header("X-Razorpay-Event-Id", "evt_test_123")
+                        .content(payloadJson))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Webhook acknowledged."));
+
+        verify(webhookIngestionService).ingest("evt_test_123", payloadJson);
+    }
+
+    @Test
+    void handleRazorpayWebhook_withoutEventIdHeader_shouldDeduplicateBySignature() throws Exception {
+        String payloadJson = paymentAuthorizedPayload();
+        String signature = calculateSignature(payloadJson, TEST_WEBHOOK_SECRET);
+        when(webhookIngestionService.ingest(signature, payloadJson)).thenReturn(true);
+
         mockMvc.perform(post("/webhook/razorpay")
                         .contentType(MediaType.APPLICATION_JSON)
                         .header("X-Razorpay-Signature", signature)
                         .content(payloadJson))
                 .andExpect(status().isOk());
 
-        // Verify that the correct service method was called
-        ArgumentCaptor<PaymentAuthorizedWebhookDto> dtoCaptor = ArgumentCaptor.forClass(PaymentAuthorizedWebhookDto.class);
-        verify(paymentService).handleWebhookPaymentAuthorized(dtoCaptor.capture());
-        assertEquals("pay_test_123", dtoCaptor.getValue().getPayment().getId());
+        verify(webhookIngestionService).ingest(signature, payloadJson);
+    }
+
+    @Test
+    void handleRazorpayWebhook_withDuplicateEvent_shouldReturnOk() throws Exception {
+        String payloadJson = paymentAuthorizedPayload();
+        String signature = calculateSignature(payloadJson, TEST_WEBHOOK_SECRET);
+        when(webhookIngestionService.ingest("evt_test_123", payloadJson)).thenReturn(false);
+
+        mockMvc.perform(post("/webhook/razorpay")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("X-Razorpay-Signature", signature)
+                        .header("X-Razorpay-Event-Id", "evt_test_123")
+                        .content(payloadJson))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Duplicate webhook acknowledged."));
+    }
+
+    @Test
+    void handleRazorpayWebhook_whenEventCannotBeStored_shouldAskForRetry() throws Exception {
+        String payloadJson = paymentAuthorizedPayload();
+        String signature = calculateSignature(payloadJson, TEST_WEBHOOK_SECRET);
+        when(webhookIngestionService.ingest(anyString(), anyString())).thenThrow(new IllegalStateException("DB down"));
+
+        mockMvc.perform(post("/webhook/razorpay")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("X-Razorpay-Signature", signature)
+                        .content(payloadJson))
+                .andExpect(status().isServiceUnavailable());
     }
 
     @Test
@@ -113,8 +164,21 @@ class RazorpayWebhookControllerTest {
                         .content(payloadJson))
                 .andExpect(status().isUnauthorized());
 
-        verify(paymentService, never()).handleWebhookPaymentAuthorized(any());
-        verify(paymentService, never()).handleWebhookPaymentFailed(any());
+        verify(webhookIngestionService, never()).ingest(any(), any());
+    }
+
+    @Test
+    void handleRazorpayWebhook_withSignatureOfDifferentPayload_shouldReturnUnauthorized() throws Exception {
+        String payloadJson = "{\"event\":\"payment.authorized\",\"payload\":{}}";
+        String signature = calculateSignature(payloadJson + " ", TEST_WEBHOOK_SECRET);
+
+        mockMvc.perform(post("/webhook/razorpay")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("X-Razorpay-Signature", signature)
+                        .content(payloadJson))
+                .andExpect(status().isUnauthorized());
+
+        verify(webhookIngestionService, never()).ingest(any(), any());
     }
 
     @Test
@@ -127,19 +191,18 @@ class RazorpayWebhookControllerTest {
     }
 
     @Test
-    void handleRazorpayWebhook_withUnhandledEvent_shouldReturnOkButNotCallSpecificHandlers() throws Exception {
+    void handleRazorpayWebhook_withUnhandledEvent_shouldStillBeStored() throws Exception {
         Map<String, Object> payloadMap = Map.of("event", "some.other.event", "payload", Map.of());
         String payloadJson = objectMapper.writeValueAsString(payloadMap);
         String signature = calculateSignature(payloadJson, TEST_WEBHOOK_SECRET);
+        when(webhookIngestionService.ingest(eq("evt_other"), eq(payloadJson))).thenReturn(true);
 
         mockMvc.perform(post("/webhook/razorpay")
                         .contentType(MediaType.APPLICATION_JSON)
                         .header("X-Razorpay-Signature", signature)
+                        .header("X-Razorpay-Event-Id", "evt_other")
                         .content(payloadJson))
                 .andExpect(status().isOk()); // Acknowledges receipt
-
-        verify(paymentService, never()).handleWebhookPaymentAuthorized(any());
-        verify(paymentService, never()).handleWebhookPaymentFailed(any());
     }
 
      @Test
@@ -153,71 +216,4 @@ class RazorpayWebhookControllerTest {
                         .content(payloadJson))
                 .andExpect(status().isBadRequest());
     }
-
-    // --- Payout Webhook Event Tests ---
-
-    /*
-    @Test
-    void handleRazorpayWebhook_withValidPayoutProcessedEvent_shouldCallVendorServiceAndReturnOk() throws Exception {
-        // Arrange
-        String rzpPayoutId = "pout_test_webhook_proc";
-        Map<String, Object> payoutEntity = Map.of(
-                "id", rzpPayoutId,
-                "status", "processed",
-                "created_at", Instant.now().getEpochSecond()
-                // ... other necessary fields for PayoutTransaction update by VendorPayoutService
-        );
-        Map<String, Object> payloadMap = Map.of(
-                "event", "payout.processed",
-                "payload", Map.of("payout", Map.of("entity", payoutEntity))
-        );
-        String payloadJson = objectMapper.writeValueAsString(payloadMap);
-        String signature = calculateSignature(payloadJson, TEST_WEBHOOK_SECRET);
-
-        // Act & Assert
-        mockMvc.perform(post("/webhook/razorpay")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .header("X-Razorpay-Signature", signature)
-                        .content(payloadJson))
-                .andExpect(status().isOk());
-
-        // Verify that the correct service method was called
-        verify(vendorPayoutService).handlePayoutSuccess(eq(rzpPayoutId), any(Instant.class));
-    }
-    */
-
-    /*
-    @Test
-    void handleRazorpayWebhook_withValidPayoutFailedEvent_shouldCallVendorServiceAndReturnOk() throws Exception {
-        // Arrange
-        String rzpPayoutId = "pout_test_webhook_fail";
-        Map<String, Object> payoutEntity = Map.of(
-                "id", rzpPayoutId,
-                "status", "failed",
-                "failure_reason", "test_failure_code",
-                "status_details", Map.of("description", "Test failure description"),
-                "created_at", Instant.now().getEpochSecond()
-        );
-         Map<String, Object> payloadMap = Map.of(
-                "event", "payout.failed",
-                "payload", Map.of("payout", Map.of("entity", payoutEntity))
-        );
-        String payloadJson = objectMapper.writeValueAsString(payloadMap);
-        String signature = calculateSignature(payloadJson, TEST_WEBHOOK_SECRET);
-
-        // Act & Assert
-        mockMvc.perform(post("/webhook/razorpay")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .header("X-Razorpay-Signature", signature)
-                        .content(payloadJson))
-                .andExpect(status().isOk());
-
-        verify(vendorPayoutService).handlePayoutFailed(
-            eq(rzpPayoutId),
-            eq("test_failure_code"),
-            eq("Test failure description"),
-            any(Instant.class)
-        );
-    }
-    */
 }
@@ -105,23 +105,8 @@ class PaymentIntegrationTest {
         registry.add("spring.kafka.consumer.properties.schema.registry.url", () -> schemaRegistryUrl);
         registry.add("spring.kafka.producer.properties.schema.registry.url", () -> schemaRegistryUrl);
 
-        // Override Razorpay client to point to WireMock
-        // This requires RazorpayClient to be configurable or re-beans for test.
-        // For simplicity, let's assume RazorpayConfig in the app could pick up a base URL if modified.
-        // Or, more practically, the RazorpayClient bean itself is mocked/replaced in a test configuration.
-        // The current RazorpayConfig doesn't allow changing base URL.
-        // So, direct interaction with Razorpay sandbox or heavy mocking in service test is more likely.
-        // For this integration test, we are testing our service, assuming RazorpayClient works as per its contract.
-        // So we will MOCK the RazorpayClient's behavior using WireMock for its HTTP calls.
-        // The Razorpay SDK makes HTTP calls. We need to ensure it calls WireMock.
-        // This is tricky without modifying SDK or using system properties for proxy, or if SDK allows URL override.
-        // For now, this test will focus on Kafka-DB-Outbox flow, and Razorpay interaction is "as if" successful via stubs.
-        // A true end-to-end with Razorpay SDK hitting WireMock requires deeper SDK configuration/mocking,
-        // such as replacing the RazorpayClient bean in a @TestConfiguration with one that can be pointed to WireMock,
-        // or using system properties if the SDK's HTTP client respects them for proxies.
-        // The current setup assumes that if these WireMock stubs are hit, the service behaves correctly.
-        // If RazorpayClient cannot be redirected, these stubs might not be used, and actual Razorpay sandbox would be hit.
-        registry.add("payment.razorpay.api-base-url", () -> wireMockServer.baseUrl() + "/v1"); // Hypothetical if SDK supported it
+        // Point RazorpayPaymentsClient at WireMock
+        registry.add("payment.razorpay.api-base-url", () -> wireMockServer.baseUrl() + "/v1");
 
         // Actual Razorpay test keys should be used if not mocking the SDK's HTTP calls effectively.
         // These would be loaded from application-test.yml (testcontainers profile) or environment.
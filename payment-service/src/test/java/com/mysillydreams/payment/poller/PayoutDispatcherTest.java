@@ -0,0 +1,196 @@
+package com.mysillydreams.payment.poller;
+
+import com.mysillydreams.payment.domain.PaymentTransaction;
+import com.mysillydreams.payment.domain.PayoutStatus;
+import com.mysillydreams.payment.domain.PayoutTransaction;
+import com.mysillydreams.payment.service.RazorpayPayoutClient;
+import com.mysillydreams.payment.service.RazorpayPayoutClient.Outcome;
+import com.mysillydreams.payment.service.RazorpayPayoutClient.PayoutResult;
+import com.mysillydreams.payment.service.VendorPayoutService;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PayoutDispatcherTest {
+
+    @Mock private VendorPayoutService vendorPayoutService;
+    @Mock private RazorpayPayoutClient payoutClient;
+
+    private PayoutDispatcher dispatcher;
+    private PaymentTransaction paymentTransaction;
+
+    @BeforeEach
+    void setUp() {
+        RateLimiterRegistry rateLimiterRegistry = RateLimiterRegistry.of(RateLimiterConfig.custom()
+                .limitForPeriod(1000)
+                .limitRefreshPeriod(Duration.ofSeconds(1))
+                .timeoutDuration(Duration.ZERO)
+                .build());
+        dispatcher = new PayoutDispatcher(vendorPayoutService, payoutClient, rateLimiterRegistry);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 3);
+        ReflectionTestUtils.setField(dispatcher, "maxInFlight", 2);
+        ReflectionTestUtils.setField(dispatcher, "claimTimeoutMs", 300000L);
+
+        paymentTransaction = new PaymentTransaction();
+        paymentTransaction.setId(UUID.randomUUID());
+    }
+
+    private PayoutTransaction payout() {
+        return new PayoutTransaction(paymentTransaction, UUID.randomUUID(), new BigDecimal("1000"),
+                new BigDecimal("100"), new BigDecimal("900"), "INR", PayoutStatus.DISPATCHING);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<UUID, PayoutResult> recordedResults() {
+        ArgumentCaptor<Map<UUID, PayoutResult>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(vendorPayoutService).recordDispatchResults(any(), captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    void dispatchBatch_sendsEveryPayoutWithItsIdAsIdempotencyKeyAndRecordsOnce() {
+        List<PayoutTransaction> batch = List.of(payout(), payout());
+        when(vendorPayoutService.claimPayoutsForDispatch(eq(3), any(), any())).thenReturn(batch);
+        when(vendorPayoutService.buildPayoutRequest(any())).thenReturn(new JSONObject());
+        when(payoutClient.createPayout(any(), anyString())).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(PayoutResult.created(200, "pout_" + invocation.getArgument(1))));
+
+        boolean moreWork = dispatcher.dispatchBatch(new HashSet<>());
+
+        assertFalse(moreWork, "a partial batch means the backlog is drained");
+        for (PayoutTransaction pt : batch) {
+            verify(payoutClient).createPayout(any(), eq(pt.getId().toString()));
+        }
+        Map<UUID, PayoutResult> results = recordedResults();
+        assertEquals(2, results.size());
+        batch.forEach(pt -> assertEquals("pout_" + pt.getId(), results.get(pt.getId()).razorpayPayoutId()));
+    }
+
+    @Test
+    void dispatchBatch_keepsAtMostMaxInFlightCallsOutstanding() {
+        List<PayoutTransaction> batch = List.of(payout(), payout(), payout());
+        when(vendorPayoutService.claimPayoutsForDispatch(eq(3), any(), any())).thenReturn(batch);
+        when(vendorPayoutService.buildPayoutRequest(any())).thenReturn(new JSONObject());
+        AtomicInteger outstanding = new AtomicInteger();
+        AtomicInteger maxOutstanding = new AtomicInteger();
+        List<CompletableFuture<PayoutResult>> pending = new ArrayList<>();
+        when(payoutClient.createPayout(any(), anyString())).thenAnswer(invocation -> {
+            maxOutstanding.accumulateAndGet(outstanding.incrementAndGet(), Math::max);
+            CompletableFuture<PayoutResult> future = new CompletableFuture<>();
+            pending.add(future);
+            if (pending.size() == 2) {
+                // Window is full: complete the first call so the dispatcher can send the next one
+                outstanding.decrementAndGet();
+                pending.get(0).complete(PayoutResult.created(200, "pout_1"));
+            }
+            if (pending.size() == 3) {
+                outstanding.addAndGet(-2);
+                pending.get(1).complete(PayoutResult.created(200, "pout_2"));
+                pending.get(2).complete(PayoutResult.created(200, "pout_3"));
+            }
+            return future;
+        });
+
+        assertTrue(dispatcher.dispatchBatch(new HashSet<>()), "a full batch means more payouts may be waiting");
+
+        assertEquals(2, maxOutstanding.get());
+        assertEquals(3, recordedResults().size());
+    }
+
+    @Test
+    void dispatchBatch_whenRateLimited_defersUnsentPayouts() {
+        PayoutTransaction first = payout();
+        PayoutTransaction second = payout();
+        PayoutTransaction third = payout();
+        when(vendorPayoutService.claimPayoutsForDispatch(eq(3), any(), any())).thenReturn(List.of(first, second, third));
+        when(vendorPayoutService.buildPayoutRequest(any())).thenReturn(new JSONObject());
+        when(payoutClient.createPayout(any(), eq(first.getId().toString())))
+                .thenReturn(CompletableFuture.completedFuture(PayoutResult.retryable(429, "TOO_MANY_REQUESTS", "Slow down")));
+
+        assertFalse(dispatcher.dispatchBatch(new HashSet<>()));
+
+        verify(payoutClient, times(1)).createPayout(any(), anyString());
+        Map<UUID, PayoutResult> results = recordedResults();
+        // Only the sent payout has a result; the other two are released as unsent
+        assertEquals(Set.of(first.getId()), results.keySet());
+        assertEquals(Outcome.RETRYABLE, results.get(first.getId()).outcome());
+    }
+
+    @Test
+    void dispatchBatch_whenRequestCannotBeBuilt_rejectsWithoutCallingRazorpay() {
+        PayoutTransaction noFundAccount = payout();
+        when(vendorPayoutService.claimPayoutsForDispatch(eq(3), any(), any())).thenReturn(List.of(noFundAccount));
+        when(vendorPayoutService.buildPayoutRequest(noFundAccount))
+                .thenThrow(new IllegalStateException("Fund account ID not found for vendor"));
+
+        dispatcher.dispatchBatch(new HashSet<>());
+
+        verifyNoInteractions(payoutClient);
+        PayoutResult result = recordedResults().get(noFundAccount.getId());
+        assertEquals(Outcome.REJECTED, result.outcome());
+        assertEquals("IllegalStateException", result.errorCode());
+    }
+
+    @Test
+    void dispatchPendingPayouts_drainsFullBatchesUntilBacklogIsEmpty() {
+        when(vendorPayoutService.claimPayoutsForDispatch(eq(3), any(), any()))
+                .thenReturn(List.of(payout(), payout(), payout()))
+                .thenReturn(List.of(payout()))
+                .thenReturn(List.of());
+        when(vendorPayoutService.buildPayoutRequest(any())).thenReturn(new JSONObject());
+        when(payoutClient.createPayout(any(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(PayoutResult.created(200, "pout_rp")));
+
+        dispatcher.dispatchPendingPayouts();
+
+        verify(vendorPayoutService, times(2)).claimPayoutsForDispatch(anyInt(), any(), any());
+        verify(vendorPayoutService, times(2)).recordDispatchResults(any(), any());
+        verify(payoutClient, times(4)).createPayout(any(), anyString());
+    }
+
+    @Test
+    void dispatchPendingPayouts_doesNotReclaimPayoutsReleasedEarlierInTheRun() {
+        List<PayoutTransaction> firstBatch = List.of(payout(), payout(), payout());
+        List<Set<UUID>> excludedPerClaim = new ArrayList<>();
+        when(vendorPayoutService.claimPayoutsForDispatch(eq(3), any(), any())).thenAnswer(invocation -> {
+            excludedPerClaim.add(Set.copyOf(invocation.<Set<UUID>>getArgument(2)));
+            return excludedPerClaim.size() == 1 ? firstBatch : List.of();
+        });
+        when(vendorPayoutService.buildPayoutRequest(any())).thenReturn(new JSONObject());
+        when(payoutClient.createPayout(any(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(PayoutResult.retryable(503, "SERVER_ERROR", "Unavailable")));
+
+        dispatcher.dispatchPendingPayouts();
+
+        assertEquals(2, excludedPerClaim.size());
+        assertTrue(excludedPerClaim.get(0).isEmpty());
+        assertEquals(firstBatch.stream().map(PayoutTransaction::getId).collect(Collectors.toSet()), excludedPerClaim.get(1));
+        verify(payoutClient, times(3)).createPayout(any(), anyString());
+    }
+}
@@ -0,0 +1,239 @@
+package com.mysillydreams.payment.service;
+
+import com.mysillydreams.payment.domain.PaymentStep;
+import com.mysillydreams.payment.domain.PaymentTransaction;
+import com.mysillydreams.payment.repository.PaymentRepository;
+import com.mysillydreams.payment.service.RazorpayPaymentsClient.RazorpayPayment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PaymentPipelineTest {
+
+    @Mock private PaymentRepository paymentRepository;
+    @Mock private RazorpayPaymentsClient razorpayClient;
+    @Mock private OutboxEventService outboxEventService;
+    @Mock private VendorPayoutService vendorPayoutService;
+    @Mock private TransactionTemplate transactionTemplate;
+    @Mock private TransactionStatus transactionStatus;
+
+    private PaymentPipeline pipeline;
+    private PaymentTransaction transaction;
+
+    private final String SUCCEEDED_TOPIC = "order.payment.succeeded";
+    private final String FAILED_TOPIC = "order.payment.failed";
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // Run transaction callbacks inline
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                ((TransactionCallback<Object>) inv.getArgument(0)).doInTransaction(transactionStatus));
+
+        pipeline = new PaymentPipeline(paymentRepository, razorpayClient, outboxEventService, vendorPayoutService,
+                transactionTemplate, new SimpleMeterRegistry(), 2, 10);
+        ReflectionTestUtils.setField(pipeline, "paymentSucceededTopic", SUCCEEDED_TOPIC);
+        ReflectionTestUtils.setField(pipeline, "paymentFailedTopic", FAILED_TOPIC);
+        ReflectionTestUtils.setField(pipeline, "maxAttempts", 3);
+        ReflectionTestUtils.setField(pipeline, "retryBackoffMs", 2000L);
+        ReflectionTestUtils.setField(pipeline, "maxRetryBackoffMs", 300000L);
+
+        transaction = new PaymentTransaction(UUID.randomUUID(), new BigDecimal("150.75"), "INR", "PENDING", null, null, null);
+        transaction.setStep(PaymentStep.CREATE_ORDER);
+        when(paymentRepository.findById(transaction.getId())).thenAnswer(inv -> Optional.of(transaction));
+        when(paymentRepository.save(any(PaymentTransaction.class))).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void start_whenPaymentAlreadyCaptured_shouldSucceedPublishAndInitiatePayout() {
+        when(razorpayClient.createOrder(15075L, "INR", transaction.getOrderId().toString()))
+                .thenReturn(CompletableFuture.completedFuture("order_rp_123"));
+        when(razorpayClient.fetchPayments("order_rp_123"))
+                .thenReturn(CompletableFuture.completedFuture(List.of(new RazorpayPayment("pay_rp_123", "captured"))));
+
+        pipeline.start(transaction.getId()).join();
+
+        assertEquals("SUCCEEDED", transaction.getStatus());
+        assertEquals(PaymentStep.DONE, transaction.getStep());
+        assertEquals("order_rp_123", transaction.getRazorpayOrderId());
+        assertEquals("pay_rp_123", transaction.getRazorpayPaymentId());
+        assertNull(transaction.getNextAttemptAt());
+        verify(razorpayClient, never()).capturePayment(anyString(), anyLong(), anyString());
+
+        ArgumentCaptor<Map<String, Object>> payloadCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(outboxEventService).publish(eq("Payment"), eq(transaction.getId().toString()), eq(SUCCEEDED_TOPIC), payloadCaptor.capture());
+        assertEquals(transaction.getOrderId().toString(), payloadCaptor.getValue().get("orderId"));
+        assertEquals("pay_rp_123", payloadCaptor.getValue().get("paymentId"));
+        verify(vendorPayoutService).initiatePayout(eq(transaction.getId()), any(UUID.class), eq(transaction.getAmount()), eq("INR"));
+    }
+
+    @Test
+    void start_whenPaymentAuthorized_shouldCaptureIt() {
+        when(razorpayClient.createOrder(anyLong(), anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture("order_rp_123"));
+        when(razorpayClient.fetchPayments("order_rp_123"))
+                .thenReturn(CompletableFuture.completedFuture(List.of(new RazorpayPayment("pay_rp_123", "authorized"))));
+        when(razorpayClient.capturePayment("pay_rp_123", 15075L, "INR"))
+                .thenReturn(CompletableFuture.completedFuture(new RazorpayPayment("pay_rp_123", "captured")));
+
+        pipeline.start(transaction.getId()).join();
+
+        assertEquals("SUCCEEDED", transaction.getStatus());
+        assertEquals("pay_rp_123", transaction.getRazorpayPaymentId());
+        verify(outboxEventService).publish(eq("Payment"), anyString(), eq(SUCCEEDED_TOPIC), any());
+    }
+
+    @Test
+    void start_whenOrderCreationRejected_shouldFailAndPublishFailure() {
+        when(razorpayClient.createOrder(anyLong(), anyString(), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new RazorpayApiException(400, "BAD_REQUEST_ERROR", "Order creation failed", false)));
+
+        pipeline.start(transaction.getId()).join();
+
+        assertEquals("FAILED", transaction.getStatus());
+        assertEquals(PaymentStep.DONE, transaction.getStep());
+        assertEquals("Order creation failed", transaction.getErrorMessage());
+        assertNull(transaction.getRazorpayOrderId());
+
+        ArgumentCaptor<Map<String, Object>> payloadCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(outboxEventService).publish(eq("Payment"), eq(transaction.getId().toString()), eq(FAILED_TOPIC), payloadCaptor.capture());
+        assertEquals("Order creation failed", payloadCaptor.getValue().get("reason"));
+        verifyNoInteractions(vendorPayoutService);
+    }
+
+    @Test
+    void start_whenNoPaymentForOrder_shouldFail() {
+        when(razorpayClient.createOrder(anyLong(), anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture("order_rp_fail_capture"));
+        when(razorpayClient.fetchPayments("order_rp_fail_capture"))
+                .thenReturn(CompletableFuture.completedFuture(List.of()));
+
+        pipeline.start(transaction.getId()).join();
+
+        assertEquals("FAILED", transaction.getStatus());
+        assertEquals("order_rp_fail_capture", transaction.getRazorpayOrderId()); // Order was created
+        verify(outboxEventService).publish(eq("Payment"), anyString(), eq(FAILED_TOPIC), any());
+    }
+
+    @Test
+    void start_whenCaptureTimesOut_shouldScheduleRetryFromFindPayment() {
+        when(razorpayClient.createOrder(anyLong(), anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture("order_rp_123"));
+        when(razorpayClient.fetchPayments("order_rp_123"))
+                .thenReturn(CompletableFuture.completedFuture(List.of(new RazorpayPayment("pay_rp_123", "authorized"))));
+        when(razorpayClient.capturePayment(anyString(), anyLong(), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
+
+        pipeline.start(transaction.getId()).join();
+
+        assertEquals("PENDING", transaction.getStatus());
+        assertEquals(PaymentStep.FIND_PAYMENT, transaction.getStep()); // The capture may have gone through
+        assertEquals(1, transaction.getStepAttempts());
+        assertNotNull(transaction.getNextAttemptAt());
+        verifyNoInteractions(outboxEventService);
+
+        // Resumed: the payment turns out to be captured
+        when(razorpayClient.fetchPayments("order_rp_123"))
+                .thenReturn(CompletableFuture.completedFuture(List.of(new RazorpayPayment("pay_rp_123", "captured"))));
+        pipeline.start(transaction.getId()).join();
+
+        assertEquals("SUCCEEDED", transaction.getStatus());
+        verify(razorpayClient, times(1)).capturePayment(anyString(), anyLong(), anyString());
+    }
+
+    @Test
+    void start_whenOrderCreationTimesOut_shouldReuseOrderCreatedByEarlierAttempt() {
+        when(razorpayClient.createOrder(anyLong(), anyString(), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
+
+        pipeline.start(transaction.getId()).join();
+
+        assertEquals(PaymentStep.CREATE_ORDER, transaction.getStep());
+        assertEquals(1, transaction.getStepAttempts());
+
+        // Retried: Razorpay did create the order before the timeout
+        when(razorpayClient.findOrderIdByReceipt(transaction.getOrderId().toString()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of("order_rp_123")));
+        when(razorpayClient.fetchPayments("order_rp_123"))
+                .thenReturn(CompletableFuture.completedFuture(List.of(new RazorpayPayment("pay_rp_123", "captured"))));
+        pipeline.start(transaction.getId()).join();
+
+        assertEquals("SUCCEEDED", transaction.getStatus());
+        assertEquals("order_rp_123", transaction.getRazorpayOrderId());
+        verify(razorpayClient, times(1)).createOrder(anyLong(), anyString(), anyString());
+    }
+
+    @Test
+    void resume_whenNoEarlierOrderExists_shouldLookUpThenCreate() {
+        when(razorpayClient.findOrderIdByReceipt(transaction.getOrderId().toString()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        when(razorpayClient.createOrder(15075L, "INR", transaction.getOrderId().toString()))
+                .thenReturn(CompletableFuture.completedFuture("order_rp_123"));
+        when(razorpayClient.fetchPayments("order_rp_123"))
+                .thenReturn(CompletableFuture.completedFuture(List.of(new RazorpayPayment("pay_rp_123", "captured"))));
+
+        pipeline.resume(transaction.getId()).join();
+
+        assertEquals("SUCCEEDED", transaction.getStatus());
+        var order = inOrder(razorpayClient);
+        order.verify(razorpayClient).findOrderIdByReceipt(transaction.getOrderId().toString());
+        order.verify(razorpayClient).createOrder(15075L, "INR", transaction.getOrderId().toString());
+    }
+
+    @Test
+    void start_whenRetryableFailuresExhaustAttempts_shouldFail() {
+        transaction.setStep(PaymentStep.FIND_PAYMENT);
+        transaction.setRazorpayOrderId("order_rp_123");
+        transaction.setStepAttempts(2);
+        when(razorpayClient.fetchPayments("order_rp_123"))
+                .thenReturn(CompletableFuture.failedFuture(new RazorpayApiException(503, "SERVER_ERROR", "Unavailable", true)));
+
+        pipeline.start(transaction.getId()).join();
+
+        assertEquals("FAILED", transaction.getStatus());
+        assertEquals("Unavailable", transaction.getErrorMessage());
+        verify(outboxEventService).publish(eq("Payment"), anyString(), eq(FAILED_TOPIC), any());
+    }
+
+    @Test
+    void start_whenPaymentAlreadyDone_shouldNotCallRazorpay() {
+        transaction.setStep(PaymentStep.DONE);
+
+        pipeline.start(transaction.getId()).join();
+
+        verifyNoInteractions(razorpayClient, outboxEventService);
+    }
+}
@@ -0,0 +1,145 @@
+package com.mysillydreams.payment.service;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.mysillydreams.payment.service.RazorpayPaymentsClient.RazorpayPayment;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link RazorpayPaymentsClient} against a local WireMock stub of the Razorpay Orders and Payments APIs.
+ */
+class RazorpayPaymentsClientTest {
+
+    @RegisterExtension
+    static WireMockExtension razorpayStub = WireMockExtension.newInstance()
+            .options(wireMockConfig().dynamicPort())
+            .build();
+
+    private RazorpayPaymentsClient client;
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        client = new RazorpayPaymentsClient("test_key_id", "test_key_secret", razorpayStub.baseUrl() + "/v1",
+                1000, circuitBreakerRegistry, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(client, "createOrderTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(client, "findPaymentTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(client, "captureTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(client, "fetchHedgeDelayMs", 200L);
+    }
+
+    @Test
+    void createOrder_whenAccepted_returnsRazorpayOrderId() {
+        razorpayStub.stubFor(post(urlPathEqualTo("/v1/orders"))
+                .willReturn(okJson("{\"id\":\"order_rp_123\",\"entity\":\"order\",\"status\":\"created\"}")));
+
+        assertEquals("order_rp_123", client.createOrder(15075L, "INR", "internal-order-1").join());
+
+        razorpayStub.verify(postRequestedFor(urlPathEqualTo("/v1/orders"))
+                .withBasicAuth(new com.github.tomakehurst.wiremock.client.BasicCredentials("test_key_id", "test_key_secret"))
+                .withRequestBody(equalToJson("{\"amount\":15075,\"currency\":\"INR\",\"receipt\":\"internal-order-1\"}")));
+    }
+
+    @Test
+    void createOrder_whenBadRequest_failsWithNonRetryableError() {
+        razorpayStub.stubFor(post(urlPathEqualTo("/v1/orders"))
+                .willReturn(aResponse().withStatus(400).withHeader("Content-Type", "application/json")
+                        .withBody("{\"error\":{\"code\":\"BAD_REQUEST_ERROR\",\"description\":\"Invalid amount\"}}")));
+
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> client.createOrder(1L, "INR", "internal-order-2").join());
+
+        RazorpayApiException cause = assertInstanceOf(RazorpayApiException.class, failure.getCause());
+        assertEquals("BAD_REQUEST_ERROR", cause.getErrorCode());
+        assertEquals("Invalid amount", cause.getMessage());
+        assertFalse(RazorpayPaymentsClient.isRetryable(failure));
+    }
+
+    @Test
+    void findOrderIdByReceipt_returnsOrderWithMatchingReceipt() {
+        razorpayStub.stubFor(get(urlPathEqualTo("/v1/orders")).withQueryParam("receipt", equalTo("internal-order-1"))
+                .willReturn(okJson("{\"entity\":\"collection\",\"count\":1,\"items\":["
+                        + "{\"id\":\"order_rp_123\",\"entity\":\"order\",\"receipt\":\"internal-order-1\"}]}")));
+
+        assertEquals(Optional.of("order_rp_123"), client.findOrderIdByReceipt("internal-order-1").join());
+    }
+
+    @Test
+    void findOrderIdByReceipt_whenNoOrder_returnsEmpty() {
+        razorpayStub.stubFor(get(urlPathEqualTo("/v1/orders"))
+                .willReturn(okJson("{\"entity\":\"collection\",\"count\":0,\"items\":[]}")));
+
+        assertTrue(client.findOrderIdByReceipt("internal-order-2").join().isEmpty());
+    }
+
+    @Test
+    void capturePayment_whenServerError_failsWithRetryableError() {
+        razorpayStub.stubFor(post(urlPathEqualTo("/v1/payments/pay_rp_123/capture"))
+                .willReturn(aResponse().withStatus(503)));
+
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> client.capturePayment("pay_rp_123", 15075L, "INR").join());
+
+        assertTrue(RazorpayPaymentsClient.isRetryable(failure));
+    }
+
+    @Test
+    void capturePayment_whenSlowerThanBudget_timesOut() {
+        ReflectionTestUtils.setField(client, "captureTimeoutMs", 200L);
+        razorpayStub.stubFor(post(urlPathEqualTo("/v1/payments/pay_rp_123/capture"))
+                .willReturn(okJson("{\"id\":\"pay_rp_123\",\"status\":\"captured\"}").withFixedDelay(1000)));
+
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> client.capturePayment("pay_rp_123", 15075L, "INR").join());
+
+        assertInstanceOf(TimeoutException.class, failure.getCause());
+        assertTrue(RazorpayPaymentsClient.isRetryable(failure));
+    }
+
+    @Test
+    void fetchPayments_whenFirstRequestIsSlow_hedgesWithSecondRequest() {
+        String body = "{\"entity\":\"collection\",\"count\":1,\"items\":[{\"id\":\"pay_rp_123\",\"status\":\"captured\"}]}";
+        razorpayStub.stubFor(get(urlPathEqualTo("/v1/orders/order_rp_123/payments")).inScenario("hedge")
+                .whenScenarioStateIs(com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED)
+                .willReturn(okJson(body).withFixedDelay(1500))
+                .willSetStateTo("slow-sent"));
+        razorpayStub.stubFor(get(urlPathEqualTo("/v1/orders/order_rp_123/payments")).inScenario("hedge")
+                .whenScenarioStateIs("slow-sent")
+                .willReturn(okJson(body)));
+
+        long start = System.nanoTime();
+        List<RazorpayPayment> payments = client.fetchPayments("order_rp_123").join();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(List.of(new RazorpayPayment("pay_rp_123", "captured")), payments);
+        assertTrue(elapsedMs < 1500, "hedged request should answer before the slow one, took " + elapsedMs + " ms");
+        razorpayStub.verify(2, getRequestedFor(urlPathEqualTo("/v1/orders/order_rp_123/payments")));
+    }
+
+    @Test
+    void fetchPayments_whenCircuitOpen_failsWithoutCallingRazorpay() {
+        circuitBreakerRegistry.circuitBreaker(RazorpayPaymentsClient.ORDERS_CIRCUIT_BREAKER).transitionToOpenState();
+
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> client.fetchPayments("order_rp_123").join());
+
+        assertInstanceOf(CallNotPermittedException.class, failure.getCause());
+        assertTrue(RazorpayPaymentsClient.isRetryable(failure));
+        razorpayStub.verify(0, getRequestedFor(anyUrl()));
+    }
+}
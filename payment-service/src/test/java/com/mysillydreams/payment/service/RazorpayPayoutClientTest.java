@@ -0,0 +1,96 @@
+package com.mysillydreams.payment.service;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.mysillydreams.payment.service.RazorpayPayoutClient.Outcome;
+import com.mysillydreams.payment.service.RazorpayPayoutClient.PayoutResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link RazorpayPayoutClient} against a local WireMock stub of the RazorpayX Payouts API.
+ */
+class RazorpayPayoutClientTest {
+
+    @RegisterExtension
+    static WireMockExtension razorpayStub = WireMockExtension.newInstance()
+            .options(wireMockConfig().dynamicPort())
+            .build();
+
+    private RazorpayPayoutClient client;
+    private final JSONObject payoutRequest = new JSONObject()
+            .put("account_number", "acc_test_razorpay_x")
+            .put("fund_account_id", "fa_mock_fund_account_id_1")
+            .put("amount", 90000)
+            .put("currency", "INR");
+
+    @BeforeEach
+    void setUp() {
+        client = new RazorpayPayoutClient("test_key_id", "test_key_secret", razorpayStub.baseUrl(),
+                1000, 2000, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void createPayout_whenAccepted_returnsRazorpayPayoutId() {
+        razorpayStub.stubFor(post(urlPathEqualTo("/v1/payouts"))
+                .willReturn(okJson("{\"id\":\"pout_rp_123\",\"entity\":\"payout\",\"status\":\"processing\"}")));
+
+        PayoutResult result = client.createPayout(payoutRequest, "payout-1").join();
+
+        assertEquals(Outcome.CREATED, result.outcome());
+        assertEquals("pout_rp_123", result.razorpayPayoutId());
+        razorpayStub.verify(postRequestedFor(urlPathEqualTo("/v1/payouts"))
+                .withHeader(RazorpayPayoutClient.IDEMPOTENCY_HEADER, equalTo("payout-1"))
+                .withBasicAuth(new com.github.tomakehurst.wiremock.client.BasicCredentials("test_key_id", "test_key_secret"))
+                .withRequestBody(equalToJson(payoutRequest.toString())));
+    }
+
+    @Test
+    void createPayout_whenBadRequest_isRejectedWithRazorpayError() {
+        razorpayStub.stubFor(post(urlPathEqualTo("/v1/payouts"))
+                .willReturn(aResponse().withStatus(400).withHeader("Content-Type", "application/json")
+                        .withBody("{\"error\":{\"code\":\"BAD_REQUEST_ERROR\",\"description\":\"Invalid fund account\"}}")));
+
+        PayoutResult result = client.createPayout(payoutRequest, "payout-2").join();
+
+        assertEquals(Outcome.REJECTED, result.outcome());
+        assertEquals("BAD_REQUEST_ERROR", result.errorCode());
+        assertEquals("Invalid fund account", result.errorMessage());
+    }
+
+    @Test
+    void createPayout_whenRateLimited_isRetryable() {
+        razorpayStub.stubFor(post(urlPathEqualTo("/v1/payouts"))
+                .willReturn(aResponse().withStatus(429)));
+
+        PayoutResult result = client.createPayout(payoutRequest, "payout-3").join();
+
+        assertEquals(Outcome.RETRYABLE, result.outcome());
+        assertTrue(result.isRateLimited());
+    }
+
+    @Test
+    void createPayout_whenServerError_isRetryable() {
+        razorpayStub.stubFor(post(urlPathEqualTo("/v1/payouts"))
+                .willReturn(aResponse().withStatus(503)));
+
+        assertEquals(Outcome.RETRYABLE, client.createPayout(payoutRequest, "payout-4").join().outcome());
+    }
+
+    @Test
+    void createPayout_whenResponseTimesOut_isRetryable() {
+        razorpayStub.stubFor(post(urlPathEqualTo("/v1/payouts"))
+                .willReturn(okJson("{\"id\":\"pout_rp_late\"}").withFixedDelay(3000)));
+
+        PayoutResult result = client.createPayout(payoutRequest, "payout-5").join();
+
+        assertEquals(Outcome.RETRYABLE, result.outcome());
+        assertEquals("HttpTimeoutException", result.errorCode());
+    }
+}
@@ -0,0 +1,87 @@
+package com.mysillydreams.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mysillydreams.payment.dto.PaymentAuthorizedWebhookDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RazorpayWebhookProcessorTest {
+
+    @Mock private PaymentService paymentService;
+    @Mock private VendorPayoutService vendorPayoutService;
+    @Spy private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks private RazorpayWebhookProcessor webhookProcessor;
+
+    @Test
+    void process_paymentAuthorized_shouldCallPaymentService() throws Exception {
+        Map<String, Object> paymentEntity = Map.of(
+                "id", "pay_test_123",
+                "order_id", "order_test_123",
+                "amount", 10000L, // paise
+                "currency", "INR",
+                "status", "authorized"
+        );
+        String payload = objectMapper.writeValueAsString(Map.of(
+                "event", "payment.authorized",
+                "payload", Map.of("payment", Map.of("entity", paymentEntity))));
+
+        webhookProcessor.process(payload);
+
+        ArgumentCaptor<PaymentAuthorizedWebhookDto> dtoCaptor = ArgumentCaptor.forClass(PaymentAuthorizedWebhookDto.class);
+        verify(paymentService).handleWebhookPaymentAuthorized(dtoCaptor.capture());
+        assertEquals("pay_test_123", dtoCaptor.getValue().getPayment().getId());
+        verifyNoInteractions(vendorPayoutService);
+    }
+
+    @Test
+    void process_payoutProcessed_shouldCallVendorPayoutService() throws Exception {
+        long createdAt = Instant.now().getEpochSecond();
+        String payload = objectMapper.writeValueAsString(Map.of(
+                "event", "payout.processed",
+                "payload", Map.of("payout", Map.of("entity", Map.of(
+                        "id", "pout_test_webhook_proc", "status", "processed", "created_at", createdAt)))));
+
+        webhookProcessor.process(payload);
+
+        verify(vendorPayoutService).handlePayoutSuccess("pout_test_webhook_proc", Instant.ofEpochSecond(createdAt));
+    }
+
+    @Test
+    void process_payoutFailed_shouldCallVendorPayoutServiceWithReason() throws Exception {
+        String payload = objectMapper.writeValueAsString(Map.of(
+                "event", "payout.failed",
+                "payload", Map.of("payout", Map.of("entity", Map.of(
+                        "id", "pout_test_webhook_fail",
+                        "status", "failed",
+                        "failure_reason", "test_failure_code",
+                        "status_details", Map.of("description", "Test failure description"),
+                        "created_at", Instant.now().getEpochSecond())))));
+
+        webhookProcessor.process(payload);
+
+        verify(vendorPayoutService).handlePayoutFailed(eq("pout_test_webhook_fail"), eq("test_failure_code"),
+                eq("Test failure description"), any(Instant.class));
+    }
+
+    @Test
+    void process_unhandledEvent_shouldNotCallHandlers() throws Exception {
+        webhookProcessor.process("{\"event\":\"some.other.event\",\"payload\":{}}");
+
+        verifyNoInteractions(paymentService, vendorPayoutService);
+    }
+}
@@ -6,8 +6,10 @@ import com.mysillydreams.payment.domain.PayoutStatus;
 import com.mysillydreams.payment.domain.PayoutTransaction;
 import com.mysillydreams.payment.repository.PaymentRepository;
 import com.mysillydreams.payment.repository.PayoutTransactionRepository;
-import com.razorpay.RazorpayClient;
-import com.razorpay.RazorpayException;
+import com.mysillydreams.payment.service.RazorpayPayoutClient.PayoutResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.json.JSONObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,20 +18,22 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.scheduling.annotation.AsyncResult; // For mocking @Async return if not void
 import org.springframework.test.util.ReflectionTestUtils;
 
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.Future;
 
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,10 +41,9 @@ class VendorPayoutServiceTest {
 
     @Mock private PayoutTransactionRepository payoutTransactionRepository;
     @Mock private PaymentRepository paymentRepository;
-    @Mock private RazorpayClient razorpayClient;
-    @Mock private com.razorpay.Payouts razorpayPayoutsClient; // For razorpayClient.Payouts
     @Mock private OutboxEventService outboxEventService;
     @Spy private CommissionProperties commissionProperties = new CommissionProperties(); // Use Spy to set actual value
+    @Spy private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @InjectMocks private VendorPayoutService vendorPayoutService;
 
@@ -59,6 +62,9 @@ class VendorPayoutServiceTest {
         ReflectionTestUtils.setField(vendorPayoutService, "vendorPayoutSucceededTopic", SUCCEEDED_TOPIC);
         ReflectionTestUtils.setField(vendorPayoutService, "vendorPayoutFailedTopic", FAILED_TOPIC);
         ReflectionTestUtils.setField(vendorPayoutService, "razorpayXAccountId", RAZORPAY_X_ACCOUNT_ID);
+        ReflectionTestUtils.setField(vendorPayoutService, "maxDispatchAttempts", 3);
+        ReflectionTestUtils.setField(vendorPayoutService, "retryBackoffMs", 30000L);
+        ReflectionTestUtils.setField(vendorPayoutService, "maxRetryBackoffMs", 1800000L);
 
         // Setup CommissionProperties
         commissionProperties.setPercent(new BigDecimal("10.0")); // 10% commission
@@ -71,7 +77,6 @@ class VendorPayoutServiceTest {
         mockPaymentTransaction.setCurrency("INR");
 
         when(paymentRepository.findById(paymentTxId)).thenReturn(Optional.of(mockPaymentTransaction));
-        when(razorpayClient.Payouts).thenReturn(razorpayPayoutsClient);
 
         // Mock PayoutTransaction save to return the argument with an ID if not set
         when(payoutTransactionRepository.save(any(PayoutTransaction.class))).thenAnswer(invocation -> {
@@ -83,16 +88,8 @@ class VendorPayoutServiceTest {
 
     @Test
     void initiatePayout_shouldCreateInitRecordAndPublishInitiatedEvent() {
-        // Arrange
-        // Spying on the service to prevent @Async method execution in this unit test,
-        // or ensure it can be called synchronously if that's simpler for testing.
-        // For now, we'll just verify the call to the async method.
-        VendorPayoutService spyVendorPayoutService = spy(vendorPayoutService);
-        doNothing().when(spyVendorPayoutService).processRazorpayPayoutAsync(any(PayoutTransaction.class));
-
-
         // Act
-        UUID payoutId = spyVendorPayoutService.initiatePayout(paymentTxId, vendorId, new BigDecimal("1000.00"), "INR");
+        UUID payoutId = vendorPayoutService.initiatePayout(paymentTxId, vendorId, new BigDecimal("1000.00"), "INR");
 
         // Assert
         assertNotNull(payoutId);
@@ -111,77 +108,126 @@ class VendorPayoutServiceTest {
         verify(outboxEventService).publish(eq("VendorPayout"), eq(payoutId.toString()), eq(INITIATED_TOPIC), payloadCaptor.capture());
         assertEquals(payoutId.toString(), payloadCaptor.getValue().get("payoutId"));
         assertEquals(900.00, payloadCaptor.getValue().get("netAmount"));
-
-        verify(spyVendorPayoutService).processRazorpayPayoutAsync(savedPt); // Verify async method was called
+        // The Razorpay call is left to PayoutDispatcher
+        verifyNoMoreInteractions(payoutTransactionRepository);
     }
 
     @Test
-    void processRazorpayPayoutAsync_whenApiSucceeds_updatesStatusToPending() throws RazorpayException {
+    void claimPayoutsForDispatch_marksLockedPayoutsDispatching() {
         // Arrange
-        PayoutTransaction initPt = new PayoutTransaction(mockPaymentTransaction, vendorId, new BigDecimal("1000"),
+        PayoutTransaction first = new PayoutTransaction(mockPaymentTransaction, vendorId, new BigDecimal("1000"),
                 new BigDecimal("100"), new BigDecimal("900"), "INR", PayoutStatus.INIT);
-        initPt.setId(UUID.randomUUID()); // Ensure it has an ID
-        when(payoutTransactionRepository.findById(initPt.getId())).thenReturn(Optional.of(initPt));
-
-        com.razorpay.Payout mockRazorpayPayout = mock(com.razorpay.Payout.class);
-        when(mockRazorpayPayout.get("id")).thenReturn("pout_rp_123");
-        when(mockRazorpayPayout.get("status")).thenReturn("pending"); // Example status
-
-        // Mock the static method call if VendorPayoutService uses a static method for fund account lookup,
-        // or inject a mock for the service that provides it.
-        // For the placeholder `lookupVendorFundAccount`, we might need to use PowerMockito if it were static,
-        // or ensure it's an instance method on a mockable bean.
-        // Here, it's an instance method, so if `vendorPayoutService` was spied, we could mock it.
-        // Or, since it's a public method in the same class, we can't easily mock it when testing another public method
-        // unless the class itself is spied. We'll assume for this test it returns a valid ID.
-        VendorPayoutService partialMockService = spy(vendorPayoutService);
-        doReturn("fa_mock_fund_account_id_1").when(partialMockService).lookupVendorFundAccount(vendorId);
+        PayoutTransaction second = new PayoutTransaction(mockPaymentTransaction, vendorId, new BigDecimal("500"),
+                new BigDecimal("50"), new BigDecimal("450"), "INR", PayoutStatus.INIT);
+        UUID handledEarlier = UUID.randomUUID();
+        Instant staleBefore = Instant.now();
+        when(payoutTransactionRepository.lockDispatchable(staleBefore, new UUID[]{handledEarlier}, 10))
+                .thenReturn(List.of(first, second));
+
+        // Act
+        var claimed = vendorPayoutService.claimPayoutsForDispatch(10, staleBefore, Set.of(handledEarlier));
+
+        // Assert
+        assertEquals(2, claimed.size());
+        verify(payoutTransactionRepository).markDispatching(new UUID[]{first.getId(), second.getId()});
+    }
 
+    @Test
+    void claimPayoutsForDispatch_whenNothingToDispatch_doesNotUpdate() {
+        Instant staleBefore = Instant.now();
+        when(payoutTransactionRepository.lockDispatchable(staleBefore, new UUID[0], 10)).thenReturn(List.of());
 
-        when(razorpayPayoutsClient.create(any(JSONObject.class))).thenReturn(mockRazorpayPayout);
+        assertTrue(vendorPayoutService.claimPayoutsForDispatch(10, staleBefore, Set.of()).isEmpty());
+        verify(payoutTransactionRepository, never()).markDispatching(any());
+    }
 
+    @Test
+    void buildPayoutRequest_usesPaiseAndPayoutReference() {
+        // Arrange
+        PayoutTransaction pt = new PayoutTransaction(mockPaymentTransaction, vendorId, new BigDecimal("1000"),
+                new BigDecimal("100"), new BigDecimal("900.50"), "INR", PayoutStatus.INIT);
+        VendorPayoutService partialMockService = spy(vendorPayoutService);
+        doReturn("fa_mock_fund_account_id_1").when(partialMockService).lookupVendorFundAccount(vendorId);
 
         // Act
-        partialMockService.processRazorpayPayoutAsync(initPt);
+        JSONObject request = partialMockService.buildPayoutRequest(pt);
 
         // Assert
-        ArgumentCaptor<PayoutTransaction> ptCaptor = ArgumentCaptor.forClass(PayoutTransaction.class);
-        verify(payoutTransactionRepository, times(1)).save(ptCaptor.capture()); // called once inside processRazorpayPayoutAsync
-        PayoutTransaction updatedPt = ptCaptor.getValue();
-
-        assertEquals(PayoutStatus.PENDING, updatedPt.getStatus());
-        assertEquals("pout_rp_123", updatedPt.getRazorpayPayoutId());
-        verify(outboxEventService, never()).publish(anyString(), anyString(), eq(FAILED_TOPIC), anyMap());
+        assertEquals(RAZORPAY_X_ACCOUNT_ID, request.getString("account_number"));
+        assertEquals("fa_mock_fund_account_id_1", request.getString("fund_account_id"));
+        assertEquals(90050, request.getInt("amount"));
+        assertEquals("PAYOUT_" + pt.getId(), request.getString("reference_id"));
     }
 
-
     @Test
-    void processRazorpayPayoutAsync_whenApiThrowsException_updatesStatusToFailedAndPublishesFailure() throws RazorpayException {
-        // Arrange
-        PayoutTransaction initPt = new PayoutTransaction(mockPaymentTransaction, vendorId, new BigDecimal("1000"),
+    void buildPayoutRequest_whenNoFundAccount_throws() {
+        PayoutTransaction pt = new PayoutTransaction(mockPaymentTransaction, vendorId, new BigDecimal("1000"),
                 new BigDecimal("100"), new BigDecimal("900"), "INR", PayoutStatus.INIT);
-        initPt.setId(UUID.randomUUID());
-        when(payoutTransactionRepository.findById(initPt.getId())).thenReturn(Optional.of(initPt));
-
         VendorPayoutService partialMockService = spy(vendorPayoutService);
-        doReturn("fa_mock_fund_account_id_1").when(partialMockService).lookupVendorFundAccount(vendorId);
+        doReturn(null).when(partialMockService).lookupVendorFundAccount(vendorId);
 
-        when(razorpayPayoutsClient.create(any(JSONObject.class)))
-                .thenThrow(new RazorpayException("Payout API Error"));
+        assertThrows(IllegalStateException.class, () -> partialMockService.buildPayoutRequest(pt));
+    }
 
+    @Test
+    void recordDispatchResults_persistsEachOutcomeInBulk() {
+        // Arrange
+        PayoutTransaction accepted = new PayoutTransaction(mockPaymentTransaction, vendorId, new BigDecimal("1000"),
+                new BigDecimal("100"), new BigDecimal("900"), "INR", PayoutStatus.DISPATCHING);
+        PayoutTransaction rejected = new PayoutTransaction(mockPaymentTransaction, vendorId, new BigDecimal("500"),
+                new BigDecimal("50"), new BigDecimal("450"), "INR", PayoutStatus.DISPATCHING);
+        PayoutTransaction throttled = new PayoutTransaction(mockPaymentTransaction, vendorId, new BigDecimal("200"),
+                new BigDecimal("20"), new BigDecimal("180"), "INR", PayoutStatus.DISPATCHING);
+        Map<UUID, PayoutTransaction> dispatched = new LinkedHashMap<>();
+        dispatched.put(accepted.getId(), accepted);
+        dispatched.put(rejected.getId(), rejected);
+        dispatched.put(throttled.getId(), throttled);
+        Map<UUID, PayoutResult> results = new LinkedHashMap<>();
+        results.put(accepted.getId(), PayoutResult.created(200, "pout_rp_123"));
+        results.put(rejected.getId(), PayoutResult.rejected(400, "BAD_REQUEST_ERROR", "Invalid fund account"));
+        results.put(throttled.getId(), PayoutResult.retryable(429, "TOO_MANY_REQUESTS", "Slow down"));
 
         // Act
-        partialMockService.processRazorpayPayoutAsync(initPt);
+        vendorPayoutService.recordDispatchResults(dispatched, results);
 
         // Assert
-        ArgumentCaptor<PayoutTransaction> ptCaptor = ArgumentCaptor.forClass(PayoutTransaction.class);
-        verify(payoutTransactionRepository, times(1)).save(ptCaptor.capture());
-        PayoutTransaction updatedPt = ptCaptor.getValue();
+        verify(payoutTransactionRepository).markPending(new UUID[]{accepted.getId()}, new String[]{"pout_rp_123"});
+        verify(payoutTransactionRepository).markFailed(new UUID[]{rejected.getId()},
+                new String[]{"BAD_REQUEST_ERROR"}, new String[]{"Invalid fund account"});
+        verify(payoutTransactionRepository).releaseForRetry(new UUID[]{throttled.getId()}, 30000L, 1800000L);
+        verify(payoutTransactionRepository, never()).releaseUnsent(any());
+        verify(payoutTransactionRepository, never()).save(any());
 
-        assertEquals(PayoutStatus.FAILED, updatedPt.getStatus());
-        assertTrue(updatedPt.getErrorMessage().contains("Payout API Error"));
+        ArgumentCaptor<Map<String, Object>> payloadCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(outboxEventService).publish(eq("VendorPayout"), eq(rejected.getId().toString()), eq(FAILED_TOPIC), payloadCaptor.capture());
+        assertEquals("BAD_REQUEST_ERROR", payloadCaptor.getValue().get("errorCode"));
+        verifyNoMoreInteractions(outboxEventService);
+        assertEquals(1.0, meterRegistry.counter("payment.service.payouts.failure.total").count());
+    }
+
+    @Test
+    void recordDispatchResults_failsPayoutOnLastAttemptAndReleasesUnsentWithoutCountingAnAttempt() {
+        // Arrange
+        PayoutTransaction exhausted = new PayoutTransaction(mockPaymentTransaction, vendorId, new BigDecimal("1000"),
+                new BigDecimal("100"), new BigDecimal("900"), "INR", PayoutStatus.DISPATCHING);
+        exhausted.setDispatchAttempts(2); // third attempt is the last with max-attempts = 3
+        PayoutTransaction unsent = new PayoutTransaction(mockPaymentTransaction, vendorId, new BigDecimal("500"),
+                new BigDecimal("50"), new BigDecimal("450"), "INR", PayoutStatus.DISPATCHING);
+        Map<UUID, PayoutTransaction> dispatched = new LinkedHashMap<>();
+        dispatched.put(exhausted.getId(), exhausted);
+        dispatched.put(unsent.getId(), unsent);
+        Map<UUID, PayoutResult> results = Map.of(
+                exhausted.getId(), PayoutResult.retryable(503, "SERVER_ERROR", "Service unavailable"));
+
+        // Act
+        vendorPayoutService.recordDispatchResults(dispatched, results);
 
-        verify(outboxEventService).publish(eq("VendorPayout"), eq(initPt.getId().toString()), eq(FAILED_TOPIC), anyMap());
+        // Assert
+        verify(payoutTransactionRepository).markFailed(new UUID[]{exhausted.getId()}, new String[]{"SERVER_ERROR"},
+                new String[]{"Gave up after 3 dispatch attempts: Service unavailable"});
+        verify(payoutTransactionRepository).releaseUnsent(new UUID[]{unsent.getId()});
+        verify(payoutTransactionRepository, never()).releaseForRetry(any(), anyLong(), anyLong());
+        verify(outboxEventService).publish(eq("VendorPayout"), eq(exhausted.getId().toString()), eq(FAILED_TOPIC), any());
     }
 
     @Test
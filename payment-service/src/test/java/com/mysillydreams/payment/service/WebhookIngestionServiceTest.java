@@ -0,0 +1,125 @@
+package com.mysillydreams.payment.service;
+
+import com.mysillydreams.payment.domain.WebhookEvent;
+import com.mysillydreams.payment.repository.WebhookEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class WebhookIngestionServiceTest {
+
+    @Mock private WebhookEventRepository webhookEventRepository;
+    @Mock private RazorpayWebhookProcessor webhookProcessor;
+    @Mock private TransactionTemplate transactionTemplate;
+    @Mock private TransactionStatus transactionStatus;
+
+    private SimpleMeterRegistry meterRegistry;
+    private WebhookIngestionService ingestionService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // Run transaction callbacks inline
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                ((TransactionCallback<Object>) inv.getArgument(0)).doInTransaction(transactionStatus));
+        doAnswer(inv -> {
+            ((Consumer<TransactionStatus>) inv.getArgument(0)).accept(transactionStatus);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        meterRegistry = new SimpleMeterRegistry();
+        ingestionService = new WebhookIngestionService(webhookEventRepository, webhookProcessor,
+                transactionTemplate, meterRegistry, 1, 10);
+        ReflectionTestUtils.setField(ingestionService, "maxAttempts", 5);
+        ReflectionTestUtils.setField(ingestionService, "retryBackoffMs", 30_000L);
+        ReflectionTestUtils.setField(ingestionService, "maxRetryBackoffMs", 1_800_000L);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        ingestionService.shutdown();
+    }
+
+    private WebhookEvent event(String eventId, String payload) {
+        WebhookEvent event = new WebhookEvent();
+        event.setEventId(eventId);
+        event.setPayload(payload);
+        return event;
+    }
+
+    @Test
+    void ingest_newEvent_shouldStoreAndProcessAsynchronously() throws Exception {
+        when(webhookEventRepository.insertIfAbsent("evt_1", "{}")).thenReturn(1);
+        when(webhookEventRepository.lockReceived("evt_1")).thenReturn(Optional.of(event("evt_1", "{}")));
+
+        assertTrue(ingestionService.ingest("evt_1", "{}"));
+
+        verify(webhookProcessor, timeout(2000)).process("{}");
+        verify(webhookEventRepository, timeout(2000)).markProcessed("evt_1");
+    }
+
+    @Test
+    void ingest_duplicateEvent_shouldNotQueueIt() {
+        when(webhookEventRepository.insertIfAbsent("evt_1", "{}")).thenReturn(0);
+
+        assertFalse(ingestionService.ingest("evt_1", "{}"));
+
+        verify(webhookEventRepository, never()).lockReceived(anyString());
+        assertEquals(1.0, meterRegistry.get("payment.service.webhooks.duplicate.total").counter().count());
+    }
+
+    @Test
+    void process_eventAlreadyHandled_shouldSkipProcessor() throws Exception {
+        when(webhookEventRepository.lockReceived("evt_1")).thenReturn(Optional.empty());
+
+        ingestionService.process("evt_1");
+
+        verify(webhookProcessor, never()).process(anyString());
+        verify(webhookEventRepository, never()).markProcessed(anyString());
+    }
+
+    @Test
+    void process_processorFails_shouldRecordFailedAttemptWithBackoff() throws Exception {
+        when(webhookEventRepository.lockReceived("evt_1")).thenReturn(Optional.of(event("evt_1", "{}")));
+        doThrow(new IllegalStateException("boom")).when(webhookProcessor).process("{}");
+
+        ingestionService.process("evt_1");
+
+        verify(webhookEventRepository, never()).markProcessed(anyString());
+        verify(webhookEventRepository).recordFailedAttempt(eq("evt_1"), eq("boom"), eq(5), eq(30_000L), eq(1_800_000L));
+    }
+
+    @Test
+    void requeueReceivedEvents_shouldProcessStoredEvents() throws Exception {
+        when(webhookEventRepository.findReceivedIdsBefore(any(), anyInt())).thenReturn(List.of("evt_2"));
+        when(webhookEventRepository.lockReceived("evt_2")).thenReturn(Optional.of(event("evt_2", "{\"a\":1}")));
+
+        ingestionService.requeueReceivedEvents();
+
+        verify(webhookProcessor, timeout(2000)).process("{\"a\":1}");
+        verify(webhookEventRepository, timeout(2000)).markProcessed("evt_2");
+    }
+}
@@ -0,0 +1,70 @@
+package com.mysillydreams.pricingengine.rules;
+
+import com.mysillydreams.pricingengine.dto.DynamicPricingRuleDto;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Immutable, typed form of a {@link DynamicPricingRuleDto}, built once by {@link PricingRuleCompiler}.
+ * Evaluation works on prices in minor currency units (see {@link MinorUnits}) and does no JSON mapping.
+ */
+public abstract class CompiledPricingRule {
+
+    private final UUID ruleId;
+    private final String ruleIdString;
+    private final String ruleType;
+    private final String description;
+    private final Long version;
+    private final Map<String, Object> sourceParameters;
+
+    protected CompiledPricingRule(DynamicPricingRuleDto ruleDto) {
+        this.ruleId = ruleDto.getId();
+        this.ruleIdString = ruleDto.getId() != null ? ruleDto.getId().toString() : null;
+        this.ruleType = ruleDto.getRuleType();
+        this.description = "Dynamic rule applied: " + ruleDto.getRuleType();
+        this.version = ruleDto.getVersion();
+        this.sourceParameters = ruleDto.getParameters();
+    }
+
+    /**
+     * @param metricCount    aggregated metric count of the current window
+     * @param basePriceMinor base price in minor units
+     * @return the price adjustment in minor units, 0 if the rule does not trigger
+     */
+    public abstract long adjustmentMinor(long metricCount, long basePriceMinor);
+
+    /**
+     * Whether this compiled rule still reflects the given DTO: same version, or, for unversioned rules,
+     * same type and parameters.
+     */
+    public boolean isCompiledFrom(DynamicPricingRuleDto ruleDto) {
+        if (version != null) {
+            return version.equals(ruleDto.getVersion());
+        }
+        return ruleDto.getVersion() == null
+                && Objects.equals(ruleType, ruleDto.getRuleType())
+                && Objects.equals(sourceParameters, ruleDto.getParameters());
+    }
+
+    public UUID getRuleId() {
+        return ruleId;
+    }
+
+    public String getRuleIdString() {
+        return ruleIdString;
+    }
+
+    public String getRuleType() {
+        return ruleType;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+}
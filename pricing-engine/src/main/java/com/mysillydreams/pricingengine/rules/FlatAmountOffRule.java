@@ -0,0 +1,25 @@
+package com.mysillydreams.pricingengine.rules;
+
+import com.mysillydreams.pricingengine.dto.DynamicPricingRuleDto;
+
+/**
+ * FLAT_AMOUNT_OFF: takes a fixed amount off a positive base price.
+ */
+public final class FlatAmountOffRule extends CompiledPricingRule {
+
+    private final long amountOffMinor;
+
+    FlatAmountOffRule(DynamicPricingRuleDto ruleDto, long amountOffMinor) {
+        super(ruleDto);
+        this.amountOffMinor = amountOffMinor;
+    }
+
+    @Override
+    public long adjustmentMinor(long metricCount, long basePriceMinor) {
+        return basePriceMinor > 0 ? -amountOffMinor : 0L;
+    }
+
+    public long getAmountOffMinor() {
+        return amountOffMinor;
+    }
+}
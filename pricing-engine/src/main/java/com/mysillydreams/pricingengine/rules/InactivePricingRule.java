@@ -0,0 +1,19 @@
+package com.mysillydreams.pricingengine.rules;
+
+import com.mysillydreams.pricingengine.dto.DynamicPricingRuleDto;
+
+/**
+ * Rule of an unknown type or with unusable parameters; never adjusts the price.
+ * The problem is logged once, when the rule is compiled.
+ */
+public final class InactivePricingRule extends CompiledPricingRule {
+
+    InactivePricingRule(DynamicPricingRuleDto ruleDto) {
+        super(ruleDto);
+    }
+
+    @Override
+    public long adjustmentMinor(long metricCount, long basePriceMinor) {
+        return 0L;
+    }
+}
@@ -0,0 +1,36 @@
+package com.mysillydreams.pricingengine.rules;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-scale money helpers: prices are carried as longs in minor units (cents, scale 2).
+ */
+public final class MinorUnits {
+
+    public static final int SCALE = 2;
+    public static final long MICROS_PER_UNIT = 1_000_000L;
+    public static final long BASIS_POINTS_PER_UNIT = 10_000L;
+
+    private MinorUnits() {
+    }
+
+    /**
+     * @throws ArithmeticException if the amount does not fit in a long at scale 2
+     */
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromMinor(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    /**
+     * Integer division rounding half away from zero, matching {@link RoundingMode#HALF_UP}. {@code divisor} must be positive.
+     */
+    public static long divideHalfUp(long dividend, long divisor) {
+        long half = divisor / 2;
+        return dividend >= 0 ? (dividend + half) / divisor : -((-dividend + half) / divisor);
+    }
+}
@@ -0,0 +1,102 @@
+package com.mysillydreams.pricingengine.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mysillydreams.pricingengine.dto.DynamicPricingRuleDto;
+import com.mysillydreams.pricingengine.dto.rules.FlatAmountOffParams;
+import com.mysillydreams.pricingengine.dto.rules.ViewCountThresholdParams;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles {@link DynamicPricingRuleDto}s into {@link CompiledPricingRule}s and keeps the latest compiled form per rule ID.
+ * Rules are compiled when they arrive in the rules KTable; the pricing path only looks them up,
+ * recompiling lazily after a restart (state restored from the changelog) or when a newer version shows up.
+ * A disabled rule (how the catalog signals a delete or deactivation) is evicted rather than cached.
+ */
+@Component
+@Slf4j
+public class PricingRuleCompiler {
+
+    public static final String VIEW_COUNT_THRESHOLD = "VIEW_COUNT_THRESHOLD";
+    public static final String FLAT_AMOUNT_OFF = "FLAT_AMOUNT_OFF";
+
+    private final ObjectMapper objectMapper;
+    // One entry per enabled rule ID, replaced on update and removed on disable; bounded by the number of active rules
+    private final Map<UUID, CompiledPricingRule> compiledRules = new ConcurrentHashMap<>();
+
+    public PricingRuleCompiler(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Returns the compiled form of the rule, compiling it only if it is unknown or has changed.
+     */
+    public CompiledPricingRule resolve(DynamicPricingRuleDto ruleDto) {
+        if (ruleDto.getId() != null) {
+            CompiledPricingRule compiled = compiledRules.get(ruleDto.getId());
+            if (compiled != null && compiled.isCompiledFrom(ruleDto)) {
+                return compiled;
+            }
+        }
+        return compile(ruleDto);
+    }
+
+    /**
+     * Compiles the rule and caches it, replacing any earlier version. A disabled rule is evicted instead.
+     */
+    public CompiledPricingRule compile(DynamicPricingRuleDto ruleDto) {
+        if (!ruleDto.isEnabled()) {
+            if (ruleDto.getId() != null && compiledRules.remove(ruleDto.getId()) != null) {
+                log.debug("Evicted compiled rule ID {} (disabled at version {})", ruleDto.getId(), ruleDto.getVersion());
+            }
+            return new InactivePricingRule(ruleDto);
+        }
+        CompiledPricingRule compiled = doCompile(ruleDto);
+        if (ruleDto.getId() != null) {
+            compiledRules.put(ruleDto.getId(), compiled);
+        }
+        log.debug("Compiled rule ID {} (type: {}, version: {}) into {}",
+                ruleDto.getId(), ruleDto.getRuleType(), ruleDto.getVersion(), compiled.getClass().getSimpleName());
+        return compiled;
+    }
+
+    int compiledRuleCount() {
+        return compiledRules.size();
+    }
+
+    private CompiledPricingRule doCompile(DynamicPricingRuleDto ruleDto) {
+        String ruleType = ruleDto.getRuleType();
+        try {
+            if (VIEW_COUNT_THRESHOLD.equalsIgnoreCase(ruleType)) {
+                ViewCountThresholdParams params = objectMapper.convertValue(ruleDto.getParameters(), ViewCountThresholdParams.class);
+                if (params == null || params.getThreshold() == null || params.getAdjustmentPercentage() == null) {
+                    log.error("VIEW_COUNT_THRESHOLD rule ID {} is missing threshold or adjustmentPercentage: {}", ruleDto.getId(), ruleDto.getParameters());
+                    return new InactivePricingRule(ruleDto);
+                }
+                long adjustmentMicros = BigDecimal.valueOf(params.getAdjustmentPercentage())
+                        .movePointRight(6)
+                        .setScale(0, RoundingMode.HALF_UP)
+                        .longValueExact();
+                return new ViewCountThresholdRule(ruleDto, params.getThreshold(), adjustmentMicros);
+            }
+            if (FLAT_AMOUNT_OFF.equalsIgnoreCase(ruleType)) {
+                FlatAmountOffParams params = objectMapper.convertValue(ruleDto.getParameters(), FlatAmountOffParams.class);
+                if (params == null || params.getAmountOff() == null) {
+                    log.error("FLAT_AMOUNT_OFF rule ID {} is missing amountOff: {}", ruleDto.getId(), ruleDto.getParameters());
+                    return new InactivePricingRule(ruleDto);
+                }
+                return new FlatAmountOffRule(ruleDto, MinorUnits.toMinor(params.getAmountOff()));
+            }
+            log.warn("Unknown rule type '{}' for rule ID {}. Rule will not adjust prices.", ruleType, ruleDto.getId());
+        } catch (Exception e) {
+            log.error("Error compiling {} rule ID {} with params {}: {}", ruleType, ruleDto.getId(), ruleDto.getParameters(), e.getMessage());
+        }
+        return new InactivePricingRule(ruleDto);
+    }
+}
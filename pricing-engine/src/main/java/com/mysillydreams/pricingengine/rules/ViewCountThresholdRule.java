@@ -0,0 +1,34 @@
+package com.mysillydreams.pricingengine.rules;
+
+import com.mysillydreams.pricingengine.dto.DynamicPricingRuleDto;
+
+/**
+ * VIEW_COUNT_THRESHOLD: adjusts the base price by a fixed fraction once the window's metric count exceeds the threshold.
+ */
+public final class ViewCountThresholdRule extends CompiledPricingRule {
+
+    private final long threshold;
+    private final long adjustmentMicros; // adjustment fraction in millionths, e.g. 100_000 for +10%
+
+    ViewCountThresholdRule(DynamicPricingRuleDto ruleDto, long threshold, long adjustmentMicros) {
+        super(ruleDto);
+        this.threshold = threshold;
+        this.adjustmentMicros = adjustmentMicros;
+    }
+
+    @Override
+    public long adjustmentMinor(long metricCount, long basePriceMinor) {
+        if (metricCount <= threshold) {
+            return 0L;
+        }
+        return MinorUnits.divideHalfUp(Math.multiplyExact(basePriceMinor, adjustmentMicros), MinorUnits.MICROS_PER_UNIT);
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    public long getAdjustmentMicros() {
+        return adjustmentMicros;
+    }
+}
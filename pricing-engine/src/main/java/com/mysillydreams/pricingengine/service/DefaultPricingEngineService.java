@@ -3,12 +3,15 @@ package com.mysillydreams.pricingengine.service;
 import com.mysillydreams.pricingengine.domain.DynamicPricingRuleEntity;
 import com.mysillydreams.pricingengine.domain.PriceOverrideEntity;
 import com.mysillydreams.pricingengine.dto.MetricEvent;
-import com.fasterxml.jackson.databind.ObjectMapper; // Added for converting Map to DTO
 import com.mysillydreams.pricingengine.dto.AggregatedMetric;
+import com.mysillydreams.pricingengine.dto.DynamicPricingRuleDto;
+import com.mysillydreams.pricingengine.dto.EnrichedAggregatedMetric;
+import com.mysillydreams.pricingengine.dto.PriceOverrideDto;
 import com.mysillydreams.pricingengine.dto.PriceUpdatedEvent;
 import com.mysillydreams.pricingengine.dto.PricingComponent;
-import com.mysillydreams.pricingengine.dto.rules.FlatAmountOffParams; // Added
-import com.mysillydreams.pricingengine.dto.rules.ViewCountThresholdParams; // Added
+import com.mysillydreams.pricingengine.rules.CompiledPricingRule;
+import com.mysillydreams.pricingengine.rules.MinorUnits;
+import com.mysillydreams.pricingengine.rules.PricingRuleCompiler;
 // Repositories no longer needed directly
 // import com.mysillydreams.pricingengine.repository.DynamicPricingRuleRepository;
 // import com.mysillydreams.pricingengine.repository.PriceOverrideRepository;
@@ -20,11 +23,10 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional; // For lastPublishedFinalPrice
 import java.util.UUID;
 // Removed unused imports for ConcurrentHashMap, Function, Collectors, PostConstruct
@@ -33,8 +35,7 @@ import java.util.UUID;
 @Slf4j
 public class DefaultPricingEngineService implements PricingEngineService {
 
-    private final KafkaTemplate<String, PriceUpdatedEvent> priceUpdatedEventKafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final PricingRuleCompiler pricingRuleCompiler;
 
     @Value("${topics.priceUpdated:catalog.price.updated}")
     private String priceUpdatedTopic;
@@ -52,9 +53,9 @@ public class DefaultPricingEngineService implements PricingEngineService {
 
     public DefaultPricingEngineService(
             // KafkaTemplate<String, PriceUpdatedEvent> kafkaTemplate, // Removed
-            ObjectMapper objectMapper) {
+            PricingRuleCompiler pricingRuleCompiler) {
         // this.priceUpdatedEventKafkaTemplate = kafkaTemplate; // Removed
-        this.objectMapper = objectMapper;
+        this.pricingRuleCompiler = pricingRuleCompiler;
     }
 
     @Override
@@ -131,7 +132,7 @@ public class DefaultPricingEngineService implements PricingEngineService {
         PriceOverrideDto activeOverrideDto = enrichedData.getOverrideDto();
 
 
-        log.info("Calculating price for item ID: {} with basePrice: {}, aggregated metrics: {}, {} applicable rules, activeOverride: {}, lastPublishedPrice: {}",
+        log.debug("Calculating price for item ID: {} with basePrice: {}, aggregated metrics: {}, {} applicable rules, activeOverride: {}, lastPublishedPrice: {}",
                 itemId, basePrice, aggregatedMetrics,
                 applicableRuleDtos.size(), // This will now correctly reflect the size of the list
                 activeOverrideDto != null ? activeOverrideDto.getId() : "none",
@@ -145,76 +146,72 @@ public class DefaultPricingEngineService implements PricingEngineService {
             return Optional.empty(); // Return empty if no base price
         }
         pricingComponents.add(PricingComponent.builder().componentName("BASE_PRICE").value(basePrice).description("Standard base price").build());
-        BigDecimal currentCalculatedPrice = basePrice;
+        // All arithmetic below is on long minor units (scale 2); BigDecimal only at the event boundary
+        long basePriceMinor = MinorUnits.toMinor(basePrice);
+        long currentPriceMinor = basePriceMinor;
 
         // Check for active manual override (using DTO)
         if (activeOverrideDto != null && activeOverrideDto.isEnabled() &&
             (activeOverrideDto.getStartTime() == null || !activeOverrideDto.getStartTime().isAfter(calculationTime)) &&
             (activeOverrideDto.getEndTime() == null || activeOverrideDto.getEndTime().isAfter(calculationTime))) {
 
-            currentCalculatedPrice = activeOverrideDto.getOverridePrice();
+            currentPriceMinor = MinorUnits.toMinor(activeOverrideDto.getOverridePrice());
             pricingComponents.add(PricingComponent.builder()
                     .componentName("MANUAL_OVERRIDE")
-                    .value(currentCalculatedPrice)
+                    .value(activeOverrideDto.getOverridePrice())
                     .ruleId(activeOverrideDto.getId().toString())
                     .description("Manual override applied.")
                     .build());
-            log.info("Applied manual override ID {} for item {}. New price: {}", activeOverrideDto.getId(), itemId, currentCalculatedPrice);
+            log.info("Applied manual override ID {} for item {}. New price: {}", activeOverrideDto.getId(), itemId, activeOverrideDto.getOverridePrice());
         } else {
-            // Evaluate dynamic pricing rules (using DTOs)
-            BigDecimal totalAdjustmentFactor = BigDecimal.ZERO;
-            // Note: enrichedData.getRuleDto() currently provides one rule. If an item can have multiple active rules,
-            // the EnrichedAggregatedMetric.ruleDto field should be a List, and this loop would iterate it.
-            // For now, using the (potentially single) rule from enrichedData.
-            if (!applicableRuleDtos.isEmpty()) {
-                for (DynamicPricingRuleDto ruleDto : applicableRuleDtos) { // Loop will run once if ruleDto is not null
-                    if (ruleDto.isEnabled()) { // This check might be redundant if GKT only stores enabled ones
-                        BigDecimal ruleAdjustment = calculateRuleAdjustment(ruleDto, aggregatedMetrics, basePrice);
-                        totalAdjustmentFactor = totalAdjustmentFactor.add(ruleAdjustment);
-                        pricingComponents.add(PricingComponent.builder()
-                                .componentName(ruleDto.getRuleType())
-                                .value(ruleAdjustment.multiply(basePrice).setScale(2, RoundingMode.HALF_UP))
-                                .ruleId(ruleDto.getId().toString())
-                                .description("Dynamic rule applied: " + ruleDto.getRuleType())
-                                .build());
-                    }
+            // Evaluate dynamic pricing rules, compiled once per rule version by PricingRuleCompiler
+            long metricCount = aggregatedMetrics.getMetricCount() != null ? aggregatedMetrics.getMetricCount() : 0L;
+            long totalAdjustmentMinor = 0L;
+            for (DynamicPricingRuleDto ruleDto : applicableRuleDtos) {
+                if (ruleDto.isEnabled()) { // This check might be redundant if GKT only stores enabled ones
+                    CompiledPricingRule rule = pricingRuleCompiler.resolve(ruleDto);
+                    long ruleAdjustmentMinor = rule.adjustmentMinor(metricCount, basePriceMinor);
+                    totalAdjustmentMinor = Math.addExact(totalAdjustmentMinor, ruleAdjustmentMinor);
+                    pricingComponents.add(PricingComponent.builder()
+                            .componentName(rule.getRuleType())
+                            .value(MinorUnits.fromMinor(ruleAdjustmentMinor))
+                            .ruleId(rule.getRuleIdString())
+                            .description(rule.getDescription())
+                            .build());
                 }
             }
 
-            if (totalAdjustmentFactor.compareTo(BigDecimal.ZERO) != 0) {
-                currentCalculatedPrice = basePrice.multiply(BigDecimal.ONE.add(totalAdjustmentFactor)).setScale(2, RoundingMode.HALF_UP);
-                log.info("Applied dynamic rules for item {}. Total adjustment factor: {}, New price: {}", itemId, totalAdjustmentFactor, currentCalculatedPrice);
+            if (totalAdjustmentMinor != 0L) {
+                currentPriceMinor = Math.addExact(basePriceMinor, totalAdjustmentMinor);
+                log.debug("Applied dynamic rules for item {}. Total adjustment (minor units): {}, New price (minor units): {}", itemId, totalAdjustmentMinor, currentPriceMinor);
             }
         }
 
-        if (currentCalculatedPrice.compareTo(BigDecimal.ZERO) < 0) {
-            log.warn("Calculated final price for item {} is negative ({}). Clamping to zero.", itemId, currentCalculatedPrice);
-            currentCalculatedPrice = BigDecimal.ZERO;
+        if (currentPriceMinor < 0L) {
+            log.warn("Calculated final price for item {} is negative ({}). Clamping to zero.", itemId, MinorUnits.fromMinor(currentPriceMinor));
+            currentPriceMinor = 0L;
         }
 
         // Price Change Threshold Check
         if (lastPublishedFinalPrice.isPresent()) {
-            BigDecimal previousPrice = lastPublishedFinalPrice.get();
-            BigDecimal priceChange = currentCalculatedPrice.subtract(previousPrice).abs();
-            BigDecimal percentageChangeDivisor = previousPrice.compareTo(BigDecimal.ZERO) == 0 ?
-                                                 (currentCalculatedPrice.compareTo(BigDecimal.ZERO) == 0 ? BigDecimal.ONE : currentCalculatedPrice.abs())
-                                                 : previousPrice.abs(); // Avoid division by zero if previous price was zero
-
-            BigDecimal percentageChange = BigDecimal.ZERO;
-            if (percentageChangeDivisor.compareTo(BigDecimal.ZERO) != 0) {
-                 percentageChange = priceChange.divide(percentageChangeDivisor, 4, RoundingMode.HALF_UP);
-            }
+            long previousPriceMinor = MinorUnits.toMinor(lastPublishedFinalPrice.get());
+            long priceChangeMinor = Math.abs(currentPriceMinor - previousPriceMinor);
+            long percentageChangeDivisor = previousPriceMinor == 0L ?
+                                           (currentPriceMinor == 0L ? 1L : Math.abs(currentPriceMinor))
+                                           : Math.abs(previousPriceMinor); // Avoid division by zero if previous price was zero
 
+            // Relative change in basis points (0.01%), i.e. 4 decimal places as a fraction
+            long percentageChangeBasisPoints = MinorUnits.divideHalfUp(
+                    Math.multiplyExact(priceChangeMinor, MinorUnits.BASIS_POINTS_PER_UNIT), percentageChangeDivisor);
 
-            log.debug("Price change check for item {}: CurrentCalcPrice={}, LastPublishedPrice={}, PriceChange={}, PercentageChange={}",
-                itemId, currentCalculatedPrice, previousPrice, priceChange, percentageChange);
+            log.debug("Price change check for item {}: CurrentCalcPriceMinor={}, LastPublishedPriceMinor={}, PriceChangeMinor={}, PercentageChangeBasisPoints={}",
+                itemId, currentPriceMinor, previousPriceMinor, priceChangeMinor, percentageChangeBasisPoints);
 
             // Example: Only publish if change is > 1%
-            if (percentageChange.compareTo(BigDecimal.valueOf(priceUpdateThresholdPercentage)) <= 0) {
+            if (percentageChangeBasisPoints <= priceUpdateThresholdPercentage * MinorUnits.BASIS_POINTS_PER_UNIT) {
                  // AND potentially check fixed amount threshold: priceChange.compareTo(priceUpdateThresholdAmount) <= 0
-                log.info("Price change for item {} ({}) is below threshold ({}%). Not publishing update.",
-                        itemId, percentageChange.multiply(BigDecimal.valueOf(100)).setScale(2, RoundingMode.HALF_UP),
-                        BigDecimal.valueOf(priceUpdateThresholdPercentage).multiply(BigDecimal.valueOf(100)));
+                log.info("Price change for item {} ({} bp) is below threshold ({}%). Not publishing update.",
+                        itemId, percentageChangeBasisPoints, priceUpdateThresholdPercentage * 100);
                 return Optional.empty(); // Skip publishing by returning empty Optional
             }
         } else {
@@ -222,12 +219,13 @@ public class DefaultPricingEngineService implements PricingEngineService {
             // Publish if the newly calculated price is different from the base price,
             // OR if there were any components applied (override or rules), indicating a calculation happened.
             // This avoids publishing a "no-change" event if calculated price is same as base and no rules/overrides applied.
-            if (currentCalculatedPrice.compareTo(basePrice) == 0 && pricingComponents.size() == 1 && "BASE_PRICE".equals(pricingComponents.get(0).getComponentName())) {
+            if (currentPriceMinor == basePriceMinor && pricingComponents.size() == 1) {
                 log.info("No last published price for item {} and calculated price is same as base price with no adjustments. Not publishing.", itemId);
                 return Optional.empty();
             }
             log.info("No last published price for item {}. Proceeding to create PriceUpdatedEvent.", itemId);
         }
+        BigDecimal currentCalculatedPrice = MinorUnits.fromMinor(currentPriceMinor);
 
         PriceUpdatedEvent priceUpdatedEvent = PriceUpdatedEvent.builder()
                 .eventId(UUID.randomUUID())
@@ -239,41 +237,7 @@ public class DefaultPricingEngineService implements PricingEngineService {
                 .components(pricingComponents)
                 .build();
 
-        log.info("Price calculation complete for item {}. PriceUpdatedEvent to be published by stream: {}", itemId, priceUpdatedEvent);
+        log.debug("Price calculation complete for item {}. PriceUpdatedEvent to be published by stream: {}", itemId, priceUpdatedEvent);
         return Optional.of(priceUpdatedEvent);
     }
-
-
-    private BigDecimal calculateRuleAdjustment(DynamicPricingRuleDto ruleDto, AggregatedMetric aggregatedMetrics, BigDecimal basePrice) {
-        log.debug("Calculating adjustment for rule ID: {}, type: {}, item ID: {}", ruleDto.getId(), ruleDto.getRuleType(), ruleDto.getItemId());
-        BigDecimal adjustmentFactor = BigDecimal.ZERO;
-
-        if ("VIEW_COUNT_THRESHOLD".equalsIgnoreCase(ruleDto.getRuleType())) {
-            try {
-                ViewCountThresholdParams params = objectMapper.convertValue(ruleDto.getParameters(), ViewCountThresholdParams.class);
-                if (params.getThreshold() != null && params.getAdjustmentPercentage() != null &&
-                    aggregatedMetrics.getMetricCount() > params.getThreshold()) {
-                    adjustmentFactor = BigDecimal.valueOf(params.getAdjustmentPercentage());
-                    log.info("Rule '{}' (ID: {}) triggered for item {}: metric count {} > threshold {}. Adjustment Factor: {}",
-                            ruleDto.getRuleType(), ruleDto.getId(), ruleDto.getItemId(), aggregatedMetrics.getMetricCount(), params.getThreshold(), adjustmentFactor);
-                }
-            } catch (Exception e) {
-                log.error("Error processing VIEW_COUNT_THRESHOLD rule ID {} with params {}: {}", ruleDto.getId(), ruleDto.getParameters(), e.getMessage());
-            }
-        } else if ("FLAT_AMOUNT_OFF".equalsIgnoreCase(ruleDto.getRuleType())) {
-            try {
-                FlatAmountOffParams params = objectMapper.convertValue(ruleDto.getParameters(), FlatAmountOffParams.class);
-                if (params.getAmountOff() != null && basePrice.compareTo(BigDecimal.ZERO) > 0) {
-                    adjustmentFactor = params.getAmountOff().divide(basePrice, 4, RoundingMode.HALF_UP).negate();
-                    log.info("Rule '{}' (ID: {}) triggered for item {}: amountOff {}. Adjustment Factor: {}",
-                            ruleDto.getRuleType(), ruleDto.getId(), ruleDto.getItemId(), params.getAmountOff(), adjustmentFactor);
-                } else if (basePrice.compareTo(BigDecimal.ZERO) <= 0) {
-                    log.warn("Cannot apply FLAT_AMOUNT_OFF rule ID {} for item {} with basePrice <= 0.", ruleDto.getId(), ruleDto.getItemId());
-                }
-            } catch (Exception e) {
-                log.error("Error processing FLAT_AMOUNT_OFF rule ID {} with params {}: {}", ruleDto.getId(), ruleDto.getParameters(), e.getMessage());
-            }
-        }
-        return adjustmentFactor;
-    }
 }
@@ -9,6 +9,7 @@ import com.mysillydreams.pricingengine.dto.MetricEvent;
 import com.mysillydreams.pricingengine.dto.PriceOverrideDto;
 import com.mysillydreams.pricingengine.dto.PriceUpdatedEvent; // Added for KTable
 import com.mysillydreams.pricingengine.dto.EnrichedAggregatedMetric;
+import com.mysillydreams.pricingengine.rules.PricingRuleCompiler;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
@@ -66,6 +67,7 @@ public class DemandMetricsAggregatorStream {
     private final Serde<ItemBasePriceEvent> itemBasePriceEventSerde;
     private final Serde<PriceUpdatedEvent> priceUpdatedEventSerde;
     private final Serde<List<DynamicPricingRuleDto>> listOfRuleDtoSerde; // Added
+    private final PricingRuleCompiler pricingRuleCompiler;
 
 
     public DemandMetricsAggregatorStream(
@@ -78,7 +80,8 @@ public class DemandMetricsAggregatorStream {
             Serde<PriceOverrideDto> priceOverrideDtoSerde,
             Serde<ItemBasePriceEvent> itemBasePriceEventSerde,
             Serde<PriceUpdatedEvent> priceUpdatedEventSerde,
-            Serde<List<DynamicPricingRuleDto>> listOfRuleDtoSerde) {
+            Serde<List<DynamicPricingRuleDto>> listOfRuleDtoSerde,
+            PricingRuleCompiler pricingRuleCompiler) {
         this.pricingEngineService = pricingEngineService;
         this.dltKafkaTemplate = dltKafkaTemplate;
         this.objectMapper = objectMapper; // Store
@@ -89,6 +92,7 @@ public class DemandMetricsAggregatorStream {
         this.itemBasePriceEventSerde = itemBasePriceEventSerde;
         this.priceUpdatedEventSerde = priceUpdatedEventSerde;
         this.listOfRuleDtoSerde = listOfRuleDtoSerde;
+        this.pricingRuleCompiler = pricingRuleCompiler;
     }
 
 
@@ -115,6 +119,8 @@ public class DemandMetricsAggregatorStream {
                     // For now, this simple adder replaces/adds.
                     aggList.removeIf(rule -> rule.getId().equals(newRuleDto.getId()));
                     aggList.add(newRuleDto);
+                    // Compile on arrival so the per-window pricing path only looks the rule up; a disabled rule is evicted
+                    pricingRuleCompiler.compile(newRuleDto);
                     return aggList;
                 },
                 Materialized.<String, List<DynamicPricingRuleDto>, KeyValueStore<Bytes, byte[]>>as("aggregated-rules-by-itemid-store")
@@ -0,0 +1,113 @@
+package com.mysillydreams.pricingengine.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mysillydreams.pricingengine.dto.DynamicPricingRuleDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PricingRuleCompilerTest {
+
+    private PricingRuleCompiler compiler;
+
+    @BeforeEach
+    void setUp() {
+        compiler = new PricingRuleCompiler(new ObjectMapper());
+    }
+
+    private DynamicPricingRuleDto rule(String ruleType, Map<String, Object> params, Long version) {
+        return DynamicPricingRuleDto.builder()
+                .id(UUID.randomUUID()).itemId(UUID.randomUUID()).ruleType(ruleType)
+                .parameters(params).enabled(true).version(version)
+                .build();
+    }
+
+    @Test
+    void compile_viewCountThreshold_adjustsOnlyAboveThreshold() {
+        CompiledPricingRule rule = compiler.compile(rule("VIEW_COUNT_THRESHOLD", Map.of("threshold", 50, "adjustmentPercentage", 0.10), 1L));
+
+        assertThat(rule).isInstanceOf(ViewCountThresholdRule.class);
+        assertThat(rule.adjustmentMinor(51, 10_000)).isEqualTo(1_000);
+        assertThat(rule.adjustmentMinor(50, 10_000)).isZero();
+    }
+
+    @Test
+    void compile_viewCountThreshold_roundsHalfUpInMinorUnits() {
+        CompiledPricingRule rule = compiler.compile(rule("VIEW_COUNT_THRESHOLD", Map.of("threshold", 0, "adjustmentPercentage", -0.05), 1L));
+
+        // -5% of 19.99 = -0.9995 -> -1.00
+        assertThat(rule.adjustmentMinor(1, 1_999)).isEqualTo(-100);
+    }
+
+    @Test
+    void compile_flatAmountOff_subtractsAmountFromPositiveBasePrice() {
+        CompiledPricingRule rule = compiler.compile(rule("FLAT_AMOUNT_OFF", Map.of("amountOff", "20.00"), 1L));
+
+        assertThat(rule).isInstanceOf(FlatAmountOffRule.class);
+        assertThat(rule.adjustmentMinor(0, 10_000)).isEqualTo(-2_000);
+        assertThat(rule.adjustmentMinor(0, 0)).isZero();
+    }
+
+    @Test
+    void compile_unknownTypeOrInvalidParams_returnsInactiveRule() {
+        assertThat(compiler.compile(rule("LOW_STOCK_UPLIFT", Map.of(), 1L))).isInstanceOf(InactivePricingRule.class);
+        assertThat(compiler.compile(rule("FLAT_AMOUNT_OFF", Map.of("amountOff", "abc"), 1L))).isInstanceOf(InactivePricingRule.class);
+        assertThat(compiler.compile(rule("VIEW_COUNT_THRESHOLD", Map.of("threshold", 5), 1L))).isInstanceOf(InactivePricingRule.class);
+    }
+
+    @Test
+    void resolve_sameVersion_returnsCachedInstance() {
+        DynamicPricingRuleDto dto = rule("FLAT_AMOUNT_OFF", Map.of("amountOff", "5.00"), 3L);
+        CompiledPricingRule compiled = compiler.compile(dto);
+
+        assertThat(compiler.resolve(dto)).isSameAs(compiled);
+    }
+
+    @Test
+    void resolve_newVersion_recompiles() {
+        DynamicPricingRuleDto dto = rule("FLAT_AMOUNT_OFF", Map.of("amountOff", "5.00"), 3L);
+        CompiledPricingRule compiled = compiler.compile(dto);
+
+        dto.setVersion(4L);
+        dto.setParameters(Map.of("amountOff", "7.50"));
+        CompiledPricingRule recompiled = compiler.resolve(dto);
+
+        assertThat(recompiled).isNotSameAs(compiled);
+        assertThat(recompiled.adjustmentMinor(0, 10_000)).isEqualTo(-750);
+        assertThat(compiler.resolve(dto)).isSameAs(recompiled);
+    }
+
+    @Test
+    void resolve_unversionedRule_recompilesOnlyWhenParametersChange() {
+        DynamicPricingRuleDto dto = rule("VIEW_COUNT_THRESHOLD", Map.of("threshold", 10, "adjustmentPercentage", 0.02), null);
+        CompiledPricingRule compiled = compiler.resolve(dto);
+
+        assertThat(compiler.resolve(dto)).isSameAs(compiled);
+
+        dto.setParameters(Map.of("threshold", 10, "adjustmentPercentage", 0.03));
+        assertThat(compiler.resolve(dto)).isNotSameAs(compiled);
+    }
+
+    @Test
+    void compile_disabledRule_evictsCachedEntry() {
+        DynamicPricingRuleDto dto = rule("FLAT_AMOUNT_OFF", Map.of("amountOff", "5.00"), 3L);
+        CompiledPricingRule compiled = compiler.compile(dto);
+        assertThat(compiler.compiledRuleCount()).isEqualTo(1);
+
+        dto.setVersion(4L);
+        dto.setEnabled(false);
+        assertThat(compiler.compile(dto)).isInstanceOf(InactivePricingRule.class);
+        assertThat(compiler.compiledRuleCount()).isZero();
+
+        // Re-enabled: compiled afresh, not served from a stale entry
+        dto.setVersion(5L);
+        dto.setEnabled(true);
+        CompiledPricingRule recompiled = compiler.compile(dto);
+        assertThat(recompiled).isNotSameAs(compiled);
+        assertThat(compiler.compiledRuleCount()).isEqualTo(1);
+    }
+}
@@ -5,8 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper; // Added
 import com.mysillydreams.pricingengine.domain.DynamicPricingRuleEntity;
 import com.mysillydreams.pricingengine.domain.PriceOverrideEntity;
 import com.mysillydreams.pricingengine.dto.*; // Wildcard for DTOs
-import com.mysillydreams.pricingengine.dto.rules.FlatAmountOffParams;
-import com.mysillydreams.pricingengine.dto.rules.ViewCountThresholdParams;
+import com.mysillydreams.pricingengine.rules.PricingRuleCompiler;
 // Repositories no longer needed for these tests as service is decoupled from them
 // import com.mysillydreams.pricingengine.repository.DynamicPricingRuleRepository;
 // import com.mysillydreams.pricingengine.repository.PriceOverrideRepository;
@@ -26,6 +25,7 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -45,8 +45,7 @@ class DefaultPricingEngineServiceTest {
     @Mock
     private KafkaTemplate<String, PriceUpdatedEvent> priceUpdatedEventKafkaTemplate;
 
-    @Mock
-    private ObjectMapper objectMapper; // Mock ObjectMapper since it's now a dependency
+    private final ObjectMapper objectMapper = new ObjectMapper(); // Real mapper: rule parameters are compiled by PricingRuleCompiler
 
     @InjectMocks
     private DefaultPricingEngineService pricingEngineService; // No longer a Spy for this basic setup
@@ -64,31 +63,13 @@ class DefaultPricingEngineServiceTest {
     void setUp() {
         // Manually inject mocks if @InjectMocks doesn't cover all constructor args,
         // or ensure constructor matches @InjectMocks capability.
-        // DefaultPricingEngineService now takes KafkaTemplate and ObjectMapper.
-        pricingEngineService = new DefaultPricingEngineService(priceUpdatedEventKafkaTemplate, objectMapper);
+        // DefaultPricingEngineService now takes the PricingRuleCompiler.
+        pricingEngineService = new DefaultPricingEngineService(new PricingRuleCompiler(objectMapper));
 
         ReflectionTestUtils.setField(pricingEngineService, "priceUpdatedTopic", priceUpdatedTopic);
         // Inject threshold values
         ReflectionTestUtils.setField(pricingEngineService, "priceUpdateThresholdPercentage", thresholdPercentage);
         // ReflectionTestUtils.setField(pricingEngineService, "priceUpdateThresholdAmount", thresholdAmount);
-
-        // Setup ObjectMapper mock for rule parameter conversion
-        // This ensures that when objectMapper.convertValue is called, it returns a valid params object.
-        when(objectMapper.convertValue(any(Map.class), eq(ViewCountThresholdParams.class)))
-            .thenAnswer(invocation -> {
-                Map<String, Object> map = invocation.getArgument(0);
-                return new ViewCountThresholdParams(
-                    ((Number)map.getOrDefault("threshold", 0L)).longValue(),
-                    ((Number)map.getOrDefault("adjustmentPercentage", 0.0)).doubleValue()
-                );
-            });
-        when(objectMapper.convertValue(any(Map.class), eq(FlatAmountOffParams.class)))
-            .thenAnswer(invocation -> {
-                 Map<String, Object> map = invocation.getArgument(0);
-                return new FlatAmountOffParams(
-                    new BigDecimal(map.getOrDefault("amountOff", "0.0").toString())
-                );
-            });
     }
 
     private AggregatedMetric createSampleAggregatedMetric(UUID itemId, long count) {
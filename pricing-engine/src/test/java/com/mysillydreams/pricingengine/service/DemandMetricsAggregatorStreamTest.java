@@ -3,6 +3,7 @@ package com.mysillydreams.pricingengine.service;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mysillydreams.pricingengine.dto.*;
 import com.mysillydreams.pricingengine.dto.rules.ViewCountThresholdParams; // Assuming this might be used if testing rule logic through service
+import com.mysillydreams.pricingengine.rules.PricingRuleCompiler;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.*;
@@ -115,7 +116,8 @@ class DemandMetricsAggregatorStreamTest {
                 overrideDtoSerde,
                 basePriceEventSerde,
                 priceUpdatedEventSerde,
-                listOfRuleDtoSerde
+                listOfRuleDtoSerde,
+                new PricingRuleCompiler(testObjectMapper)
         );
 
         ReflectionTestUtils.setField(demandMetricsAggregatorStream, "demandMetricsTopic", DEMAND_METRICS_TOPIC);
@@ -55,6 +55,11 @@ path "transit/decrypt/user-service-key" {
   capabilities = ["update"]
 }
 
+# Allow generating data keys for envelope encryption
+path "transit/datakey/plaintext/user-service-key" {
+  capabilities = ["update"]
+}
+
 # Allow reading transit key info
 path "transit/keys/user-service-key" {
   capabilities = ["read"]
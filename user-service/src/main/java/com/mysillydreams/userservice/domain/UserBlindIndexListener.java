@@ -0,0 +1,40 @@
+package com.mysillydreams.userservice.domain;
+
+import com.mysillydreams.userservice.service.BlindIndexService;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener that keeps {@link UserEntity#getEmailHash()} and {@link UserEntity#getPhoneHash()} in step with
+ * the plaintext email and phone, whichever code path saves the user.
+ * Like {@link com.mysillydreams.userservice.converter.CryptoConverter}, it is instantiated by JPA and gets its
+ * Spring dependency through a static field.
+ */
+@Component
+public class UserBlindIndexListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserBlindIndexListener.class);
+    private static volatile BlindIndexService blindIndexService;
+
+    @Autowired
+    public void setBlindIndexService(BlindIndexService service) {
+        UserBlindIndexListener.blindIndexService = service;
+        logger.info("BlindIndexService statically injected into UserBlindIndexListener.");
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void updateBlindIndexes(UserEntity user) {
+        BlindIndexService service = blindIndexService;
+        if (service == null) {
+            throw new IllegalStateException("BlindIndexService not available for UserBlindIndexListener. " +
+                "Ensure Spring context is properly initialized.");
+        }
+        user.setEmailHash(service.emailIndex(user.getEmail()));
+        user.setPhoneHash(service.phoneIndex(user.getPhone()));
+    }
+}
@@ -19,7 +19,9 @@ import java.util.Set; // For roles set
 import java.util.UUID;
 
 @Entity
-@Table(name = "users") // As per PRD Data Model
+@Table(name = "users", // As per PRD Data Model
+       indexes = @Index(name = "idx_users_phone_hash", columnList = "phone_hash"))
+@EntityListeners(UserBlindIndexListener.class) // Maintains emailHash and phoneHash
 @Getter
 @Setter
 public class UserEntity {
@@ -45,6 +47,13 @@ public class UserEntity {
     @Column(length = 1024)
     private String phone; // Encrypted
 
+    // Blind indexes (keyed HMAC, see BlindIndexService) used for exact-match lookups on the encrypted columns
+    @Column(name = "email_hash", length = 64, unique = true)
+    private String emailHash;
+
+    @Column(name = "phone_hash", length = 64)
+    private String phoneHash;
+
     @Convert(converter = CryptoConverter.class)
     @Column(length = 1024) // Storing LocalDate as encrypted String (e.g., "YYYY-MM-DD")
     private String dob; // Encrypted (Date of Birth as String)
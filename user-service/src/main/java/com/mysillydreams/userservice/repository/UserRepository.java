@@ -7,6 +7,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -39,6 +40,28 @@ public interface UserRepository extends JpaRepository<UserEntity, UUID> {
      */
     Optional<UserEntity> findByEmail(String email); // Searching by encrypted email.
 
+    /**
+     * Finds a user by the blind index of their email (see {@code BlindIndexService#emailIndex}).
+     * Backed by the unique index on {@code email_hash}; no decryption or Vault call is involved.
+     */
+    Optional<UserEntity> findByEmailHash(String emailHash);
+
+    boolean existsByEmailHash(String emailHash);
+
+    /**
+     * Finds users by the blind index of their phone number (see {@code BlindIndexService#phoneIndex}).
+     */
+    List<UserEntity> findByPhoneHash(String phoneHash);
+
+    /**
+     * IDs, in ascending order after {@code afterId}, of users whose blind indexes have not been computed yet
+     * (rows written before the columns existed).
+     */
+    @Query("SELECT u.id FROM UserEntity u WHERE u.id > :afterId " +
+           "AND ((u.emailHash IS NULL AND u.email IS NOT NULL) OR (u.phoneHash IS NULL AND u.phone IS NOT NULL)) " +
+           "ORDER BY u.id")
+    List<UUID> findIdsWithoutBlindIndex(@Param("afterId") UUID afterId, Pageable pageable);
+
     // Additional methods for admin operations
     Page<UserEntity> findByActiveTrue(Pageable pageable);
     Page<UserEntity> findByActiveFalse(Pageable pageable);
@@ -0,0 +1,117 @@
+package com.mysillydreams.userservice.service;
+
+import com.mysillydreams.userservice.domain.UserEntity;
+import com.mysillydreams.userservice.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Computes the email/phone blind indexes of users saved before the {@code email_hash}/{@code phone_hash} columns
+ * existed. Runs once in the background after startup, in batches of {@code user-service.blind-index.backfill.batch-size}
+ * users per transaction, until no user is left without them; on later startups it finds nothing and returns.
+ * Running it on several instances at once is harmless: each batch writes the same values.
+ * <p>
+ * {@code email_hash} is unique, so two legacy users whose emails differ only in case or whitespace cannot both be
+ * indexed. When a batch hits such a conflict it is redone one user per transaction, and the users that still conflict
+ * are logged and left without an index for an operator to merge or fix; the rest of the backfill goes on.
+ */
+@Component
+@ConditionalOnProperty(name = "user-service.blind-index.backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class BlindIndexBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlindIndexBackfill.class);
+
+    private final UserRepository userRepository;
+    private final BlindIndexService blindIndexService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${user-service.blind-index.backfill.batch-size:200}")
+    private int batchSize;
+
+    public BlindIndexBackfill(UserRepository userRepository, BlindIndexService blindIndexService,
+                              PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.blindIndexService = blindIndexService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        Thread thread = new Thread(this::backfill, "blind-index-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return The number of users updated.
+     */
+    int backfill() {
+        int total = 0;
+        List<UUID> skipped = new ArrayList<>();
+        UUID afterId = new UUID(0L, 0L);
+        try {
+            List<UUID> ids;
+            do {
+                ids = userRepository.findIdsWithoutBlindIndex(afterId, PageRequest.of(0, batchSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                total += backfillBatch(ids, skipped);
+                // Walk on by ID, so users left without an index (e.g. a blank email, a duplicate) are not picked again
+                afterId = ids.get(ids.size() - 1);
+            } while (ids.size() == batchSize);
+            if (total > 0 || !skipped.isEmpty()) {
+                logger.info("Blind index backfill complete: {} users updated, {} skipped", total, skipped.size());
+            }
+        } catch (Exception e) {
+            // Left for the next startup; lookups miss the users not yet indexed until then
+            logger.error("Blind index backfill stopped after {} users: {}", total, e.getMessage(), e);
+        }
+        return total;
+    }
+
+    /**
+     * @return The number of users updated; users whose index conflicts with another user's are added to {@code skipped}.
+     */
+    private int backfillBatch(List<UUID> ids, List<UUID> skipped) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> indexUsers(ids));
+            logger.debug("Computed blind indexes for {} users", ids.size());
+            return ids.size();
+        } catch (DataIntegrityViolationException e) {
+            logger.warn("Blind index batch of {} users hit a conflict, retrying them one by one: {}", ids.size(), e.getMessage());
+        }
+        int updated = 0;
+        for (UUID id : ids) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> indexUsers(List.of(id)));
+                updated++;
+            } catch (DataIntegrityViolationException e) {
+                skipped.add(id);
+                logger.warn("User {} has the same email as another user; left without a blind index: {}", id, e.getMessage());
+            }
+        }
+        return updated;
+    }
+
+    private void indexUsers(List<UUID> ids) {
+        for (UserEntity user : userRepository.findAllById(ids)) {
+            user.setEmailHash(blindIndexService.emailIndex(user.getEmail()));
+            user.setPhoneHash(blindIndexService.phoneIndex(user.getPhone()));
+        }
+        userRepository.flush(); // Raise a unique violation here, as a DataIntegrityViolationException, not at commit
+    }
+}
@@ -0,0 +1,107 @@
+package com.mysillydreams.userservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Locale;
+
+/**
+ * Computes blind indexes for encrypted columns that must support exact-match lookups (email, phone).
+ * <p>
+ * A blind index is a keyed HMAC-SHA256 of the normalized value: equal inputs give equal indexes, so the column can
+ * carry a database (unique) index, but without the key it reveals nothing about the value. It is computed in-process;
+ * no Vault call is involved. Each field uses its own domain prefix so an email and a phone number never collide.
+ * <p>
+ * The key comes from {@code user-service.blind-index.key} (Base64, at least 32 bytes). Changing it invalidates every
+ * stored index, which then has to be recomputed. Startup fails without a key, except under the {@code dev} profile,
+ * which falls back to a committed development key.
+ */
+@Service
+public class BlindIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlindIndexService.class);
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_LENGTH = 32;
+    private static final String DEVELOPMENT_PROFILE = "dev";
+    // Used only under the dev profile when no key is configured; it is public, so indexes made with it protect nothing
+    private static final String DEVELOPMENT_KEY = "bXlzaWxseWRyZWFtcy1kZXYtYmxpbmQtaW5kZXgta2V5LTAwMDA=";
+
+    private final SecretKeySpec key;
+
+    @Autowired
+    public BlindIndexService(@Value("${user-service.blind-index.key:}") String base64Key, Environment environment) {
+        this(isBlank(base64Key) && environment.acceptsProfiles(Profiles.of(DEVELOPMENT_PROFILE))
+                ? developmentKey() : base64Key);
+    }
+
+    /**
+     * @throws IllegalStateException if no key is given.
+     */
+    public BlindIndexService(String base64Key) {
+        if (isBlank(base64Key)) {
+            throw new IllegalStateException("user-service.blind-index.key (BLIND_INDEX_KEY) must be configured");
+        }
+        byte[] keyBytes = Base64.getDecoder().decode(base64Key);
+        if (keyBytes.length < MIN_KEY_LENGTH) {
+            throw new IllegalArgumentException("user-service.blind-index.key must be at least " + MIN_KEY_LENGTH + " bytes");
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+
+    private static String developmentKey() {
+        logger.warn("No user-service.blind-index.key configured, using the development key under the '{}' profile - NOT SECURE!",
+                DEVELOPMENT_PROFILE);
+        return DEVELOPMENT_KEY;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    /**
+     * @return The blind index of the email (case-insensitive, surrounding whitespace ignored), or null if blank.
+     */
+    public String emailIndex(String email) {
+        if (email == null || email.isBlank()) {
+            return null;
+        }
+        return hmac("email:" + email.trim().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return The blind index of the phone number (only digits and a leading '+' are significant), or null if it
+     * has no digits.
+     */
+    public String phoneIndex(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        String trimmed = phone.trim();
+        String digits = trimmed.replaceAll("\\D", "");
+        if (digits.isEmpty()) {
+            return null;
+        }
+        return hmac("phone:" + (trimmed.startsWith("+") ? "+" : "") + digits);
+    }
+
+    private String hmac(String value) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return HexFormat.of().formatHex(mac.doFinal(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to compute blind index", e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.mysillydreams.userservice.service;
+
+import java.util.List;
+
+/**
+ * Issues and unwraps the data keys used by {@link EnvelopeEncryptionService}.
+ * The key-encryption key never leaves the implementation (Vault transit in production); callers only ever see
+ * plaintext data keys and their wrapped (encrypted) form.
+ */
+public interface DataKeySource {
+
+    /**
+     * Generates a new random data key.
+     *
+     * @return The plaintext key together with its wrapped form, which is safe to store next to the data.
+     */
+    DataKey generateDataKey();
+
+    /**
+     * Unwraps previously issued data keys in one request.
+     *
+     * @param wrappedKeys Wrapped keys as returned in {@link DataKey#wrappedKey()}.
+     * @return The plaintext keys, in the same order.
+     */
+    List<byte[]> unwrapDataKeys(List<String> wrappedKeys);
+
+    record DataKey(byte[] key, String wrappedKey) {
+    }
+}
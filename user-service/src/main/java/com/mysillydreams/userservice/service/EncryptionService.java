@@ -7,10 +7,18 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.vault.core.VaultTransitOperations;
+import org.springframework.vault.support.Ciphertext;
+import org.springframework.vault.support.Plaintext;
+import org.springframework.vault.support.VaultDecryptionResult;
+import org.springframework.vault.support.VaultEncryptionResult;
 import org.springframework.vault.support.VaultResponse;
 import org.springframework.vault.support.VaultTransitContext;
 import org.springframework.vault.VaultException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 
 @Service
 @ConditionalOnProperty(name = "spring.cloud.vault.enabled", havingValue = "true")
@@ -77,6 +85,58 @@ public class EncryptionService implements EncryptionServiceInterface {
         }
     }
 
+    /**
+     * Encrypts all values with a single transit batch request ({@code batch_input}).
+     *
+     * @throws VaultException if the request or any item in it fails.
+     */
+    @Override
+    public List<String> encryptAll(List<String> plaintexts) {
+        List<Integer> positions = new ArrayList<>();
+        List<Plaintext> batch = new ArrayList<>();
+        for (int i = 0; i < plaintexts.size(); i++) {
+            if (plaintexts.get(i) != null) {
+                positions.add(i);
+                batch.add(Plaintext.of(plaintexts.get(i)));
+            }
+        }
+        String[] ciphertexts = new String[plaintexts.size()];
+        if (!batch.isEmpty()) {
+            List<VaultEncryptionResult> results = vaultTransitOperations.encrypt(transitKeyName, batch);
+            for (int i = 0; i < results.size(); i++) {
+                ciphertexts[positions.get(i)] = results.get(i).get().getCiphertext();
+            }
+            logger.debug("Batch encrypted {} values using key '{}'", batch.size(), transitKeyName);
+        }
+        return Arrays.asList(ciphertexts);
+    }
+
+    /**
+     * Decrypts all values with a single transit batch request ({@code batch_input}).
+     *
+     * @throws VaultException if the request or any item in it fails.
+     */
+    @Override
+    public List<String> decryptAll(List<String> ciphertexts) {
+        List<Integer> positions = new ArrayList<>();
+        List<Ciphertext> batch = new ArrayList<>();
+        for (int i = 0; i < ciphertexts.size(); i++) {
+            if (ciphertexts.get(i) != null) {
+                positions.add(i);
+                batch.add(Ciphertext.of(ciphertexts.get(i)));
+            }
+        }
+        String[] plaintexts = new String[ciphertexts.size()];
+        if (!batch.isEmpty()) {
+            List<VaultDecryptionResult> results = vaultTransitOperations.decrypt(transitKeyName, batch);
+            for (int i = 0; i < results.size(); i++) {
+                plaintexts[positions.get(i)] = results.get(i).get().asString();
+            }
+            logger.debug("Batch decrypted {} values using key '{}'", batch.size(), transitKeyName);
+        }
+        return Arrays.asList(plaintexts);
+    }
+
     // Optional: Methods for encrypting/decrypting byte arrays if needed
     /*
     public byte[] encrypt(byte[] plaintextBytes) {
@@ -1,5 +1,8 @@
 package com.mysillydreams.userservice.service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Interface for encryption services.
  * This allows us to have different implementations (Vault-based, mock, etc.)
@@ -21,4 +24,33 @@ public interface EncryptionServiceInterface {
      * @return The decrypted plaintext, or null if ciphertext was null.
      */
     String decrypt(String ciphertext);
+
+    /**
+     * Encrypts several values in one go. Implementations backed by Vault override this to use a single batch
+     * request instead of one round-trip per value.
+     *
+     * @param plaintexts The strings to encrypt; null elements stay null.
+     * @return The ciphertexts, in the same order.
+     */
+    default List<String> encryptAll(List<String> plaintexts) {
+        List<String> ciphertexts = new ArrayList<>(plaintexts.size());
+        for (String plaintext : plaintexts) {
+            ciphertexts.add(encrypt(plaintext));
+        }
+        return ciphertexts;
+    }
+
+    /**
+     * Decrypts several values in one go. See {@link #encryptAll(List)}.
+     *
+     * @param ciphertexts The strings to decrypt; null elements stay null.
+     * @return The plaintexts, in the same order.
+     */
+    default List<String> decryptAll(List<String> ciphertexts) {
+        List<String> plaintexts = new ArrayList<>(ciphertexts.size());
+        for (String ciphertext : ciphertexts) {
+            plaintexts.add(decrypt(ciphertext));
+        }
+        return plaintexts;
+    }
 }
@@ -0,0 +1,282 @@
+package com.mysillydreams.userservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Envelope encryption: field values are encrypted in-process with AES-GCM under a data key, and only the data key
+ * goes through Vault.
+ * <p>
+ * New values are encrypted with the current data key, which is replaced once it is older than
+ * {@code user-service.encryption.data-key.ttl} or has encrypted {@code data-key.max-encryptions} values. The wrapped
+ * data key is stored in the value itself ({@code env:v1:<wrapped key>:<iv + ciphertext>}), so decrypting needs one
+ * Vault call per data key rather than one per value; unwrapped keys are kept in a bounded LRU cache. Values written
+ * by the plain transit {@link EncryptionService} are still readable and are passed to it unchanged.
+ * <p>
+ * Enabled with {@code user-service.encryption.mode=envelope}.
+ */
+@Service
+@Primary
+@ConditionalOnExpression("${spring.cloud.vault.enabled:false} and '${user-service.encryption.mode:transit}' == 'envelope'")
+public class EnvelopeEncryptionService implements EncryptionServiceInterface {
+
+    private static final Logger logger = LoggerFactory.getLogger(EnvelopeEncryptionService.class);
+
+    static final String PREFIX = "env:v1:";
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final DataKeySource dataKeySource;
+    private final EncryptionService transitEncryptionService; // Values written before envelope mode
+    private final Duration dataKeyTtl;
+    private final long dataKeyMaxEncryptions;
+    private final Clock clock;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final Map<String, SecretKey> unwrappedKeys; // Wrapped key -> data key, LRU
+    private final Object unwrapLock = new Object();
+
+    private volatile ActiveDataKey activeDataKey;
+
+    @Autowired
+    public EnvelopeEncryptionService(DataKeySource dataKeySource,
+                                     EncryptionService transitEncryptionService,
+                                     @Value("${user-service.encryption.data-key.ttl:PT1H}") Duration dataKeyTtl,
+                                     @Value("${user-service.encryption.data-key.max-encryptions:1000000}") long dataKeyMaxEncryptions,
+                                     @Value("${user-service.encryption.data-key.cache-size:1000}") int dataKeyCacheSize) {
+        this(dataKeySource, transitEncryptionService, dataKeyTtl, dataKeyMaxEncryptions, dataKeyCacheSize,
+                Clock.systemUTC());
+    }
+
+    EnvelopeEncryptionService(DataKeySource dataKeySource, EncryptionService transitEncryptionService,
+                              Duration dataKeyTtl, long dataKeyMaxEncryptions, int dataKeyCacheSize, Clock clock) {
+        this.dataKeySource = dataKeySource;
+        this.transitEncryptionService = transitEncryptionService;
+        this.dataKeyTtl = dataKeyTtl;
+        this.dataKeyMaxEncryptions = dataKeyMaxEncryptions;
+        this.clock = clock;
+        this.unwrappedKeys = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SecretKey> eldest) {
+                return size() > dataKeyCacheSize;
+            }
+        });
+        logger.info("EnvelopeEncryptionService initialized. Data key TTL: {}, max encryptions per key: {}",
+                dataKeyTtl, dataKeyMaxEncryptions);
+    }
+
+    /**
+     * Encrypts the given plaintext with the current data key.
+     *
+     * @param plaintext The string to encrypt.
+     * @return The envelope ciphertext, or null if plaintext was null.
+     */
+    @Override
+    public String encrypt(String plaintext) {
+        if (plaintext == null) {
+            return null;
+        }
+        ActiveDataKey dataKey = currentDataKey();
+        byte[] iv = new byte[IV_LENGTH];
+        secureRandom.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, dataKey.key(), new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+            byte[] payload = ByteBuffer.allocate(iv.length + ciphertext.length).put(iv).put(ciphertext).array();
+            return PREFIX + dataKey.wrappedKey() + ":" + Base64.getEncoder().encodeToString(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM encryption failed", e);
+        }
+    }
+
+    /**
+     * Decrypts an envelope ciphertext, or a plain transit ciphertext via {@link EncryptionService}.
+     *
+     * @param ciphertext The string to decrypt.
+     * @return The decrypted plaintext, or null if ciphertext was null.
+     */
+    @Override
+    public String decrypt(String ciphertext) {
+        if (ciphertext == null) {
+            return null;
+        }
+        if (!ciphertext.startsWith(PREFIX)) {
+            return transitEncryptionService.decrypt(ciphertext);
+        }
+        Envelope envelope = Envelope.parse(ciphertext);
+        return envelope.open(dataKey(envelope.wrappedKey()));
+    }
+
+    /**
+     * Decrypts a page of values with at most one Vault request for the data keys not yet cached and one batch
+     * request for any plain transit values.
+     */
+    @Override
+    public List<String> decryptAll(List<String> ciphertexts) {
+        List<Integer> transitPositions = new ArrayList<>();
+        List<String> transitCiphertexts = new ArrayList<>();
+        Map<Integer, Envelope> envelopes = new LinkedHashMap<>();
+        for (int i = 0; i < ciphertexts.size(); i++) {
+            String ciphertext = ciphertexts.get(i);
+            if (ciphertext == null) {
+                continue;
+            }
+            if (ciphertext.startsWith(PREFIX)) {
+                envelopes.put(i, Envelope.parse(ciphertext));
+            } else {
+                transitPositions.add(i);
+                transitCiphertexts.add(ciphertext);
+            }
+        }
+
+        String[] plaintexts = new String[ciphertexts.size()];
+        if (!transitCiphertexts.isEmpty()) {
+            List<String> decrypted = transitEncryptionService.decryptAll(transitCiphertexts);
+            for (int i = 0; i < decrypted.size(); i++) {
+                plaintexts[transitPositions.get(i)] = decrypted.get(i);
+            }
+        }
+        if (!envelopes.isEmpty()) {
+            Set<String> wrappedKeys = new LinkedHashSet<>();
+            envelopes.values().forEach(envelope -> wrappedKeys.add(envelope.wrappedKey()));
+            Map<String, SecretKey> keys = dataKeys(wrappedKeys);
+            envelopes.forEach((position, envelope) -> plaintexts[position] = envelope.open(keys.get(envelope.wrappedKey())));
+        }
+        return Arrays.asList(plaintexts);
+    }
+
+    private ActiveDataKey currentDataKey() {
+        Instant now = clock.instant();
+        ActiveDataKey dataKey = activeDataKey;
+        if (dataKey != null && dataKey.tryUse(now)) {
+            return dataKey;
+        }
+        synchronized (this) {
+            dataKey = activeDataKey;
+            if (dataKey != null && dataKey.tryUse(now)) {
+                return dataKey;
+            }
+            DataKeySource.DataKey generated = dataKeySource.generateDataKey();
+            SecretKey key = new SecretKeySpec(generated.key(), "AES");
+            unwrappedKeys.put(generated.wrappedKey(), key);
+            dataKey = new ActiveDataKey(key, generated.wrappedKey(), now.plus(dataKeyTtl), dataKeyMaxEncryptions);
+            dataKey.tryUse(now);
+            activeDataKey = dataKey;
+            logger.info("Rotated data encryption key; next rotation by {}", dataKey.expiresAt());
+            return dataKey;
+        }
+    }
+
+    private SecretKey dataKey(String wrappedKey) {
+        SecretKey key = unwrappedKeys.get(wrappedKey);
+        return key != null ? key : dataKeys(Set.of(wrappedKey)).get(wrappedKey);
+    }
+
+    /**
+     * Returns the data keys for the given wrapped keys, unwrapping the ones not cached in a single request.
+     * Cache misses are serialized so that concurrent readers of a new key cause one Vault call, not one each.
+     */
+    private Map<String, SecretKey> dataKeys(Set<String> wrappedKeys) {
+        Map<String, SecretKey> keys = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        collect(wrappedKeys, keys, missing);
+        if (missing.isEmpty()) {
+            return keys;
+        }
+        synchronized (unwrapLock) {
+            missing.clear();
+            collect(wrappedKeys, keys, missing);
+            if (!missing.isEmpty()) {
+                List<byte[]> unwrapped = dataKeySource.unwrapDataKeys(missing);
+                for (int i = 0; i < missing.size(); i++) {
+                    SecretKey key = new SecretKeySpec(unwrapped.get(i), "AES");
+                    unwrappedKeys.put(missing.get(i), key);
+                    keys.put(missing.get(i), key);
+                }
+                logger.debug("Unwrapped {} data keys", missing.size());
+            }
+        }
+        return keys;
+    }
+
+    private void collect(Set<String> wrappedKeys, Map<String, SecretKey> found, List<String> missing) {
+        for (String wrappedKey : wrappedKeys) {
+            SecretKey key = unwrappedKeys.get(wrappedKey);
+            if (key != null) {
+                found.put(wrappedKey, key);
+            } else {
+                missing.add(wrappedKey);
+            }
+        }
+    }
+
+    private record ActiveDataKey(SecretKey key, String wrappedKey, Instant expiresAt, long maxEncryptions,
+                                 AtomicLong encryptions) {
+
+        ActiveDataKey(SecretKey key, String wrappedKey, Instant expiresAt, long maxEncryptions) {
+            this(key, wrappedKey, expiresAt, maxEncryptions, new AtomicLong());
+        }
+
+        boolean tryUse(Instant now) {
+            return now.isBefore(expiresAt) && encryptions.incrementAndGet() <= maxEncryptions;
+        }
+    }
+
+    /**
+     * {@code env:v1:<wrapped key>:<base64(iv + ciphertext)>}. The wrapped key is a transit ciphertext and contains
+     * colons itself; the payload is Base64 and never does.
+     */
+    private record Envelope(String wrappedKey, byte[] payload) {
+
+        static Envelope parse(String value) {
+            int separator = value.lastIndexOf(':');
+            if (separator <= PREFIX.length()) {
+                throw new IllegalArgumentException("Malformed envelope ciphertext");
+            }
+            byte[] payload = Base64.getDecoder().decode(value.substring(separator + 1));
+            if (payload.length <= IV_LENGTH) {
+                throw new IllegalArgumentException("Malformed envelope ciphertext");
+            }
+            return new Envelope(value.substring(PREFIX.length(), separator), payload);
+        }
+
+        String open(SecretKey key) {
+            try {
+                Cipher cipher = Cipher.getInstance(CIPHER);
+                cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, payload, 0, IV_LENGTH));
+                byte[] plaintext = cipher.doFinal(payload, IV_LENGTH, payload.length - IV_LENGTH);
+                return new String(plaintext, StandardCharsets.UTF_8);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("AES-GCM decryption failed", e);
+            }
+        }
+    }
+}
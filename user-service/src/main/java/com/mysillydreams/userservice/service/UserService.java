@@ -3,7 +3,6 @@ package com.mysillydreams.userservice.service;
 import com.mysillydreams.userservice.domain.UserEntity;
 import com.mysillydreams.userservice.dto.UserDto;
 import com.mysillydreams.userservice.repository.UserRepository;
-import com.mysillydreams.userservice.service.EncryptionServiceInterface;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import java.time.Instant;
@@ -30,12 +29,12 @@ public class UserService {
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
     private final UserRepository userRepository;
-    private final EncryptionServiceInterface encryptionService; // Needed if we were to check uniqueness on encrypted email
+    private final BlindIndexService blindIndexService; // Email/phone lookups without decrypting
 
     @Autowired
-    public UserService(UserRepository userRepository, EncryptionServiceInterface encryptionService) {
+    public UserService(UserRepository userRepository, BlindIndexService blindIndexService) {
         this.userRepository = userRepository;
-        this.encryptionService = encryptionService;
+        this.blindIndexService = blindIndexService;
     }
 
     /**
@@ -51,14 +50,9 @@ public class UserService {
         Assert.hasText(dto.getEmail(), "Email cannot be blank");
         Assert.hasText(dto.getName(), "Name cannot be blank");
 
-        // Example: Check for email uniqueness before saving.
-        // Note: This check happens on the *plaintext* email from the DTO.
-        // The actual encrypted email in the DB is what needs to be unique.
-        // If CryptoConverter makes encryption deterministic, we could encrypt here and query.
-        // This is a simplified check. A robust check would involve trying to encrypt dto.getEmail()
-        // and querying by the encrypted value, or relying on DB unique constraint on the encrypted email column.
-        String encryptedEmailForCheck = encryptionService.encrypt(dto.getEmail());
-        if (userRepository.findByEmail(encryptedEmailForCheck).isPresent()) {
+        // Check for email uniqueness before saving, on the email's blind index (indexed, no Vault call).
+        // The unique constraint on users.email_hash still rejects a concurrent duplicate at insert time.
+        if (emailExists(dto.getEmail())) {
              logger.warn("Attempt to create user with existing email: {}", dto.getEmail());
              throw new IllegalArgumentException("User with email " + dto.getEmail() + " already exists.");
         }
@@ -89,6 +83,36 @@ public class UserService {
         return savedUser;
     }
 
+    /**
+     * @return true if a user with this email (compared case-insensitively) exists.
+     */
+    @Transactional(readOnly = true)
+    public boolean emailExists(String email) {
+        String emailHash = blindIndexService.emailIndex(email);
+        return emailHash != null && userRepository.existsByEmailHash(emailHash);
+    }
+
+    /**
+     * Finds a user by plaintext email through its blind index.
+     *
+     * @param email The plaintext email.
+     * @return An {@link Optional} containing the user, or empty if none has this email.
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserEntity> findByEmail(String email) {
+        String emailHash = blindIndexService.emailIndex(email);
+        return emailHash == null ? Optional.empty() : userRepository.findByEmailHash(emailHash);
+    }
+
+    /**
+     * Finds users by plaintext phone number through its blind index.
+     */
+    @Transactional(readOnly = true)
+    public List<UserEntity> findByPhone(String phone) {
+        String phoneHash = blindIndexService.phoneIndex(phone);
+        return phoneHash == null ? List.of() : userRepository.findByPhoneHash(phoneHash);
+    }
+
     /**
      * Retrieves a user by their business reference ID.
      *
@@ -0,0 +1,72 @@
+package com.mysillydreams.userservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.vault.VaultException;
+import org.springframework.vault.core.VaultOperations;
+import org.springframework.vault.core.VaultTransitOperations;
+import org.springframework.vault.support.Ciphertext;
+import org.springframework.vault.support.VaultDecryptionResult;
+import org.springframework.vault.support.VaultResponse;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link DataKeySource} backed by Vault transit: keys come from {@code datakey/plaintext/<key>} and are unwrapped
+ * with a batch {@code decrypt}, so the transit key itself stays in Vault.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.cloud.vault.enabled", havingValue = "true")
+public class VaultTransitDataKeySource implements DataKeySource {
+
+    private static final Logger logger = LoggerFactory.getLogger(VaultTransitDataKeySource.class);
+    private static final int DATA_KEY_BITS = 256;
+
+    private final VaultOperations vaultOperations;
+    private final VaultTransitOperations vaultTransitOperations;
+    private final String dataKeyPath;
+    private final String transitKeyName;
+
+    public VaultTransitDataKeySource(VaultOperations vaultOperations,
+                                     VaultTransitOperations vaultTransitOperations,
+                                     @Value("${spring.cloud.vault.transit.backend:transit}") String transitBackend,
+                                     @Value("${spring.cloud.vault.transit.default-key-name:user-service-key}") String transitKeyName) {
+        this.vaultOperations = vaultOperations;
+        this.vaultTransitOperations = vaultTransitOperations;
+        this.dataKeyPath = transitBackend + "/datakey/plaintext/" + transitKeyName;
+        this.transitKeyName = transitKeyName;
+    }
+
+    @Override
+    public DataKey generateDataKey() {
+        VaultResponse response = vaultOperations.write(dataKeyPath, Map.of("bits", DATA_KEY_BITS));
+        if (response == null || response.getData() == null) {
+            throw new VaultException("Empty response generating a data key at " + dataKeyPath);
+        }
+        Map<String, Object> data = response.getData();
+        byte[] key = Base64.getDecoder().decode((String) data.get("plaintext"));
+        String wrappedKey = (String) data.get("ciphertext");
+        logger.info("Generated a new data key with transit key '{}'", transitKeyName);
+        return new DataKey(key, wrappedKey);
+    }
+
+    @Override
+    public List<byte[]> unwrapDataKeys(List<String> wrappedKeys) {
+        List<Ciphertext> batch = new ArrayList<>(wrappedKeys.size());
+        for (String wrappedKey : wrappedKeys) {
+            batch.add(Ciphertext.of(wrappedKey));
+        }
+        List<byte[]> keys = new ArrayList<>(wrappedKeys.size());
+        for (VaultDecryptionResult result : vaultTransitOperations.decrypt(transitKeyName, batch)) {
+            keys.add(result.get().getPlaintext()); // Transit returns the raw key bytes
+        }
+        logger.debug("Unwrapped {} data keys with transit key '{}'", keys.size(), transitKeyName);
+        return keys;
+    }
+}
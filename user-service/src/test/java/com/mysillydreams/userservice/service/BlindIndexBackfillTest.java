@@ -0,0 +1,84 @@
+package com.mysillydreams.userservice.service;
+
+import com.mysillydreams.userservice.domain.UserEntity;
+import com.mysillydreams.userservice.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BlindIndexBackfillTest {
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private BlindIndexService blindIndexService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BlindIndexBackfill backfill;
+
+    private final UUID first = new UUID(0L, 1L);
+    private final UUID duplicate = new UUID(0L, 2L);
+    private final UUID last = new UUID(0L, 3L);
+    private final List<Collection<UUID>> loaded = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        backfill = new BlindIndexBackfill(userRepository, blindIndexService, transactionManager);
+        ReflectionTestUtils.setField(backfill, "batchSize", 3);
+        when(blindIndexService.emailIndex(anyString())).thenReturn("hash");
+    }
+
+    @Test
+    void backfill_shouldSkipConflictingUserAndIndexTheRestOfTheBatch() {
+        when(userRepository.findIdsWithoutBlindIndex(eq(new UUID(0L, 0L)), any(Pageable.class)))
+                .thenReturn(List.of(first, duplicate, last));
+        when(userRepository.findIdsWithoutBlindIndex(eq(last), any(Pageable.class))).thenReturn(List.of());
+        when(userRepository.findAllById(any())).thenAnswer(invocation -> {
+            Collection<UUID> ids = invocation.getArgument(0);
+            loaded.add(ids);
+            return ids.stream().map(BlindIndexBackfillTest::user).toList();
+        });
+        // The unique email_hash index rejects any flush that includes the duplicate
+        doAnswer(invocation -> {
+            if (loaded.get(loaded.size() - 1).contains(duplicate)) {
+                throw new DataIntegrityViolationException("duplicate key value violates unique constraint");
+            }
+            return null;
+        }).when(userRepository).flush();
+
+        int updated = backfill.backfill();
+
+        assertEquals(2, updated);
+        // The batch, then each of its users on its own
+        assertEquals(List.of(List.of(first, duplicate, last), List.of(first), List.of(duplicate), List.of(last)), loaded);
+        verify(userRepository).findIdsWithoutBlindIndex(eq(last), any(Pageable.class)); // Went on past the conflict
+        verify(transactionManager, times(3)).rollback(any());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    private static UserEntity user(UUID id) {
+        UserEntity user = new UserEntity();
+        user.setId(id);
+        user.setEmail(id + "@example.com");
+        return user;
+    }
+}
@@ -0,0 +1,76 @@
+package com.mysillydreams.userservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlindIndexServiceTest {
+
+    private static final String KEY = Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+
+    private final BlindIndexService blindIndexService = new BlindIndexService(KEY);
+
+    @Test
+    void emailIndex_shouldBeDeterministicAndIgnoreCaseAndWhitespace() {
+        String index = blindIndexService.emailIndex("Alice@Example.com");
+
+        assertEquals(64, index.length()); // Hex HMAC-SHA256
+        assertEquals(index, blindIndexService.emailIndex("  alice@example.COM "));
+        assertNotEquals(index, blindIndexService.emailIndex("bob@example.com"));
+    }
+
+    @Test
+    void phoneIndex_shouldIgnoreFormatting() {
+        String index = blindIndexService.phoneIndex("+91 98765-43210");
+
+        assertEquals(index, blindIndexService.phoneIndex("+91 (98765) 43210"));
+        assertNotEquals(index, blindIndexService.phoneIndex("919876543210")); // Leading '+' is significant
+    }
+
+    @Test
+    void indexes_shouldDependOnKeyAndField() {
+        BlindIndexService otherKey = new BlindIndexService(
+                Base64.getEncoder().encodeToString("fedcba9876543210fedcba9876543210".getBytes()));
+
+        assertNotEquals(blindIndexService.emailIndex("a@b.c"), otherKey.emailIndex("a@b.c"));
+        assertNotEquals(blindIndexService.emailIndex("12345"), blindIndexService.phoneIndex("12345"));
+    }
+
+    @Test
+    void blankValues_shouldHaveNoIndex() {
+        assertNull(blindIndexService.emailIndex(null));
+        assertNull(blindIndexService.emailIndex("  "));
+        assertNull(blindIndexService.phoneIndex("n/a"));
+    }
+
+    @Test
+    void constructor_withShortKey_shouldThrow() {
+        String shortKey = Base64.getEncoder().encodeToString("too-short".getBytes());
+        assertThrows(IllegalArgumentException.class, () -> new BlindIndexService(shortKey));
+    }
+
+    @Test
+    void constructor_withoutKey_shouldThrowUnlessDevProfileIsActive() {
+        assertThrows(IllegalStateException.class, () -> new BlindIndexService(""));
+        assertThrows(IllegalStateException.class, () -> new BlindIndexService("", new MockEnvironment()));
+
+        MockEnvironment prod = new MockEnvironment();
+        prod.setActiveProfiles("prod");
+        assertThrows(IllegalStateException.class, () -> new BlindIndexService(null, prod));
+
+        MockEnvironment dev = new MockEnvironment();
+        dev.setActiveProfiles("dev");
+        assertNotNull(new BlindIndexService("", dev).emailIndex("a@b.c"));
+    }
+
+    @Test
+    void constructor_withKey_shouldIgnoreProfile() {
+        MockEnvironment dev = new MockEnvironment();
+        dev.setActiveProfiles("dev");
+
+        assertEquals(blindIndexService.emailIndex("a@b.c"), new BlindIndexService(KEY, dev).emailIndex("a@b.c"));
+    }
+}
@@ -8,6 +8,13 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.vault.VaultException;
 import org.springframework.vault.core.VaultTransitOperations;
+import org.springframework.vault.support.Ciphertext;
+import org.springframework.vault.support.Plaintext;
+import org.springframework.vault.support.VaultDecryptionResult;
+import org.springframework.vault.support.VaultEncryptionResult;
+
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -101,4 +108,25 @@ class EncryptionServiceTest {
 
         assertEquals("Decryption error", exception.getMessage());
     }
+
+    @Test
+    void encryptAll_shouldUseSingleBatchRequestAndKeepNulls() {
+        when(vaultTransitOperations.encrypt(testKeyName, List.of(Plaintext.of("a"), Plaintext.of("b"))))
+                .thenReturn(List.of(new VaultEncryptionResult(Ciphertext.of("vault:v1:a")),
+                        new VaultEncryptionResult(Ciphertext.of("vault:v1:b"))));
+
+        List<String> ciphertexts = encryptionService.encryptAll(Arrays.asList("a", null, "b"));
+
+        assertEquals(Arrays.asList("vault:v1:a", null, "vault:v1:b"), ciphertexts);
+        verify(vaultTransitOperations, never()).encrypt(anyString(), anyString());
+    }
+
+    @Test
+    void decryptAll_shouldUseSingleBatchRequestAndPropagateItemFailures() {
+        when(vaultTransitOperations.decrypt(testKeyName, List.of(Ciphertext.of("vault:v1:a"), Ciphertext.of("bad"))))
+                .thenReturn(List.of(new VaultDecryptionResult(Plaintext.of("a")),
+                        new VaultDecryptionResult(new VaultException("invalid ciphertext"))));
+
+        assertThrows(VaultException.class, () -> encryptionService.decryptAll(List.of("vault:v1:a", "bad")));
+    }
 }
@@ -0,0 +1,244 @@
+package com.mysillydreams.userservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EnvelopeEncryptionServiceTest {
+
+    @Mock
+    private EncryptionService transitEncryptionService; // Only used for values written before envelope mode
+
+    private InProcessTransitVault vault;
+    private MutableClock clock;
+    private EnvelopeEncryptionService encryptionService;
+
+    @BeforeEach
+    void setUp() {
+        vault = new InProcessTransitVault();
+        clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        encryptionService = new EnvelopeEncryptionService(vault, transitEncryptionService,
+                Duration.ofHours(1), 3, 10, clock);
+    }
+
+    @Test
+    void encryptAndDecrypt_shouldRoundTripWithoutVaultCallPerValue() {
+        String ciphertext1 = encryptionService.encrypt("alice@example.com");
+        String ciphertext2 = encryptionService.encrypt("+91 98765 43210");
+
+        assertTrue(ciphertext1.startsWith(EnvelopeEncryptionService.PREFIX));
+        assertNotEquals(ciphertext1, encryptionService.encrypt("alice@example.com")); // Random IV per value
+        assertEquals("alice@example.com", encryptionService.decrypt(ciphertext1));
+        assertEquals("+91 98765 43210", encryptionService.decrypt(ciphertext2));
+        assertEquals(1, vault.generated.get());
+        assertEquals(0, vault.unwrapRequests.get()); // Key generated in-process is already cached
+        verifyNoInteractions(transitEncryptionService);
+    }
+
+    @Test
+    void encryptAndDecrypt_emptyStringAndNull_shouldWork() {
+        assertEquals("", encryptionService.decrypt(encryptionService.encrypt("")));
+        assertNull(encryptionService.encrypt(null));
+        assertNull(encryptionService.decrypt(null));
+    }
+
+    @Test
+    void encrypt_shouldRotateDataKeyAfterMaxEncryptions() {
+        List<String> ciphertexts = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            ciphertexts.add(encryptionService.encrypt("value-" + i));
+        }
+
+        assertEquals(3, vault.generated.get()); // 3 + 3 + 1
+        for (int i = 0; i < 7; i++) {
+            assertEquals("value-" + i, encryptionService.decrypt(ciphertexts.get(i)));
+        }
+    }
+
+    @Test
+    void encrypt_shouldRotateDataKeyAfterTtl() {
+        String before = encryptionService.encrypt("before");
+        clock.advance(Duration.ofMinutes(61));
+        String after = encryptionService.encrypt("after");
+
+        assertEquals(2, vault.generated.get());
+        assertNotEquals(wrappedKey(before), wrappedKey(after));
+        assertEquals("before", encryptionService.decrypt(before));
+    }
+
+    @Test
+    void decrypt_afterRestart_shouldUnwrapEachDataKeyOnce() {
+        String ciphertext1 = encryptionService.encrypt("one");
+        String ciphertext2 = encryptionService.encrypt("two");
+        EnvelopeEncryptionService restarted = new EnvelopeEncryptionService(vault, transitEncryptionService,
+                Duration.ofHours(1), 3, 10, clock);
+
+        assertEquals("one", restarted.decrypt(ciphertext1));
+        assertEquals("two", restarted.decrypt(ciphertext2));
+        assertEquals(1, vault.unwrapRequests.get());
+    }
+
+    @Test
+    void decryptAll_shouldUnwrapMissingKeysInOneRequestAndBatchTransitValues() {
+        List<String> ciphertexts = new ArrayList<>();
+        for (int i = 0; i < 7; i++) { // Spread over 3 data keys
+            ciphertexts.add(encryptionService.encrypt("value-" + i));
+        }
+        ciphertexts.add(null);
+        ciphertexts.add("vault:v1:legacy1");
+        ciphertexts.add("vault:v1:legacy2");
+        when(transitEncryptionService.decryptAll(List.of("vault:v1:legacy1", "vault:v1:legacy2")))
+                .thenReturn(List.of("legacy-1", "legacy-2"));
+        EnvelopeEncryptionService restarted = new EnvelopeEncryptionService(vault, transitEncryptionService,
+                Duration.ofHours(1), 3, 10, clock);
+
+        List<String> plaintexts = restarted.decryptAll(ciphertexts);
+
+        assertEquals(Arrays.asList("value-0", "value-1", "value-2", "value-3", "value-4", "value-5", "value-6",
+                null, "legacy-1", "legacy-2"), plaintexts);
+        assertEquals(1, vault.unwrapRequests.get());
+        assertEquals(3, vault.unwrappedKeys.get());
+        verify(transitEncryptionService, never()).decrypt(anyString());
+    }
+
+    @Test
+    void decrypt_withTransitCiphertext_shouldDelegateToTransit() {
+        when(transitEncryptionService.decrypt("vault:v1:abc")).thenReturn("legacy");
+
+        assertEquals("legacy", encryptionService.decrypt("vault:v1:abc"));
+        assertEquals(0, vault.generated.get());
+    }
+
+    @Test
+    void decrypt_withTamperedCiphertext_shouldFail() {
+        String ciphertext = encryptionService.encrypt("secret");
+        int separator = ciphertext.lastIndexOf(':');
+        byte[] payload = Base64.getDecoder().decode(ciphertext.substring(separator + 1));
+        payload[payload.length - 1] ^= 1;
+        String tampered = ciphertext.substring(0, separator + 1) + Base64.getEncoder().encodeToString(payload);
+
+        assertThrows(IllegalStateException.class, () -> encryptionService.decrypt(tampered));
+    }
+
+    @Test
+    void decrypt_withMalformedEnvelope_shouldFail() {
+        assertThrows(IllegalArgumentException.class, () -> encryptionService.decrypt(EnvelopeEncryptionService.PREFIX + "x"));
+    }
+
+    private static String wrappedKey(String ciphertext) {
+        return ciphertext.substring(EnvelopeEncryptionService.PREFIX.length(), ciphertext.lastIndexOf(':'));
+    }
+
+    /**
+     * Stand-in for Vault transit: wraps data keys with an AES-GCM key-encryption key that never leaves this class,
+     * using the same {@code vault:v1:} ciphertext format, and counts the requests made to it.
+     */
+    private static class InProcessTransitVault implements DataKeySource {
+
+        private final SecureRandom random = new SecureRandom();
+        private final SecretKeySpec keyEncryptionKey;
+        final AtomicInteger generated = new AtomicInteger();
+        final AtomicInteger unwrapRequests = new AtomicInteger();
+        final AtomicInteger unwrappedKeys = new AtomicInteger();
+
+        InProcessTransitVault() {
+            byte[] kek = new byte[32];
+            random.nextBytes(kek);
+            keyEncryptionKey = new SecretKeySpec(kek, "AES");
+        }
+
+        @Override
+        public DataKey generateDataKey() {
+            generated.incrementAndGet();
+            byte[] key = new byte[32];
+            random.nextBytes(key);
+            return new DataKey(key, wrap(key));
+        }
+
+        @Override
+        public List<byte[]> unwrapDataKeys(List<String> wrappedKeys) {
+            unwrapRequests.incrementAndGet();
+            unwrappedKeys.addAndGet(wrappedKeys.size());
+            List<byte[]> keys = new ArrayList<>();
+            for (String wrappedKey : wrappedKeys) {
+                keys.add(unwrap(wrappedKey));
+            }
+            return keys;
+        }
+
+        private String wrap(byte[] key) {
+            try {
+                byte[] iv = new byte[12];
+                random.nextBytes(iv);
+                Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                cipher.init(Cipher.ENCRYPT_MODE, keyEncryptionKey, new GCMParameterSpec(128, iv));
+                byte[] wrapped = cipher.doFinal(key);
+                return "vault:v1:" + Base64.getEncoder().encodeToString(
+                        ByteBuffer.allocate(iv.length + wrapped.length).put(iv).put(wrapped).array());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private byte[] unwrap(String wrappedKey) {
+            try {
+                byte[] payload = Base64.getDecoder().decode(wrappedKey.substring("vault:v1:".length()));
+                Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                cipher.init(Cipher.DECRYPT_MODE, keyEncryptionKey, new GCMParameterSpec(128, payload, 0, 12));
+                return cipher.doFinal(payload, 12, payload.length - 12);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -28,7 +28,7 @@ class UserServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private EncryptionService encryptionService; // Mocked, as its direct functionality is tested separately
+    private BlindIndexService blindIndexService; // Mocked, as its direct functionality is tested separately
 
     @InjectMocks
     private UserService userService;
@@ -56,8 +56,8 @@ class UserServiceTest {
     @Test
     void createUser_success() {
         // Arrange
-        when(encryptionService.encrypt(userDto.getEmail())).thenReturn("encrypted_email_for_check");
-        when(userRepository.findByEmail("encrypted_email_for_check")).thenReturn(Optional.empty());
+        when(blindIndexService.emailIndex(userDto.getEmail())).thenReturn("email_hash_for_check");
+        when(userRepository.existsByEmailHash("email_hash_for_check")).thenReturn(false);
         // When save is called, return the entity that would have been saved (or a mock of it)
         // For simplicity, we'll capture the argument and ensure it's what we expect, then return a mock/stub.
         when(userRepository.save(any(UserEntity.class))).thenAnswer(invocation -> {
@@ -89,8 +89,8 @@ class UserServiceTest {
 
     @Test
     void createUser_emailAlreadyExists_shouldThrowIllegalArgumentException() {
-        when(encryptionService.encrypt(userDto.getEmail())).thenReturn("encrypted_email_for_check");
-        when(userRepository.findByEmail("encrypted_email_for_check")).thenReturn(Optional.of(userEntity));
+        when(blindIndexService.emailIndex(userDto.getEmail())).thenReturn("email_hash_for_check");
+        when(userRepository.existsByEmailHash("email_hash_for_check")).thenReturn(true);
 
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
             userService.createUser(userDto);
@@ -5,6 +5,7 @@ import com.mysillydreams.userservice.config.UserIntegrationTestBase;
 import com.mysillydreams.userservice.domain.UserEntity;
 import com.mysillydreams.userservice.dto.UserDto;
 import com.mysillydreams.userservice.repository.UserRepository;
+import com.mysillydreams.userservice.service.BlindIndexService;
 import com.mysillydreams.userservice.service.EncryptionService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -46,6 +47,9 @@ public class UserControllerIntegrationTest extends UserIntegrationTestBase {
     @Autowired
     private EncryptionService encryptionService; // To verify encryption if needed, or for complex assertions
 
+    @Autowired
+    private BlindIndexService blindIndexService;
+
     @BeforeEach
     @AfterEach
     void cleanupDatabase() {
@@ -80,7 +84,7 @@ public class UserControllerIntegrationTest extends UserIntegrationTestBase {
                 .andExpect(jsonPath("$.roles", hasSize(0))); // Expecting empty roles as DTO doesn't set them
 
         // Verify data in DB is encrypted
-        Optional<UserEntity> foundEntityOpt = userRepository.findByEmail(encryptionService.encrypt(requestDto.getEmail()));
+        Optional<UserEntity> foundEntityOpt = userRepository.findByEmailHash(blindIndexService.emailIndex(requestDto.getEmail()));
         assertThat(foundEntityOpt).isPresent();
         UserEntity persistedEntity = foundEntityOpt.get();
 
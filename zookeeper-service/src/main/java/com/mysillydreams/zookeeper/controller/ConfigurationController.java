@@ -2,6 +2,7 @@ package com.mysillydreams.zookeeper.controller;
 
 import com.mysillydreams.zookeeper.dto.ConfigurationRequest;
 import com.mysillydreams.zookeeper.dto.ConfigurationResponse;
+import com.mysillydreams.zookeeper.dto.ConfigurationSnapshot;
 import com.mysillydreams.zookeeper.health.ZookeeperHealthIndicator;
 import com.mysillydreams.zookeeper.service.ConfigurationService;
 import io.micrometer.tracing.annotation.NewSpan;
@@ -10,18 +11,26 @@ import io.micrometer.tracing.annotation.SpanTag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
+import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Production-ready REST API for Zookeeper configuration management
@@ -39,14 +48,28 @@ public class ConfigurationController {
 
     private static final Logger logger = LoggerFactory.getLogger(ConfigurationController.class);
     private static final Logger auditLogger = LoggerFactory.getLogger("AUDIT");
+    private static final long WATCH_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(30); // Clients reconnect after this
+    private static final int WATCH_QUEUE_CAPACITY = 256; // Undelivered changes per watch before it is closed
+    private static final int WATCH_THREADS = 4;
 
     private final ConfigurationService configurationService;
     private final ZookeeperHealthIndicator healthIndicator;
+    private final ExecutorService watchExecutor; // Writes change events to watch streams, off the Curator thread
 
     public ConfigurationController(ConfigurationService configurationService,
                                  ZookeeperHealthIndicator healthIndicator) {
         this.configurationService = configurationService;
         this.healthIndicator = healthIndicator;
+        this.watchExecutor = Executors.newFixedThreadPool(WATCH_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "config-watch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchExecutor.shutdownNow();
     }
 
     /**
@@ -176,17 +199,23 @@ public class ConfigurationController {
     }
 
     /**
-     * Get all configurations for a service
+     * Get all configurations for a service. The ETag is the snapshot version; a matching If-None-Match gets
+     * 304 Not Modified without a body.
      */
     @GetMapping("/{environment}/{service}")
     @NewSpan("config.getService")
     public ResponseEntity<Map<String, String>> getServiceConfiguration(
             @PathVariable @SpanTag("environment") String environment,
-            @PathVariable @SpanTag("service") String service) {
+            @PathVariable @SpanTag("service") String service,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
         
         try {
-            Map<String, String> configurations = configurationService.getServiceConfiguration(environment, service);
-            return ResponseEntity.ok(configurations);
+            ConfigurationSnapshot snapshot = configurationService.getServiceConfigurationSnapshot(environment, service);
+            String etag = "\"" + snapshot.version() + "\"";
+            if (etag.equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(snapshot.entries());
             
         } catch (Exception e) {
             logger.error("Failed to get service configuration: {}", e.getMessage(), e);
@@ -194,6 +223,46 @@ public class ConfigurationController {
         }
     }
 
+    /**
+     * Stream configuration changes of a service as server-sent events: first a "snapshot" event with the current
+     * configuration, then a "change" event per created, changed or deleted node. Answers 503 if the configuration
+     * cache is disabled, and 404 for an unknown environment or service.
+     */
+    @GetMapping(path = "/watch/{environment}/{service}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @NewSpan("config.watch")
+    public SseEmitter watchServiceConfiguration(
+            @PathVariable @SpanTag("environment") String environment,
+            @PathVariable @SpanTag("service") String service) throws IOException {
+
+        SseEmitter emitter = new SseEmitter(WATCH_TIMEOUT_MS);
+        ConfigurationWatch watch = new ConfigurationWatch(emitter, watchExecutor, WATCH_QUEUE_CAPACITY);
+        Runnable unsubscribe;
+        try {
+            unsubscribe = configurationService.subscribe(environment, service, watch);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+        }
+        Runnable close = () -> {
+            watch.close();
+            unsubscribe.run();
+        };
+        emitter.onCompletion(close);
+        emitter.onTimeout(close);
+        emitter.onError(error -> close.run());
+
+        // Sent after subscribing so that no change falls between the snapshot and the first event
+        try {
+            watch.start(configurationService.getServiceConfigurationSnapshot(environment, service));
+        } catch (IOException | RuntimeException e) {
+            close.run();
+            throw e;
+        }
+        logger.debug("Configuration watch opened for {}/{}", environment, service);
+        return emitter;
+    }
+
     /**
      * Delete configuration
      */
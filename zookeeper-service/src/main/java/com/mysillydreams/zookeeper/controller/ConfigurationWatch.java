@@ -0,0 +1,104 @@
+package com.mysillydreams.zookeeper.controller;
+
+import com.mysillydreams.zookeeper.dto.ConfigurationChangeEvent;
+import com.mysillydreams.zookeeper.dto.ConfigurationSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * One open configuration watch stream.
+ * <p>
+ * Change events arrive on the Curator event thread, which must not block on a slow client. They are only queued
+ * there, in a bounded per-stream queue, and written to the emitter by a task on the shared executor; at most one
+ * such task runs per stream, so events keep their order. A client that falls {@code capacity} events behind has its
+ * stream closed and reconnects to a fresh snapshot instead of buffering without limit.
+ */
+class ConfigurationWatch implements Consumer<ConfigurationChangeEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigurationWatch.class);
+
+    private final SseEmitter emitter;
+    private final Executor executor;
+    private final BlockingQueue<ConfigurationChangeEvent> pending;
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private volatile boolean started = false;
+    private volatile boolean closed = false;
+
+    ConfigurationWatch(SseEmitter emitter, Executor executor, int capacity) {
+        this.emitter = emitter;
+        this.executor = executor;
+        this.pending = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Queues a change event; called on the Curator event thread.
+     */
+    @Override
+    public void accept(ConfigurationChangeEvent event) {
+        if (closed) {
+            return;
+        }
+        if (!pending.offer(event)) {
+            logger.warn("Configuration watch for {}/{} fell too far behind; closing it",
+                event.environment(), event.service());
+            close();
+            emitter.complete();
+            return;
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * Sends the current snapshot, then starts delivering queued changes. Changes queued before the snapshot
+     * was sent are delivered after it.
+     */
+    void start(ConfigurationSnapshot snapshot) throws IOException {
+        emitter.send(SseEmitter.event().name("snapshot").data(snapshot));
+        started = true;
+        scheduleDrain();
+    }
+
+    void close() {
+        closed = true;
+        pending.clear();
+    }
+
+    private void scheduleDrain() {
+        if (!started || pending.isEmpty() || !draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            close();
+            emitter.complete();
+        }
+    }
+
+    private void drain() {
+        try {
+            ConfigurationChangeEvent event;
+            while (!closed && (event = pending.poll()) != null) {
+                emitter.send(SseEmitter.event().name("change").data(event));
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away or the emitter already completed
+            close();
+            emitter.completeWithError(e);
+        } finally {
+            draining.set(false);
+        }
+        // An event queued after the last poll but before draining was reset would otherwise wait for the next one
+        scheduleDrain();
+    }
+}
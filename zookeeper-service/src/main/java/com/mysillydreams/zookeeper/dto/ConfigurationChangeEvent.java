@@ -0,0 +1,14 @@
+package com.mysillydreams.zookeeper.dto;
+
+/**
+ * A configuration node that was created, changed or deleted in ZooKeeper.
+ *
+ * @param key   The configuration key, or null for the service's own configuration node.
+ * @param value The new value, or null if the node was deleted.
+ */
+public record ConfigurationChangeEvent(String environment, String service, String key, Type type, String value) {
+
+    public enum Type {
+        CREATED, CHANGED, DELETED
+    }
+}
@@ -0,0 +1,13 @@
+package com.mysillydreams.zookeeper.dto;
+
+import java.util.Map;
+
+/**
+ * Consistent view of one service's configuration in one environment.
+ * <p>
+ * {@code version} identifies the content: it is derived from the ZooKeeper transaction IDs of the nodes, so every
+ * zookeeper-service instance reports the same version for the same content, and any change produces a new one.
+ * Clients can send it back as {@code If-None-Match} to skip unchanged downloads.
+ */
+public record ConfigurationSnapshot(String environment, String service, String version, Map<String, String> entries) {
+}
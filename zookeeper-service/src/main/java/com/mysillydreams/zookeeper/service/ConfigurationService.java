@@ -1,12 +1,15 @@
 package com.mysillydreams.zookeeper.service;
 
 import com.mysillydreams.zookeeper.config.ZookeeperServiceProperties;
+import com.mysillydreams.zookeeper.dto.ConfigurationChangeEvent;
+import com.mysillydreams.zookeeper.dto.ConfigurationSnapshot;
 import io.micrometer.tracing.annotation.NewSpan;
 import io.micrometer.tracing.annotation.SpanTag;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,10 +22,14 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Production-ready Configuration management service using Zookeeper
@@ -32,6 +39,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * - Input validation and sanitization
  * - Audit logging and monitoring
  * - Connection pooling and retry mechanisms
+ * - Watch-driven in-memory configuration tree ({@link ConfigurationTreeCache}) for reads
  */
 @Service
 @EnableConfigurationProperties(ZookeeperServiceProperties.class)
@@ -39,6 +47,7 @@ public class ConfigurationService {
 
     private static final Logger logger = LoggerFactory.getLogger(ConfigurationService.class);
     private static final Logger auditLogger = LoggerFactory.getLogger("AUDIT");
+    private static final String ROOT_PATH = "/mysillydreams";
     
     @Value("${zookeeper.connection-string}")
     private String connectionString;
@@ -58,7 +67,7 @@ public class ConfigurationService {
     private final ZookeeperServiceProperties properties;
     private final ConfigurationTemplateService templateService;
     private CuratorFramework client;
-    private final Map<String, String> configurationCache = new ConcurrentHashMap<>();
+    private ConfigurationTreeCache treeCache; // null if caching is disabled
     
     @Autowired
     public ConfigurationService(ZookeeperServiceProperties properties,
@@ -85,6 +94,10 @@ public class ConfigurationService {
             
             // Initialize configuration structure
             initializeConfigurationStructure();
+
+            if (properties.getPerformance().getCache().isEnabled()) {
+                startTreeCache();
+            }
             
             logger.info("Zookeeper client connected successfully");
             auditLogger.info("Zookeeper service initialized successfully");
@@ -97,6 +110,9 @@ public class ConfigurationService {
     
     @PreDestroy
     public void cleanup() {
+        if (treeCache != null) {
+            treeCache.close();
+        }
         if (client != null) {
             client.close();
             logger.info("Zookeeper client connection closed");
@@ -104,6 +120,20 @@ public class ConfigurationService {
         }
     }
     
+    /**
+     * Load the configuration tree into memory. Until the initial load completes, reads go to Zookeeper directly.
+     */
+    private void startTreeCache() throws InterruptedException {
+        treeCache = new ConfigurationTreeCache(client, ROOT_PATH);
+        treeCache.start();
+        if (treeCache.awaitInitialized(connectionTimeout, TimeUnit.MILLISECONDS)) {
+            logger.info("Configuration tree cache loaded with {} nodes", treeCache.size());
+        } else {
+            logger.warn("Configuration tree cache not loaded within {} ms, reading from Zookeeper until it is",
+                connectionTimeout);
+        }
+    }
+
     /**
      * Initialize the configuration structure for all environments
      */
@@ -212,10 +242,7 @@ public class ConfigurationService {
                     .forPath(path, value.getBytes());
             }
             
-            // Update cache
-            String cacheKey = environment + "/" + service + "/" + key;
-            configurationCache.put(cacheKey, value);
-            
+            // The tree cache picks the change up from the watch event
             logger.info("Configuration set: {}/{}/{}", environment, service, key);
             auditLogger.info("Configuration updated: {}/{}/{} by system", environment, service, key);
         } catch (Exception e) {
@@ -235,28 +262,15 @@ public class ConfigurationService {
         try {
             validateInput(environment, service, key);
             
-            // Check cache first if enabled
-            if (properties.getPerformance().getCache().isEnabled()) {
-                String cacheKey = environment + "/" + service + "/" + key;
-                String cachedValue = configurationCache.get(cacheKey);
-                if (cachedValue != null) {
-                    return cachedValue;
-                }
+            if (isTreeCacheReady()) {
+                return treeCache.get(environment, service, key).orElse(null);
             }
-            
+
             String path = buildConfigPath(environment, service, key);
             
             if (client.checkExists().forPath(path) != null) {
                 byte[] data = client.getData().forPath(path);
-                String value = new String(data);
-                
-                // Update cache
-                if (properties.getPerformance().getCache().isEnabled()) {
-                    String cacheKey = environment + "/" + service + "/" + key;
-                    configurationCache.put(cacheKey, value);
-                }
-                
-                return value;
+                return new String(data, StandardCharsets.UTF_8);
             }
             
             return null;
@@ -272,36 +286,46 @@ public class ConfigurationService {
     @NewSpan("zookeeper.getServiceConfig")
     public Map<String, String> getServiceConfiguration(@SpanTag("environment") @NotBlank String environment, 
                                                       @SpanTag("service") @NotBlank String service) {
+        return getServiceConfigurationSnapshot(environment, service).entries();
+    }
+
+    /**
+     * Get all configurations for a service in an environment, with the version of that content
+     */
+    @NewSpan("zookeeper.getServiceConfigSnapshot")
+    public ConfigurationSnapshot getServiceConfigurationSnapshot(@SpanTag("environment") @NotBlank String environment,
+                                                                 @SpanTag("service") @NotBlank String service) {
         try {
             validateEnvironmentAndService(environment, service);
-            
-            String servicePath = "/mysillydreams/" + environment + "/" + service;
-            Map<String, String> configs = new HashMap<>();
-            
-            if (client.checkExists().forPath(servicePath) != null) {
-                byte[] data = client.getData().forPath(servicePath);
-                if (data != null && data.length > 0) {
-                    // Return the entire configuration as a single entry
-                    configs.put("configuration", new String(data));
-                } else {
-                    // If no data at service level, check for individual keys
-                    List<String> children = client.getChildren().forPath(servicePath);
-                    
-                    for (String child : children) {
-                        String childPath = servicePath + "/" + child;
-                        byte[] childData = client.getData().forPath(childPath);
-                        configs.put(child, new String(childData));
-                    }
-                }
+
+            if (isTreeCacheReady()) {
+                return treeCache.snapshot(environment, service);
             }
-            
-            return configs;
+            return readServiceConfigurationSnapshot(environment, service);
         } catch (Exception e) {
             logger.error("Failed to get service configuration {}/{}: {}", environment, service, e.getMessage(), e);
             throw new RuntimeException("Failed to get service configuration", e);
         }
     }
 
+    /**
+     * Subscribe to configuration changes of a service in an environment
+     *
+     * @return Handle that cancels the subscription
+     */
+    public Runnable subscribe(@NotBlank String environment, @NotBlank String service,
+                              Consumer<ConfigurationChangeEvent> subscriber) {
+        validateEnvironmentAndService(environment, service);
+        if (treeCache == null) {
+            throw new IllegalStateException("Configuration change notifications require the configuration cache");
+        }
+        return treeCache.subscribe(event -> {
+            if (event.environment().equals(environment) && event.service().equals(service)) {
+                subscriber.accept(event);
+            }
+        });
+    }
+
     /**
      * Delete configuration
      */
@@ -317,10 +341,6 @@ public class ConfigurationService {
             if (client.checkExists().forPath(path) != null) {
                 client.delete().forPath(path);
 
-                // Remove from cache
-                String cacheKey = environment + "/" + service + "/" + key;
-                configurationCache.remove(cacheKey);
-
                 logger.info("Configuration deleted: {}", path);
                 auditLogger.info("Configuration deleted: {}/{}/{} by system", environment, service, key);
             }
@@ -347,13 +367,46 @@ public class ConfigurationService {
         health.put("connectionString", maskConnectionString(connectionString));
         health.put("sessionTimeout", sessionTimeout);
         health.put("connectionTimeout", connectionTimeout);
-        health.put("cacheSize", configurationCache.size());
+        health.put("cacheSize", treeCache != null ? treeCache.size() : 0);
         health.put("cacheEnabled", properties.getPerformance().getCache().isEnabled());
+        health.put("cacheInitialized", isTreeCacheReady());
         return health;
     }
 
     // Private helper methods
 
+    private boolean isTreeCacheReady() {
+        return treeCache != null && treeCache.isInitialized();
+    }
+
+    /**
+     * Read a service's configuration straight from Zookeeper (cache disabled or not loaded yet)
+     */
+    private ConfigurationSnapshot readServiceConfigurationSnapshot(String environment, String service) throws Exception {
+        String servicePath = ROOT_PATH + "/" + environment + "/" + service;
+        Stat serviceStat = client.checkExists().forPath(servicePath);
+        if (serviceStat == null) {
+            return new ConfigurationSnapshot(environment, service, ConfigurationTreeCache.version(0, 0), Map.of());
+        }
+
+        byte[] data = client.getData().storingStatIn(serviceStat).forPath(servicePath);
+        long maxZxid = serviceStat.getMzxid();
+        int nodeCount = 1;
+        Map<String, String> children = new TreeMap<>();
+        for (String child : client.getChildren().forPath(servicePath)) {
+            Stat childStat = new Stat();
+            byte[] childData = client.getData().storingStatIn(childStat).forPath(servicePath + "/" + child);
+            children.put(child, childData != null ? new String(childData, StandardCharsets.UTF_8) : "");
+            maxZxid = Math.max(maxZxid, childStat.getMzxid());
+            nodeCount++;
+        }
+
+        Map<String, String> entries = data != null && data.length > 0
+            ? Map.of(ConfigurationTreeCache.SERVICE_CONFIGURATION_KEY, new String(data, StandardCharsets.UTF_8))
+            : Collections.unmodifiableMap(children);
+        return new ConfigurationSnapshot(environment, service, ConfigurationTreeCache.version(maxZxid, nodeCount), entries);
+    }
+
     private void createNodeIfNotExists(String path, String data) throws Exception {
         if (client.checkExists().forPath(path) == null) {
             client.create()
@@ -364,7 +417,7 @@ public class ConfigurationService {
     }
 
     private String buildConfigPath(String environment, String service, String key) {
-        return "/mysillydreams/" + environment + "/" + service + "/" + key;
+        return ROOT_PATH + "/" + environment + "/" + service + "/" + key;
     }
 
     private void validateInput(String environment, String service, String key) {
@@ -0,0 +1,206 @@
+package com.mysillydreams.zookeeper.service;
+
+import com.mysillydreams.zookeeper.dto.ConfigurationChangeEvent;
+import com.mysillydreams.zookeeper.dto.ConfigurationSnapshot;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.CuratorCache;
+import org.apache.curator.framework.recipes.cache.CuratorCacheListener;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-memory view of the configuration tree ({@code <root>/<environment>/<service>[/<key>]}) kept current by a
+ * Curator {@link CuratorCache}, i.e. by ZooKeeper watches rather than by reads.
+ * Features:
+ * - O(1) reads of single values from memory
+ * - Per-service snapshots, built once and reused until a node of that service changes
+ * - Change notifications pushed to subscribers once the initial load is complete
+ */
+public class ConfigurationTreeCache implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigurationTreeCache.class);
+
+    static final String SERVICE_CONFIGURATION_KEY = "configuration";
+
+    private final String rootPath;
+    private final CuratorCache cache;
+    private final Map<String, ConfigurationSnapshot> snapshots = new ConcurrentHashMap<>(); // By service path
+    private final List<Consumer<ConfigurationChangeEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final CountDownLatch initialized = new CountDownLatch(1);
+
+    public ConfigurationTreeCache(CuratorFramework client, String rootPath) {
+        this.rootPath = rootPath;
+        this.cache = CuratorCache.build(client, rootPath);
+        this.cache.listenable().addListener(CuratorCacheListener.builder()
+            .forAll((type, oldData, data) -> invalidate(data != null ? data : oldData))
+            .forInitialized(initialized::countDown)
+            .build());
+        // Separate listener so the initial load does not notify subscribers of every existing node
+        this.cache.listenable().addListener(CuratorCacheListener.builder()
+            .forAll(this::notifySubscribers)
+            .afterInitialized()
+            .build());
+    }
+
+    public void start() {
+        cache.start();
+    }
+
+    @Override
+    public void close() {
+        cache.close();
+    }
+
+    /**
+     * Wait for the initial load of the tree.
+     *
+     * @return true if the cache is loaded, false if the timeout elapsed first.
+     */
+    public boolean awaitInitialized(long timeout, TimeUnit unit) throws InterruptedException {
+        return initialized.await(timeout, unit);
+    }
+
+    public boolean isInitialized() {
+        return initialized.getCount() == 0;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Get a configuration value from memory
+     */
+    public Optional<String> get(String environment, String service, String key) {
+        return cache.get(servicePath(environment, service) + "/" + key).map(ConfigurationTreeCache::value);
+    }
+
+    /**
+     * Get the configuration of a service. The snapshot is built on first use and shared until one of the
+     * service's nodes changes.
+     */
+    public ConfigurationSnapshot snapshot(String environment, String service) {
+        return snapshots.computeIfAbsent(servicePath(environment, service),
+            servicePath -> buildSnapshot(environment, service, servicePath));
+    }
+
+    /**
+     * Register a subscriber for configuration changes. Subscribers are called on the Curator event thread and must
+     * not block; hand slow work such as network writes to another thread.
+     *
+     * @return Handle that removes the subscription.
+     */
+    public Runnable subscribe(Consumer<ConfigurationChangeEvent> subscriber) {
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    private ConfigurationSnapshot buildSnapshot(String environment, String service, String servicePath) {
+        Optional<ChildData> serviceNode = cache.get(servicePath);
+        Map<String, String> children = new TreeMap<>();
+        long[] maxZxid = {0};
+        int[] nodeCount = {0};
+
+        serviceNode.ifPresent(node -> {
+            maxZxid[0] = Math.max(maxZxid[0], modifiedZxid(node));
+            nodeCount[0]++;
+        });
+        String childPrefix = servicePath + "/";
+        cache.stream()
+            .filter(node -> node.getPath().startsWith(childPrefix)
+                && node.getPath().indexOf('/', childPrefix.length()) < 0)
+            .forEach(node -> {
+                children.put(node.getPath().substring(childPrefix.length()), value(node));
+                maxZxid[0] = Math.max(maxZxid[0], modifiedZxid(node));
+                nodeCount[0]++;
+            });
+
+        // Same shape as before: the service node's own data if it has any, otherwise one entry per key
+        Map<String, String> entries;
+        String serviceConfiguration = serviceNode.map(ConfigurationTreeCache::value).orElse("");
+        if (!serviceConfiguration.isEmpty()) {
+            entries = Map.of(SERVICE_CONFIGURATION_KEY, serviceConfiguration);
+        } else {
+            entries = Collections.unmodifiableMap(children);
+        }
+        return new ConfigurationSnapshot(environment, service, version(maxZxid[0], nodeCount[0]), entries);
+    }
+
+    /**
+     * Content version of a set of nodes: the highest modification zxid and the node count. A create or update
+     * raises the zxid and a delete lowers the count, so different content never gets the same version.
+     */
+    static String version(long maxModifiedZxid, int nodeCount) {
+        return Long.toHexString(maxModifiedZxid) + "-" + nodeCount;
+    }
+
+    private void invalidate(ChildData node) {
+        String[] segments = relativeSegments(node.getPath());
+        if (segments.length >= 2) {
+            snapshots.remove(servicePath(segments[0], segments[1]));
+        }
+    }
+
+    private void notifySubscribers(CuratorCacheListener.Type type, ChildData oldData, ChildData data) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        ChildData node = data != null ? data : oldData;
+        String[] segments = relativeSegments(node.getPath());
+        if (segments.length < 2 || segments.length > 3) {
+            return; // Root, environment nodes and anything below a key are not configuration
+        }
+        ConfigurationChangeEvent event = new ConfigurationChangeEvent(segments[0], segments[1],
+            segments.length == 3 ? segments[2] : null, eventType(type), data != null ? value(data) : null);
+        for (Consumer<ConfigurationChangeEvent> subscriber : subscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (Exception e) {
+                logger.warn("Configuration change subscriber failed for {}: {}", node.getPath(), e.getMessage());
+            }
+        }
+    }
+
+    private String[] relativeSegments(String path) {
+        if (!path.startsWith(rootPath + "/")) {
+            return new String[0];
+        }
+        return path.substring(rootPath.length() + 1).split("/");
+    }
+
+    private String servicePath(String environment, String service) {
+        return rootPath + "/" + environment + "/" + service;
+    }
+
+    private static ConfigurationChangeEvent.Type eventType(CuratorCacheListener.Type type) {
+        return switch (type) {
+            case NODE_CREATED -> ConfigurationChangeEvent.Type.CREATED;
+            case NODE_CHANGED -> ConfigurationChangeEvent.Type.CHANGED;
+            case NODE_DELETED -> ConfigurationChangeEvent.Type.DELETED;
+        };
+    }
+
+    private static long modifiedZxid(ChildData node) {
+        Stat stat = node.getStat();
+        return stat != null ? stat.getMzxid() : 0;
+    }
+
+    private static String value(ChildData node) {
+        return node.getData() != null ? new String(node.getData(), StandardCharsets.UTF_8) : "";
+    }
+}
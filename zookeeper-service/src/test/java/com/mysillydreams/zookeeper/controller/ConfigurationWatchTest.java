@@ -0,0 +1,122 @@
+package com.mysillydreams.zookeeper.controller;
+
+import com.mysillydreams.zookeeper.dto.ConfigurationChangeEvent;
+import com.mysillydreams.zookeeper.dto.ConfigurationSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigurationWatchTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void accept_shouldDeliverChangesInOrderAfterSnapshot() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter(null);
+        ConfigurationWatch watch = new ConfigurationWatch(emitter, executor, 16);
+
+        watch.accept(change("a")); // Queued before the snapshot is sent
+        watch.start(new ConfigurationSnapshot("dev", "user-service", "v1", Map.of()));
+        watch.accept(change("b"));
+        watch.accept(change("c"));
+
+        awaitSent(emitter, 4);
+        assertEquals(List.of("snapshot", "a", "b", "c"), emitter.sent);
+    }
+
+    @Test
+    void accept_shouldNotBlockOnSlowClientAndCloseItWhenQueueIsFull() throws Exception {
+        CountDownLatch clientStalled = new CountDownLatch(1);
+        RecordingEmitter emitter = new RecordingEmitter(clientStalled);
+        ConfigurationWatch watch = new ConfigurationWatch(emitter, executor, 2);
+        watch.start(new ConfigurationSnapshot("dev", "user-service", "v1", Map.of()));
+
+        long startedAt = System.nanoTime();
+        watch.accept(change("k0"));
+        assertTrue(emitter.sendStarted.await(5, TimeUnit.SECONDS)); // k0 is now stuck in the client's send
+        for (int i = 1; i < 5; i++) {
+            watch.accept(change("k" + i)); // k1 and k2 fill the queue, k3 overflows it
+        }
+        assertTrue(System.nanoTime() - startedAt < TimeUnit.SECONDS.toNanos(1), "accept blocked on the client");
+        assertTrue(emitter.completed);
+
+        clientStalled.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(List.of("snapshot", "k0"), emitter.sent);
+    }
+
+    private static ConfigurationChangeEvent change(String key) {
+        return new ConfigurationChangeEvent("dev", "user-service", key, ConfigurationChangeEvent.Type.CHANGED, "value");
+    }
+
+    private static void awaitSent(RecordingEmitter emitter, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (emitter.sent.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Records the key of each change event (or "snapshot"); change sends block until {@code stall} opens.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> sent = new CopyOnWriteArrayList<>();
+        private final CountDownLatch stall;
+        private final CountDownLatch sendStarted = new CountDownLatch(1);
+        private volatile boolean completed = false;
+
+        RecordingEmitter(CountDownLatch stall) {
+            this.stall = stall;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            for (var part : builder.build()) {
+                if (part.getData() instanceof ConfigurationChangeEvent event) {
+                    await();
+                    sent.add(event.key());
+                    return;
+                }
+                if (part.getData() instanceof ConfigurationSnapshot) {
+                    sent.add("snapshot");
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        private void await() throws IOException {
+            sendStarted.countDown();
+            try {
+                if (stall != null) {
+                    stall.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+}
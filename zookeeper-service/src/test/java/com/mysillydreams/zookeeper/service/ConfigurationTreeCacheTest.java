@@ -0,0 +1,123 @@
+package com.mysillydreams.zookeeper.service;
+
+import com.mysillydreams.zookeeper.dto.ConfigurationChangeEvent;
+import com.mysillydreams.zookeeper.dto.ConfigurationSnapshot;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigurationTreeCacheTest {
+
+    private static final String ROOT = "/mysillydreams";
+
+    private TestingServer server;
+    private CuratorFramework client;
+    private ConfigurationTreeCache treeCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new TestingServer();
+        client = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryOneTime(100));
+        client.start();
+        client.blockUntilConnected();
+        write("/dev/user-service/db.url", "jdbc:postgresql://db/users");
+        write("/dev/user-service/db.pool", "10");
+        write("/dev/order-api/timeout", "5s");
+
+        treeCache = new ConfigurationTreeCache(client, ROOT);
+        treeCache.start();
+        assertTrue(treeCache.awaitInitialized(10, TimeUnit.SECONDS));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        treeCache.close();
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void get_shouldServeLoadedValuesAndFollowChanges() throws Exception {
+        assertEquals("10", treeCache.get("dev", "user-service", "db.pool").orElseThrow());
+        assertTrue(treeCache.get("dev", "user-service", "missing").isEmpty());
+
+        client.setData().forPath(ROOT + "/dev/user-service/db.pool", bytes("20"));
+
+        awaitTrue(() -> treeCache.get("dev", "user-service", "db.pool").orElse("").equals("20"));
+    }
+
+    @Test
+    void snapshot_shouldBeReusedUntilServiceChanges() throws Exception {
+        ConfigurationSnapshot first = treeCache.snapshot("dev", "user-service");
+        assertEquals(Map.of("db.url", "jdbc:postgresql://db/users", "db.pool", "10"), first.entries());
+        assertSame(first, treeCache.snapshot("dev", "user-service"));
+
+        client.setData().forPath(ROOT + "/dev/order-api/timeout", bytes("7s")); // Other service
+        awaitTrue(() -> treeCache.get("dev", "order-api", "timeout").orElse("").equals("7s"));
+        assertSame(first, treeCache.snapshot("dev", "user-service"));
+
+        client.delete().forPath(ROOT + "/dev/user-service/db.pool");
+        awaitTrue(() -> treeCache.snapshot("dev", "user-service").entries().size() == 1);
+        assertNotEquals(first.version(), treeCache.snapshot("dev", "user-service").version());
+    }
+
+    @Test
+    void snapshot_withServiceLevelData_shouldReturnSingleConfigurationEntry() throws Exception {
+        client.setData().forPath(ROOT + "/dev/order-api", bytes("timeout: 5s"));
+
+        awaitTrue(() -> treeCache.snapshot("dev", "order-api").entries()
+            .equals(Map.of(ConfigurationTreeCache.SERVICE_CONFIGURATION_KEY, "timeout: 5s")));
+    }
+
+    @Test
+    void subscribe_shouldReceiveChangesMadeAfterInitialLoad() throws Exception {
+        BlockingQueue<ConfigurationChangeEvent> events = new LinkedBlockingQueue<>();
+        Runnable unsubscribe = treeCache.subscribe(events::add);
+
+        write("/dev/user-service/feature.x", "on");
+        ConfigurationChangeEvent created = events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(created);
+        assertEquals(new ConfigurationChangeEvent("dev", "user-service", "feature.x",
+            ConfigurationChangeEvent.Type.CREATED, "on"), created);
+
+        client.delete().forPath(ROOT + "/dev/user-service/feature.x");
+        ConfigurationChangeEvent deleted = events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(deleted);
+        assertEquals(ConfigurationChangeEvent.Type.DELETED, deleted.type());
+        assertNull(deleted.value());
+
+        unsubscribe.run();
+        write("/dev/user-service/feature.y", "on");
+        awaitTrue(() -> treeCache.get("dev", "user-service", "feature.y").isPresent());
+        assertTrue(events.isEmpty());
+    }
+
+    private void write(String path, String value) throws Exception {
+        client.create().creatingParentsIfNeeded().forPath(ROOT + path, bytes(value));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met within 10s");
+            Thread.sleep(20);
+        }
+    }
+}